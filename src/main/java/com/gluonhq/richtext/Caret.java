@@ -0,0 +1,58 @@
+package com.gluonhq.richtext;
+
+import java.util.Objects;
+
+/**
+ * A caret of the text, with the selection that extends from its anchor to its position, if any.
+ * Used for the carets that edit the text along with the main caret and selection
+ */
+public class Caret {
+
+    private final int position;
+    private final int anchor;
+
+    public Caret(int position) {
+        this(position, position);
+    }
+
+    public Caret(int position, int anchor) {
+        this.position = position;
+        this.anchor = anchor;
+    }
+
+    public int getPosition() {
+        return position;
+    }
+
+    public int getAnchor() {
+        return anchor;
+    }
+
+    /**
+     * @return the range between the anchor and the position, or {@link Selection#UNDEFINED} if they are the same
+     */
+    public Selection getSelection() {
+        return new Selection(anchor, position);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        Caret caret = (Caret) o;
+        return position == caret.position && anchor == caret.anchor;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(position, anchor);
+    }
+
+    @Override
+    public String toString() {
+        return "Caret {" +
+                "position=" + position +
+                ", anchor=" + anchor +
+                '}';
+    }
+}
@@ -0,0 +1,94 @@
+package com.gluonhq.richtext;
+
+import javafx.collections.ObservableList;
+import javafx.scene.Node;
+import javafx.scene.image.ImageView;
+import javafx.scene.text.Text;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * The text and image nodes of the fragments of a paragraph, in the children of its text flow.
+ * The nodes are reused when the paragraph is updated: a node shown at the same position is updated
+ * in place if it has the same type, and the nodes that are replaced or removed are pooled, to be
+ * used again by the next updates.
+ */
+class FragmentNodes {
+
+    private final ObservableList<Node> children;
+    private final Deque<Text> textPool = new ArrayDeque<>();
+    private final Deque<ImageView> imagePool = new ArrayDeque<>();
+
+    FragmentNodes(ObservableList<Node> children) {
+        this.children = children;
+    }
+
+    /**
+     * @param index the position of the fragment
+     * @return the text node shown at that position, or one from the pool, or a new one
+     */
+    Text obtainText(int index) {
+        if (index < children.size() && children.get(index) instanceof Text) {
+            return (Text) children.get(index);
+        }
+        Text text = textPool.poll();
+        return text != null ? text : new Text();
+    }
+
+    /**
+     * @param index the position of the fragment
+     * @return the image view shown at that position, or one from the pool, or a new one
+     */
+    ImageView obtainImage(int index) {
+        if (index < children.size() && children.get(index) instanceof ImageView) {
+            return (ImageView) children.get(index);
+        }
+        ImageView imageView = imagePool.poll();
+        return imageView != null ? imageView : new ImageView();
+    }
+
+    /**
+     * Shows the fragments. Only the children that are not the same node are replaced, so the ones
+     * updated in place are not removed from the scene graph, and the replaced ones are pooled
+     * @param fragments the nodes of the fragments, in order
+     */
+    void setFragments(List<Node> fragments) {
+        for (int i = 0; i < fragments.size(); i++) {
+            if (i == children.size()) {
+                children.addAll(fragments.subList(i, fragments.size()));
+                break;
+            }
+            Node child = children.get(i);
+            if (child != fragments.get(i)) {
+                children.set(i, fragments.get(i));
+                recycle(child);
+            }
+        }
+        if (children.size() > fragments.size()) {
+            List<Node> removed = new ArrayList<>(children.subList(fragments.size(), children.size()));
+            children.remove(fragments.size(), children.size());
+            removed.forEach(this::recycle);
+        }
+    }
+
+    // number of pooled nodes
+    int getPoolSize() {
+        return textPool.size() + imagePool.size();
+    }
+
+    void clearPools() {
+        textPool.clear();
+        imagePool.clear();
+    }
+
+    private void recycle(Node node) {
+        if (node instanceof Text) {
+            textPool.push((Text) node);
+        } else if (node instanceof ImageView) {
+            imagePool.push((ImageView) node);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.gluonhq.richtext;
+
+import javafx.scene.paint.Paint;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Immutable set of text ranges painted behind the text, like the matches of a search,
+ * that are added to {@link RichTextArea#getHighlights()}. Highlights are not part of the
+ * document: they don't modify the text decorations nor the undo history, and their ranges
+ * are not updated when the text is edited.
+ * Overlapping ranges are merged, and the ranges within a paragraph are found in O(log n).
+ */
+public final class Highlight {
+
+    private final Paint paint;
+    private final int[] starts;
+    private final int[] ends;
+
+    /**
+     * @param paint the paint of the ranges
+     * @param ranges the ranges to highlight, in any order. Undefined ranges are ignored
+     */
+    public Highlight(Paint paint, Collection<Selection> ranges) {
+        this.paint = Objects.requireNonNull(paint);
+        List<Selection> sorted = new ArrayList<>(ranges.size());
+        for (Selection range : ranges) {
+            if (range.isDefined()) {
+                sorted.add(range);
+            }
+        }
+        sorted.sort(Comparator.comparingInt(Selection::getStart));
+        int[] starts = new int[sorted.size()];
+        int[] ends = new int[sorted.size()];
+        int size = 0;
+        for (Selection range : sorted) {
+            if (size > 0 && range.getStart() <= ends[size - 1]) {
+                ends[size - 1] = Math.max(ends[size - 1], range.getEnd());
+            } else {
+                starts[size] = range.getStart();
+                ends[size] = range.getEnd();
+                size++;
+            }
+        }
+        this.starts = Arrays.copyOf(starts, size);
+        this.ends = Arrays.copyOf(ends, size);
+    }
+
+    public Paint getPaint() {
+        return paint;
+    }
+
+    /**
+     * @return the number of ranges, after merging the overlapping ones
+     */
+    public int size() {
+        return starts.length;
+    }
+
+    /**
+     * Returns the ranges that intersect the given range, clipped to it
+     * @param start index to start, inclusive
+     * @param end index to end, exclusive
+     * @return the clipped ranges, in order
+     */
+    public List<Selection> getRanges(int start, int end) {
+        List<Selection> ranges = new ArrayList<>();
+        if (start >= end) {
+            // like an empty paragraph
+            return ranges;
+        }
+        // first range that ends after start
+        int low = 0;
+        int high = ends.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (ends[mid] <= start) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        for (int i = low; i < starts.length && starts[i] < end; i++) {
+            ranges.add(new Selection(Math.max(start, starts[i]), Math.min(end, ends[i])));
+        }
+        return ranges;
+    }
+
+    @Override
+    public String toString() {
+        return "Highlight {" +
+                "paint=" + paint +
+                ", size=" + starts.length +
+                '}';
+    }
+}
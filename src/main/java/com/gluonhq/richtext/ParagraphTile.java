@@ -5,6 +5,7 @@ import com.gluonhq.richtext.model.ParagraphDecoration;
 import com.gluonhq.richtext.viewmodel.RichTextAreaViewModel;
 import javafx.animation.KeyFrame;
 import javafx.animation.Timeline;
+import javafx.beans.InvalidationListener;
 import javafx.beans.property.ObjectProperty;
 import javafx.beans.property.SimpleObjectProperty;
 import javafx.beans.value.ChangeListener;
@@ -45,17 +46,17 @@ public class ParagraphTile extends HBox {
 
     private static final double INDENT_PADDING = 10.0;
 
-    private final Timeline caretTimeline = new Timeline(
-            new KeyFrame(Duration.ZERO        , e -> setCaretVisibility(false)),
-            new KeyFrame(Duration.seconds(0.5), e -> setCaretVisibility(true)),
-            new KeyFrame(Duration.seconds(1.0))
-    );
+    // created when the caret is shown for the first time, so tiles of a text that is not editable never need it
+    private Timeline caretTimeline;
 
     private final Pane root;
     private final Group layers;
     private final ObservableSet<Path> textBackgroundColorPaths = FXCollections.observableSet();
     private final Path caretShape = new Path();
     private final Path selectionShape = new Path();
+    private final Path additionalCaretsShape = new Path();
+    private final Path additionalSelectionsShape = new Path();
+    private final Group highlightShapes = new Group();
     private final TextFlow textFlow = new TextFlow() {
         @Override
         protected double computePrefHeight(double width) {
@@ -75,13 +76,14 @@ public class ParagraphTile extends HBox {
     private double textFlowLayoutX, textFlowLayoutY;
     private final ChangeListener<Number> caretPositionListener = (o, ocp, p) -> updateCaretPosition(p.intValue());
     private final ChangeListener<Selection> selectionListener = (o, os, selection) -> updateSelection(selection);
+    private final InvalidationListener highlightsListener = o -> updateHighlights();
+    private final InvalidationListener additionalCaretsListener = o -> updateAdditionalCarets();
 
     public ParagraphTile(RichTextAreaSkin richTextAreaSkin) {
         this.richTextAreaSkin = richTextAreaSkin;
         this.control = richTextAreaSkin.getSkinnable();
         this.viewModel = richTextAreaSkin.getViewModel();
         getStyleClass().setAll("paragraph-tile");
-        caretTimeline.setCycleCount(Timeline.INDEFINITE);
         textFlow.setFocusTraversable(false);
         textFlow.getStyleClass().setAll("text-flow");
         textFlow.setOnMousePressed(this::mousePressedListener);
@@ -91,7 +93,13 @@ public class ParagraphTile extends HBox {
 
         selectionShape.getStyleClass().setAll("selection");
 
-        layers = new Group(selectionShape, caretShape, textFlow);
+        additionalCaretsShape.setFocusTraversable(false);
+        additionalCaretsShape.getStyleClass().add("caret");
+        additionalSelectionsShape.getStyleClass().setAll("selection");
+
+        highlightShapes.getStyleClass().setAll("highlights");
+
+        layers = new Group(highlightShapes, selectionShape, additionalSelectionsShape, caretShape, additionalCaretsShape, textFlow);
         layers.getStyleClass().add("layers");
         root = new Pane(layers);
         root.setPadding(new Insets(1));
@@ -108,6 +116,8 @@ public class ParagraphTile extends HBox {
     void setParagraph(Paragraph paragraph) {
         viewModel.caretPositionProperty().removeListener(caretPositionListener);
         viewModel.selectionProperty().removeListener(selectionListener);
+        control.getHighlights().removeListener(highlightsListener);
+        viewModel.getAdditionalCarets().removeListener(additionalCaretsListener);
         graphicFactoryProperty.unbind();
         if (paragraph == null) {
             return;
@@ -125,8 +135,12 @@ public class ParagraphTile extends HBox {
         graphicBox.setMaxWidth(graphicPrefWidth);
         textFlowLayoutX = 1d + decoration.getLeftInset();
         textFlowLayoutY = 1d + decoration.getTopInset();
-        viewModel.caretPositionProperty().addListener(caretPositionListener);
+        if (control.isEditable()) {
+            viewModel.caretPositionProperty().addListener(caretPositionListener);
+            viewModel.getAdditionalCarets().addListener(additionalCaretsListener);
+        }
         viewModel.selectionProperty().addListener(selectionListener);
+        control.getHighlights().addListener(highlightsListener);
     }
 
     TextFlow getTextFlow() {
@@ -193,6 +207,7 @@ public class ParagraphTile extends HBox {
                 // get global insertion point, preventing insertionIndex after linefeed
                 int globalInsertionIndex = Math.min(paragraph.getStart() + insertionIndex, getParagraphLimit() - 1);
                 if (!(e.isControlDown() || e.isAltDown() || e.isShiftDown() || e.isMetaDown() || e.isShortcutDown())) {
+                    viewModel.getAdditionalCarets().clear();
                     viewModel.setCaretPosition(globalInsertionIndex);
                     if (e.getClickCount() == 2) {
                         viewModel.selectCurrentWord();
@@ -208,6 +223,8 @@ public class ParagraphTile extends HBox {
                             prevCaretPosition;
                     viewModel.setSelection(new Selection(pos, globalInsertionIndex));
                     viewModel.setCaretPosition(globalInsertionIndex);
+                } else if (e.isAltDown() && e.getClickCount() == 1 && !(e.isControlDown() || e.isShiftDown() || e.isMetaDown() || e.isShortcutDown())) {
+                    viewModel.addCaret(globalInsertionIndex);
                 }
             }
             control.requestFocus();
@@ -231,11 +248,11 @@ public class ParagraphTile extends HBox {
     private void updateCaretPosition(int caretPosition) {
         caretShape.getElements().clear();
         if (paragraph == null || caretPosition < paragraph.getStart() || getParagraphLimit() <= caretPosition) {
-            caretTimeline.stop();
+            stopCaretTimeline();
             return;
         }
         if (caretPosition < 0 || !control.isEditable()) {
-            caretTimeline.stop();
+            stopCaretTimeline();
         } else {
             var pathElements = textFlow.caretShape(caretPosition - paragraph.getStart(), true);
             if (pathElements.length > 0) {
@@ -245,6 +262,14 @@ public class ParagraphTile extends HBox {
                     caretShape.getElements().add(new LineTo(0, 16));
                 }
                 richTextAreaSkin.lastValidCaretPosition = caretPosition;
+                if (caretTimeline == null) {
+                    caretTimeline = new Timeline(
+                            new KeyFrame(Duration.ZERO        , e -> setCaretVisibility(false)),
+                            new KeyFrame(Duration.seconds(0.5), e -> setCaretVisibility(true)),
+                            new KeyFrame(Duration.seconds(1.0))
+                    );
+                    caretTimeline.setCycleCount(Timeline.INDEFINITE);
+                }
                 caretTimeline.play();
             }
         }
@@ -252,6 +277,12 @@ public class ParagraphTile extends HBox {
         caretShape.setLayoutY(textFlowLayoutY);
     }
 
+    private void stopCaretTimeline() {
+        if (caretTimeline != null) {
+            caretTimeline.stop();
+        }
+    }
+
     private void setCaretVisibility(boolean on) {
         if (caretShape.getElements().size() > 0) {
             // Opacity is used since we don't want the changing caret bounds to affect the layout
@@ -274,6 +305,51 @@ public class ParagraphTile extends HBox {
         selectionShape.setLayoutY(textFlowLayoutY);
     }
 
+    // the carets other than the main one don't blink
+    private void updateAdditionalCarets() {
+        additionalCaretsShape.getElements().clear();
+        additionalSelectionsShape.getElements().clear();
+        if (paragraph != null && control.isEditable()) {
+            for (Caret caret : viewModel.getAdditionalCarets()) {
+                Selection selection = caret.getSelection();
+                if (selection.isDefined() && selection.getStart() < paragraph.getEnd() && paragraph.getStart() < selection.getEnd()) {
+                    additionalSelectionsShape.getElements().addAll(textFlow.rangeShape(
+                            Math.max(paragraph.getStart(), selection.getStart()) - paragraph.getStart(),
+                            Math.min(paragraph.getEnd(), selection.getEnd()) - paragraph.getStart()));
+                }
+                if (paragraph.getStart() <= caret.getPosition() && caret.getPosition() < getParagraphLimit()) {
+                    additionalCaretsShape.getElements().addAll(textFlow.caretShape(caret.getPosition() - paragraph.getStart(), true));
+                }
+            }
+        }
+        additionalCaretsShape.setLayoutX(textFlowLayoutX);
+        additionalCaretsShape.setLayoutY(textFlowLayoutY);
+        additionalSelectionsShape.setLayoutX(textFlowLayoutX);
+        additionalSelectionsShape.setLayoutY(textFlowLayoutY);
+    }
+
+    private void updateHighlights() {
+        highlightShapes.getChildren().clear();
+        if (paragraph == null) {
+            return;
+        }
+        for (Highlight highlight : control.getHighlights()) {
+            Path path = new Path();
+            for (Selection range : highlight.getRanges(paragraph.getStart(), paragraph.getEnd())) {
+                path.getElements().addAll(textFlow.rangeShape(
+                        range.getStart() - paragraph.getStart(), range.getEnd() - paragraph.getStart()));
+            }
+            if (!path.getElements().isEmpty()) {
+                path.getStyleClass().setAll("highlight");
+                path.setFill(highlight.getPaint());
+                path.setStrokeWidth(0);
+                highlightShapes.getChildren().add(path);
+            }
+        }
+        highlightShapes.setLayoutX(textFlowLayoutX);
+        highlightShapes.setLayoutY(textFlowLayoutY);
+    }
+
     private void updateLayers(SetChangeListener.Change<? extends Path> change) {
         if (change.wasAdded()) {
             layers.getChildren().add(0, change.getElementAdded());
@@ -308,6 +384,8 @@ public class ParagraphTile extends HBox {
         if (control == null || viewModel == null) {
             return;
         }
+        updateHighlights();
+        updateAdditionalCarets();
         updateSelection(viewModel.getSelection());
         updateCaretPosition(viewModel.getCaretPosition());
     }
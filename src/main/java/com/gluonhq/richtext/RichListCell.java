@@ -36,6 +36,10 @@ class RichListCell extends ListCell<Paragraph> {
 
     private final RichTextAreaSkin richTextAreaSkin;
     private final ParagraphTile paragraphTile;
+    private final FragmentNodes fragmentNodes;
+    // the version of the text shown by the cell, and its number of images
+    private long textVersion = -1;
+    private int imageCount;
 
     RichListCell(RichTextAreaSkin richTextAreaSkin) {
         this.richTextAreaSkin = richTextAreaSkin;
@@ -46,6 +50,7 @@ class RichListCell extends ListCell<Paragraph> {
 
         paragraphTile = new ParagraphTile(richTextAreaSkin);
         paragraphTile.getTextFlow().setPrefWidth(richTextAreaSkin.textFlowPrefWidthProperty.get());
+        fragmentNodes = new FragmentNodes(paragraphTile.getTextFlow().getChildren());
         setText(null);
 
         addEventHandler(MouseEvent.DRAG_DETECTED, event -> {
@@ -96,9 +101,10 @@ class RichListCell extends ListCell<Paragraph> {
             var fragments = new ArrayList<Node>();
             var backgroundIndexRanges = new ArrayList<IndexRangeColor>();
             var length = new AtomicInteger();
+            var images = new AtomicInteger();
             richTextAreaSkin.getViewModel().walkFragments((text, decoration) -> {
                 if (decoration instanceof TextDecoration && !text.isEmpty()) {
-                    final Text textNode = buildText(text.replace("\n", TextBuffer.ZERO_WIDTH_TEXT), (TextDecoration) decoration);
+                    final Text textNode = buildText(fragmentNodes.obtainText(fragments.size()), text.replace('\n', TextBuffer.ZERO_WIDTH_TEXT.charAt(0)), (TextDecoration) decoration);
                     fragments.add(textNode);
                     Color background = ((TextDecoration) decoration).getBackground();
                     if (background != Color.TRANSPARENT) {
@@ -107,12 +113,15 @@ class RichListCell extends ListCell<Paragraph> {
                     }
                     length.addAndGet(text.length());
                 } else if (decoration instanceof ImageDecoration) {
-                    fragments.add(buildImage((ImageDecoration) decoration));
+                    fragments.add(buildImage(fragmentNodes.obtainImage(fragments.size()), (ImageDecoration) decoration));
                     length.incrementAndGet();
+                    images.incrementAndGet();
                     richTextAreaSkin.nonTextNodes.incrementAndGet();
                 }
             }, item.getStart(), item.getEnd());
-            paragraphTile.getTextFlow().getChildren().setAll(fragments);
+            textVersion = richTextAreaSkin.textVersion;
+            imageCount = images.get();
+            fragmentNodes.setFragments(fragments);
             paragraphTile.setParagraph(item);
             addBackgroundPathsToLayers(paragraphTile.getTextFlow(), paragraphTile.getTextBackgroundColorPaths(), backgroundIndexRanges);
             setGraphic(paragraphTile);
@@ -145,14 +154,20 @@ class RichListCell extends ListCell<Paragraph> {
         textBackgroundColorPaths.addAll(fillPathMap.values());
     }
 
-    private Text buildText(String content, TextDecoration decoration) {
+    private Text buildText(Text text, String content, TextDecoration decoration) {
         if ("\n".equals(content)) {
-            Text lfText = new Text(TextBuffer.ZERO_WIDTH_TEXT);
-            lfText.setFont(MIN_LF_FONT);
-            return lfText;
+            text.setUserData(null);
+            text.setText(TextBuffer.ZERO_WIDTH_TEXT);
+            text.setFont(MIN_LF_FONT);
+            return text;
         }
         Objects.requireNonNull(decoration);
-        Text text = new Text(Objects.requireNonNull(content));
+        text.setText(Objects.requireNonNull(content));
+        if (decoration.equals(text.getUserData())) {
+            // the node already has this style
+            return text;
+        }
+        text.setUserData(decoration);
         text.setFill(decoration.getForeground());
         text.setStrikethrough(decoration.isStrikethrough());
         text.setUnderline(decoration.isUnderline());
@@ -177,22 +192,27 @@ class RichListCell extends ListCell<Paragraph> {
             text.setUnderline(true);
             text.setFill(Color.BLUE);
             text.setCursor(Cursor.HAND);
-            text.addEventHandler(MouseEvent.MOUSE_CLICKED, e -> launchBrowser(url));
+            text.setOnMouseClicked(e -> launchBrowser(url));
+        } else {
+            text.setCursor(null);
+            text.setOnMouseClicked(null);
         }
         return text;
     }
 
-    private ImageView buildImage(ImageDecoration imageDecoration) {
+    private ImageView buildImage(ImageView imageView, ImageDecoration imageDecoration) {
         Image image = richTextAreaSkin.getImageCache().computeIfAbsent(imageDecoration.getUrl(), Image::new);
-        final ImageView imageView = new ImageView(image);
+        imageView.setImage(image);
         // TODO Create resizable ImageView
         if (imageDecoration.getWidth() > -1 && imageDecoration.getHeight() > -1) {
+            imageView.setPreserveRatio(false);
             imageView.setFitWidth(imageDecoration.getWidth());
             imageView.setFitHeight(imageDecoration.getHeight());
         } else {
             // for now, limit the image within the content area
             double width = Math.min(image.getWidth(), richTextAreaSkin.textFlowPrefWidthProperty.get() - 10);
             imageView.setFitWidth(width);
+            imageView.setFitHeight(0);
             imageView.setPreserveRatio(true);
         }
         if (imageDecoration.getLink() != null) {
@@ -201,7 +221,21 @@ class RichListCell extends ListCell<Paragraph> {
         return imageView;
     }
 
+    /**
+     * Shows the text of the paragraph again after it changed, unless the cell was already updated
+     * @return true if the number of images of the paragraph changed
+     */
+    boolean refresh() {
+        if (isEmpty() || getItem() == null || textVersion == richTextAreaSkin.textVersion) {
+            return false;
+        }
+        int previousImageCount = imageCount;
+        updateItem(getItem(), false);
+        return imageCount != previousImageCount;
+    }
+
     void evictUnusedObjects() {
+        fragmentNodes.clearPools();
         getParagraphTile().ifPresent(ParagraphTile::evictUnusedObjects);
     }
 
@@ -3,18 +3,27 @@ package com.gluonhq.richtext;
 import com.gluonhq.richtext.action.ActionFactory;
 import com.gluonhq.richtext.model.Document;
 import com.gluonhq.richtext.model.ParagraphDecoration;
+import com.gluonhq.richtext.spell.SpellChecker;
 import javafx.beans.property.BooleanProperty;
 import javafx.beans.property.DoubleProperty;
+import javafx.beans.property.IntegerProperty;
+import javafx.beans.property.LongProperty;
 import javafx.beans.property.ObjectProperty;
 import javafx.beans.property.ReadOnlyBooleanProperty;
 import javafx.beans.property.ReadOnlyBooleanWrapper;
+import javafx.beans.property.ReadOnlyDoubleProperty;
+import javafx.beans.property.ReadOnlyDoubleWrapper;
 import javafx.beans.property.ReadOnlyIntegerProperty;
 import javafx.beans.property.ReadOnlyIntegerWrapper;
 import javafx.beans.property.ReadOnlyObjectProperty;
 import javafx.beans.property.ReadOnlyObjectWrapper;
 import javafx.beans.property.SimpleBooleanProperty;
 import javafx.beans.property.SimpleDoubleProperty;
+import javafx.beans.property.SimpleIntegerProperty;
+import javafx.beans.property.SimpleLongProperty;
 import javafx.beans.property.SimpleObjectProperty;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
 import javafx.css.PseudoClass;
 import javafx.scene.Node;
 import javafx.scene.control.Control;
@@ -84,6 +93,11 @@ public class RichTextArea extends Control {
     }
 
     // editableProperty
+    /**
+     * Defines if the text can be edited. A document that is set while the control is not editable is kept in
+     * a compact read only buffer, without undo history nor caret, that still supports selecting and copying
+     * its text. It is set up again to be edited when the control becomes editable.
+     */
     private final BooleanProperty editableProperty = new SimpleBooleanProperty(this, "editable", true) {
         @Override
         protected void invalidated() {
@@ -112,6 +126,21 @@ public class RichTextArea extends Control {
         selectionProperty.set(Objects.requireNonNull(value));
     }
 
+    // visibleRangeProperty
+    /**
+     * The range of text of the paragraphs currently shown in the control, or {@link Selection#UNDEFINED}
+     * before the first layout. It can be used to limit searches, like
+     * {@link com.gluonhq.richtext.model.TextBuffer#findAll(com.gluonhq.richtext.model.SearchQuery, Selection)},
+     * to what the user sees.
+     */
+    final ReadOnlyObjectWrapper<Selection> visibleRangeProperty = new ReadOnlyObjectWrapper<>(this, "visibleRange", Selection.UNDEFINED);
+    public final ReadOnlyObjectProperty<Selection> visibleRangeProperty() {
+        return visibleRangeProperty.getReadOnlyProperty();
+    }
+    public final Selection getVisibleRange() {
+        return visibleRangeProperty.get();
+    }
+
     // textLengthProperty
     final ReadOnlyIntegerWrapper textLengthProperty = new ReadOnlyIntegerWrapper(this, "textLength");
     public final ReadOnlyIntegerProperty textLengthProperty() {
@@ -121,6 +150,92 @@ public class RichTextArea extends Control {
         return textLengthProperty.get();
     }
 
+    // characterCountProperty
+    /**
+     * Number of characters of the text, not counting line feeds nor images.
+     */
+    final ReadOnlyIntegerWrapper characterCountProperty = new ReadOnlyIntegerWrapper(this, "characterCount");
+    public final ReadOnlyIntegerProperty characterCountProperty() {
+        return characterCountProperty.getReadOnlyProperty();
+    }
+    public final int getCharacterCount() {
+        return characterCountProperty.get();
+    }
+
+    // wordCountProperty
+    /**
+     * Number of words of the text.
+     */
+    final ReadOnlyIntegerWrapper wordCountProperty = new ReadOnlyIntegerWrapper(this, "wordCount");
+    public final ReadOnlyIntegerProperty wordCountProperty() {
+        return wordCountProperty.getReadOnlyProperty();
+    }
+    public final int getWordCount() {
+        return wordCountProperty.get();
+    }
+
+    // paragraphCountProperty
+    /**
+     * Number of paragraphs of the text, including empty ones.
+     */
+    final ReadOnlyIntegerWrapper paragraphCountProperty = new ReadOnlyIntegerWrapper(this, "paragraphCount");
+    public final ReadOnlyIntegerProperty paragraphCountProperty() {
+        return paragraphCountProperty.getReadOnlyProperty();
+    }
+    public final int getParagraphCount() {
+        return paragraphCountProperty.get();
+    }
+
+    // lineCountProperty
+    /**
+     * Number of lines of the text that are not empty. Lines wrapped by the layout are not counted.
+     */
+    final ReadOnlyIntegerWrapper lineCountProperty = new ReadOnlyIntegerWrapper(this, "lineCount");
+    public final ReadOnlyIntegerProperty lineCountProperty() {
+        return lineCountProperty.getReadOnlyProperty();
+    }
+    public final int getLineCount() {
+        return lineCountProperty.get();
+    }
+
+    // imageCountProperty
+    /**
+     * Number of images of the text.
+     */
+    final ReadOnlyIntegerWrapper imageCountProperty = new ReadOnlyIntegerWrapper(this, "imageCount");
+    public final ReadOnlyIntegerProperty imageCountProperty() {
+        return imageCountProperty.getReadOnlyProperty();
+    }
+    public final int getImageCount() {
+        return imageCountProperty.get();
+    }
+
+    // styleRunCountProperty
+    /**
+     * Number of runs of text with the same decoration.
+     */
+    final ReadOnlyIntegerWrapper styleRunCountProperty = new ReadOnlyIntegerWrapper(this, "styleRunCount");
+    public final ReadOnlyIntegerProperty styleRunCountProperty() {
+        return styleRunCountProperty.getReadOnlyProperty();
+    }
+    public final int getStyleRunCount() {
+        return styleRunCountProperty.get();
+    }
+
+    // pasteProgressProperty
+    /**
+     * Progress, from 0 to 1, of the preparation of a paste of very large text, that happens in the
+     * background and ends with the text inserted as a single edit, or -1 when no paste is being prepared.
+     * It can be bound to a {@link javafx.scene.control.ProgressBar} for instance.
+     */
+    final ReadOnlyDoubleWrapper pasteProgressProperty = new ReadOnlyDoubleWrapper(this, "pasteProgress", -1);
+    public final ReadOnlyDoubleProperty pasteProgressProperty() {
+        return pasteProgressProperty.getReadOnlyProperty();
+    }
+    public final double getPasteProgress() {
+        return pasteProgressProperty.get();
+    }
+
     // contentAreaWidthProperty
     /**
      * Defines a width constraint for the content area of the rich text control,
@@ -146,6 +261,123 @@ public class RichTextArea extends Control {
         contentAreaWidthProperty.set(value);
     }
 
+    // undoLimitProperty
+    /**
+     * Defines the maximum number of edits that can be undone.
+     * Once the limit is reached, the oldest edits are discarded.
+     *
+     * @defaultValue Integer.MAX_VALUE, that is, unbounded
+     */
+    private final IntegerProperty undoLimitProperty = new SimpleIntegerProperty(this, "undoLimit", Integer.MAX_VALUE);
+    public final IntegerProperty undoLimitProperty() {
+       return undoLimitProperty;
+    }
+    public final int getUndoLimit() {
+       return undoLimitProperty.get();
+    }
+    public final void setUndoLimit(int value) {
+        undoLimitProperty.set(value);
+    }
+
+    // undoMemoryLimitProperty
+    /**
+     * Defines the approximate maximum amount of memory, in bytes, that the undo history can retain.
+     * Once the limit is reached, the oldest edits are discarded.
+     *
+     * @defaultValue Long.MAX_VALUE, that is, unbounded
+     */
+    private final LongProperty undoMemoryLimitProperty = new SimpleLongProperty(this, "undoMemoryLimit", Long.MAX_VALUE);
+    public final LongProperty undoMemoryLimitProperty() {
+       return undoMemoryLimitProperty;
+    }
+    public final long getUndoMemoryLimit() {
+       return undoMemoryLimitProperty.get();
+    }
+    public final void setUndoMemoryLimit(long value) {
+        undoMemoryLimitProperty.set(value);
+    }
+
+    // undoSpillThresholdProperty
+    /**
+     * Defines the number of most recent edits that the undo history keeps in memory.
+     * Older edits are moved to a temporary file, and read back when they are undone.
+     * A value of 0 keeps the whole undo history in memory.
+     *
+     * @defaultValue 0
+     */
+    private final IntegerProperty undoSpillThresholdProperty = new SimpleIntegerProperty(this, "undoSpillThreshold", 0);
+    public final IntegerProperty undoSpillThresholdProperty() {
+       return undoSpillThresholdProperty;
+    }
+    public final int getUndoSpillThreshold() {
+       return undoSpillThresholdProperty.get();
+    }
+    public final void setUndoSpillThreshold(int value) {
+        undoSpillThresholdProperty.set(value);
+    }
+
+    // searchIndexEnabledProperty
+    /**
+     * Defines whether the text is indexed, so that find and replace on large documents is instant.
+     * The index is kept up to date on every edit, and rebuilt in the background when needed,
+     * at the cost of extra memory.
+     *
+     * @defaultValue false
+     */
+    private final BooleanProperty searchIndexEnabledProperty = new SimpleBooleanProperty(this, "searchIndexEnabled", false);
+    public final BooleanProperty searchIndexEnabledProperty() {
+       return searchIndexEnabledProperty;
+    }
+    public final boolean isSearchIndexEnabled() {
+       return searchIndexEnabledProperty.get();
+    }
+    public final void setSearchIndexEnabled(boolean value) {
+        searchIndexEnabledProperty.set(value);
+    }
+
+    // highlights
+    private final ObservableList<Highlight> highlights = FXCollections.observableArrayList();
+    /**
+     * Ranges painted behind the text, on top of the text background and below the selection,
+     * like the matches of a search. Only the ranges of the visible paragraphs are rendered, and
+     * neither the document nor the undo history are modified.
+     * @return the list of highlights
+     */
+    public final ObservableList<Highlight> getHighlights() {
+        return highlights;
+    }
+
+    // additionalCarets
+    private final ObservableList<Caret> additionalCarets = FXCollections.observableArrayList();
+    /**
+     * Carets that edit the text along with the main caret and selection, added for instance with
+     * Alt + click. Typing, deleting and decorating text apply to all of them at once, as a single edit
+     * that can be undone in one step. Moving the caret with the keyboard or clicking on the text clears them.
+     * @return the list of additional carets
+     */
+    public final ObservableList<Caret> getAdditionalCarets() {
+        return additionalCarets;
+    }
+
+    // spellCheckerProperty
+    /**
+     * Defines the spell checker of the text, or null to disable spell checking. Paragraphs are checked
+     * on a worker thread, and only checked again after they change. The misspelled words of the visible
+     * paragraphs are painted as a {@link Highlight}, that is not part of the undo history.
+     *
+     * @defaultValue null
+     */
+    private final ObjectProperty<SpellChecker> spellCheckerProperty = new SimpleObjectProperty<>(this, "spellChecker");
+    public final ObjectProperty<SpellChecker> spellCheckerProperty() {
+       return spellCheckerProperty;
+    }
+    public final SpellChecker getSpellChecker() {
+       return spellCheckerProperty.get();
+    }
+    public final void setSpellChecker(SpellChecker value) {
+        spellCheckerProperty.set(value);
+    }
+
     // paragraphGraphicFactoryProperty
     private final ObjectProperty<BiFunction<Integer, ParagraphDecoration.GraphicType, Node>> paragraphGraphicFactoryProperty = new SimpleObjectProperty<>(this, "paragraphGraphicFactory");
     public final ObjectProperty<BiFunction<Integer, ParagraphDecoration.GraphicType, Node>> paragraphGraphicFactoryProperty() {
@@ -3,13 +3,17 @@ package com.gluonhq.richtext;
 import com.gluonhq.richtext.model.Document;
 import com.gluonhq.richtext.model.Paragraph;
 import com.gluonhq.richtext.model.PieceTable;
+import com.gluonhq.richtext.model.ReadOnlyTextBuffer;
 import com.gluonhq.richtext.model.TextBuffer;
 import com.gluonhq.richtext.model.TextDecoration;
+import com.gluonhq.richtext.spell.SpellCheckService;
+import com.gluonhq.richtext.spell.SpellChecker;
 import com.gluonhq.richtext.viewmodel.ActionCmd;
 import com.gluonhq.richtext.viewmodel.ActionCmdFactory;
 import com.gluonhq.richtext.viewmodel.RichTextAreaViewModel;
 import javafx.animation.PauseTransition;
 import javafx.application.Platform;
+import javafx.beans.InvalidationListener;
 import javafx.beans.Observable;
 import javafx.beans.binding.Bindings;
 import javafx.beans.property.DoubleProperty;
@@ -38,6 +42,7 @@ import javafx.scene.input.ContextMenuEvent;
 import javafx.scene.input.KeyCodeCombination;
 import javafx.scene.input.KeyCombination;
 import javafx.scene.input.KeyEvent;
+import javafx.scene.paint.Color;
 import javafx.scene.shape.Path;
 import javafx.scene.text.Font;
 import javafx.scene.text.FontPosture;
@@ -89,6 +94,7 @@ public class RichTextAreaSkin extends SkinBase<RichTextArea> {
     private final RichTextAreaViewModel viewModel = new RichTextAreaViewModel(this::getNextRowPosition);
 
     private static final ActionCmdFactory ACTION_CMD_FACTORY = new ActionCmdFactory();
+    private static final Color MISSPELLING_PAINT = Color.rgb(255, 0, 0, 0.25);
 
     private final Map<KeyCombination, ActionBuilder> INPUT_MAP = Map.ofEntries(
         entry( new KeyCodeCombination(RIGHT, SHIFT_ANY, ALT_ANY, CONTROL_ANY, SHORTCUT_ANY), e -> ACTION_CMD_FACTORY.caretMove(Direction.FORWARD, e)),
@@ -133,7 +139,9 @@ public class RichTextAreaSkin extends SkinBase<RichTextArea> {
     private final Map<String, Image> imageCache = new ConcurrentHashMap<>();
     private final SmartTimer objectsCacheEvictionTimer;
 
-    private final Consumer<TextBuffer.Event> textChangeListener = e -> refreshTextFlow();
+    private final Consumer<TextBuffer.Event> textChangeListener = this::refreshTextFlow;
+    // incremented on every change of the text, so the cells know if they show the latest one
+    long textVersion;
     int lastValidCaretPosition = -1;
     int dragStart = -1;
     int anchorIndex = -1;
@@ -164,6 +172,13 @@ public class RichTextAreaSkin extends SkinBase<RichTextArea> {
     };
 
     private final ChangeListener<Number> caretChangeListener;
+    private final InvalidationListener editableListener = this::editableChangeListener;
+    private final InvalidationListener undoLimitsListener = o -> applyUndoLimits();
+    private final InvalidationListener searchIndexListener = o -> viewModel.setSearchIndexEnabled(getSkinnable().isSearchIndexEnabled());
+    private final InvalidationListener spellCheckerListener = o -> applySpellChecker();
+    private final InvalidationListener visibleRangeListener = o -> updateMisspellings();
+    private SpellCheckService spellCheckService;
+    private Highlight misspellings;
 
     private class RichVirtualFlow extends VirtualFlow<ListCell<Paragraph>> {
 
@@ -179,6 +194,15 @@ public class RichTextAreaSkin extends SkinBase<RichTextArea> {
         protected void rebuildCells() {
             super.rebuildCells();
         }
+
+        @Override
+        protected void layoutChildren() {
+            super.layoutChildren();
+            ListCell<Paragraph> first = getFirstVisibleCell();
+            ListCell<Paragraph> last = getLastVisibleCell();
+            viewModel.setVisibleRange(first == null || last == null || first.getItem() == null || last.getItem() == null ?
+                    Selection.UNDEFINED : new Selection(first.getItem().getStart(), last.getItem().getEnd()));
+        }
     }
 
     private class ParagraphListView extends ListView<Paragraph> {
@@ -222,6 +246,36 @@ public class RichTextAreaSkin extends SkinBase<RichTextArea> {
             virtualFlow.rebuildCells();
         }
 
+        /**
+         * @return true if all the paragraphs within the given range are shown by visible cells. The cells
+         * that are not visible are reused without being updated if their paragraph doesn't change
+         */
+        boolean isShown(int start, int end) {
+            ListCell<Paragraph> firstCell = virtualFlow.getFirstVisibleCell();
+            ListCell<Paragraph> lastCell = virtualFlow.getLastVisibleCell();
+            int first = viewModel.getParagraphIndexAt(start);
+            return firstCell != null && lastCell != null && first >= 0 &&
+                    firstCell.getIndex() <= first && viewModel.getParagraphIndexAt(end) <= lastCell.getIndex();
+        }
+
+        /**
+         * Updates the visible cells of the paragraphs within the given range, in place, without
+         * rebuilding the other cells. The indices of the paragraphs must not have changed
+         * @return true if the number of images of the updated cells changed
+         */
+        boolean updateCells(int start, int end) {
+            int first = viewModel.getParagraphIndexAt(start);
+            int last = viewModel.getParagraphIndexAt(end);
+            boolean imagesChanged = false;
+            for (int i = first; i <= last; i++) {
+                ListCell<Paragraph> cell = virtualFlow.getVisibleCell(i);
+                if (cell instanceof RichListCell) {
+                    imagesChanged |= ((RichListCell) cell).refresh();
+                }
+            }
+            return imagesChanged;
+        }
+
         void scrollIfNeeded() {
             final Bounds vfBounds = virtualFlow.localToScene(virtualFlow.getBoundsInLocal());
             double viewportMinY = vfBounds.getMinY();
@@ -243,7 +297,10 @@ public class RichTextAreaSkin extends SkinBase<RichTextArea> {
                         }, () -> {
                             // In case no caret was found (paragraph is not in a listCell yet),
                             // scroll directly to the paragraph
-                            viewModel.getParagraphWithCaret().ifPresent(this::scrollTo);
+                            int index = viewModel.getParagraphIndexAt(viewModel.getCaretPosition());
+                            if (index >= 0) {
+                                scrollTo(index);
+                            }
                         });
         }
     }
@@ -292,8 +349,25 @@ public class RichTextAreaSkin extends SkinBase<RichTextArea> {
         viewModel.documentProperty().removeListener(documentChangeListener);
         viewModel.autoSaveProperty().unbind();
         lastValidCaretPosition = -1;
-        getSkinnable().editableProperty().removeListener(this::editableChangeListener);
+        getSkinnable().editableProperty().removeListener(editableListener);
+        getSkinnable().undoLimitProperty().removeListener(undoLimitsListener);
+        getSkinnable().undoMemoryLimitProperty().removeListener(undoLimitsListener);
+        getSkinnable().undoSpillThresholdProperty().removeListener(undoLimitsListener);
+        getSkinnable().searchIndexEnabledProperty().removeListener(searchIndexListener);
+        viewModel.setSearchIndexEnabled(false);
+        getSkinnable().spellCheckerProperty().removeListener(spellCheckerListener);
+        viewModel.visibleRangeProperty().removeListener(visibleRangeListener);
+        disposeSpellChecker();
         getSkinnable().textLengthProperty.unbind();
+        getSkinnable().visibleRangeProperty.unbind();
+        getSkinnable().characterCountProperty.unbind();
+        getSkinnable().wordCountProperty.unbind();
+        getSkinnable().paragraphCountProperty.unbind();
+        getSkinnable().lineCountProperty.unbind();
+        getSkinnable().imageCountProperty.unbind();
+        getSkinnable().styleRunCountProperty.unbind();
+        getSkinnable().pasteProgressProperty.unbind();
+        Bindings.unbindContentBidirectional(getSkinnable().getAdditionalCarets(), viewModel.getAdditionalCarets());
         getSkinnable().modifiedProperty.unbind();
         getSkinnable().setOnKeyPressed(null);
         getSkinnable().setOnKeyTyped(null);
@@ -322,7 +396,17 @@ public class RichTextAreaSkin extends SkinBase<RichTextArea> {
             return;
         }
         viewModel.caretPositionProperty().addListener(caretChangeListener);
-        viewModel.setTextBuffer(new PieceTable(document));
+        // a text that is not editable when it is set is only shown, and doesn't need a piece table
+        viewModel.setTextBuffer(getSkinnable().isEditable() ? new PieceTable(document) : new ReadOnlyTextBuffer(document));
+        applyUndoLimits();
+        getSkinnable().undoLimitProperty().addListener(undoLimitsListener);
+        getSkinnable().undoMemoryLimitProperty().addListener(undoLimitsListener);
+        getSkinnable().undoSpillThresholdProperty().addListener(undoLimitsListener);
+        viewModel.setSearchIndexEnabled(getSkinnable().isSearchIndexEnabled());
+        getSkinnable().searchIndexEnabledProperty().addListener(searchIndexListener);
+        applySpellChecker();
+        getSkinnable().spellCheckerProperty().addListener(spellCheckerListener);
+        viewModel.visibleRangeProperty().addListener(visibleRangeListener);
         lastValidCaretPosition = document.getCaretPosition();
         viewModel.setCaretPosition(lastValidCaretPosition);
         viewModel.addChangeListener(textChangeListener);
@@ -330,9 +414,18 @@ public class RichTextAreaSkin extends SkinBase<RichTextArea> {
         viewModel.documentProperty().addListener(documentChangeListener);
         viewModel.autoSaveProperty().bind(getSkinnable().autoSaveProperty());
         getSkinnable().textLengthProperty.bind(viewModel.textLengthProperty());
+        getSkinnable().visibleRangeProperty.bind(viewModel.visibleRangeProperty());
+        getSkinnable().characterCountProperty.bind(viewModel.getStatistics().characterCountProperty());
+        getSkinnable().wordCountProperty.bind(viewModel.getStatistics().wordCountProperty());
+        getSkinnable().paragraphCountProperty.bind(viewModel.getStatistics().paragraphCountProperty());
+        getSkinnable().lineCountProperty.bind(viewModel.getStatistics().lineCountProperty());
+        getSkinnable().imageCountProperty.bind(viewModel.getStatistics().imageCountProperty());
+        getSkinnable().styleRunCountProperty.bind(viewModel.getStatistics().styleRunCountProperty());
+        getSkinnable().pasteProgressProperty.bind(viewModel.pasteProgressProperty());
+        Bindings.bindContentBidirectional(getSkinnable().getAdditionalCarets(), viewModel.getAdditionalCarets());
         getSkinnable().modifiedProperty.bind(viewModel.savedProperty().not());
         getSkinnable().setOnContextMenuRequested(contextMenuEventEventHandler);
-        getSkinnable().editableProperty().addListener(this::editableChangeListener);
+        getSkinnable().editableProperty().addListener(editableListener);
         getSkinnable().setOnKeyPressed(this::keyPressedListener);
         getSkinnable().setOnKeyTyped(this::keyTypedListener);
         getSkinnable().widthProperty().addListener(controlPrefWidthListener);
@@ -341,21 +434,39 @@ public class RichTextAreaSkin extends SkinBase<RichTextArea> {
         editableChangeListener(null); // sets up all related listeners
     }
 
-    // TODO Need more optimal way of rendering text fragments.
-    //  For now rebuilding the whole text flow
     private void refreshTextFlow() {
+        refreshTextFlow(null);
+    }
+
+    // Only the cells of the paragraphs changed by the event are updated. All the cells are rebuilt
+    // when paragraphs are added or removed, since list numbers may change, when not all the changed
+    // paragraphs are visible, or when the whole text may have changed
+    private void refreshTextFlow(TextBuffer.Event event) {
         objectsCacheEvictionTimer.pause();
         try {
+            textVersion++;
+            int paragraphCount = paragraphSortedList.size();
             nonTextNodes.set(0);
-            viewModel.resetCharacterIterator();
+            if (event != null) {
+                viewModel.updateParagraphList(event);
+            } else {
+                viewModel.resetCharacterIterator();
+            }
             lastParagraph = paragraphSortedList.get(paragraphSortedList.size() - 1);
-            // this ensures changes in decoration are applied:
-            paragraphListView.updateLayout();
+            int[] changedRange = paragraphCount == paragraphSortedList.size() ? getChangedRange(event) : null;
+            if (changedRange != null && paragraphListView.isShown(changedRange[0], changedRange[1])) {
+                if (paragraphListView.updateCells(changedRange[0], changedRange[1])) {
+                    requestLayout();
+                }
+            } else {
+                // this ensures changes in decoration are applied:
+                paragraphListView.updateLayout();
 
-            if (nonTextNodesCount != nonTextNodes.get()) {
-                // when number of images changes, caret
-                requestLayout();
-                nonTextNodesCount = nonTextNodes.get();
+                if (nonTextNodesCount != nonTextNodes.get()) {
+                    // when number of images changes, caret
+                    requestLayout();
+                    nonTextNodesCount = nonTextNodes.get();
+                }
             }
             getSkinnable().requestFocus();
         } finally {
@@ -363,12 +474,90 @@ public class RichTextAreaSkin extends SkinBase<RichTextArea> {
         }
     }
 
+    // the range of the text changed by the event, or null if the whole text may have changed
+    private static int[] getChangedRange(TextBuffer.Event event) {
+        if (event instanceof TextBuffer.RangesEvent) {
+            // from the first range to the last one, so the cells are refreshed once for all of them
+            int[] changedRange = null;
+            for (TextBuffer.Event rangeEvent : ((TextBuffer.RangesEvent) event).getEvents()) {
+                int[] range = getChangedRange(rangeEvent);
+                if (range == null) {
+                    return null;
+                }
+                changedRange = changedRange == null ? range :
+                        new int[] {Math.min(changedRange[0], range[0]), Math.max(changedRange[1], range[1])};
+            }
+            return changedRange;
+        } else if (event instanceof TextBuffer.InsertEvent) {
+            TextBuffer.InsertEvent insertEvent = (TextBuffer.InsertEvent) event;
+            return new int[] {insertEvent.getPosition(), insertEvent.getPosition() + insertEvent.getText().length()};
+        } else if (event instanceof TextBuffer.DeleteEvent) {
+            TextBuffer.DeleteEvent deleteEvent = (TextBuffer.DeleteEvent) event;
+            return new int[] {deleteEvent.getPosition(), deleteEvent.getPosition()};
+        } else if (event instanceof TextBuffer.DecorateEvent &&
+                ((TextBuffer.DecorateEvent) event).getDecoration() instanceof TextDecoration) {
+            TextBuffer.DecorateEvent decorateEvent = (TextBuffer.DecorateEvent) event;
+            return new int[] {decorateEvent.getStart(), decorateEvent.getEnd()};
+        }
+        return null;
+    }
+
+    private void applyUndoLimits() {
+        viewModel.setUndoLimits(getSkinnable().getUndoLimit(), getSkinnable().getUndoMemoryLimit());
+        viewModel.setUndoSpilling(getSkinnable().getUndoSpillThreshold());
+    }
+
+    private void applySpellChecker() {
+        disposeSpellChecker();
+        SpellChecker spellChecker = getSkinnable().getSpellChecker();
+        if (spellChecker != null) {
+            spellCheckService = new SpellCheckService(viewModel.getTextBuffer(), spellChecker, Platform::runLater, this::updateMisspellings);
+        }
+    }
+
+    private void disposeSpellChecker() {
+        if (spellCheckService != null) {
+            spellCheckService.dispose();
+            spellCheckService = null;
+        }
+        if (misspellings != null) {
+            getSkinnable().getHighlights().remove(misspellings);
+            misspellings = null;
+        }
+    }
+
+    // only the misspelled words of the visible paragraphs are highlighted
+    private void updateMisspellings() {
+        if (spellCheckService == null) {
+            return;
+        }
+        Highlight highlight = new Highlight(MISSPELLING_PAINT, spellCheckService.getMisspellings(viewModel.getVisibleRange()));
+        ObservableList<Highlight> highlights = getSkinnable().getHighlights();
+        int index = misspellings != null ? highlights.indexOf(misspellings) : -1;
+        if (index >= 0) {
+            highlights.set(index, highlight);
+        } else {
+            highlights.add(highlight);
+        }
+        misspellings = highlight;
+    }
+
     private void editableChangeListener(Observable o) {
         boolean editable = getSkinnable().isEditable();
+        if (editable && viewModel.getTextBuffer().isReadOnly()) {
+            // the read only text has never been edited, it is set up again, now with a piece table
+            dispose();
+            setup(viewModel.getDocument());
+            return;
+        }
         viewModel.setEditable(editable);
         viewModel.setCaretPosition(editable ? lastValidCaretPosition : -1);
         paragraphListView.setCursor(editable ? Cursor.TEXT : Cursor.DEFAULT);
         populateContextMenu(editable);
+        if (o != null) {
+            // the paragraphs only listen to the caret while the text is editable
+            paragraphListView.updateLayout();
+        }
         Platform.runLater(paragraphListView::scrollIfNeeded);
     }
 
@@ -387,24 +576,17 @@ public class RichTextAreaSkin extends SkinBase<RichTextArea> {
         // if the caret is at the top or bottom of the paragraph:
         if ((down && nextRowPosition <= caretPosition) ||
                 (!down && nextRowPosition >= caretPosition)) {
-            int paragraphWithCaretIndex = items.stream()
-                    .filter(p -> p.getStart() <= caretPosition &&
-                            caretPosition < (p.equals(lastParagraph) ? p.getEnd() + 1 : p.getEnd()))
-                    .mapToInt(items::indexOf)
-                    .findFirst()
-                    .orElse(-1);
+            int paragraphWithCaretIndex = viewModel.getParagraphIndexAt(caretPosition);
             if (down) {
                 // move to beginning of next paragraph or end
                 int nextIndex = Math.min(items.size() - 1, paragraphWithCaretIndex + 1);
-                Paragraph nextParagraph = items.get(nextIndex);
-                return items.indexOf(nextParagraph) != paragraphWithCaretIndex ?
-                        nextParagraph.getStart() : viewModel.getTextLength();
+                return nextIndex != paragraphWithCaretIndex ?
+                        items.get(nextIndex).getStart() : viewModel.getTextLength();
             } else {
                 // move to end of previous paragraph or home
                 int prevIndex = Math.max(0, paragraphWithCaretIndex - 1);
-                Paragraph prevParagraph = items.get(prevIndex);
-                return items.indexOf(prevParagraph) != paragraphWithCaretIndex ?
-                        Math.max(0, prevParagraph.getEnd() - 1) : 0;
+                return prevIndex != paragraphWithCaretIndex ?
+                        Math.max(0, items.get(prevIndex).getEnd() - 1) : 0;
             }
         }
         return nextRowPosition;
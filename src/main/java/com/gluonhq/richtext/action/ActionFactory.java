@@ -4,6 +4,7 @@ import com.gluonhq.richtext.RichTextArea;
 import com.gluonhq.richtext.model.Decoration;
 import com.gluonhq.richtext.model.Document;
 import com.gluonhq.richtext.model.ImageDecoration;
+import com.gluonhq.richtext.model.SearchQuery;
 import com.gluonhq.richtext.model.TextDecoration;
 import com.gluonhq.richtext.viewmodel.ActionCmdFactory;
 
@@ -76,6 +77,30 @@ public class ActionFactory {
         return save;
     }
 
+    private Action revertToSaved;
+    public Action revertToSaved() {
+        if (revertToSaved == null) {
+            revertToSaved = new BasicAction(control, action -> ACTION_CMD_FACTORY.revertToSaved());
+        }
+        return revertToSaved;
+    }
+
+    public Action createCheckpoint(String name) {
+        return new BasicAction(control, action -> ACTION_CMD_FACTORY.createCheckpoint(name));
+    }
+
+    public Action revertToCheckpoint(String name) {
+        return new BasicAction(control, action -> ACTION_CMD_FACTORY.revertToCheckpoint(name));
+    }
+
+    public Action find(SearchQuery query, boolean forward) {
+        return new BasicAction(control, action -> ACTION_CMD_FACTORY.find(query, forward));
+    }
+
+    public Action replaceAll(SearchQuery query, String replacement) {
+        return new BasicAction(control, action -> ACTION_CMD_FACTORY.replaceAll(query, replacement));
+    }
+
     public Action decorate(Decoration decoration) {
         return new BasicAction(control, action -> {
             if (decoration instanceof TextDecoration) {
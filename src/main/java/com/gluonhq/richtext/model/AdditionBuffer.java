@@ -0,0 +1,127 @@
+package com.gluonhq.richtext.model;
+
+import java.util.Arrays;
+
+/**
+ * Append only buffer with the text added to a {@link PieceTable}, stored in chunks of chars of a fixed size.
+ * Appending copies only the appended text, instead of the whole buffer like concatenating strings does.
+ * <p>
+ * Chars are never changed once appended, and full chunks are never moved, so a {@link #snapshot()} shares
+ * the chunks of the buffer, and reads the same chars whatever is appended after it was taken.
+ */
+final class AdditionBuffer {
+
+    private static final int CHUNK_BITS = 13;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private char[][] chunks = new char[0][];
+    private int length;
+
+    int length() {
+        return length;
+    }
+
+    /**
+     * Appends the text
+     * @param text the text to append
+     * @return the position of the text within the buffer
+     */
+    int append(String text) {
+        int start = length;
+        int chunkCount = (length + text.length() + CHUNK_MASK) >>> CHUNK_BITS;
+        if (chunkCount > chunks.length) {
+            // a new array, so the snapshots keep the previous one
+            chunks = Arrays.copyOf(chunks, Math.max(chunkCount, 2 * chunks.length));
+        }
+        for (int copied = 0; copied < text.length(); ) {
+            int chunk = length >>> CHUNK_BITS;
+            if (chunks[chunk] == null) {
+                chunks[chunk] = new char[CHUNK_SIZE];
+            }
+            int count = Math.min(text.length() - copied, CHUNK_SIZE - (length & CHUNK_MASK));
+            text.getChars(copied, copied + count, chunks[chunk], length & CHUNK_MASK);
+            copied += count;
+            length += count;
+        }
+        return start;
+    }
+
+    char charAt(int index) {
+        return chunks[index >>> CHUNK_BITS][index & CHUNK_MASK];
+    }
+
+    String substring(int start, int end) {
+        StringBuilder sb = new StringBuilder(end - start);
+        copy(chunks, sb, start, end);
+        return sb.toString();
+    }
+
+    // appends the chars from start, inclusive, to end, exclusive
+    void appendTo(StringBuilder sb, int start, int end) {
+        copy(chunks, sb, start, end);
+    }
+
+    /**
+     * @return an immutable view of the current text of the buffer
+     */
+    CharSequence snapshot() {
+        return new Snapshot(chunks, length);
+    }
+
+    @Override
+    public String toString() {
+        return substring(0, length);
+    }
+
+    private static void copy(char[][] chunks, StringBuilder sb, int start, int end) {
+        while (start < end) {
+            int count = Math.min(end - start, CHUNK_SIZE - (start & CHUNK_MASK));
+            sb.append(chunks[start >>> CHUNK_BITS], start & CHUNK_MASK, count);
+            start += count;
+        }
+    }
+
+    static final class Snapshot implements CharSequence {
+
+        private final char[][] chunks;
+        private final int length;
+
+        private Snapshot(char[][] chunks, int length) {
+            this.chunks = chunks;
+            this.length = length;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (index < 0 || index >= length) {
+                throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + length);
+            }
+            return chunks[index >>> CHUNK_BITS][index & CHUNK_MASK];
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            if (start < 0 || end > length || start > end) {
+                throw new IndexOutOfBoundsException("Range [" + start + ", " + end + ") out of bounds for length " + length);
+            }
+            StringBuilder sb = new StringBuilder(end - start);
+            copy(chunks, sb, start, end);
+            return sb.toString();
+        }
+
+        void appendTo(StringBuilder sb, int start, int end) {
+            copy(chunks, sb, start, end);
+        }
+
+        @Override
+        public String toString() {
+            return subSequence(0, length).toString();
+        }
+    }
+}
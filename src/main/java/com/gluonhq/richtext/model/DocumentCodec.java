@@ -0,0 +1,272 @@
+package com.gluonhq.richtext.model;
+
+import javafx.geometry.Insets;
+import javafx.scene.paint.Color;
+import javafx.scene.text.FontPosture;
+import javafx.scene.text.FontWeight;
+import javafx.scene.text.TextAlignment;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Serializes a {@link Document} to a compact binary form, like the one placed on the clipboard
+ * to copy and paste text with its decorations.
+ * The text is written once as UTF-8, each different decoration once in a table, and the decorations
+ * of the text as runs of lengths and indices into that table, so the size grows with the number of
+ * runs rather than with the number of pieces or chars.
+ */
+public final class DocumentCodec {
+
+    private static final int MAGIC = 0x52544401; // "RTD", version 1
+
+    private static final byte TEXT_DECORATION = 0;
+    private static final byte IMAGE_DECORATION = 1;
+    private static final byte PARAGRAPH_DECORATION = 2;
+    private static final byte NO_DECORATION = -1;
+
+    private DocumentCodec() {}
+
+    /**
+     * @param document a document, like one from {@link TextBuffer#getDocument(int, int)}
+     * @return the bytes of the document
+     */
+    public static byte[] encode(Document document) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(document.getText().length() + 256);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            byte[] text = document.getText().getBytes(StandardCharsets.UTF_8);
+            out.writeInt(text.length);
+            out.write(text);
+
+            List<DecorationModel> decorationModels = document.getDecorations() == null ? List.of() : document.getDecorations();
+            List<Decoration> decorations = new ArrayList<>();
+            Map<Decoration, Integer> indices = new HashMap<>();
+            int[] runs = new int[3 * decorationModels.size()];
+            for (int i = 0; i < decorationModels.size(); i++) {
+                DecorationModel decorationModel = decorationModels.get(i);
+                runs[3 * i] = decorationModel.getLength();
+                runs[3 * i + 1] = indexOf(decorationModel.getDecoration(), decorations, indices);
+                runs[3 * i + 2] = indexOf(decorationModel.getParagraphDecoration(), decorations, indices);
+            }
+            out.writeInt(decorations.size());
+            for (Decoration decoration : decorations) {
+                writeDecoration(decoration, out);
+            }
+            out.writeInt(decorationModels.size());
+            for (int run : runs) {
+                out.writeInt(run);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @param bytes bytes created by {@link #encode(Document)}
+     * @return the document
+     * @throws IOException if the bytes are not a document
+     */
+    public static Document decode(byte[] bytes) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not an encoded document");
+        }
+        byte[] text = new byte[in.readInt()];
+        in.readFully(text);
+
+        Decoration[] decorations = new Decoration[in.readInt()];
+        for (int i = 0; i < decorations.length; i++) {
+            decorations[i] = readDecoration(in);
+        }
+        int size = in.readInt();
+        List<DecorationModel> decorationModels = new ArrayList<>(size);
+        int start = 0;
+        for (int i = 0; i < size; i++) {
+            int length = in.readInt();
+            Decoration decoration = decoration(decorations, in.readInt());
+            Decoration paragraphDecoration = decoration(decorations, in.readInt());
+            if (!(paragraphDecoration == null || paragraphDecoration instanceof ParagraphDecoration)) {
+                throw new IOException("Not a paragraph decoration: " + paragraphDecoration);
+            }
+            decorationModels.add(new DecorationModel(start, length, decoration, (ParagraphDecoration) paragraphDecoration));
+            start += length;
+        }
+        return new Document(new String(text, StandardCharsets.UTF_8), decorationModels, 0);
+    }
+
+    private static int indexOf(Decoration decoration, List<Decoration> decorations, Map<Decoration, Integer> indices) {
+        if (decoration == null) {
+            return -1;
+        }
+        return indices.computeIfAbsent(decoration, d -> {
+            decorations.add(d);
+            return decorations.size() - 1;
+        });
+    }
+
+    private static Decoration decoration(Decoration[] decorations, int index) throws IOException {
+        if (index >= decorations.length) {
+            throw new IOException("Unknown decoration: " + index);
+        }
+        return index < 0 ? null : decorations[index];
+    }
+
+    /**
+     * Writes a single decoration by value, like the ones of the documents, so it can be read
+     * with {@link #readDecoration(DataInput)} without keeping a reference to it
+     * @param decoration a text, image or paragraph decoration, or null
+     * @param out the output
+     * @throws IOException if the decoration can't be written
+     */
+    public static void writeDecoration(Decoration decoration, DataOutput out) throws IOException {
+        if (decoration == null) {
+            out.writeByte(NO_DECORATION);
+        } else if (decoration instanceof TextDecoration) {
+            TextDecoration textDecoration = (TextDecoration) decoration;
+            out.writeByte(TEXT_DECORATION);
+            writeColor(textDecoration.getForeground(), out);
+            writeColor(textDecoration.getBackground(), out);
+            writeString(textDecoration.getFontFamily(), out);
+            out.writeDouble(textDecoration.getFontSize());
+            writeEnum(textDecoration.getFontPosture(), out);
+            writeEnum(textDecoration.getFontWeight(), out);
+            writeFlag(textDecoration.getStrikethrough(), out);
+            writeFlag(textDecoration.getUnderline(), out);
+            writeString(textDecoration.getURL(), out);
+        } else if (decoration instanceof ImageDecoration) {
+            ImageDecoration imageDecoration = (ImageDecoration) decoration;
+            out.writeByte(IMAGE_DECORATION);
+            writeString(imageDecoration.getUrl(), out);
+            out.writeInt(imageDecoration.getWidth());
+            out.writeInt(imageDecoration.getHeight());
+            writeString(imageDecoration.getLink(), out);
+        } else if (decoration instanceof ParagraphDecoration) {
+            ParagraphDecoration paragraphDecoration = (ParagraphDecoration) decoration;
+            out.writeByte(PARAGRAPH_DECORATION);
+            out.writeDouble(paragraphDecoration.getSpacing());
+            writeEnum(paragraphDecoration.getAlignment(), out);
+            out.writeDouble(paragraphDecoration.getTopInset());
+            out.writeDouble(paragraphDecoration.getRightInset());
+            out.writeDouble(paragraphDecoration.getBottomInset());
+            out.writeDouble(paragraphDecoration.getLeftInset());
+            out.writeInt(paragraphDecoration.getIndentationLevel());
+            writeEnum(paragraphDecoration.getGraphicType(), out);
+        } else {
+            throw new IOException("Decoration type not supported: " + decoration);
+        }
+    }
+
+    /**
+     * @param in the input
+     * @return a new decoration equal to the one written with {@link #writeDecoration(Decoration, DataOutput)}
+     * @throws IOException if the input is not a decoration
+     */
+    public static Decoration readDecoration(DataInput in) throws IOException {
+        byte type = in.readByte();
+        switch (type) {
+            case NO_DECORATION:
+                return null;
+            case TEXT_DECORATION:
+                TextDecoration.Builder builder = TextDecoration.builder();
+                Color foreground = readColor(in);
+                if (foreground != null) {
+                    builder.foreground(foreground);
+                }
+                Color background = readColor(in);
+                if (background != null) {
+                    builder.background(background);
+                }
+                String fontFamily = readString(in);
+                if (fontFamily != null) {
+                    builder.fontFamily(fontFamily);
+                }
+                builder.fontSize(in.readDouble());
+                FontPosture fontPosture = readEnum(FontPosture.values(), in);
+                if (fontPosture != null) {
+                    builder.fontPosture(fontPosture);
+                }
+                FontWeight fontWeight = readEnum(FontWeight.values(), in);
+                if (fontWeight != null) {
+                    builder.fontWeight(fontWeight);
+                }
+                return builder.strikethrough(readFlag(in))
+                        .underline(readFlag(in))
+                        .url(readString(in))
+                        .build();
+            case IMAGE_DECORATION:
+                return new ImageDecoration(readString(in), in.readInt(), in.readInt(), readString(in));
+            case PARAGRAPH_DECORATION:
+                ParagraphDecoration.Builder paragraphBuilder = ParagraphDecoration.builder().spacing(in.readDouble());
+                TextAlignment alignment = readEnum(TextAlignment.values(), in);
+                if (alignment != null) {
+                    paragraphBuilder.alignment(alignment);
+                }
+                return paragraphBuilder.insets(new Insets(in.readDouble(), in.readDouble(), in.readDouble(), in.readDouble()))
+                        .indentationLevel(in.readInt())
+                        .graphicType(readEnum(ParagraphDecoration.GraphicType.values(), in))
+                        .build();
+            default:
+                throw new IOException("Unknown decoration type: " + type);
+        }
+    }
+
+    private static void writeColor(Color color, DataOutput out) throws IOException {
+        out.writeBoolean(color != null);
+        if (color != null) {
+            out.writeDouble(color.getRed());
+            out.writeDouble(color.getGreen());
+            out.writeDouble(color.getBlue());
+            out.writeDouble(color.getOpacity());
+        }
+    }
+
+    private static Color readColor(DataInput in) throws IOException {
+        return in.readBoolean() ? new Color(in.readDouble(), in.readDouble(), in.readDouble(), in.readDouble()) : null;
+    }
+
+    private static void writeString(String string, DataOutput out) throws IOException {
+        out.writeBoolean(string != null);
+        if (string != null) {
+            out.writeUTF(string);
+        }
+    }
+
+    private static String readString(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    // a flag that may not be set, as 0 or 1 like a boolean, or -1 if not set
+    private static void writeFlag(Boolean flag, DataOutput out) throws IOException {
+        out.writeByte(flag == null ? -1 : flag ? 1 : 0);
+    }
+
+    private static Boolean readFlag(DataInput in) throws IOException {
+        byte flag = in.readByte();
+        return flag < 0 ? null : flag != 0;
+    }
+
+    private static void writeEnum(Enum<?> value, DataOutput out) throws IOException {
+        out.writeByte(value == null ? -1 : value.ordinal());
+    }
+
+    private static <E extends Enum<E>> E readEnum(E[] values, DataInput in) throws IOException {
+        int ordinal = in.readByte();
+        if (ordinal >= values.length) {
+            throw new IOException("Unknown value: " + ordinal);
+        }
+        return ordinal < 0 ? null : values[ordinal];
+    }
+}
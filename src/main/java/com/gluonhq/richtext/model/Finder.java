@@ -0,0 +1,43 @@
+package com.gluonhq.richtext.model;
+
+import com.gluonhq.richtext.Selection;
+
+import java.util.List;
+
+/**
+ * Searches a {@link SearchQuery} in a text that only needs to be accessed by char,
+ * like a {@link PieceCharSequence}, so the document is never copied
+ */
+interface Finder {
+
+    /**
+     * Finds the first match that starts at or after from, and ends at or before to
+     * @return the range of the match, or {@link Selection#UNDEFINED} if there is none
+     */
+    Selection findNext(CharSequence text, int from, int to);
+
+    /**
+     * Finds the last match that starts at or after from, and ends at or before to
+     * @return the range of the match, or {@link Selection#UNDEFINED} if there is none
+     */
+    Selection findPrevious(CharSequence text, int from, int to);
+
+    /**
+     * @return the ranges of all the matches, that don't overlap, within the given range
+     */
+    List<Selection> findAll(CharSequence text, int from, int to);
+
+    /**
+     * @return the length of the longest match that can be found
+     */
+    int getMaxMatchLength();
+
+    static Finder of(SearchQuery query) {
+        return query.isRegex() ? new RegexFinder(query) : new TextFinder(query);
+    }
+
+    static boolean isWholeWord(CharSequence text, int start, int end) {
+        return (start == 0 || !Character.isLetterOrDigit(text.charAt(start - 1))) &&
+                (end == text.length() || !Character.isLetterOrDigit(text.charAt(end)));
+    }
+}
@@ -49,7 +49,7 @@ public class ImageDecoration implements Decoration {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         ImageDecoration that = (ImageDecoration) o;
-        return width == that.width && height == that.height && url.equals(that.url) && link.equals(that.link);
+        return width == that.width && height == that.height && Objects.equals(url, that.url) && Objects.equals(link, that.link);
     }
 
     @Override
@@ -1,57 +1,64 @@
 package com.gluonhq.richtext.model;
 
-import java.util.Objects;
-
 public class Paragraph {
 
     /**
-     * Global index of the initial position of the paragraph
+     * Global index of the initial position of the paragraph, when it is not part of a {@link ParagraphIndex}
      */
-    private final int start;
+    private int start;
 
     /**
      * Global index of the final position of the paragraph,
-     * that is defined by the position of the '\n' character
+     * that is defined by the position of the '\n' character,
+     * when it is not part of a {@link ParagraphIndex}
      */
-    private final int end;
+    private int end;
 
     private final ParagraphDecoration decoration;
 
+    /**
+     * The index that knows the position of the paragraph, if any, and the position of the paragraph in it
+     */
+    private ParagraphIndex paragraphIndex;
+    private int index;
+
     public Paragraph(int start, int end, ParagraphDecoration decoration) {
         this.start = start;
         this.end = end;
         this.decoration = decoration;
     }
 
+    Paragraph(ParagraphIndex paragraphIndex, int index, ParagraphDecoration decoration) {
+        this.paragraphIndex = paragraphIndex;
+        this.index = index;
+        this.decoration = decoration;
+    }
+
     public int getStart() {
-        return start;
+        return paragraphIndex != null ? paragraphIndex.getStart(index) : start;
     }
 
     public int getEnd() {
-        return end;
+        return paragraphIndex != null ? paragraphIndex.getStart(index) + paragraphIndex.getLength(index) : end;
     }
 
     public ParagraphDecoration getDecoration() {
         return decoration;
     }
 
-    @Override
-    public boolean equals(Object o) {
-        if (this == o) return true;
-        if (o == null || getClass() != o.getClass()) return false;
-        Paragraph paragraph = (Paragraph) o;
-        return start == paragraph.start &&
-                end == paragraph.end &&
-                Objects.equals(decoration, paragraph.decoration);
+    void moveTo(int index) {
+        this.index = index;
     }
 
-    @Override
-    public int hashCode() {
-        return Objects.hash(start, end, decoration);
+    // keeps the last known position once the paragraph is removed from the index
+    void detach() {
+        start = getStart();
+        end = getEnd();
+        paragraphIndex = null;
     }
 
     @Override
     public String toString() {
-        return "Paragraph{[" + start + ", " + end + ") " + decoration + "}";
+        return "Paragraph{[" + getStart() + ", " + getEnd() + ") " + decoration + "}";
     }
 }
@@ -0,0 +1,161 @@
+package com.gluonhq.richtext.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Ordered list of the {@link Paragraph paragraphs} of a text, where each paragraph only keeps its length.
+ * The lengths are stored in a Fenwick tree, so the start of a paragraph, and the paragraph at a given
+ * position, are found in O(log n), and a change of the length of a paragraph only updates O(log n) nodes,
+ * without touching the paragraphs after it.
+ * <p>
+ * Adding or removing paragraphs moves the ones after them within the index, which is O(n), but it is
+ * only an array copy, and no paragraph is created again.
+ */
+public final class ParagraphIndex {
+
+    private Paragraph[] paragraphs = new Paragraph[16];
+    private int[] lengths = new int[16];
+    private int[] tree = new int[17]; // 1-based
+    private int size;
+
+    /**
+     * @return the number of paragraphs
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param index the index of a paragraph
+     * @return the paragraph
+     */
+    public Paragraph get(int index) {
+        Objects.checkIndex(index, size);
+        return paragraphs[index];
+    }
+
+    /**
+     * @return the sum of the lengths of all the paragraphs
+     */
+    public int getTextLength() {
+        return prefixSum(size);
+    }
+
+    /**
+     * Finds the paragraph that contains the given position. A position at the end of the
+     * text belongs to the last paragraph
+     * @param position a position of the text
+     * @return the index of the paragraph, or -1 if there are no paragraphs
+     */
+    public int indexAt(int position) {
+        if (size == 0) {
+            return -1;
+        }
+        // the highest index whose prefix sum is not greater than position
+        int index = 0;
+        int remaining = position;
+        for (int step = Integer.highestOneBit(size); step > 0; step >>= 1) {
+            int next = index + step;
+            if (next <= size && tree[next] <= remaining) {
+                index = next;
+                remaining -= tree[next];
+            }
+        }
+        return Math.min(index, size - 1);
+    }
+
+    /**
+     * Replaces the paragraphs from index {@code from}, inclusive, to index {@code to}, exclusive,
+     * with new paragraphs
+     * @param from the index of the first paragraph to replace
+     * @param to the index after the last paragraph to replace
+     * @param lengths the lengths of the new paragraphs, including their line feed
+     * @param decorations the decorations of the new paragraphs
+     * @return the new paragraphs
+     */
+    public List<Paragraph> replace(int from, int to, int[] lengths, List<ParagraphDecoration> decorations) {
+        Objects.checkFromToIndex(from, to, size);
+        if (lengths.length != decorations.size()) {
+            throw new IllegalArgumentException("Expected " + lengths.length + " decorations, but got " + decorations.size());
+        }
+        int count = lengths.length;
+        List<Paragraph> added = new ArrayList<>(count);
+        if (count == to - from) {
+            // no paragraph moves, only the lengths of the replaced ones change
+            for (int i = 0; i < count; i++) {
+                paragraphs[from + i].detach();
+                add(from + i, lengths[i] - this.lengths[from + i]);
+                this.lengths[from + i] = lengths[i];
+                paragraphs[from + i] = new Paragraph(this, from + i, decorations.get(i));
+                added.add(paragraphs[from + i]);
+            }
+            return added;
+        }
+        for (int i = from; i < to; i++) {
+            paragraphs[i].detach();
+        }
+        int newSize = size - (to - from) + count;
+        if (newSize > paragraphs.length) {
+            int capacity = Math.max(newSize, 2 * paragraphs.length);
+            paragraphs = Arrays.copyOf(paragraphs, capacity);
+            this.lengths = Arrays.copyOf(this.lengths, capacity);
+        }
+        System.arraycopy(paragraphs, to, paragraphs, from + count, size - to);
+        System.arraycopy(this.lengths, to, this.lengths, from + count, size - to);
+        for (int i = newSize; i < size; i++) {
+            paragraphs[i] = null;
+        }
+        for (int i = 0; i < count; i++) {
+            this.lengths[from + i] = lengths[i];
+            paragraphs[from + i] = new Paragraph(this, from + i, decorations.get(i));
+            added.add(paragraphs[from + i]);
+        }
+        for (int i = from + count; i < newSize; i++) {
+            paragraphs[i].moveTo(i);
+        }
+        size = newSize;
+        rebuildTree();
+        return added;
+    }
+
+    int getStart(int index) {
+        return prefixSum(index);
+    }
+
+    int getLength(int index) {
+        return lengths[index];
+    }
+
+    // sum of the lengths of the paragraphs before the given index
+    private int prefixSum(int index) {
+        int sum = 0;
+        for (int i = index; i > 0; i -= i & -i) {
+            sum += tree[i];
+        }
+        return sum;
+    }
+
+    private void add(int index, int delta) {
+        for (int i = index + 1; i <= size; i += i & -i) {
+            tree[i] += delta;
+        }
+    }
+
+    private void rebuildTree() {
+        if (tree.length < size + 1) {
+            tree = new int[paragraphs.length + 1];
+        } else {
+            Arrays.fill(tree, 0);
+        }
+        for (int i = 1; i <= size; i++) {
+            tree[i] += lengths[i - 1];
+            int parent = i + (i & -i);
+            if (parent <= size) {
+                tree[parent] += tree[i];
+            }
+        }
+    }
+}
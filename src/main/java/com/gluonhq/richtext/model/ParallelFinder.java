@@ -0,0 +1,164 @@
+package com.gluonhq.richtext.model;
+
+import com.gluonhq.richtext.Selection;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+
+/**
+ * Searches a text in parallel on a {@link ForkJoinPool}. The text is split in chunks that are
+ * scanned independently, each one up to {@link Finder#getMaxMatchLength()} chars past its end,
+ * so that matches across two chunks are found by the first one.
+ * The matches of each chunk are published, in order, as soon as all the previous chunks are done,
+ * so the first ones are available before the whole text is scanned.
+ * The text must not change while it is searched, like a {@link PieceCharSequence} snapshot.
+ */
+final class ParallelFinder {
+
+    static final int DEFAULT_CHUNK_SIZE = 1 << 20;
+
+    private final Finder finder;
+    private final CharSequence text;
+    private final int chunkSize;
+    private final int chunkCount;
+    private final Consumer<List<Selection>> onMatches;
+    private final CompletableFuture<List<Selection>> result = new CompletableFuture<>();
+
+    // guarded by this
+    private final List<List<Selection>> chunkMatches;
+    private int publishedChunks;
+    private boolean publishing;
+    // only used by the thread that is publishing
+    private final List<Selection> matches = new ArrayList<>();
+    private int lastEnd;
+
+    /**
+     * @param query the query to search
+     * @param text an immutable text
+     * @param chunkSize the number of chars of each chunk
+     * @param onMatches called with the matches of one or more chunks, in order, from the search threads
+     */
+    ParallelFinder(SearchQuery query, CharSequence text, int chunkSize, Consumer<List<Selection>> onMatches) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+        }
+        this.finder = Finder.of(query);
+        this.text = Objects.requireNonNull(text);
+        this.chunkSize = chunkSize;
+        this.chunkCount = Math.max(1, (text.length() + chunkSize - 1) / chunkSize);
+        this.onMatches = Objects.requireNonNull(onMatches);
+        this.chunkMatches = new ArrayList<>(Collections.nCopies(chunkCount, null));
+    }
+
+    /**
+     * Starts the search
+     * @param pool the pool that runs the search
+     * @return a future with all the matches, that don't overlap, in order. Cancelling it stops the search
+     */
+    CompletableFuture<List<Selection>> start(ForkJoinPool pool) {
+        pool.execute(new ScanTask(0, chunkCount));
+        return result;
+    }
+
+    private class ScanTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int firstChunk;
+        private final int lastChunk;
+
+        ScanTask(int firstChunk, int lastChunk) {
+            this.firstChunk = firstChunk;
+            this.lastChunk = lastChunk;
+        }
+
+        @Override
+        protected void compute() {
+            if (result.isDone()) {
+                return;
+            }
+            if (lastChunk - firstChunk > 1) {
+                int middle = (firstChunk + lastChunk) >>> 1;
+                invokeAll(new ScanTask(firstChunk, middle), new ScanTask(middle, lastChunk));
+                return;
+            }
+            try {
+                publish(firstChunk, scan(firstChunk, firstChunk * chunkSize));
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+            }
+        }
+    }
+
+    // matches that start within the chunk, from the given position
+    private List<Selection> scan(int chunk, int from) {
+        int end = Math.min(text.length(), (chunk + 1) * chunkSize);
+        // each thread reads its own view, so they don't share the cached piece
+        CharSequence view = text.subSequence(0, text.length());
+        List<Selection> found = finder.findAll(view, from, Math.min(text.length(), end + finder.getMaxMatchLength()));
+        found.removeIf(selection -> selection.getStart() >= end);
+        return found;
+    }
+
+    // stores the matches of a chunk, and publishes the chunks that are ready, in order, unless another
+    // thread is publishing them already. Only one thread at a time publishes, so the overlapping chunks
+    // are scanned again without holding the lock, while the other threads keep storing their matches
+    private void publish(int chunk, List<Selection> found) {
+        synchronized (this) {
+            chunkMatches.set(chunk, found);
+            if (publishing) {
+                return;
+            }
+            publishing = true;
+        }
+        List<Selection> batch = new ArrayList<>();
+        boolean done;
+        while (true) {
+            int next;
+            List<Selection> nextMatches;
+            synchronized (this) {
+                next = publishedChunks;
+                nextMatches = next < chunkCount ? chunkMatches.get(next) : null;
+                if (nextMatches == null && batch.isEmpty()) {
+                    publishing = false;
+                    done = next == chunkCount;
+                    break;
+                }
+                if (nextMatches != null) {
+                    chunkMatches.set(next, List.of());
+                    publishedChunks++;
+                }
+            }
+            if (nextMatches == null) {
+                // sent before another thread can publish the next chunks
+                accept(batch);
+                batch = new ArrayList<>();
+                continue;
+            }
+            if (!nextMatches.isEmpty() && nextMatches.get(0).getStart() < lastEnd) {
+                // overlaps with the last match of the previous chunk, as a single pass would skip it
+                nextMatches = scan(next, lastEnd);
+            }
+            if (!nextMatches.isEmpty()) {
+                batch.addAll(nextMatches);
+                lastEnd = nextMatches.get(nextMatches.size() - 1).getEnd();
+            }
+        }
+        if (done && !result.isDone()) {
+            result.complete(Collections.unmodifiableList(matches));
+        }
+    }
+
+    private void accept(List<Selection> batch) {
+        if (!result.isDone() && !batch.isEmpty()) {
+            matches.addAll(batch);
+            onMatches.accept(Collections.unmodifiableList(batch));
+        }
+    }
+}
@@ -8,6 +8,10 @@ public final class Piece {
 
     public enum BufferType {ORIGINAL, ADDITION}
 
+    // approximate heap size of a piece: header, three references and two ints.
+    // Text and decorations are shared with the buffers, so they are not accounted here
+    static final long RETAINED_SIZE = 40;
+
     final PieceTable source;
     final BufferType bufferType;
     final int start;                // start position with the buffer
@@ -46,8 +50,25 @@ public final class Piece {
     }
 
     public String getText() {
-        String buffer = BufferType.ORIGINAL == bufferType ? source.originalText : source.additionBuffer;
-        return length == 0 ? "" : buffer.substring(start, start + length);
+        if (length == 0) {
+            return "";
+        }
+        return BufferType.ORIGINAL == bufferType ?
+                source.originalText.substring(start, start + length) : source.additionBuffer.substring(start, start + length);
+    }
+
+    // chars from offset from, inclusive, to offset to, exclusive, without copying the text of the piece
+    void appendText(StringBuilder sb, int from, int to) {
+        if (BufferType.ORIGINAL == bufferType) {
+            sb.append(source.originalText, start + from, start + to);
+        } else {
+            source.additionBuffer.appendTo(sb, start + from, start + to);
+        }
+    }
+
+    char charAt(int offset) {
+        return BufferType.ORIGINAL == bufferType ?
+                source.originalText.charAt(start + offset) : source.additionBuffer.charAt(start + offset);
     }
 
     public Decoration getDecoration() {
@@ -76,6 +97,14 @@ public final class Piece {
         return new Piece(source, bufferType, newStart, newLength, decoration, newParagraphDecoration);
     }
 
+    // true if next piece continues this one in the same buffer, with the same decorations
+    boolean isContinuedBy(Piece next) {
+        return next != null && source == next.source && bufferType == next.bufferType &&
+                start + length == next.start &&
+                Objects.equals(decoration, next.decoration) &&
+                Objects.equals(paragraphDecoration, next.paragraphDecoration);
+    }
+
     // excludes char at offset
     public Piece pieceBefore(int offset) {
         validateOffset(offset);
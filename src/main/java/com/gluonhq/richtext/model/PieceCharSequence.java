@@ -0,0 +1,115 @@
+package com.gluonhq.richtext.model;
+
+import java.util.List;
+
+/**
+ * Read only view of the text of a list of pieces, that reads the chars straight from the
+ * piece table buffers. The pieces are copied when the view is created, along with a snapshot
+ * of the addition buffer, so the view is a snapshot that later edits don't modify.
+ * Sequential access is O(1), as the piece of the last accessed char is cached, and
+ * random access is O(log n) on the number of pieces. Sub sequences are views that share
+ * the pieces, and only {@link #toString()} copies chars.
+ * A view can be read from several threads, though each thread should read its own sub sequence,
+ * so they don't compete for the cached piece.
+ */
+final class PieceCharSequence implements CharSequence {
+
+    private final CharSequence[] buffers;
+    private final int[] bufferStarts;
+    private final int[] textStarts; // text position of each piece, plus the text length
+    private final int offset;       // text position of the first char of this view
+    private final int length;
+    private int cachedPiece;
+
+    PieceCharSequence(PieceTable pt) {
+        this(pt.pieces, pt.originalText, pt.additionBuffer.snapshot());
+    }
+
+    private PieceCharSequence(List<Piece> pieces, String originalText, CharSequence additionBuffer) {
+        int size = pieces.size();
+        buffers = new CharSequence[size];
+        bufferStarts = new int[size];
+        textStarts = new int[size + 1];
+        int position = 0;
+        for (int i = 0; i < size; i++) {
+            Piece piece = pieces.get(i);
+            buffers[i] = piece.bufferType == Piece.BufferType.ORIGINAL ? originalText : additionBuffer;
+            bufferStarts[i] = piece.start;
+            textStarts[i] = position;
+            position += piece.length;
+        }
+        textStarts[size] = position;
+        offset = 0;
+        length = position;
+    }
+
+    private PieceCharSequence(PieceCharSequence parent, int start, int end) {
+        buffers = parent.buffers;
+        bufferStarts = parent.bufferStarts;
+        textStarts = parent.textStarts;
+        offset = parent.offset + start;
+        length = end - start;
+        cachedPiece = parent.cachedPiece;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + length);
+        }
+        int position = offset + index;
+        int piece = cachedPiece;
+        if (position < textStarts[piece] || position >= textStarts[piece + 1]) {
+            piece = findPiece(position);
+            cachedPiece = piece;
+        }
+        return buffers[piece].charAt(bufferStarts[piece] + position - textStarts[piece]);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        if (start < 0 || end > length || start > end) {
+            throw new IndexOutOfBoundsException("Range [" + start + ", " + end + ") out of bounds for length " + length);
+        }
+        return new PieceCharSequence(this, start, end);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(length);
+        int position = offset;
+        int end = offset + length;
+        while (position < end) {
+            int piece = findPiece(position);
+            int pieceEnd = Math.min(end, textStarts[piece + 1]);
+            int bufferOffset = bufferStarts[piece] - textStarts[piece];
+            if (buffers[piece] instanceof AdditionBuffer.Snapshot) {
+                ((AdditionBuffer.Snapshot) buffers[piece]).appendTo(sb, position + bufferOffset, pieceEnd + bufferOffset);
+            } else {
+                sb.append(buffers[piece], position + bufferOffset, pieceEnd + bufferOffset);
+            }
+            position = pieceEnd;
+        }
+        return sb.toString();
+    }
+
+    // index of the last non empty piece that starts at or before the given text position
+    private int findPiece(int position) {
+        int low = 0;
+        int high = buffers.length - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (textStarts[mid] <= position) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,101 @@
+package com.gluonhq.richtext.model;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+/**
+ * List of the pieces of a piece table, that keeps count of the runs of adjacent pieces with the
+ * same decorations, like the decoration models of {@link PieceTable#getDecorationModelList()}.
+ * Each change only compares the pieces at the edges of the changed ones, so the count is updated
+ * in O(changed pieces) instead of walking all the pieces.
+ */
+final class PieceList extends AbstractList<Piece> implements RandomAccess {
+
+    private final List<Piece> pieces = new ArrayList<>();
+    private int runCount;
+
+    /**
+     * @return the number of runs of adjacent pieces with the same decorations
+     */
+    int getRunCount() {
+        return runCount;
+    }
+
+    @Override
+    public Piece get(int index) {
+        return pieces.get(index);
+    }
+
+    @Override
+    public int size() {
+        return pieces.size();
+    }
+
+    @Override
+    public Piece set(int index, Piece piece) {
+        runCount -= runStarts(index, index + 1);
+        Piece old = pieces.set(index, piece);
+        runCount += runStarts(index, index + 1);
+        return old;
+    }
+
+    @Override
+    public void add(int index, Piece piece) {
+        runCount -= runStarts(index, index);
+        pieces.add(index, piece);
+        runCount += runStarts(index, index + 1);
+        modCount++;
+    }
+
+    @Override
+    public Piece remove(int index) {
+        runCount -= runStarts(index, index + 1);
+        Piece old = pieces.remove(index);
+        runCount += runStarts(index, index);
+        modCount++;
+        return old;
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends Piece> c) {
+        return addAll(size(), c);
+    }
+
+    @Override
+    public boolean addAll(int index, Collection<? extends Piece> c) {
+        runCount -= runStarts(index, index);
+        pieces.addAll(index, c);
+        runCount += runStarts(index, index + c.size());
+        modCount++;
+        return !c.isEmpty();
+    }
+
+    @Override
+    protected void removeRange(int fromIndex, int toIndex) {
+        runCount -= runStarts(fromIndex, toIndex);
+        pieces.subList(fromIndex, toIndex).clear();
+        runCount += runStarts(fromIndex, fromIndex);
+        modCount++;
+    }
+
+    // number of pieces within [from, to] that start a run, as they are the first one
+    // or their decorations are not the ones of the piece before them
+    private int runStarts(int from, int to) {
+        int count = 0;
+        for (int i = Math.max(from, 0); i <= to && i < pieces.size(); i++) {
+            if (i == 0 || !sameDecorations(pieces.get(i - 1), pieces.get(i))) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static boolean sameDecorations(Piece piece, Piece next) {
+        return Objects.equals(piece.getDecoration(), next.getDecoration()) &&
+                Objects.equals(piece.getParagraphDecoration(), next.getParagraphDecoration());
+    }
+}
@@ -1,15 +1,26 @@
 package com.gluonhq.richtext.model;
 
+import com.gluonhq.richtext.Selection;
 import com.gluonhq.richtext.undo.AbstractCommand;
+import com.gluonhq.richtext.undo.CommandCodec;
 import com.gluonhq.richtext.undo.CommandManager;
+import com.gluonhq.richtext.undo.CompoundCommand;
+import com.gluonhq.richtext.undo.UndoStats;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.text.CharacterIterator;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
@@ -22,12 +33,16 @@ import static com.gluonhq.richtext.model.TextBuffer.ZERO_WIDTH_TEXT;
 public final class PieceTable extends AbstractTextBuffer {
 
     final String originalText;
-    String additionBuffer = "";
+    final AdditionBuffer additionBuffer = new AdditionBuffer();
 
-    final List<Piece> pieces = new ArrayList<>();
+    final PieceList pieces = new PieceList();
     private final CommandManager<PieceTable> commander = new CommandManager<>(this);
+    private PieceTableCommandCodec spillCodec;
+    private PieceTableDelta recordedDelta;
+    private long checkpointCount;
 
     private final PieceCharacterIterator pieceCharacterIterator;
+    private boolean characterIteratorValid = true;
     TextDecoration decorationAtCaret;
 
     /**
@@ -46,6 +61,11 @@ public final class PieceTable extends AbstractTextBuffer {
         pieceCharacterIterator = new PieceCharacterIterator(this);
     }
 
+    @Override
+    public boolean isReadOnly() {
+        return false;
+    }
+
     /**
      * Returns full text.
      * This is a costly operation as it walks through all the pieces
@@ -108,30 +128,77 @@ public final class PieceTable extends AbstractTextBuffer {
         return mergedList;
     }
 
+    @Override
+    public int getDecorationRunCount() {
+        return pieces.getRunCount();
+    }
+
+    @Override
+    public Document getDocument(int start, int end) {
+        if (start < 0 || start > end || end > getTextLength()) {
+            throw new IllegalArgumentException("Range [" + start + ", " + end + ") is not within [0, " + getTextLength() + "]");
+        }
+        StringBuilder text = new StringBuilder(end - start);
+        List<DecorationModel> decorations = new ArrayList<>();
+        walkPieces((piece, pieceIndex, textPosition) -> {
+            int from = Math.max(start, textPosition);
+            int to = Math.min(end, textPosition + piece.length);
+            if (from < to) {
+                piece.appendText(text, from - textPosition, to - textPosition);
+                DecorationModel last = decorations.isEmpty() ? null : decorations.get(decorations.size() - 1);
+                if (last != null && Objects.equals(last.getDecoration(), piece.decoration) &&
+                        Objects.equals(last.getParagraphDecoration(), piece.paragraphDecoration)) {
+                    decorations.set(decorations.size() - 1, new DecorationModel(last.getStart(),
+                            last.getLength() + to - from, piece.decoration, piece.paragraphDecoration));
+                } else {
+                    decorations.add(new DecorationModel(from - start, to - from, piece.decoration, piece.paragraphDecoration));
+                }
+            }
+            return end <= textPosition + piece.length;
+        });
+        return new Document(text.toString(), decorations, 0);
+    }
+
     @Override
     public CharacterIterator getCharacterIterator() {
+        validateCharacterIterator();
         return pieceCharacterIterator;
     }
 
     @Override
     public char charAt(int pos) {
+        validateCharacterIterator();
         return pieceCharacterIterator.charAt(pos);
     }
 
     @Override
     public List<Integer> getLineFeeds() {
+        validateCharacterIterator();
         return pieceCharacterIterator.getLineFeedList();
     }
 
     @Override
     public void resetCharacterIterator() {
         pieceCharacterIterator.reset();
+        characterIteratorValid = true;
+    }
+
+    @Override
+    protected void fire(TextBuffer.Event event) {
+        // the iterator scans the whole text, so it is only reset when it is used after a change
+        characterIteratorValid = false;
+        super.fire(event);
+    }
+
+    private void validateCharacterIterator() {
+        if (!characterIteratorValid) {
+            resetCharacterIterator();
+        }
     }
 
     // internal append
     Piece appendTextInternal(String text, Decoration decoration, ParagraphDecoration paragraphDecoration) {
-        int pos = additionBuffer.length();
-        additionBuffer += text;
+        int pos = additionBuffer.append(text);
         textLengthProperty.set(getTextLength() + text.length());
         return new Piece(this, Piece.BufferType.ADDITION, pos, text.length(), decoration, paragraphDecoration);
     }
@@ -142,24 +209,27 @@ public final class PieceTable extends AbstractTextBuffer {
      */
     @Override
     public void append(String text) {
-        commander.execute(new AppendCmd(text));
+        execute(new AppendCmd(text));
     }
 
     @Override
     public void decorate(int start, int end, Decoration decoration) {
         if (decoration instanceof TextDecoration) {
-            commander.execute(new TextDecorateCmd(start, end, decoration));
+            execute(new TextDecorateCmd(start, end, decoration));
         } else if (decoration instanceof ImageDecoration) {
-            commander.execute(new ImageDecorateCmd((ImageDecoration) decoration, start));
+            execute(new ImageDecorateCmd((ImageDecoration) decoration, start));
         } else if (decoration instanceof ParagraphDecoration) {
-            commander.execute(new ParagraphDecorateCmd(start, end, (ParagraphDecoration) decoration));
+            execute(new ParagraphDecorateCmd(start, end, (ParagraphDecoration) decoration));
         } else {
             throw new IllegalArgumentException("Decoration type not supported: " + decoration);
         }
     }
 
     /**
-     * Walks through text fragments. Each fragment is represented by related text and decoration
+     * Walks through text fragments. Each fragment is represented by related text and decoration.
+     * Adjacent pieces with equal text decorations, like the ones left by typing or by undoing
+     * decorations, are merged in a single fragment, so there is one fragment per run of text
+     * with the same style. Only the text of the range is copied
      * @param onFragment callback to get fragment info
      * @param start the initial position of the fragment
      * @param end the end position of the fragment (not included)
@@ -167,16 +237,24 @@ public final class PieceTable extends AbstractTextBuffer {
     @Override
     public void walkFragments(BiConsumer<String, Decoration> onFragment, int start, int end) {
         StringBuilder sb = new StringBuilder();
+        Decoration[] decoration = new Decoration[1];
         walkPieces((p, i, tp) -> {
-            sb.append(p.getText());
-            if (start <= tp + p.length && end > tp && !p.getText().isEmpty()) {
-                String text = sb.substring(Math.max(start, tp), Math.min(end, tp + p.length));
-                if (!text.isEmpty()) {
-                    onFragment.accept(text, p.getDecoration());
+            int from = Math.max(start, tp);
+            int to = Math.min(end, tp + p.length);
+            if (from < to) {
+                // images are one fragment each
+                if (sb.length() > 0 && !(p.getDecoration() instanceof TextDecoration && p.getDecoration().equals(decoration[0]))) {
+                    onFragment.accept(sb.toString(), decoration[0]);
+                    sb.setLength(0);
                 }
+                p.appendText(sb, from - tp, to - tp);
+                decoration[0] = p.getDecoration();
             }
-            return (end <= tp);
+            return end <= tp + p.length;
         });
+        if (sb.length() > 0) {
+            onFragment.accept(sb.toString(), decoration[0]);
+        }
     }
 
     @Override
@@ -220,7 +298,24 @@ public final class PieceTable extends AbstractTextBuffer {
      */
     @Override
     public void insert(final String text, final int insertPosition) {
-        commander.execute(new InsertCmd(text, insertPosition));
+        execute(new InsertCmd(text, insertPosition));
+    }
+
+    /**
+     * Inserts the text of a document at insertPosition, with one piece per run of decorations,
+     * all of them in the same range of the addition buffer
+     * @param document the text and decorations to insert
+     * @param insertPosition to insert the document at
+     * @throws IllegalArgumentException if insertPosition is not valid, or the decorations of
+     * the document don't cover its text
+     */
+    @Override
+    public void insert(Document document, int insertPosition) {
+        if (document.getDecorations() == null) {
+            insert(document.getText(), insertPosition);
+        } else {
+            execute(new InsertDocumentCmd(document, insertPosition));
+        }
     }
 
     /**
@@ -231,7 +326,7 @@ public final class PieceTable extends AbstractTextBuffer {
      */
     @Override
     public void delete(final int deletePosition, int length) {
-        commander.execute(new DeleteCmd(deletePosition, length));
+        execute(new DeleteCmd(deletePosition, length));
     }
 
     /**
@@ -247,6 +342,281 @@ public final class PieceTable extends AbstractTextBuffer {
         commander.redo();
     }
 
+    @Override
+    public CharSequence getCharSequence() {
+        return new PieceCharSequence(this);
+    }
+
+    @Override
+    public Selection find(SearchQuery query, int position, boolean forward) {
+        Finder finder = Finder.of(query);
+        PieceCharSequence text = new PieceCharSequence(this);
+        return forward ? finder.findNext(text, position, text.length()) : finder.findPrevious(text, 0, position);
+    }
+
+    @Override
+    public List<Selection> findAll(SearchQuery query) {
+        PieceCharSequence text = new PieceCharSequence(this);
+        return Finder.of(query).findAll(text, 0, text.length());
+    }
+
+    @Override
+    public List<Selection> findAll(SearchQuery query, Selection region) {
+        if (!region.isDefined()) {
+            return findAll(query);
+        }
+        return Finder.of(query).findAll(new PieceCharSequence(this), region.getStart(), region.getEnd());
+    }
+
+    @Override
+    public CompletableFuture<List<Selection>> findAllInParallel(SearchQuery query, Consumer<List<Selection>> onMatches) {
+        return new ParallelFinder(query, new PieceCharSequence(this), ParallelFinder.DEFAULT_CHUNK_SIZE, onMatches)
+                .start(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Replaces all the matches in a single pass over the pieces. The replacement text is added
+     * once to the addition buffer, and shared by a new piece at each match
+     * @param query the query to search
+     * @param replacement the replacement text
+     * @return the number of replaced matches
+     */
+    @Override
+    public int replaceAll(SearchQuery query, String replacement) {
+        Objects.requireNonNull(replacement);
+        List<Selection> matches = findAll(query);
+        if (matches.isEmpty()) {
+            return 0;
+        }
+        int additionStart = additionBuffer.append(replacement);
+
+        List<Piece> newPieces = new ArrayList<>(pieces.size() + 2 * matches.size());
+        int pieceIndex = 0;
+        int pieceStart = 0;
+        int position = 0;
+        int removedLength = 0;
+        for (Selection selection : matches) {
+            int match = selection.getStart();
+            // copy the text between the previous match and this one
+            while (pieceStart < match) {
+                Piece piece = pieces.get(pieceIndex);
+                int from = Math.max(position, pieceStart);
+                int to = Math.min(match, pieceStart + piece.length);
+                if (to > from) {
+                    newPieces.add(piece.copy(piece.start + from - pieceStart, to - from));
+                }
+                if (pieceStart + piece.length > match) {
+                    break;
+                }
+                pieceStart += piece.length;
+                pieceIndex++;
+            }
+            if (!replacement.isEmpty()) {
+                Piece piece = pieces.get(pieceIndex);
+                Decoration decoration = piece.getDecoration() instanceof TextDecoration ?
+                        piece.getDecoration() : TextDecoration.builder().presets().build();
+                newPieces.add(new Piece(this, Piece.BufferType.ADDITION, additionStart, replacement.length(),
+                        decoration, piece.getParagraphDecoration()));
+            }
+            position = selection.getEnd();
+            removedLength += selection.getLength();
+            // skip the pieces that end within the match
+            while (pieceIndex < pieces.size() && pieceStart + pieces.get(pieceIndex).length <= position) {
+                pieceStart += pieces.get(pieceIndex).length;
+                pieceIndex++;
+            }
+        }
+        for (; pieceIndex < pieces.size(); pieceIndex++) {
+            Piece piece = pieces.get(pieceIndex);
+            int from = Math.max(position, pieceStart);
+            if (pieceStart + piece.length > from) {
+                newPieces.add(piece.copy(piece.start + from - pieceStart, pieceStart + piece.length - from));
+            }
+            pieceStart += piece.length;
+        }
+        int newTextLength = getTextLength() + matches.size() * replacement.length() - removedLength;
+        execute(new SwapPiecesCmd(newPieces, newTextLength));
+        return matches.size();
+    }
+
+    /**
+     * Replaces the ranges from the last one to the first one, each one with its own delete and insert events,
+     * and keeps only the pieces replaced at each range for undo. The text is added once to the addition buffer,
+     * and shared by a new piece at each range
+     */
+    @Override
+    public void replace(int[] starts, int[] ends, String text) {
+        Objects.requireNonNull(text);
+        checkRanges(starts, ends);
+        if (starts.length > 0) {
+            execute(new ReplaceRangesCmd(starts.clone(), ends.clone(), text));
+        }
+    }
+
+    @Override
+    public void decorate(List<Selection> ranges, TextDecoration decoration) {
+        Objects.requireNonNull(decoration);
+        int[] starts = ranges.stream().mapToInt(Selection::getStart).toArray();
+        int[] ends = ranges.stream().mapToInt(Selection::getEnd).toArray();
+        checkRanges(starts, ends);
+        if (starts.length > 0) {
+            execute(new DecorateRangesCmd(starts, ends, decoration));
+        }
+    }
+
+    private void checkRanges(int[] starts, int[] ends) {
+        if (starts.length != ends.length) {
+            throw new IllegalArgumentException("Expected " + starts.length + " ends, but got " + ends.length);
+        }
+        int position = 0;
+        for (int i = 0; i < starts.length; i++) {
+            if (starts[i] < position || ends[i] < starts[i] || ends[i] > getTextLength()) {
+                throw new IllegalArgumentException("Range [" + starts[i] + ", " + ends[i] + ") is not sorted, disjoint and within [0, " + getTextLength() + "]");
+            }
+            position = ends[i];
+        }
+    }
+
+    @Override
+    public Delta recordChange(Runnable edits) {
+        if (recordedDelta != null) {
+            throw new IllegalStateException("A change is already being recorded");
+        }
+        PieceTableDelta delta = new PieceTableDelta(this);
+        recordedDelta = delta;
+        try {
+            edits.run();
+        } finally {
+            recordedDelta = null;
+        }
+        return delta;
+    }
+
+    @Override
+    public void undo(Delta delta) {
+        checkDelta(delta).undo(this);
+    }
+
+    @Override
+    public void redo(Delta delta) {
+        checkDelta(delta).redo(this);
+    }
+
+    @Override
+    public void coalesce(Delta delta, Delta next) {
+        checkDelta(delta).absorb(checkDelta(next), this);
+    }
+
+    @Override
+    public void writeDelta(Delta delta, DataOutput out) throws IOException {
+        getSpillCodec().write(checkDelta(delta), out);
+    }
+
+    @Override
+    public Delta readDelta(DataInput in) throws IOException {
+        AbstractCommand<PieceTable> cmd = getSpillCodec().read(in);
+        if (!(cmd instanceof PieceTableDelta)) {
+            throw new IOException("Not a delta: " + cmd);
+        }
+        return (PieceTableDelta) cmd;
+    }
+
+    @Override
+    public void writeCheckpoint(Checkpoint checkpoint, DataOutput out) throws IOException {
+        getSpillCodec().writeCheckpoint(checkCheckpoint(checkpoint), out);
+    }
+
+    @Override
+    public Checkpoint readCheckpoint(DataInput in) throws IOException {
+        return getSpillCodec().readCheckpoint(in);
+    }
+
+    private PieceTableCheckpoint checkCheckpoint(Checkpoint checkpoint) {
+        if (!(checkpoint instanceof PieceTableCheckpoint) || ((PieceTableCheckpoint) checkpoint).source != this) {
+            throw new IllegalArgumentException("Checkpoint doesn't belong to this piece table: " + checkpoint);
+        }
+        return (PieceTableCheckpoint) checkpoint;
+    }
+
+    private PieceTableDelta checkDelta(Delta delta) {
+        if (!(delta instanceof PieceTableDelta) || ((PieceTableDelta) delta).source != this) {
+            throw new IllegalArgumentException("Delta doesn't belong to this piece table: " + delta);
+        }
+        return (PieceTableDelta) delta;
+    }
+
+    // edits go to the delta being recorded, if any, or else to the undo history
+    private void execute(AbstractPTCmd cmd) {
+        if (recordedDelta != null) {
+            cmd.execute(this);
+            recordedDelta.add(cmd);
+        } else {
+            commander.execute(cmd);
+        }
+    }
+
+    private PieceTableCommandCodec getSpillCodec() {
+        if (spillCodec == null) {
+            spillCodec = new PieceTableCommandCodec(this);
+        }
+        return spillCodec;
+    }
+
+    /**
+     * Merges the two most recent edits, so they are undone in a single step
+     * @return true if there were two edits to merge
+     */
+    boolean coalesceUndo() {
+        return commander.coalesceLast();
+    }
+
+    /**
+     * Limits the undo history kept by this table. Oldest edits are discarded first.
+     * @param maxCommands maximum number of undoable edits
+     * @param maxRetainedBytes maximum approximate memory retained by the undo history, in bytes
+     */
+    void setUndoLimits(int maxCommands, long maxRetainedBytes) {
+        commander.setLimits(maxCommands, maxRetainedBytes);
+    }
+
+    /**
+     * Keeps only the most recent edits of the undo history in memory, older ones are
+     * written to a temporary spill file and read back when undo reaches them.
+     * @param maxInMemoryCommands number of most recent edits kept in memory, 0 disables spilling
+     */
+    void setUndoSpilling(int maxInMemoryCommands) {
+        if (maxInMemoryCommands > 0) {
+            commander.enableSpilling(maxInMemoryCommands, null, getSpillCodec());
+        } else {
+            commander.disableSpilling();
+        }
+    }
+
+    UndoStats getUndoStats() {
+        return commander.getStats();
+    }
+
+    /**
+     * Creates a checkpoint with a copy of the current list of pieces.
+     * Pieces are immutable, and the buffers they refer to are only appended to,
+     * so the copy stays valid whatever happens to the piece table later
+     * @return a checkpoint of the current content
+     */
+    @Override
+    public Checkpoint createCheckpoint() {
+        return new PieceTableCheckpoint(this, checkpointCount++, pieces, getTextLength());
+    }
+
+    /**
+     * Restores the pieces of the checkpoint in one step, no matter how many edits were done since it was created
+     * @param checkpoint checkpoint created by this piece table
+     */
+    @Override
+    public void revert(Checkpoint checkpoint) {
+        PieceTableCheckpoint pieceTableCheckpoint = checkCheckpoint(checkpoint);
+        execute(new SwapPiecesCmd(pieceTableCheckpoint.pieces, pieceTableCheckpoint.textLength));
+    }
+
     /**
      *        Piece Table
      *  Piece A  Piece B   Piece C
@@ -277,6 +647,15 @@ public final class PieceTable extends AbstractTextBuffer {
 
     }
 
+    // position in the text of the first char of the piece at the given index
+    int getTextPosition(int pieceIndex) {
+        int textPosition = 0;
+        for (int i = 0; i < pieceIndex; i++) {
+            textPosition += pieces.get(i).length;
+        }
+        return textPosition;
+    }
+
     // Normalized list of pieces
     // Empty pieces purged
     static Collection<Piece> normalize(Collection<Piece> pieces) {
@@ -287,6 +666,14 @@ public final class PieceTable extends AbstractTextBuffer {
 
     }
 
+    // Replaces the given number of pieces at index with the replacement pieces.
+    // Commands undo by position rather than by piece identity, so commands restored
+    // from a spill file, with copies of the original pieces, undo the same way
+    void replacePieces(int index, int count, Collection<Piece> replacement) {
+        pieces.subList(index, index + count).clear();
+        pieces.addAll(index, replacement);
+    }
+
     // TODO is there standard APIs?
     static boolean inRange( int index, int start, int length ) {
         return index >= start && index < start+length;
@@ -306,13 +693,71 @@ public final class PieceTable extends AbstractTextBuffer {
     public String toString() {
         String p = pieces.stream().map(piece -> " - " + piece.toString()).collect(Collectors.joining("\n", "\n", ""));
         return "PieceTable{\n O=\"" + originalText.replaceAll("\n", "<n>").replaceAll(ZERO_WIDTH_TEXT, "<a>") + "\"" + "" +
-                ",\n A=\"" + additionBuffer.replaceAll("\n", "<n>").replaceAll(ZERO_WIDTH_TEXT, "<a>") + "\"" +
+                ",\n A=\"" + additionBuffer.toString().replaceAll("\n", "<n>").replaceAll(ZERO_WIDTH_TEXT, "<a>") + "\"" +
                 ",\n L=" + getTextLength() +
                 ", pieces ->" + p +
                 "\n}";
     }
 }
 
+/**
+ * Piece table commands recorded for a single change, see {@link PieceTable#recordChange(Runnable)}
+ */
+class PieceTableDelta extends CompoundCommand<PieceTable> implements TextBuffer.Delta {
+
+    final PieceTable source;
+
+    PieceTableDelta(PieceTable source) {
+        this.source = Objects.requireNonNull(source);
+    }
+
+    // consecutive edits, like typing, are merged into the last command when possible
+    void absorb(PieceTableDelta next, PieceTable pt) {
+        for (AbstractCommand<PieceTable> cmd : next.getCommands()) {
+            mergeWith(cmd, pt);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "PieceTableDelta" + getCommands();
+    }
+}
+
+class PieceTableCheckpoint implements TextBuffer.Checkpoint {
+
+    final PieceTable source;
+    final long id;
+    final List<Piece> pieces;
+    final int textLength;
+
+    PieceTableCheckpoint(PieceTable source, long id, List<Piece> pieces, int textLength) {
+        this.source = source;
+        this.id = id;
+        this.pieces = List.copyOf(pieces);
+        this.textLength = textLength;
+    }
+
+    // a checkpoint read back from a spill file is equal to the one that was written
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        PieceTableCheckpoint that = (PieceTableCheckpoint) o;
+        return source == that.source && id == that.id;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(System.identityHashCode(source), id);
+    }
+
+    @Override
+    public String toString() {
+        return "PieceTableCheckpoint[" + pieces.size() + " pieces, " + textLength + "]";
+    }
+}
+
 class PieceCharacterIterator implements CharacterIterator {
 
     private static final char LF = 0x0a;
@@ -459,12 +904,205 @@ class PieceCharacterIterator implements CharacterIterator {
     }
 }
 
-abstract class AbstractPTCmd extends AbstractCommand<PieceTable> {}
+abstract class AbstractPTCmd extends AbstractCommand<PieceTable> {
+
+    static long sizeOf(Collection<Piece> pieces) {
+        return pieces == null ? 0 : (long) pieces.size() * Piece.RETAINED_SIZE;
+    }
+
+    // writes the command, including what is needed to undo it, see PieceTableCommandCodec
+    abstract void write(PieceTableCommandCodec codec, DataOutput out) throws IOException;
+}
+
+/**
+ * Serializes piece table commands for the undo spill file.
+ * Text is written as is, pieces as descriptors into the piece table buffers, and decorations
+ * as indices into a table kept by this codec, as they are few and shared by many pieces.
+ */
+class PieceTableCommandCodec implements CommandCodec<PieceTable> {
+
+    private static final byte APPEND = 1;
+    private static final byte INSERT = 2;
+    private static final byte DELETE = 3;
+    private static final byte IMAGE_DECORATE = 4;
+    private static final byte TEXT_DECORATE = 5;
+    private static final byte PARAGRAPH_DECORATE = 6;
+    private static final byte COMPOUND = 7;
+    private static final byte SWAP_PIECES = 8;
+    private static final byte INSERT_DOCUMENT = 9;
+    private static final byte REPLACE_RANGES = 10;
+    private static final byte DECORATE_RANGES = 11;
+
+    private final PieceTable pt;
+
+    PieceTableCommandCodec(PieceTable pt) {
+        this.pt = Objects.requireNonNull(pt);
+    }
+
+    @Override
+    public void write(AbstractCommand<PieceTable> cmd, DataOutput out) throws IOException {
+        if (cmd instanceof CompoundCommand) {
+            List<AbstractCommand<PieceTable>> commands = ((CompoundCommand<PieceTable>) cmd).getCommands();
+            out.writeByte(COMPOUND);
+            out.writeInt(commands.size());
+            for (AbstractCommand<PieceTable> command : commands) {
+                write(command, out);
+            }
+            return;
+        }
+        if (cmd instanceof AppendCmd) {
+            out.writeByte(APPEND);
+        } else if (cmd instanceof InsertCmd) {
+            out.writeByte(INSERT);
+        } else if (cmd instanceof DeleteCmd) {
+            out.writeByte(DELETE);
+        } else if (cmd instanceof ImageDecorateCmd) {
+            out.writeByte(IMAGE_DECORATE);
+        } else if (cmd instanceof TextDecorateCmd) {
+            out.writeByte(TEXT_DECORATE);
+        } else if (cmd instanceof ParagraphDecorateCmd) {
+            out.writeByte(PARAGRAPH_DECORATE);
+        } else if (cmd instanceof SwapPiecesCmd) {
+            out.writeByte(SWAP_PIECES);
+        } else if (cmd instanceof InsertDocumentCmd) {
+            out.writeByte(INSERT_DOCUMENT);
+        } else if (cmd instanceof ReplaceRangesCmd) {
+            out.writeByte(REPLACE_RANGES);
+        } else if (cmd instanceof DecorateRangesCmd) {
+            out.writeByte(DECORATE_RANGES);
+        } else {
+            throw new IOException("Command type not supported: " + cmd);
+        }
+        ((AbstractPTCmd) cmd).write(this, out);
+    }
+
+    @Override
+    public AbstractCommand<PieceTable> read(DataInput in) throws IOException {
+        byte type = in.readByte();
+        switch (type) {
+            case APPEND: return AppendCmd.read(this, in);
+            case INSERT: return InsertCmd.read(this, in);
+            case DELETE: return DeleteCmd.read(this, in);
+            case IMAGE_DECORATE: return ImageDecorateCmd.read(this, in);
+            case TEXT_DECORATE: return TextDecorateCmd.read(this, in);
+            case PARAGRAPH_DECORATE: return ParagraphDecorateCmd.read(this, in);
+            case SWAP_PIECES: return SwapPiecesCmd.read(this, in);
+            case INSERT_DOCUMENT: return InsertDocumentCmd.read(this, in);
+            case REPLACE_RANGES: return ReplaceRangesCmd.read(this, in);
+            case DECORATE_RANGES: return DecorateRangesCmd.read(this, in);
+            case COMPOUND:
+                int size = in.readInt();
+                CompoundCommand<PieceTable> compound = new PieceTableDelta(pt);
+                for (int i = 0; i < size; i++) {
+                    compound.add(read(in));
+                }
+                return compound;
+            default:
+                throw new IOException("Unknown command type: " + type);
+        }
+    }
+
+    void writeText(String text, DataOutput out) throws IOException {
+        out.writeInt(text.length());
+        out.writeChars(text);
+    }
+
+    String readText(DataInput in) throws IOException {
+        char[] chars = new char[in.readInt()];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = in.readChar();
+        }
+        return new String(chars);
+    }
+
+    // decorations are written by value, so the spilled commands don't keep them in memory
+    void writeDecoration(Decoration decoration, DataOutput out) throws IOException {
+        DocumentCodec.writeDecoration(decoration, out);
+    }
+
+    Decoration readDecoration(DataInput in) throws IOException {
+        return DocumentCodec.readDecoration(in);
+    }
+
+    void writeCheckpoint(PieceTableCheckpoint checkpoint, DataOutput out) throws IOException {
+        out.writeLong(checkpoint.id);
+        writePieces(checkpoint.pieces, out);
+        out.writeInt(checkpoint.textLength);
+    }
+
+    PieceTableCheckpoint readCheckpoint(DataInput in) throws IOException {
+        return new PieceTableCheckpoint(pt, in.readLong(), readPieces(in), in.readInt());
+    }
+
+    void writeDocument(Document document, DataOutput out) throws IOException {
+        writeText(document.getText(), out);
+        out.writeInt(document.getDecorations().size());
+        for (DecorationModel decorationModel : document.getDecorations()) {
+            out.writeInt(decorationModel.getStart());
+            out.writeInt(decorationModel.getLength());
+            writeDecoration(decorationModel.getDecoration(), out);
+            writeDecoration(decorationModel.getParagraphDecoration(), out);
+        }
+    }
+
+    Document readDocument(DataInput in) throws IOException {
+        String text = readText(in);
+        int size = in.readInt();
+        List<DecorationModel> decorations = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            decorations.add(new DecorationModel(in.readInt(), in.readInt(), readDecoration(in), (ParagraphDecoration) readDecoration(in)));
+        }
+        return new Document(text, decorations, 0);
+    }
+
+    void writePiece(Piece piece, DataOutput out) throws IOException {
+        out.writeBoolean(piece != null);
+        if (piece != null) {
+            out.writeByte(piece.bufferType.ordinal());
+            out.writeInt(piece.start);
+            out.writeInt(piece.length);
+            writeDecoration(piece.decoration, out);
+            writeDecoration(piece.paragraphDecoration, out);
+        }
+    }
+
+    Piece readPiece(DataInput in) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        Piece.BufferType bufferType = Piece.BufferType.values()[in.readByte()];
+        int start = in.readInt();
+        int length = in.readInt();
+        return new Piece(pt, bufferType, start, length, readDecoration(in), (ParagraphDecoration) readDecoration(in));
+    }
+
+    void writePieces(Collection<Piece> pieces, DataOutput out) throws IOException {
+        out.writeInt(pieces == null ? -1 : pieces.size());
+        if (pieces != null) {
+            for (Piece piece : pieces) {
+                writePiece(piece, out);
+            }
+        }
+    }
+
+    List<Piece> readPieces(DataInput in) throws IOException {
+        int size = in.readInt();
+        if (size < 0) {
+            return null;
+        }
+        List<Piece> pieces = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            pieces.add(readPiece(in));
+        }
+        return pieces;
+    }
+}
 
 class AppendCmd extends AbstractPTCmd {
 
-    private final String text;
+    private String text;
     private Piece newPiece;
+    private int pieceIndex;
     private boolean execSuccess = false;
 
     AppendCmd(String text) {
@@ -474,9 +1112,9 @@ class AppendCmd extends AbstractPTCmd {
     @Override
     protected void doUndo(PieceTable pt) {
         if (execSuccess) {
-            pt.pieces.remove(newPiece);
-            pt.fire(new TextBuffer.DeleteEvent(pt.getTextLength() - text.length(), text.length()));
+            pt.pieces.remove(pieceIndex);
             pt.textLengthProperty.set( pt.getTextLength() - text.length());
+            pt.fire(new TextBuffer.DeleteEvent(pt.getTextLength(), text.length()));
         }
     }
 
@@ -489,21 +1127,62 @@ class AppendCmd extends AbstractPTCmd {
                     pt.decorationAtCaret : pt.previousPieceDecoration(pt.pieces.size()),
                     pt.getParagraphDecorationAtCaret(pos) != null ?
                     pt.getParagraphDecorationAtCaret(pos) : pt.previousPieceParagraphDecoration(pt.pieces.size()));
+            pieceIndex = pt.pieces.size();
             pt.pieces.add(newPiece);
             pt.fire(new TextBuffer.InsertEvent(text, pos));
             execSuccess = true;
         }
     }
 
+    // consecutive appends extend the same piece, as long as nothing else was added to the buffer in between
+    @Override
+    protected boolean mergeWith(AbstractCommand<PieceTable> next, PieceTable pt) {
+        if (!(next instanceof AppendCmd) || !execSuccess || !((AppendCmd) next).execSuccess) {
+            return false;
+        }
+        AppendCmd cmd = (AppendCmd) next;
+        int size = pt.pieces.size();
+        if (size < 2 || pt.pieces.get(size - 2) != newPiece || pt.pieces.get(size - 1) != cmd.newPiece ||
+                !newPiece.isContinuedBy(cmd.newPiece)) {
+            return false;
+        }
+        newPiece = newPiece.copy(newPiece.start, newPiece.length + cmd.newPiece.length);
+        pt.pieces.remove(size - 1);
+        pt.pieces.set(size - 2, newPiece);
+        text += cmd.text;
+        return true;
+    }
+
+    @Override
+    public long getRetainedSize() {
+        return SHALLOW_SIZE + sizeOf(text) + Piece.RETAINED_SIZE;
+    }
+
+    @Override
+    void write(PieceTableCommandCodec codec, DataOutput out) throws IOException {
+        codec.writeText(text, out);
+        out.writeBoolean(execSuccess);
+        out.writeInt(pieceIndex);
+        codec.writePiece(newPiece, out);
+    }
+
+    static AppendCmd read(PieceTableCommandCodec codec, DataInput in) throws IOException {
+        AppendCmd cmd = new AppendCmd(codec.readText(in));
+        cmd.execSuccess = in.readBoolean();
+        cmd.pieceIndex = in.readInt();
+        cmd.newPiece = codec.readPiece(in);
+        return cmd;
+    }
+
     @Override
     public String toString() {
         return "AppendCmd[\"" + text + "\"]";
     }
 }
 
-class InsertCmd extends AbstractCommand<PieceTable> {
+class InsertCmd extends AbstractPTCmd {
 
-    private final String text;
+    private String text;
     private final int insertPosition;
 
     private Collection<Piece> newPieces;
@@ -519,10 +1198,9 @@ class InsertCmd extends AbstractCommand<PieceTable> {
     @Override
     protected void doUndo(PieceTable pt) {
         if (execSuccess) {
-            pt.pieces.add(opPieceIndex, oldPiece);
-            pt.pieces.removeAll(newPieces);
-            pt.fire(new TextBuffer.DeleteEvent(insertPosition, text.length()));
+            pt.replacePieces(opPieceIndex, newPieces.size(), oldPiece == null ? List.of() : List.of(oldPiece));
             pt.textLengthProperty.set(pt.getTextLength() - text.length());
+            pt.fire(new TextBuffer.DeleteEvent(insertPosition, text.length()));
         }
     }
 
@@ -538,7 +1216,17 @@ class InsertCmd extends AbstractCommand<PieceTable> {
         }
 
         if (insertPosition == pt.getTextLength()) {
-            pt.append(text);
+            // same as AppendCmd, without issuing a second command
+            newPieces = List.of(pt.appendTextInternal(text,
+                    pt.decorationAtCaret != null ?
+                    pt.decorationAtCaret : pt.previousPieceDecoration(pt.pieces.size()),
+                    pt.getParagraphDecorationAtCaret(insertPosition) != null ?
+                    pt.getParagraphDecorationAtCaret(insertPosition) : pt.previousPieceParagraphDecoration(pt.pieces.size())));
+            oldPiece = null;
+            opPieceIndex = pt.pieces.size();
+            pt.pieces.addAll(newPieces);
+            pt.fire(new TextBuffer.InsertEvent(text, insertPosition));
+            execSuccess = true;
         } else {
             pt.walkPieces((piece, pieceIndex, textPosition) -> {
                 if (PieceTable.inRange(insertPosition, textPosition, piece.length)) {
@@ -565,13 +1253,228 @@ class InsertCmd extends AbstractCommand<PieceTable> {
         }
     }
 
+    // consecutive inserts, like typing, extend the same addition piece.
+    // In the middle of the text, newPieces always ends with [addition, remainder], and the next insert
+    // splits that remainder at offset 0, so its newPieces is [next addition, next remainder].
+    // At the end of the text, newPieces is [addition], and the next one is [next addition], right after it
+    @Override
+    protected boolean mergeWith(AbstractCommand<PieceTable> next, PieceTable pt) {
+        if (!(next instanceof InsertCmd) || !execSuccess || !((InsertCmd) next).execSuccess) {
+            return false;
+        }
+        InsertCmd cmd = (InsertCmd) next;
+        List<Piece> pieces = new ArrayList<>(newPieces);
+        List<Piece> nextPieces = new ArrayList<>(cmd.newPieces);
+        if (cmd.insertPosition != insertPosition + text.length()) {
+            return false;
+        }
+        if (oldPiece == null && cmd.oldPiece == null && pieces.size() == 1 && nextPieces.size() == 1) {
+            return mergeAtEnd(cmd, pieces.get(0), nextPieces.get(0), pt);
+        }
+        if (pieces.size() < 2 || nextPieces.size() != 2) {
+            return false;
+        }
+        int additionIndex = pieces.size() - 2;
+        Piece addition = pieces.get(additionIndex);
+        Piece nextAddition = nextPieces.get(0);
+        int index = opPieceIndex + additionIndex;
+        if (cmd.oldPiece != pieces.get(additionIndex + 1) || !addition.isContinuedBy(nextAddition) ||
+                index + 2 >= pt.pieces.size() ||
+                pt.pieces.get(index) != addition || pt.pieces.get(index + 1) != nextAddition ||
+                pt.pieces.get(index + 2) != nextPieces.get(1)) {
+            return false;
+        }
+        Piece merged = addition.copy(addition.start, addition.length + nextAddition.length);
+        pt.pieces.remove(index + 1);
+        pt.pieces.set(index, merged);
+        pieces.set(additionIndex, merged);
+        pieces.set(additionIndex + 1, nextPieces.get(1));
+        newPieces = pieces;
+        text += cmd.text;
+        return true;
+    }
+
+    // same as AppendCmd
+    private boolean mergeAtEnd(InsertCmd cmd, Piece addition, Piece nextAddition, PieceTable pt) {
+        int index = opPieceIndex;
+        if (cmd.opPieceIndex != index + 1 || index + 1 >= pt.pieces.size() ||
+                pt.pieces.get(index) != addition || pt.pieces.get(index + 1) != nextAddition ||
+                !addition.isContinuedBy(nextAddition)) {
+            return false;
+        }
+        Piece merged = addition.copy(addition.start, addition.length + nextAddition.length);
+        pt.pieces.remove(index + 1);
+        pt.pieces.set(index, merged);
+        newPieces = List.of(merged);
+        text += cmd.text;
+        return true;
+    }
+
+    @Override
+    public long getRetainedSize() {
+        return SHALLOW_SIZE + sizeOf(text) + Piece.RETAINED_SIZE + sizeOf(newPieces);
+    }
+
+    @Override
+    void write(PieceTableCommandCodec codec, DataOutput out) throws IOException {
+        codec.writeText(text, out);
+        out.writeInt(insertPosition);
+        out.writeBoolean(execSuccess);
+        out.writeInt(opPieceIndex);
+        codec.writePiece(oldPiece, out);
+        codec.writePieces(newPieces, out);
+    }
+
+    static InsertCmd read(PieceTableCommandCodec codec, DataInput in) throws IOException {
+        InsertCmd cmd = new InsertCmd(codec.readText(in), in.readInt());
+        cmd.execSuccess = in.readBoolean();
+        cmd.opPieceIndex = in.readInt();
+        cmd.oldPiece = codec.readPiece(in);
+        cmd.newPieces = codec.readPieces(in);
+        return cmd;
+    }
+
     @Override
     public String toString() {
         return "InsertCmd[\"" + text + "\" at " + insertPosition + "]";
     }
 }
 
-class DeleteCmd extends AbstractCommand<PieceTable> {
+class InsertDocumentCmd extends AbstractPTCmd {
+
+    private final Document document;
+    private final int insertPosition;
+
+    private Collection<Piece> newPieces;
+    private Piece oldPiece;
+    private int opPieceIndex;
+    private boolean execSuccess = false;
+
+    InsertDocumentCmd(Document document, int insertPosition) {
+        this.document = Objects.requireNonNull(document);
+        this.insertPosition = insertPosition;
+    }
+
+    @Override
+    protected void doUndo(PieceTable pt) {
+        if (execSuccess) {
+            pt.replacePieces(opPieceIndex, newPieces.size(), oldPiece == null ? List.of() : List.of(oldPiece));
+            pt.textLengthProperty.set(pt.getTextLength() - document.getText().length());
+            pt.fire(new TextBuffer.DeleteEvent(insertPosition, document.getText().length()));
+        }
+    }
+
+    @Override
+    protected void doRedo(PieceTable pt) {
+        String text = document.getText();
+        if (text.isEmpty()) {
+            return;
+        }
+        if (insertPosition < 0 || insertPosition > pt.getTextLength()) {
+            throw new IllegalArgumentException("Position " + insertPosition + " is outside of text bounds [0, " + pt.getTextLength() + "]");
+        }
+        int covered = 0;
+        for (DecorationModel decorationModel : document.getDecorations()) {
+            if (decorationModel.getStart() != covered || decorationModel.getLength() < 0) {
+                break;
+            }
+            covered += decorationModel.getLength();
+        }
+        if (covered != text.length()) {
+            throw new IllegalArgumentException("The decorations of the document don't cover its text");
+        }
+
+        // the piece that contains the insert position, if any
+        int pieceIndex = 0;
+        int textPosition = 0;
+        while (pieceIndex < pt.pieces.size() && textPosition + pt.pieces.get(pieceIndex).length <= insertPosition) {
+            textPosition += pt.pieces.get(pieceIndex).length;
+            pieceIndex++;
+        }
+        Piece piece = pieceIndex < pt.pieces.size() ? pt.pieces.get(pieceIndex) : null;
+        int pieceOffset = insertPosition - textPosition;
+
+        // the text before the first line feed joins the paragraph at the insert position, unless it
+        // starts there, and the text after the last one joins the paragraph after the insert position
+        final ParagraphDecoration paragraphDecoration = pt.getParagraphDecorationAtCaret(insertPosition) != null ?
+                pt.getParagraphDecorationAtCaret(insertPosition) : pt.previousPieceParagraphDecoration(pieceIndex);
+        int paragraphsStart = isParagraphStart(pt, pieceIndex, pieceOffset) ? 0 : text.indexOf('\n') + 1;
+        int paragraphsEnd = text.lastIndexOf('\n') + 1;
+
+        Piece addition = pt.appendTextInternal(text, null, null);
+        List<Piece> pieces = new ArrayList<>();
+        if (piece != null) {
+            pieces.add(piece.pieceBefore(pieceOffset));
+        }
+        int position = 0;
+        for (DecorationModel decorationModel : document.getDecorations()) {
+            int runEnd = position + decorationModel.getLength();
+            while (position < runEnd) {
+                boolean ownParagraph = paragraphsStart <= position && position < paragraphsEnd;
+                int end = Math.min(runEnd, ownParagraph ? paragraphsEnd : position < paragraphsStart ? paragraphsStart : runEnd);
+                ParagraphDecoration runParagraphDecoration = ownParagraph && decorationModel.getParagraphDecoration() != null ?
+                        decorationModel.getParagraphDecoration() : paragraphDecoration;
+                pieces.add(addition.copy(addition.start + position, end - position, decorationModel.getDecoration(), runParagraphDecoration));
+                position = end;
+            }
+        }
+        if (piece != null) {
+            pieces.add(piece.pieceFrom(pieceOffset));
+        }
+
+        newPieces = PieceTable.normalize(pieces);
+        oldPiece = piece;
+        opPieceIndex = pieceIndex;
+        pt.replacePieces(pieceIndex, piece == null ? 0 : 1, newPieces);
+        pt.fire(new TextBuffer.InsertEvent(text, insertPosition));
+        execSuccess = true;
+    }
+
+    // true if the char before the offset of the piece is a line feed, or there is none
+    private static boolean isParagraphStart(PieceTable pt, int pieceIndex, int pieceOffset) {
+        if (pieceOffset > 0) {
+            return pt.pieces.get(pieceIndex).charAt(pieceOffset - 1) == '\n';
+        }
+        for (int i = pieceIndex - 1; i >= 0; i--) {
+            Piece previous = pt.pieces.get(i);
+            if (previous.length > 0) {
+                return previous.charAt(previous.length - 1) == '\n';
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public long getRetainedSize() {
+        return SHALLOW_SIZE + sizeOf(document.getText()) + Piece.RETAINED_SIZE + sizeOf(newPieces);
+    }
+
+    @Override
+    void write(PieceTableCommandCodec codec, DataOutput out) throws IOException {
+        codec.writeDocument(document, out);
+        out.writeInt(insertPosition);
+        out.writeBoolean(execSuccess);
+        out.writeInt(opPieceIndex);
+        codec.writePiece(oldPiece, out);
+        codec.writePieces(newPieces, out);
+    }
+
+    static InsertDocumentCmd read(PieceTableCommandCodec codec, DataInput in) throws IOException {
+        InsertDocumentCmd cmd = new InsertDocumentCmd(codec.readDocument(in), in.readInt());
+        cmd.execSuccess = in.readBoolean();
+        cmd.opPieceIndex = in.readInt();
+        cmd.oldPiece = codec.readPiece(in);
+        cmd.newPieces = codec.readPieces(in);
+        return cmd;
+    }
+
+    @Override
+    public String toString() {
+        return "InsertDocumentCmd[\"" + document.getText() + "\" at " + insertPosition + "]";
+    }
+}
+
+class DeleteCmd extends AbstractPTCmd {
 
     private final int deletePosition;
     private int length;
@@ -594,15 +1497,13 @@ class DeleteCmd extends AbstractCommand<PieceTable> {
     @Override
     protected void doUndo(PieceTable pt) {
         if (execSuccess) {
-            pt.pieces.addAll(pieceIndex, oldPieces);
-            pt.pieces.removeAll(newPieces);
+            pt.replacePieces(pieceIndex, newPieces.size(), oldPieces);
 
-            String text = oldPieces.stream()
-              .map(Piece::getText)
-              .reduce( "", (id, s) -> id + s );
+            // the old pieces may also have text before and after the deleted one
+            String text = new PieceCharSequence(pt).subSequence(deletePosition, deletePosition + length).toString();
 
-            pt.fire(new TextBuffer.InsertEvent(text, deletePosition));
             pt.textLengthProperty.set(pt.getTextLength() + length);
+            pt.fire(new TextBuffer.InsertEvent(text, deletePosition));
         }
     }
 
@@ -656,6 +1557,30 @@ class DeleteCmd extends AbstractCommand<PieceTable> {
         }
     }
 
+    @Override
+    public long getRetainedSize() {
+        return SHALLOW_SIZE + sizeOf(newPieces) + sizeOf(oldPieces);
+    }
+
+    @Override
+    void write(PieceTableCommandCodec codec, DataOutput out) throws IOException {
+        out.writeInt(deletePosition);
+        out.writeInt(length);
+        out.writeBoolean(execSuccess);
+        out.writeInt(pieceIndex);
+        codec.writePieces(newPieces, out);
+        codec.writePieces(oldPieces, out);
+    }
+
+    static DeleteCmd read(PieceTableCommandCodec codec, DataInput in) throws IOException {
+        DeleteCmd cmd = new DeleteCmd(in.readInt(), in.readInt());
+        cmd.execSuccess = in.readBoolean();
+        cmd.pieceIndex = in.readInt();
+        cmd.newPieces = codec.readPieces(in);
+        cmd.oldPieces = codec.readPieces(in);
+        return cmd;
+    }
+
     @Override
     public String toString() {
         return "DeleteCmd[" + deletePosition + " x " + length + "]";
@@ -663,13 +1588,14 @@ class DeleteCmd extends AbstractCommand<PieceTable> {
 
 }
 
-class ImageDecorateCmd extends AbstractCommand<PieceTable> {
+class ImageDecorateCmd extends AbstractPTCmd {
 
     private final ImageDecoration decoration;
     private final int insertPosition;
 
     private boolean execSuccess = false;
     private Piece newPiece;
+    private int newPieceIndex;
     private Piece oldPiece;
     private int opPieceIndex;
     private Collection<Piece> newPieces = new ArrayList<>();
@@ -687,15 +1613,14 @@ class ImageDecorateCmd extends AbstractCommand<PieceTable> {
     @Override
     protected void doUndo(PieceTable pt) {
         if (execSuccess) {
+            pt.textLengthProperty.set(pt.getTextLength() - 1);
             if (newPiece != null) {
-                pt.pieces.remove(newPiece);
-                pt.fire(new TextBuffer.DeleteEvent(pt.getTextLength() - 1, 1));
+                pt.pieces.remove(newPieceIndex);
+                pt.fire(new TextBuffer.DeleteEvent(pt.getTextLength(), 1));
             } else {
-                pt.pieces.add(opPieceIndex, oldPiece);
-                pt.pieces.removeAll(newPieces);
+                pt.replacePieces(opPieceIndex, newPieces.size(), List.of(oldPiece));
                 pt.fire(new TextBuffer.DeleteEvent(insertPosition, 1));
             }
-            pt.textLengthProperty.set(pt.getTextLength() - 1);
         }
     }
 
@@ -711,6 +1636,7 @@ class ImageDecorateCmd extends AbstractCommand<PieceTable> {
         if (insertPosition == pt.getTextLength()) {
             int pos = pt.getTextLength();
             newPiece = pt.appendTextInternal(ZERO_WIDTH_TEXT, decoration, paragraphDecoration);
+            newPieceIndex = pt.pieces.size();
             pt.pieces.add(newPiece);
             pt.fire(new TextBuffer.InsertEvent(ZERO_WIDTH_TEXT, pos));
             execSuccess = true;
@@ -738,13 +1664,41 @@ class ImageDecorateCmd extends AbstractCommand<PieceTable> {
 
     }
 
+    @Override
+    public long getRetainedSize() {
+        return SHALLOW_SIZE + 2 * Piece.RETAINED_SIZE + sizeOf(newPieces);
+    }
+
+    @Override
+    void write(PieceTableCommandCodec codec, DataOutput out) throws IOException {
+        codec.writeDecoration(decoration, out);
+        out.writeInt(insertPosition);
+        out.writeBoolean(execSuccess);
+        codec.writePiece(newPiece, out);
+        out.writeInt(newPieceIndex);
+        codec.writePiece(oldPiece, out);
+        out.writeInt(opPieceIndex);
+        codec.writePieces(newPieces, out);
+    }
+
+    static ImageDecorateCmd read(PieceTableCommandCodec codec, DataInput in) throws IOException {
+        ImageDecorateCmd cmd = new ImageDecorateCmd((ImageDecoration) codec.readDecoration(in), in.readInt());
+        cmd.execSuccess = in.readBoolean();
+        cmd.newPiece = codec.readPiece(in);
+        cmd.newPieceIndex = in.readInt();
+        cmd.oldPiece = codec.readPiece(in);
+        cmd.opPieceIndex = in.readInt();
+        cmd.newPieces = codec.readPieces(in);
+        return cmd;
+    }
+
     @Override
     public String toString() {
         return "ImageDecorateCmd[" + decoration + " at " + insertPosition + "]";
     }
 }
 
-class TextDecorateCmd extends AbstractCommand<PieceTable> {
+class TextDecorateCmd extends AbstractPTCmd {
 
     private int start;
     private int end;
@@ -770,12 +1724,13 @@ class TextDecorateCmd extends AbstractCommand<PieceTable> {
     @Override
     protected void doUndo(PieceTable pt) {
         if (execSuccess) {
-            pt.pieces.addAll(pieceIndex, oldPieces);
-            pt.pieces.removeAll(newPieces);
+            pt.replacePieces(pieceIndex, newPieces.size(), oldPieces);
 
-            oldPieces.forEach(piece -> {
-                pt.fire(new TextBuffer.DecorateEvent(piece.start, piece.start + piece.length, piece.decoration));
-            });
+            int textPosition = pt.getTextPosition(pieceIndex);
+            for (Piece piece : oldPieces) {
+                pt.fire(new TextBuffer.DecorateEvent(textPosition, textPosition + piece.length, piece.decoration));
+                textPosition += piece.length;
+            }
         }
     }
 
@@ -796,7 +1751,10 @@ class TextDecorateCmd extends AbstractCommand<PieceTable> {
 
         pt.walkPieces((piece, pieceIndex, textPosition) -> {
             if (isPieceInSelection(piece, textPosition)) {
-                startPieceIndex[0] = pieceIndex;
+                if (removals.isEmpty()) {
+                    // undo replaces the new pieces from the first decorated one
+                    startPieceIndex[0] = pieceIndex;
+                }
                 if (textPosition <= start) {
                     int offset = start - textPosition;
                     int length;
@@ -842,6 +1800,31 @@ class TextDecorateCmd extends AbstractCommand<PieceTable> {
         return start <= pieceEndPosition && (end >= pieceEndPosition || end >= textPosition);
     }
 
+    @Override
+    public long getRetainedSize() {
+        return SHALLOW_SIZE + sizeOf(newPieces) + sizeOf(oldPieces);
+    }
+
+    @Override
+    void write(PieceTableCommandCodec codec, DataOutput out) throws IOException {
+        out.writeInt(start);
+        out.writeInt(end);
+        codec.writeDecoration(decoration, out);
+        out.writeBoolean(execSuccess);
+        out.writeInt(pieceIndex);
+        codec.writePieces(newPieces, out);
+        codec.writePieces(oldPieces, out);
+    }
+
+    static TextDecorateCmd read(PieceTableCommandCodec codec, DataInput in) throws IOException {
+        TextDecorateCmd cmd = new TextDecorateCmd(in.readInt(), in.readInt(), codec.readDecoration(in));
+        cmd.execSuccess = in.readBoolean();
+        cmd.pieceIndex = in.readInt();
+        cmd.newPieces = codec.readPieces(in);
+        cmd.oldPieces = codec.readPieces(in);
+        return cmd;
+    }
+
     @Override
     public String toString() {
         return "TextDecorateCmd[" + start +
@@ -849,7 +1832,7 @@ class TextDecorateCmd extends AbstractCommand<PieceTable> {
     }
 }
 
-class ParagraphDecorateCmd extends AbstractCommand<PieceTable> {
+class ParagraphDecorateCmd extends AbstractPTCmd {
 
     private int start;
     private int end;
@@ -875,12 +1858,13 @@ class ParagraphDecorateCmd extends AbstractCommand<PieceTable> {
     @Override
     protected void doUndo(PieceTable pt) {
         if (execSuccess) {
-            pt.pieces.addAll(pieceIndex, oldPieces);
-            pt.pieces.removeAll(newPieces);
+            pt.replacePieces(pieceIndex, newPieces.size(), oldPieces);
 
-            oldPieces.forEach(piece -> {
-                pt.fire(new TextBuffer.DecorateEvent(piece.start, piece.start + piece.length, piece.decoration));
-            });
+            int textPosition = pt.getTextPosition(pieceIndex);
+            for (Piece piece : oldPieces) {
+                pt.fire(new TextBuffer.DecorateEvent(textPosition, textPosition + piece.length, piece.paragraphDecoration));
+                textPosition += piece.length;
+            }
         }
     }
 
@@ -901,7 +1885,10 @@ class ParagraphDecorateCmd extends AbstractCommand<PieceTable> {
 
         pt.walkPieces((piece, pieceIndex, textPosition) -> {
             if (isPieceInSelection(piece, textPosition)) {
-                startPieceIndex[0] = pieceIndex;
+                if (removals.isEmpty()) {
+                    // undo replaces the new pieces from the first decorated one
+                    startPieceIndex[0] = pieceIndex;
+                }
                 if (textPosition <= start) {
                     int offset = start - textPosition;
                     int length;
@@ -947,12 +1934,509 @@ class ParagraphDecorateCmd extends AbstractCommand<PieceTable> {
         return start <= pieceEndPosition && (end >= pieceEndPosition || end >= textPosition);
     }
 
+    @Override
+    public long getRetainedSize() {
+        return SHALLOW_SIZE + sizeOf(newPieces) + sizeOf(oldPieces);
+    }
+
+    @Override
+    void write(PieceTableCommandCodec codec, DataOutput out) throws IOException {
+        out.writeInt(start);
+        out.writeInt(end);
+        codec.writeDecoration(paragraphDecoration, out);
+        out.writeBoolean(execSuccess);
+        out.writeInt(pieceIndex);
+        codec.writePieces(newPieces, out);
+        codec.writePieces(oldPieces, out);
+    }
+
+    static ParagraphDecorateCmd read(PieceTableCommandCodec codec, DataInput in) throws IOException {
+        ParagraphDecorateCmd cmd = new ParagraphDecorateCmd(in.readInt(), in.readInt(), (ParagraphDecoration) codec.readDecoration(in));
+        cmd.execSuccess = in.readBoolean();
+        cmd.pieceIndex = in.readInt();
+        cmd.newPieces = codec.readPieces(in);
+        cmd.oldPieces = codec.readPieces(in);
+        return cmd;
+    }
+
     @Override
     public String toString() {
         return "ParagraphDecorateCmd[" + start + " x " + end + "]";
     }
 }
 
+class SwapPiecesCmd extends AbstractPTCmd {
+
+    private final List<Piece> newPieces;
+    private final int newTextLength;
+
+    private List<Piece> oldPieces;
+    private int oldTextLength;
+
+    /**
+     * Replaces all the pieces at once
+     * @param newPieces the new pieces, like the ones of a checkpoint, this command doesn't modify the list
+     * @param newTextLength text length of the new pieces
+     */
+    SwapPiecesCmd(List<Piece> newPieces, int newTextLength) {
+        this.newPieces = Objects.requireNonNull(newPieces);
+        this.newTextLength = newTextLength;
+    }
+
+    @Override
+    protected void doUndo(PieceTable pt) {
+        if (oldPieces != null) {
+            pt.replacePieces(0, pt.pieces.size(), oldPieces);
+            pt.textLengthProperty.set(oldTextLength);
+            pt.fire(new TextBuffer.ResetEvent(oldTextLength));
+        }
+    }
+
+    @Override
+    protected void doRedo(PieceTable pt) {
+        oldPieces = new ArrayList<>(pt.pieces);
+        oldTextLength = pt.getTextLength();
+        pt.replacePieces(0, pt.pieces.size(), newPieces);
+        pt.textLengthProperty.set(newTextLength);
+        pt.fire(new TextBuffer.ResetEvent(newTextLength));
+    }
+
+    // the new pieces may be shared, with a checkpoint for instance
+    @Override
+    public long getRetainedSize() {
+        return SHALLOW_SIZE + sizeOf(oldPieces);
+    }
+
+    @Override
+    void write(PieceTableCommandCodec codec, DataOutput out) throws IOException {
+        codec.writePieces(newPieces, out);
+        out.writeInt(newTextLength);
+        codec.writePieces(oldPieces, out);
+        out.writeInt(oldTextLength);
+    }
+
+    static SwapPiecesCmd read(PieceTableCommandCodec codec, DataInput in) throws IOException {
+        SwapPiecesCmd cmd = new SwapPiecesCmd(codec.readPieces(in), in.readInt());
+        cmd.oldPieces = codec.readPieces(in);
+        cmd.oldTextLength = in.readInt();
+        return cmd;
+    }
+
+    @Override
+    public String toString() {
+        return "SwapPiecesCmd[" + newPieces.size() + " pieces, " + newTextLength + "]";
+    }
+}
+
+/**
+ * Edits several sorted and disjoint ranges of the text as a single command, like the ones of
+ * multiple carets. The ranges are edited from the last one to the first one, so the positions of
+ * the ones left don't move, and all of them are notified with a single {@link TextBuffer.RangesEvent}
+ * once they are done. Only the pieces replaced at each range are kept to undo it.
+ */
+abstract class RangesCmd extends AbstractPTCmd {
+
+    final int[] starts;
+    final int[] ends;
+
+    // per range: the index of the first replaced piece, or -1 if the range was skipped, the offset
+    // of the range within that piece, the replaced pieces, and the number of pieces that replaced them
+    int[] pieceIndices;
+    int[] offsets;
+    List<List<Piece>> oldPieces;
+    int[] newPieceCounts;
+
+    RangesCmd(int[] starts, int[] ends) {
+        this.starts = Objects.requireNonNull(starts);
+        this.ends = Objects.requireNonNull(ends);
+    }
+
+    // true if the range at index i is left as it is
+    abstract boolean skips(int i);
+
+    // replaces the old pieces at index, split at the range, and returns the number of new pieces
+    abstract int editRange(PieceTable pt, int i, int index, List<Piece> old, Piece before, Piece after);
+
+    // restores the old pieces of the range
+    abstract void undoRange(PieceTable pt, int i);
+
+    // updates the text length, and fires the event with the changes of all the ranges, done or undone
+    abstract void fireChanges(PieceTable pt, boolean undone);
+
+    @Override
+    protected void doUndo(PieceTable pt) {
+        if (pieceIndices != null) {
+            // in the reverse order of the edits
+            for (int i = 0; i < starts.length; i++) {
+                if (pieceIndices[i] >= 0) {
+                    undoRange(pt, i);
+                }
+            }
+            fireChanges(pt, true);
+        }
+    }
+
+    @Override
+    protected void doRedo(PieceTable pt) {
+        pieceIndices = new int[starts.length];
+        offsets = new int[starts.length];
+        newPieceCounts = new int[starts.length];
+        oldPieces = new ArrayList<>(Collections.nCopies(starts.length, List.of()));
+        // index of the piece that contains the start of the range, and its text position
+        int index = pt.pieces.size();
+        int textPosition = pt.getTextLength();
+        for (int i = starts.length - 1; i >= 0; i--) {
+            while (textPosition > starts[i]) {
+                index--;
+                textPosition -= pt.pieces.get(index).length;
+            }
+            // an edit at the same position may have left a piece that ends at the start
+            while (index < pt.pieces.size() && textPosition + pt.pieces.get(index).length <= starts[i]) {
+                textPosition += pt.pieces.get(index).length;
+                index++;
+            }
+            if (skips(i)) {
+                pieceIndices[i] = -1;
+                continue;
+            }
+            int last = index;
+            int lastEnd = textPosition;
+            while (last < pt.pieces.size() && (lastEnd < ends[i] || (last == index && textPosition < starts[i]))) {
+                lastEnd += pt.pieces.get(last).length;
+                last++;
+            }
+            List<Piece> old = new ArrayList<>(pt.pieces.subList(index, last));
+            int offset = starts[i] - textPosition;
+            Piece before = offset > 0 ? old.get(0).pieceBefore(offset) : null;
+            Piece after = lastEnd > ends[i] ? old.get(old.size() - 1).pieceFrom(old.get(old.size() - 1).length - (lastEnd - ends[i])) : null;
+            pieceIndices[i] = index;
+            offsets[i] = offset;
+            oldPieces.set(i, old);
+            newPieceCounts[i] = editRange(pt, i, index, old, before, after);
+        }
+        fireChanges(pt, false);
+    }
+
+    /**
+     * Creates the event of the text edits of the ranges. Each one is notified on the text made of the
+     * new text up to the end of the range, followed by the old text after the range, that is made of
+     * the unchanged sections of the new text and of the text removed from the next ranges
+     * @param text the text after the edits
+     * @param positions the position of each range within the new text
+     * @param removed the text removed from each range, or null if the range was skipped
+     * @param inserted the text inserted at each range
+     */
+    static TextBuffer.RangesEvent editsEvent(CharSequence text, int[] positions, String[] removed, String[] inserted) {
+        List<CharSequence> sections = new ArrayList<>();
+        List<int[]> bounds = new ArrayList<>();
+        int[] oldEnds = new int[positions.length];
+        int position = 0;
+        int oldPosition = 0;
+        for (int i = 0; i < positions.length; i++) {
+            if (removed[i] == null) {
+                continue;
+            }
+            sections.add(text);
+            bounds.add(new int[] {position, positions[i] - position});
+            sections.add(removed[i]);
+            bounds.add(new int[] {0, removed[i].length()});
+            oldPosition += positions[i] - position + removed[i].length();
+            oldEnds[i] = oldPosition;
+            position = positions[i] + inserted[i].length();
+        }
+        sections.add(text);
+        bounds.add(new int[] {position, text.length() - position});
+        CharSequence oldText = new SplicedCharSequence(sections.toArray(new CharSequence[0]),
+                bounds.stream().mapToInt(b -> b[0]).toArray(), bounds.stream().mapToInt(b -> b[1]).toArray());
+
+        List<TextBuffer.Event> events = new ArrayList<>();
+        List<CharSequence> texts = new ArrayList<>();
+        for (int i = 0; i < positions.length; i++) {
+            if (removed[i] == null) {
+                continue;
+            }
+            if (!removed[i].isEmpty()) {
+                events.add(new TextBuffer.DeleteEvent(positions[i], removed[i].length()));
+                texts.add(SplicedCharSequence.splice(text, positions[i], oldText, oldEnds[i]));
+            }
+            if (!inserted[i].isEmpty()) {
+                events.add(new TextBuffer.InsertEvent(inserted[i], positions[i]));
+                texts.add(SplicedCharSequence.splice(text, positions[i] + inserted[i].length(), oldText, oldEnds[i]));
+            }
+        }
+        return new TextBuffer.RangesEvent(events, texts);
+    }
+
+    // the text of the range within the given pieces, that start at offsets[i] before the range
+    String getOldText(int i) {
+        StringBuilder sb = new StringBuilder(ends[i] - starts[i]);
+        int from = offsets[i];
+        for (Piece piece : oldPieces.get(i)) {
+            int to = Math.min(piece.length, from + ends[i] - starts[i] - sb.length());
+            if (from < to) {
+                piece.appendText(sb, from, to);
+            }
+            from = Math.max(0, from - piece.length);
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public long getRetainedSize() {
+        long size = SHALLOW_SIZE + 24L * starts.length;
+        if (oldPieces != null) {
+            for (List<Piece> pieces : oldPieces) {
+                size += sizeOf(pieces);
+            }
+        }
+        return size;
+    }
+
+    void writeRanges(DataOutput out) throws IOException {
+        out.writeInt(starts.length);
+        for (int i = 0; i < starts.length; i++) {
+            out.writeInt(starts[i]);
+            out.writeInt(ends[i]);
+        }
+    }
+
+    static int[][] readRanges(DataInput in) throws IOException {
+        int[][] ranges = new int[2][in.readInt()];
+        for (int i = 0; i < ranges[0].length; i++) {
+            ranges[0][i] = in.readInt();
+            ranges[1][i] = in.readInt();
+        }
+        return ranges;
+    }
+
+    void writeEdits(PieceTableCommandCodec codec, DataOutput out) throws IOException {
+        out.writeBoolean(pieceIndices != null);
+        if (pieceIndices != null) {
+            for (int i = 0; i < starts.length; i++) {
+                out.writeInt(pieceIndices[i]);
+                out.writeInt(offsets[i]);
+                out.writeInt(newPieceCounts[i]);
+                codec.writePieces(oldPieces.get(i), out);
+            }
+        }
+    }
+
+    void readEdits(PieceTableCommandCodec codec, DataInput in) throws IOException {
+        if (in.readBoolean()) {
+            pieceIndices = new int[starts.length];
+            offsets = new int[starts.length];
+            newPieceCounts = new int[starts.length];
+            oldPieces = new ArrayList<>(starts.length);
+            for (int i = 0; i < starts.length; i++) {
+                pieceIndices[i] = in.readInt();
+                offsets[i] = in.readInt();
+                newPieceCounts[i] = in.readInt();
+                oldPieces.add(codec.readPieces(in));
+            }
+        }
+    }
+}
+
+class ReplaceRangesCmd extends RangesCmd {
+
+    private final String text;
+    private int additionStart = -1;
+
+    /**
+     * Replaces each range with the same text, that is added once to the addition buffer
+     * @param starts the start of each range, inclusive
+     * @param ends the end of each range, exclusive
+     * @param text the text that replaces each range, or an empty text to delete them
+     */
+    ReplaceRangesCmd(int[] starts, int[] ends, String text) {
+        super(starts, ends);
+        this.text = Objects.requireNonNull(text);
+    }
+
+    @Override
+    boolean skips(int i) {
+        return starts[i] == ends[i] && text.isEmpty();
+    }
+
+    @Override
+    protected void doRedo(PieceTable pt) {
+        if (additionStart < 0 && !text.isEmpty()) {
+            // the text is added once, and redoing uses it again
+            additionStart = pt.additionBuffer.append(text);
+        }
+        super.doRedo(pt);
+    }
+
+    @Override
+    int editRange(PieceTable pt, int i, int index, List<Piece> old, Piece before, Piece after) {
+        // like typing, the text takes the decoration of the char before it
+        // and the paragraph decoration of the char after it
+        Piece previous = before != null ? before : index > 0 ? pt.pieces.get(index - 1) : null;
+        Decoration decoration = previous == null ? pt.previousPieceDecoration(0) :
+                previous.getDecoration() instanceof TextDecoration ?
+                previous.getDecoration() : TextDecoration.builder().presets().build();
+        ParagraphDecoration paragraphDecoration = index < pt.pieces.size() ?
+                pt.pieces.get(index).getParagraphDecoration() : pt.previousPieceParagraphDecoration(pt.pieces.size());
+
+        List<Piece> kept = new ArrayList<>(2);
+        if (before != null) {
+            kept.add(before);
+        }
+        if (after != null) {
+            kept.add(after);
+        }
+        pt.replacePieces(index, old.size(), kept);
+        if (text.isEmpty()) {
+            return kept.size();
+        }
+        pt.pieces.add(index + (before != null ? 1 : 0),
+                new Piece(pt, Piece.BufferType.ADDITION, additionStart, text.length(), decoration, paragraphDecoration));
+        return kept.size() + 1;
+    }
+
+    @Override
+    void undoRange(PieceTable pt, int i) {
+        int keptCount = newPieceCounts[i];
+        if (!text.isEmpty()) {
+            pt.pieces.remove(pieceIndices[i] + (offsets[i] > 0 ? 1 : 0));
+            keptCount--;
+        }
+        pt.replacePieces(pieceIndices[i], keptCount, oldPieces.get(i));
+    }
+
+    @Override
+    void fireChanges(PieceTable pt, boolean undone) {
+        int[] positions = new int[starts.length];
+        String[] removed = new String[starts.length];
+        String[] inserted = new String[starts.length];
+        int delta = 0;
+        for (int i = 0; i < starts.length; i++) {
+            if (pieceIndices[i] < 0) {
+                continue;
+            }
+            String oldText = getOldText(i);
+            // undone, the ranges are back at their positions
+            positions[i] = undone ? starts[i] : starts[i] + delta;
+            removed[i] = undone ? text : oldText;
+            inserted[i] = undone ? oldText : text;
+            delta += text.length() - oldText.length();
+        }
+        pt.textLengthProperty.set(pt.getTextLength() + (undone ? -delta : delta));
+        pt.fire(editsEvent(pt.getCharSequence(), positions, removed, inserted));
+    }
+
+    @Override
+    public long getRetainedSize() {
+        return super.getRetainedSize() + sizeOf(text);
+    }
+
+    @Override
+    void write(PieceTableCommandCodec codec, DataOutput out) throws IOException {
+        writeRanges(out);
+        codec.writeText(text, out);
+        out.writeInt(additionStart);
+        writeEdits(codec, out);
+    }
+
+    static ReplaceRangesCmd read(PieceTableCommandCodec codec, DataInput in) throws IOException {
+        int[][] ranges = readRanges(in);
+        ReplaceRangesCmd cmd = new ReplaceRangesCmd(ranges[0], ranges[1], codec.readText(in));
+        cmd.additionStart = in.readInt();
+        cmd.readEdits(codec, in);
+        return cmd;
+    }
+
+    @Override
+    public String toString() {
+        return "ReplaceRangesCmd[\"" + text + "\" at " + starts.length + " ranges]";
+    }
+}
+
+class DecorateRangesCmd extends RangesCmd {
 
+    private final TextDecoration decoration;
 
+    /**
+     * Adds the same text decoration to each range
+     * @param starts the start of each range, inclusive
+     * @param ends the end of each range, exclusive
+     * @param decoration decoration to apply
+     */
+    DecorateRangesCmd(int[] starts, int[] ends, TextDecoration decoration) {
+        super(starts, ends);
+        this.decoration = Objects.requireNonNull(decoration);
+    }
 
+    @Override
+    boolean skips(int i) {
+        return starts[i] == ends[i];
+    }
+
+    @Override
+    int editRange(PieceTable pt, int i, int index, List<Piece> old, Piece before, Piece after) {
+        List<Piece> newPieces = new ArrayList<>(old.size() + 2);
+        if (before != null) {
+            newPieces.add(before);
+        }
+        int textPosition = starts[i] - offsets[i];
+        for (Piece piece : old) {
+            int from = Math.max(starts[i], textPosition);
+            int to = Math.min(ends[i], textPosition + piece.length);
+            newPieces.add(piece.copy(piece.start + from - textPosition, to - from, decoration));
+            textPosition += piece.length;
+        }
+        if (after != null) {
+            newPieces.add(after);
+        }
+        pt.replacePieces(index, old.size(), newPieces);
+        return newPieces.size();
+    }
+
+    @Override
+    void undoRange(PieceTable pt, int i) {
+        pt.replacePieces(pieceIndices[i], newPieceCounts[i], oldPieces.get(i));
+    }
+
+    @Override
+    void fireChanges(PieceTable pt, boolean undone) {
+        List<TextBuffer.Event> events = new ArrayList<>();
+        for (int i = 0; i < starts.length; i++) {
+            if (pieceIndices[i] < 0) {
+                continue;
+            }
+            if (!undone) {
+                events.add(new TextBuffer.DecorateEvent(starts[i], ends[i], decoration));
+                continue;
+            }
+            // the restored decorations of the range
+            int textPosition = starts[i] - offsets[i];
+            for (Piece piece : oldPieces.get(i)) {
+                events.add(new TextBuffer.DecorateEvent(Math.max(starts[i], textPosition),
+                        Math.min(ends[i], textPosition + piece.length), piece.decoration));
+                textPosition += piece.length;
+            }
+        }
+        // decorations don't change the text
+        CharSequence text = pt.getCharSequence();
+        pt.fire(new TextBuffer.RangesEvent(events, Collections.nCopies(events.size(), text)));
+    }
+
+    @Override
+    void write(PieceTableCommandCodec codec, DataOutput out) throws IOException {
+        writeRanges(out);
+        codec.writeDecoration(decoration, out);
+        writeEdits(codec, out);
+    }
+
+    static DecorateRangesCmd read(PieceTableCommandCodec codec, DataInput in) throws IOException {
+        int[][] ranges = readRanges(in);
+        DecorateRangesCmd cmd = new DecorateRangesCmd(ranges[0], ranges[1], (TextDecoration) codec.readDecoration(in));
+        cmd.readEdits(codec, in);
+        return cmd;
+    }
+
+    @Override
+    public String toString() {
+        return "DecorateRangesCmd[" + starts.length + " ranges]";
+    }
+}
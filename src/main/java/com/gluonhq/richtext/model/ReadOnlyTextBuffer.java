@@ -0,0 +1,367 @@
+package com.gluonhq.richtext.model;
+
+import com.gluonhq.richtext.Selection;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.text.CharacterIterator;
+import java.text.StringCharacterIterator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Immutable text buffer, for a text that is shown but never edited.
+ * <p>
+ * The text is kept in a single string, and its decorations as runs of chars, stored in arrays, where equal
+ * decorations share a single instance. There is no addition buffer, no pieces and no undo history, so it
+ * takes a fraction of the memory of a {@link PieceTable} with the same document. The decorations of a range
+ * are found with a binary search, so only the paragraphs that are shown are ever styled.
+ * <p>
+ * All the methods that would change the text throw an {@link UnsupportedOperationException}.
+ */
+public final class ReadOnlyTextBuffer extends AbstractTextBuffer {
+
+    private static final TextBuffer.Checkpoint CHECKPOINT = new TextBuffer.Checkpoint() {};
+
+    private final String text;
+    // run i covers the chars from runStarts[i], inclusive, to runStarts[i + 1], exclusive
+    private final int[] runStarts;
+    private final Decoration[] decorations;
+    private final ParagraphDecoration[] paragraphDecorations;
+    private List<Integer> lineFeeds;
+
+    /**
+     * Creates a read only buffer with the text and decorations of a document
+     * @param document model with decorated text
+     */
+    public ReadOnlyTextBuffer(Document document) {
+        String documentText = Objects.requireNonNull(Objects.requireNonNull(document).getText());
+        List<DecorationModel> decorationModels = document.getDecorations() == null ?
+                List.of(new DecorationModel(0, documentText.length(), null, null)) : document.getDecorations();
+
+        Map<Decoration, Decoration> interned = new HashMap<>();
+        StringBuilder sb = null;
+        int[] starts = new int[decorationModels.size() + 1];
+        Decoration[] runDecorations = new Decoration[decorationModels.size()];
+        ParagraphDecoration[] runParagraphDecorations = new ParagraphDecoration[decorationModels.size()];
+        int runs = 0;
+        int length = 0;
+        for (DecorationModel decorationModel : decorationModels) {
+            if (decorationModel.getLength() <= 0) {
+                continue;
+            }
+            if (sb == null && decorationModel.getStart() != length) {
+                // the runs are not in the order of the text of the document
+                sb = new StringBuilder(documentText.substring(0, length));
+            }
+            if (sb != null) {
+                sb.append(documentText, decorationModel.getStart(), decorationModel.getStart() + decorationModel.getLength());
+            }
+            Decoration decoration = decorationModel.getDecoration() == null ?
+                    TextDecoration.builder().presets().build() : decorationModel.getDecoration();
+            decoration = interned.computeIfAbsent(decoration, d -> d);
+            ParagraphDecoration paragraphDecoration = decorationModel.getParagraphDecoration() == null ? null :
+                    (ParagraphDecoration) interned.computeIfAbsent(decorationModel.getParagraphDecoration(), d -> d);
+            if (runs > 0 && decoration instanceof TextDecoration && decoration == runDecorations[runs - 1] &&
+                    paragraphDecoration == runParagraphDecorations[runs - 1]) {
+                // images are always one char long, each one needs its own run
+                length += decorationModel.getLength();
+                continue;
+            }
+            starts[runs] = length;
+            runDecorations[runs] = decoration;
+            runParagraphDecorations[runs] = paragraphDecoration;
+            runs++;
+            length += decorationModel.getLength();
+        }
+        starts[runs] = length;
+        this.text = sb != null ? sb.toString() : documentText.substring(0, length);
+        this.runStarts = Arrays.copyOf(starts, runs + 1);
+        this.decorations = Arrays.copyOf(runDecorations, runs);
+        this.paragraphDecorations = Arrays.copyOf(runParagraphDecorations, runs);
+        textLengthProperty.set(length);
+    }
+
+    @Override
+    public boolean isReadOnly() {
+        return true;
+    }
+
+    @Override
+    public String getText() {
+        return text;
+    }
+
+    @Override
+    public String getText(int start, int end) {
+        if (!PieceTable.inRange(start, 0, getTextLength())) {
+            throw new IllegalArgumentException("Start index is not in range");
+        }
+        if (end < 0) {
+            throw new IllegalArgumentException("End index is not in range");
+        }
+        return text.substring(start, Math.max(start, Math.min(end, getTextLength())));
+    }
+
+    @Override
+    public List<DecorationModel> getDecorationModelList() {
+        List<DecorationModel> decorationModels = new ArrayList<>(decorations.length);
+        for (int i = 0; i < decorations.length; i++) {
+            decorationModels.add(new DecorationModel(runStarts[i], runStarts[i + 1] - runStarts[i], decorations[i], paragraphDecorations[i]));
+        }
+        return decorationModels;
+    }
+
+    @Override
+    public int getDecorationRunCount() {
+        return decorations.length;
+    }
+
+    @Override
+    public Document getDocument(int start, int end) {
+        if (start < 0 || start > end || end > getTextLength()) {
+            throw new IllegalArgumentException("Range [" + start + ", " + end + ") is not within [0, " + getTextLength() + "]");
+        }
+        List<DecorationModel> decorationModels = new ArrayList<>();
+        for (int i = start < end ? runAt(start) : decorations.length; i < decorations.length && runStarts[i] < end; i++) {
+            int from = Math.max(start, runStarts[i]);
+            int to = Math.min(end, runStarts[i + 1]);
+            decorationModels.add(new DecorationModel(from - start, to - from, decorations[i], paragraphDecorations[i]));
+        }
+        return new Document(text.substring(start, end), decorationModels, 0);
+    }
+
+    @Override
+    public CharacterIterator getCharacterIterator() {
+        return new StringCharacterIterator(text);
+    }
+
+    @Override
+    public char charAt(int pos) {
+        return text.charAt(pos);
+    }
+
+    @Override
+    public List<Integer> getLineFeeds() {
+        if (lineFeeds == null) {
+            List<Integer> list = new ArrayList<>();
+            for (int i = text.indexOf('\n'); i >= 0; i = text.indexOf('\n', i + 1)) {
+                list.add(i);
+            }
+            lineFeeds = Collections.unmodifiableList(list);
+        }
+        return lineFeeds;
+    }
+
+    @Override
+    public void resetCharacterIterator() {
+        // the text never changes
+    }
+
+    @Override
+    public void insert(String text, int insertPosition) {
+        throw readOnly();
+    }
+
+    @Override
+    public void insert(Document document, int insertPosition) {
+        throw readOnly();
+    }
+
+    @Override
+    public void append(String text) {
+        throw readOnly();
+    }
+
+    @Override
+    public void delete(int deletePosition, int length) {
+        throw readOnly();
+    }
+
+    @Override
+    public void decorate(int start, int end, Decoration decoration) {
+        throw readOnly();
+    }
+
+    @Override
+    public void replace(int[] starts, int[] ends, String text) {
+        throw readOnly();
+    }
+
+    @Override
+    public void decorate(List<Selection> ranges, TextDecoration decoration) {
+        throw readOnly();
+    }
+
+    @Override
+    public void undo() {
+        throw readOnly();
+    }
+
+    @Override
+    public void redo() {
+        throw readOnly();
+    }
+
+    @Override
+    public Delta recordChange(Runnable edits) {
+        throw readOnly();
+    }
+
+    @Override
+    public void undo(Delta delta) {
+        throw readOnly();
+    }
+
+    @Override
+    public void redo(Delta delta) {
+        throw readOnly();
+    }
+
+    @Override
+    public void coalesce(Delta delta, Delta next) {
+        throw readOnly();
+    }
+
+    @Override
+    public void writeDelta(Delta delta, DataOutput out) {
+        throw readOnly();
+    }
+
+    @Override
+    public Delta readDelta(DataInput in) {
+        throw readOnly();
+    }
+
+    @Override
+    public Checkpoint createCheckpoint() {
+        return CHECKPOINT;
+    }
+
+    /**
+     * The content never changes, so reverting to a checkpoint of this buffer does nothing
+     * @param checkpoint checkpoint created by this buffer
+     * @throws IllegalArgumentException if the checkpoint was created by another buffer
+     */
+    @Override
+    public void revert(Checkpoint checkpoint) {
+        if (checkpoint != CHECKPOINT) {
+            throw new IllegalArgumentException("Checkpoint was not created by this buffer: " + checkpoint);
+        }
+    }
+
+    @Override
+    public void writeCheckpoint(Checkpoint checkpoint, DataOutput out) {
+        if (checkpoint != CHECKPOINT) {
+            throw new IllegalArgumentException("Checkpoint was not created by this buffer: " + checkpoint);
+        }
+        // there is a single checkpoint, so there is nothing to write
+    }
+
+    @Override
+    public Checkpoint readCheckpoint(DataInput in) {
+        return CHECKPOINT;
+    }
+
+    @Override
+    public CharSequence getCharSequence() {
+        return text;
+    }
+
+    @Override
+    public Selection find(SearchQuery query, int position, boolean forward) {
+        Finder finder = Finder.of(query);
+        return forward ? finder.findNext(text, position, text.length()) : finder.findPrevious(text, 0, position);
+    }
+
+    @Override
+    public List<Selection> findAll(SearchQuery query) {
+        return Finder.of(query).findAll(text, 0, text.length());
+    }
+
+    @Override
+    public List<Selection> findAll(SearchQuery query, Selection region) {
+        if (!region.isDefined()) {
+            return findAll(query);
+        }
+        return Finder.of(query).findAll(text, region.getStart(), region.getEnd());
+    }
+
+    @Override
+    public CompletableFuture<List<Selection>> findAllInParallel(SearchQuery query, Consumer<List<Selection>> onMatches) {
+        return new ParallelFinder(query, text, ParallelFinder.DEFAULT_CHUNK_SIZE, onMatches)
+                .start(ForkJoinPool.commonPool());
+    }
+
+    @Override
+    public int replaceAll(SearchQuery query, String replacement) {
+        throw readOnly();
+    }
+
+    /**
+     * Walks through the runs of the range only, one fragment per run
+     * @param onFragment callback to get fragment info
+     * @param start the initial position of the fragment
+     * @param end the end position of the fragment (not included)
+     */
+    @Override
+    public void walkFragments(BiConsumer<String, Decoration> onFragment, int start, int end) {
+        if (start >= end || start >= getTextLength()) {
+            return;
+        }
+        for (int i = runAt(Math.max(0, start)); i < decorations.length && runStarts[i] < end; i++) {
+            int from = Math.max(start, runStarts[i]);
+            int to = Math.min(end, runStarts[i + 1]);
+            if (from < to) {
+                onFragment.accept(text.substring(from, to), decorations[i]);
+            }
+        }
+    }
+
+    @Override
+    public Decoration getDecorationAtCaret(int caretPosition) {
+        if (0 < caretPosition && caretPosition <= getTextLength()) {
+            return decorations[runAt(caretPosition - 1)];
+        }
+        return decorations.length == 0 || !(decorations[decorations.length - 1] instanceof TextDecoration) ?
+                TextDecoration.builder().presets().build() : decorations[decorations.length - 1];
+    }
+
+    @Override
+    public void setDecorationAtCaret(TextDecoration decoration) {
+        // only used for the text typed at the caret
+    }
+
+    @Override
+    public ParagraphDecoration getParagraphDecorationAtCaret(int caretPosition) {
+        if (0 <= caretPosition && caretPosition < getTextLength()) {
+            return paragraphDecorations[runAt(caretPosition)];
+        }
+        return decorations.length == 0 ?
+                ParagraphDecoration.builder().presets().build() : paragraphDecorations[decorations.length - 1];
+    }
+
+    // index of the run that contains the position, that must be within the text
+    private int runAt(int position) {
+        int index = Arrays.binarySearch(runStarts, 0, decorations.length, position);
+        return index >= 0 ? index : -index - 2;
+    }
+
+    private static UnsupportedOperationException readOnly() {
+        return new UnsupportedOperationException("The text buffer is read only");
+    }
+
+    @Override
+    public String toString() {
+        return "ReadOnlyTextBuffer{" + decorations.length + " runs, " + getTextLength() + " chars}";
+    }
+}
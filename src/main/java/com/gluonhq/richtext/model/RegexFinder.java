@@ -0,0 +1,89 @@
+package com.gluonhq.richtext.model;
+
+import com.gluonhq.richtext.Selection;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.regex.Matcher;
+
+/**
+ * Regular expression search, that runs the {@link java.util.regex.Matcher} straight on the
+ * given text, so a {@link PieceCharSequence} is scanned without copying the document.
+ * The matcher only sees a window with the search range and {@link SearchQuery#getContextLength()}
+ * chars around it, which lookbehind, lookahead and boundaries can read but matches can't include.
+ * Empty matches are ignored.
+ */
+final class RegexFinder implements Finder {
+
+    // initial length of the range scanned backwards, that doubles until a match is found
+    private static final int BACKWARD_STEP = 1024;
+
+    private final SearchQuery query;
+
+    RegexFinder(SearchQuery query) {
+        this.query = Objects.requireNonNull(query);
+        if (!query.isRegex()) {
+            throw new IllegalArgumentException("Not a regular expression query: " + query);
+        }
+    }
+
+    @Override
+    public Selection findNext(CharSequence text, int from, int to) {
+        List<Selection> matches = scan(text, from, to, 1);
+        return matches.isEmpty() ? Selection.UNDEFINED : matches.get(0);
+    }
+
+    @Override
+    public Selection findPrevious(CharSequence text, int from, int to) {
+        from = Math.max(from, 0);
+        to = Math.min(to, text.length());
+        int length = BACKWARD_STEP;
+        int start = to;
+        while (start > from) {
+            start = Math.max(from, to - length);
+            List<Selection> matches = scan(text, start, to, Integer.MAX_VALUE);
+            if (!matches.isEmpty()) {
+                return matches.get(matches.size() - 1);
+            }
+            length *= 2;
+        }
+        return Selection.UNDEFINED;
+    }
+
+    @Override
+    public List<Selection> findAll(CharSequence text, int from, int to) {
+        return scan(text, from, to, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Regular expressions can match texts of any length, so this is bounded by the context length
+     */
+    @Override
+    public int getMaxMatchLength() {
+        return query.getContextLength();
+    }
+
+    private List<Selection> scan(CharSequence text, int from, int to, int limit) {
+        List<Selection> matches = new ArrayList<>();
+        from = Math.max(from, 0);
+        to = Math.min(to, text.length());
+        if (from >= to) {
+            return matches;
+        }
+        int windowStart = Math.max(0, from - query.getContextLength());
+        int windowEnd = Math.min(text.length(), to + query.getContextLength());
+        Matcher matcher = query.getPattern().matcher(text.subSequence(windowStart, windowEnd))
+                .region(from - windowStart, to - windowStart)
+                .useTransparentBounds(true)
+                .useAnchoringBounds(false);
+        while (matches.size() < limit && matcher.find()) {
+            int start = windowStart + matcher.start();
+            int end = windowStart + matcher.end();
+            if (start < end && (!query.isWholeWord() || Finder.isWholeWord(text, start, end))) {
+                matches.add(new Selection(start, end));
+            }
+        }
+        return matches;
+    }
+}
@@ -0,0 +1,397 @@
+package com.gluonhq.richtext.model;
+
+import com.gluonhq.richtext.Selection;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Optional trigram index of the text of a {@link TextBuffer}, that makes repeated literal searches
+ * on large documents faster than scanning the whole text.
+ * <p>
+ * The text is split in blocks, and the index keeps, for each trigram, the set of blocks where it
+ * starts. A query of at least three chars can only match at the start of a block that contains its
+ * first trigram, and whose following blocks contain the rest, so only those candidate blocks are
+ * verified against the buffer.
+ * <p>
+ * The index is updated on each change of the buffer, by resizing the edited blocks and adding the
+ * new trigrams. Trigrams that are no longer in the text are only removed when the index is rebuilt,
+ * on a worker thread, once enough text has been edited. Until the first build is done, and for queries
+ * the index can't answer, like regular expressions or shorter texts, searches scan the buffer.
+ * <p>
+ * The index must be used from the thread that edits the buffer, and {@link #dispose() disposed} when
+ * no longer needed.
+ */
+public final class SearchIndex {
+
+    private static final Logger LOG = Logger.getLogger(SearchIndex.class.getName());
+
+    static final int BLOCK_SIZE = 1 << 14;
+
+    private final TextBuffer textBuffer;
+    private final int blockSize;
+    private final Consumer<TextBuffer.Event> changeListener = this::textChanged;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "search-index");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // guarded by this
+    private Trigrams trigrams;
+    private List<Edit> pendingEdits; // edits since the snapshot of the running build, if any
+    private int editedChars;
+    private int generation; // of the latest build
+    private CompletableFuture<Void> build = CompletableFuture.completedFuture(null);
+    private boolean disposed;
+
+    /**
+     * Creates the index of the buffer, that starts to be built in the background
+     * @param textBuffer the buffer to index
+     */
+    public SearchIndex(TextBuffer textBuffer) {
+        this(textBuffer, BLOCK_SIZE);
+    }
+
+    SearchIndex(TextBuffer textBuffer, int blockSize) {
+        this.textBuffer = Objects.requireNonNull(textBuffer);
+        this.blockSize = blockSize;
+        textBuffer.addChangeListener(changeListener);
+        rebuild();
+    }
+
+    /**
+     * @return true once the first build of the index is done
+     */
+    public synchronized boolean isReady() {
+        return trigrams != null;
+    }
+
+    // completes when the latest build is done, or replaced by a newer one
+    synchronized CompletableFuture<Void> getBuild() {
+        return build;
+    }
+
+    /**
+     * Finds all the matches of the query, like {@link TextBuffer#findAll(SearchQuery)}
+     * @param query the query to search
+     * @return the ranges of all the matches, that don't overlap, in order
+     */
+    public List<Selection> findAll(SearchQuery query) {
+        if (!query.isRegex() && query.getText().length() >= 3) {
+            synchronized (this) {
+                if (trigrams != null) {
+                    return trigrams.findAll(query, textBuffer.getCharSequence());
+                }
+            }
+        }
+        return textBuffer.findAll(query);
+    }
+
+    /**
+     * Stops updating the index, and releases its worker thread
+     */
+    public synchronized void dispose() {
+        disposed = true;
+        textBuffer.removeChangeListener(changeListener);
+        executor.shutdownNow();
+        trigrams = null;
+        pendingEdits = null;
+    }
+
+    private void textChanged(TextBuffer.Event event) {
+        if (event instanceof TextBuffer.RangesEvent) {
+            TextBuffer.RangesEvent rangesEvent = (TextBuffer.RangesEvent) event;
+            if (getEditedLength(rangesEvent) >= TextBuffer.LARGE_EDIT_LENGTH) {
+                // like a single large edit
+                reset();
+                return;
+            }
+            // each range is indexed on the text with the ranges before it changed, and the index is
+            // built again once they are all done, from the text after them
+            boolean rebuild = false;
+            for (int i = 0; i < rangesEvent.getEvents().size(); i++) {
+                rebuild |= textChanged(rangesEvent.getEvents().get(i), rangesEvent.getText(i));
+            }
+            if (rebuild) {
+                rebuild();
+            }
+        } else if (event instanceof TextBuffer.InsertEvent || event instanceof TextBuffer.DeleteEvent) {
+            if (textChanged(event, textBuffer.getCharSequence())) {
+                rebuild();
+            }
+        } else if (event instanceof TextBuffer.ResetEvent) {
+            reset();
+        }
+    }
+
+    // returns true if the index has to be built again
+    private boolean textChanged(TextBuffer.Event event, CharSequence text) {
+        if (event instanceof TextBuffer.InsertEvent) {
+            TextBuffer.InsertEvent insertEvent = (TextBuffer.InsertEvent) event;
+            return edit(insertEvent.getPosition(), 0, insertEvent.getText().length(), text);
+        } else if (event instanceof TextBuffer.DeleteEvent) {
+            TextBuffer.DeleteEvent deleteEvent = (TextBuffer.DeleteEvent) event;
+            return edit(deleteEvent.getPosition(), deleteEvent.getLength(), 0, text);
+        }
+        return false;
+    }
+
+    private static int getEditedLength(TextBuffer.RangesEvent rangesEvent) {
+        int length = 0;
+        for (TextBuffer.Event event : rangesEvent.getEvents()) {
+            if (event instanceof TextBuffer.InsertEvent) {
+                length += ((TextBuffer.InsertEvent) event).getText().length();
+            } else if (event instanceof TextBuffer.DeleteEvent) {
+                length += ((TextBuffer.DeleteEvent) event).getLength();
+            }
+        }
+        return length;
+    }
+
+    // the whole text is indexed again in the background, and searches scan the buffer meanwhile
+    private void reset() {
+        synchronized (this) {
+            trigrams = null;
+        }
+        rebuild();
+    }
+
+    // applies the edit to the index, and returns true if the index has to be built again
+    private boolean edit(int position, int removed, int inserted, CharSequence text) {
+        if (removed + inserted >= TextBuffer.LARGE_EDIT_LENGTH) {
+            // the trigrams of a large edit are found by a new build, instead of on this thread
+            reset();
+            return false;
+        }
+        Edit edit = new Edit(position, removed, inserted);
+        // the new trigrams are the ones that include inserted chars, or span the removed ones
+        int end = Math.min(position + inserted, text.length() - 2);
+        for (int i = Math.max(0, position - 2); i < end; i++) {
+            edit.add(key(text, i), i);
+        }
+        synchronized (this) {
+            if (disposed) {
+                return false;
+            }
+            if (trigrams != null) {
+                trigrams.apply(edit);
+            }
+            if (pendingEdits != null) {
+                pendingEdits.add(edit);
+            }
+            editedChars += removed + inserted;
+            return pendingEdits == null && trigrams != null &&
+                    (editedChars > Math.max(blockSize, text.length() / 4) || trigrams.getMaxBlockLength() > 4 * blockSize);
+        }
+    }
+
+    // builds a new index from a snapshot of the text, and replays the edits done since
+    private void rebuild() {
+        CharSequence snapshot = textBuffer.getCharSequence();
+        int buildGeneration;
+        CompletableFuture<Void> latestBuild = new CompletableFuture<>();
+        synchronized (this) {
+            if (disposed) {
+                return;
+            }
+            pendingEdits = new ArrayList<>();
+            editedChars = 0;
+            buildGeneration = ++generation;
+            build = latestBuild;
+        }
+        CompletableFuture.supplyAsync(() -> Trigrams.build(snapshot, blockSize), executor)
+                .whenComplete((index, throwable) -> {
+                    synchronized (this) {
+                        if (disposed || buildGeneration != generation) {
+                            // a newer build replaces this one
+                            return;
+                        }
+                        if (throwable != null) {
+                            LOG.log(Level.WARNING, "Error building search index", throwable);
+                        } else if (pendingEdits != null) {
+                            pendingEdits.forEach(index::apply);
+                            trigrams = index;
+                        }
+                        pendingEdits = null;
+                    }
+                })
+                .whenComplete((index, throwable) -> latestBuild.complete(null));
+    }
+
+    private static long key(CharSequence text, int position) {
+        return (long) fold(text.charAt(position)) << 32 |
+                (long) fold(text.charAt(position + 1)) << 16 |
+                fold(text.charAt(position + 2));
+    }
+
+    // trigrams are indexed case insensitive, so they also find case insensitive queries
+    private static char fold(char c) {
+        return Character.toLowerCase(Character.toUpperCase(c));
+    }
+
+    private static class Edit {
+
+        private final int position;
+        private final int removed;
+        private final int inserted;
+        private long[] keys = new long[4];
+        private int[] positions = new int[4];
+        private int size;
+
+        Edit(int position, int removed, int inserted) {
+            this.position = position;
+            this.removed = removed;
+            this.inserted = inserted;
+        }
+
+        void add(long key, int position) {
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, 2 * size);
+                positions = Arrays.copyOf(positions, 2 * size);
+            }
+            keys[size] = key;
+            positions[size] = position;
+            size++;
+        }
+    }
+
+    private static class Trigrams {
+
+        private final Map<Long, BitSet> blocksByTrigram = new HashMap<>();
+        private int[] blockLengths = new int[16];
+        private int blockCount;
+
+        static Trigrams build(CharSequence text, int blockSize) {
+            Trigrams trigrams = new Trigrams();
+            int length = text.length();
+            for (int start = 0; start < length || trigrams.blockCount == 0; start += blockSize) {
+                trigrams.addBlock(Math.min(blockSize, length - start));
+            }
+            for (int i = 0; i < length - 2; i++) {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new IllegalStateException("Search index build interrupted");
+                }
+                trigrams.add(key(text, i), i / blockSize);
+            }
+            return trigrams;
+        }
+
+        int getMaxBlockLength() {
+            int max = 0;
+            for (int i = 0; i < blockCount; i++) {
+                max = Math.max(max, blockLengths[i]);
+            }
+            return max;
+        }
+
+        void apply(Edit edit) {
+            // the removed chars are taken from the blocks where they are
+            int start = 0;
+            int remaining = edit.removed;
+            for (int block = 0; block < blockCount && remaining > 0; block++) {
+                int end = start + blockLengths[block];
+                if (end > edit.position) {
+                    int removed = Math.min(remaining, end - Math.max(start, edit.position));
+                    blockLengths[block] -= removed;
+                    remaining -= removed;
+                    end -= removed;
+                }
+                start = end;
+            }
+            // the inserted chars are added to the block where they are inserted
+            if (edit.inserted > 0) {
+                int block = blockAt(edit.position, true);
+                blockLengths[block] += edit.inserted;
+            }
+            for (int i = 0; i < edit.size; i++) {
+                add(edit.keys[i], blockAt(edit.positions[i], false));
+            }
+        }
+
+        List<Selection> findAll(SearchQuery query, CharSequence text) {
+            List<Selection> matches = new ArrayList<>();
+            String pattern = query.getText();
+            int m = pattern.length();
+            BitSet[] blocks = new BitSet[m - 2];
+            for (int i = 0; i < m - 2; i++) {
+                blocks[i] = blocksByTrigram.get(key(pattern, i));
+                if (blocks[i] == null) {
+                    return matches;
+                }
+            }
+            int[] blockStarts = new int[blockCount + 1];
+            for (int i = 0; i < blockCount; i++) {
+                blockStarts[i + 1] = blockStarts[i] + blockLengths[i];
+            }
+            Finder finder = Finder.of(query);
+            int lastEnd = 0;
+            for (int block = blocks[0].nextSetBit(0); block >= 0 && block < blockCount; block = blocks[0].nextSetBit(block + 1)) {
+                int blockStart = blockStarts[block];
+                int blockEnd = blockStarts[block + 1];
+                if (blockEnd <= Math.max(blockStart, lastEnd) || !isCandidate(blocks, block, blockStarts, m)) {
+                    continue;
+                }
+                int to = Math.min(text.length(), blockEnd + m - 1);
+                for (Selection match : finder.findAll(text, Math.max(blockStart, lastEnd), to)) {
+                    if (match.getStart() >= blockEnd) {
+                        break;
+                    }
+                    matches.add(match);
+                    lastEnd = match.getEnd();
+                }
+            }
+            return matches;
+        }
+
+        // a match that starts in the block has each of its trigrams in that block or in one of the next ones
+        private boolean isCandidate(BitSet[] blocks, int block, int[] blockStarts, int m) {
+            int lastBlock = block;
+            while (lastBlock + 1 < blockCount && blockStarts[lastBlock + 1] < blockStarts[block + 1] + m - 3) {
+                lastBlock++;
+            }
+            for (int i = 1; i < blocks.length; i++) {
+                int next = blocks[i].nextSetBit(block);
+                if (next < 0 || next > lastBlock) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void add(long key, int block) {
+            blocksByTrigram.computeIfAbsent(key, k -> new BitSet()).set(block);
+        }
+
+        private void addBlock(int length) {
+            if (blockCount == blockLengths.length) {
+                blockLengths = Arrays.copyOf(blockLengths, 2 * blockCount);
+            }
+            blockLengths[blockCount++] = length;
+        }
+
+        // block with the given position, or the block it ends when appending
+        private int blockAt(int position, boolean append) {
+            int start = 0;
+            for (int block = 0; block < blockCount; block++) {
+                int end = start + blockLengths[block];
+                if (position < end || (append && position == end && block == blockCount - 1)) {
+                    return block;
+                }
+                start = end;
+            }
+            return blockCount - 1;
+        }
+    }
+}
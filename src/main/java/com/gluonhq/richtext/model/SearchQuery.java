@@ -0,0 +1,142 @@
+package com.gluonhq.richtext.model;
+
+import java.util.Objects;
+import java.util.regex.Pattern;
+
+/**
+ * Describes what to search for in a {@link TextBuffer}
+ */
+public class SearchQuery {
+
+    private String text;
+    private boolean matchCase;
+    private boolean wholeWord;
+    private boolean regex;
+    private int contextLength;
+    private Pattern pattern;
+
+    private SearchQuery() {}
+
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * @return true if upper and lower case letters are different
+     */
+    public boolean isMatchCase() {
+        return matchCase;
+    }
+
+    /**
+     * @return true if matches must not be preceded or followed by a letter or digit
+     */
+    public boolean isWholeWord() {
+        return wholeWord;
+    }
+
+    /**
+     * @return true if the text is a {@link Pattern regular expression}
+     */
+    public boolean isRegex() {
+        return regex;
+    }
+
+    /**
+     * Searches limited to a region of the text still let regular expressions read a few chars
+     * around it, so lookbehind, lookahead and boundaries like {@code \b} or {@code ^} behave as in
+     * the whole text. This bounds how many chars before and after the region can be read.
+     * Parallel searches split the text in chunks that overlap by this length, so longer regular
+     * expression matches across chunks may not be found.
+     * @return the maximum number of chars read around a search region
+     */
+    public int getContextLength() {
+        return contextLength;
+    }
+
+    Pattern getPattern() {
+        return pattern;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        SearchQuery that = (SearchQuery) o;
+        return matchCase == that.matchCase && wholeWord == that.wholeWord && regex == that.regex &&
+                contextLength == that.contextLength && Objects.equals(text, that.text);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(text, matchCase, wholeWord, regex, contextLength);
+    }
+
+    @Override
+    public String toString() {
+        return "SearchQuery{\"" + text + "\"" +
+                (matchCase ? ", case" : "") +
+                (wholeWord ? ", word" : "") +
+                (regex ? ", regex" : "") + "}";
+    }
+
+    public static class Builder {
+
+        private String text = "";
+        private boolean matchCase;
+        private boolean wholeWord;
+        private boolean regex;
+        private int contextLength = 256;
+
+        private Builder() {}
+
+        /**
+         * @return the query
+         * @throws java.util.regex.PatternSyntaxException if the text is not a valid regular expression
+         */
+        public SearchQuery build() {
+            SearchQuery query = new SearchQuery();
+            query.text = this.text;
+            query.matchCase = this.matchCase;
+            query.wholeWord = this.wholeWord;
+            query.regex = this.regex;
+            query.contextLength = this.contextLength;
+            if (regex) {
+                query.pattern = Pattern.compile(text, matchCase ? 0 : Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+            }
+            return query;
+        }
+
+        public Builder text(String text) {
+            this.text = Objects.requireNonNull(text);
+            return this;
+        }
+
+        public Builder matchCase(boolean matchCase) {
+            this.matchCase = matchCase;
+            return this;
+        }
+
+        public Builder wholeWord(boolean wholeWord) {
+            this.wholeWord = wholeWord;
+            return this;
+        }
+
+        public Builder regex(boolean regex) {
+            this.regex = regex;
+            return this;
+        }
+
+        public Builder contextLength(int contextLength) {
+            if (contextLength < 0) {
+                throw new IllegalArgumentException("Context length can't be negative: " + contextLength);
+            }
+            this.contextLength = contextLength;
+            return this;
+        }
+    }
+}
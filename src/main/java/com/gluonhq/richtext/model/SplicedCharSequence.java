@@ -0,0 +1,89 @@
+package com.gluonhq.richtext.model;
+
+/**
+ * Read only view of sections of other texts, one after the other, like the text in the middle of an
+ * edit of several ranges, that is made of the text after the edit up to a range and the text before
+ * the edit after it. The chars are read from the given texts, that must not change. Sequential access
+ * is O(1), as the section of the last accessed char is cached, and random access is O(log n) on the
+ * number of sections.
+ */
+final class SplicedCharSequence implements CharSequence {
+
+    private final CharSequence[] texts;
+    private final int[] textStarts; // position of each section within its text
+    private final int[] starts;     // position of each section within this view, plus the length
+    private int cachedSection;
+
+    /**
+     * @param texts the text of each section
+     * @param textStarts the position of each section within its text
+     * @param lengths the length of each section
+     */
+    SplicedCharSequence(CharSequence[] texts, int[] textStarts, int[] lengths) {
+        this.texts = texts;
+        this.textStarts = textStarts;
+        this.starts = new int[lengths.length + 1];
+        for (int i = 0; i < lengths.length; i++) {
+            starts[i + 1] = starts[i] + lengths[i];
+        }
+    }
+
+    /**
+     * @return a view of the chars of head up to headEnd, followed by the chars of tail from tailStart
+     */
+    static CharSequence splice(CharSequence head, int headEnd, CharSequence tail, int tailStart) {
+        return new SplicedCharSequence(new CharSequence[] {head, tail}, new int[] {0, tailStart},
+                new int[] {headEnd, tail.length() - tailStart});
+    }
+
+    @Override
+    public int length() {
+        return starts[starts.length - 1];
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= length()) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + length());
+        }
+        int section = cachedSection;
+        if (index < starts[section] || index >= starts[section + 1]) {
+            section = findSection(index);
+            cachedSection = section;
+        }
+        return texts[section].charAt(textStarts[section] + index - starts[section]);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        if (start < 0 || end > length() || start > end) {
+            throw new IndexOutOfBoundsException("Range [" + start + ", " + end + ") out of bounds for length " + length());
+        }
+        return new SplicedCharSequence(new CharSequence[] {this}, new int[] {start}, new int[] {end - start});
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(length());
+        for (int i = 0; i < texts.length; i++) {
+            sb.append(texts[i], textStarts[i], textStarts[i] + starts[i + 1] - starts[i]);
+        }
+        return sb.toString();
+    }
+
+    // index of the last section that starts at or before the given position, that is not empty,
+    // as an empty one starts where the next one does
+    private int findSection(int position) {
+        int low = 0;
+        int high = texts.length - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (starts[mid] <= position) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+}
@@ -1,9 +1,14 @@
 package com.gluonhq.richtext.model;
 
+import com.gluonhq.richtext.Selection;
 import javafx.beans.property.ReadOnlyIntegerProperty;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.text.CharacterIterator;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 
@@ -11,18 +16,54 @@ public interface TextBuffer {
 
     String ZERO_WIDTH_TEXT = "\u200b";
 
+    /**
+     * Inserts and deletes of this length or longer are large edits. The listeners that keep state
+     * derived from the text, like statistics or indices, may update it in the background for them
+     */
+    int LARGE_EDIT_LENGTH = 1 << 20;
+
+    /**
+     * @return true if the text can't be edited, and there is no undo history, like in a {@link ReadOnlyTextBuffer}
+     */
+    boolean isReadOnly();
+
     int getTextLength();
     ReadOnlyIntegerProperty textLengthProperty();
     String getText();
     String getText(int start, int end);
     List<DecorationModel> getDecorationModelList();
 
+    /**
+     * @return the number of runs of text with the same decorations, the size of {@link #getDecorationModelList()},
+     * without creating them
+     */
+    int getDecorationRunCount();
+
+    /**
+     * Copies a range of the text with its decorations, without copying the rest of the text
+     * @param start index to start, inclusive
+     * @param end index to end, exclusive
+     * @return a document with the text of the range, and one decoration model per run of chars with
+     * the same decorations, relative to the start of the range
+     */
+    Document getDocument(int start, int end);
+
     CharacterIterator getCharacterIterator();
     char charAt(int pos);
     List<Integer> getLineFeeds();
     void resetCharacterIterator();
 
     void insert(String text, int insertPosition);
+
+    /**
+     * Inserts the text of a document with its decorations, like one copied with {@link #getDocument(int, int)},
+     * as a single edit that fires a single {@link InsertEvent}.
+     * The lines of the document that are inserted within a paragraph of this buffer take the paragraph
+     * decoration of that paragraph, the whole paragraphs keep their own
+     * @param document the text and its decorations, relative to the start of the text
+     * @param insertPosition to insert the document at
+     */
+    void insert(Document document, int insertPosition);
     void append(String text);
     void delete(final int deletePosition, int length);
 
@@ -34,9 +75,158 @@ public interface TextBuffer {
      */
     void decorate(int start, int end, Decoration decoration);
 
+    /**
+     * Replaces several ranges of the text with the same text, like the selections of multiple carets,
+     * in a single pass over the text, as a single edit. Each range fires its own {@link DeleteEvent} and
+     * {@link InsertEvent}, from the last range to the first one, so the positions of the events are the
+     * ones of the ranges
+     * @param starts the start of each range, inclusive, in increasing order
+     * @param ends the end of each range, exclusive. A range can be empty, to insert the text at its
+     *             start, but ranges can't overlap
+     * @param text the text that replaces each range, or an empty text to delete them
+     * @throws IllegalArgumentException if the ranges are not within the text, sorted and disjoint
+     */
+    void replace(int[] starts, int[] ends, String text);
+
+    /**
+     * Adds a text decoration to several ranges of the text in a single pass over the text, as a single
+     * edit that fires a {@link DecorateEvent} for each range
+     * @param ranges the ranges to decorate, sorted and disjoint
+     * @param decoration decoration to apply
+     * @throws IllegalArgumentException if the ranges are not within the text, sorted and disjoint
+     */
+    void decorate(List<Selection> ranges, TextDecoration decoration);
+
     void undo();
     void redo();
 
+    /**
+     * Runs the given edits and returns them as a single delta, instead of adding them to
+     * the undo history of this buffer. The caller keeps the delta in its own history,
+     * and uses it to undo and redo the edits in one step.
+     * @param edits calls to edit methods of this buffer, like {@link #insert(String, int)}
+     * @return the delta with the edits
+     * @throws IllegalStateException if called while another change is being recorded
+     */
+    Delta recordChange(Runnable edits);
+
+    /**
+     * Reverts a delta. It must be the latest delta applied to this buffer
+     * @param delta delta recorded by this buffer
+     */
+    void undo(Delta delta);
+
+    /**
+     * Applies a delta again, right after it has been undone
+     * @param delta delta recorded by this buffer
+     */
+    void redo(Delta delta);
+
+    /**
+     * Appends the edits of a delta to the previous one, so that from then on the first
+     * delta undoes and redoes both
+     * @param delta delta recorded by this buffer
+     * @param next delta recorded right after the first one
+     */
+    void coalesce(Delta delta, Delta next);
+
+    void writeDelta(Delta delta, DataOutput out) throws IOException;
+    Delta readDelta(DataInput in) throws IOException;
+
+    /**
+     * Captures the current content of the buffer, text and decorations, so it can be restored later
+     * with {@link #revert(Checkpoint)}, regardless of the edits in between.
+     * @return a checkpoint of the current content
+     */
+    Checkpoint createCheckpoint();
+
+    /**
+     * Replaces the whole content with the one captured by the checkpoint, as a single undoable edit
+     * that fires a single {@link ResetEvent}
+     * @param checkpoint checkpoint created by this buffer
+     * @throws IllegalArgumentException if the checkpoint was created by another buffer
+     */
+    void revert(Checkpoint checkpoint);
+
+    /**
+     * Writes the content captured by a checkpoint by value, like {@link #writeDelta(Delta, DataOutput)}
+     * does with a delta, so it can be read back with {@link #readCheckpoint(DataInput)}
+     * @param checkpoint checkpoint created by this buffer
+     * @param out the output
+     * @throws IOException if the checkpoint can't be written
+     */
+    void writeCheckpoint(Checkpoint checkpoint, DataOutput out) throws IOException;
+
+    /**
+     * @param in the input
+     * @return a checkpoint equal to the one written with {@link #writeCheckpoint(Checkpoint, DataOutput)}
+     * @throws IOException if the input is not a checkpoint of this buffer
+     */
+    Checkpoint readCheckpoint(DataInput in) throws IOException;
+
+    /**
+     * Returns a read only view of the current text, that reads the chars where they are stored
+     * instead of copying them. Later edits don't modify it, and it can be read from any thread,
+     * so it can be passed to {@link java.util.regex.Pattern#matcher(CharSequence)} or other
+     * parsers while the buffer is being edited.
+     * @return a snapshot of the text
+     */
+    CharSequence getCharSequence();
+
+    /**
+     * Finds the next or the previous match of the query, scanning the text where it is stored,
+     * without copying it
+     * @param query the query to search
+     * @param position where the search starts
+     * @param forward true to find the first match that starts at or after the position, false
+     *                to find the last one that ends at or before it
+     * @return the range of the match, or {@link Selection#UNDEFINED} if there is none
+     */
+    Selection find(SearchQuery query, int position, boolean forward);
+
+    /**
+     * @param query the query to search
+     * @return the ranges of all the matches, that don't overlap, in order
+     */
+    List<Selection> findAll(SearchQuery query);
+
+    /**
+     * Finds the matches within a region of the text, like the visible paragraphs or the selection.
+     * Regular expressions can read up to {@link SearchQuery#getContextLength()} chars around the region
+     * for lookbehind, lookahead and boundaries, but the rest of the text is not scanned
+     * @param query the query to search
+     * @param region the range of the text to search, or {@link Selection#UNDEFINED} for the whole text
+     * @return the ranges of all the matches within the region, that don't overlap, in order
+     */
+    List<Selection> findAll(SearchQuery query, Selection region);
+
+    /**
+     * Finds all the matches of the query in a snapshot of the current text, splitting it in chunks
+     * that are searched in parallel on the common {@link java.util.concurrent.ForkJoinPool}.
+     * The buffer can be edited while the search runs, that only sees the text as it was when it started.
+     * @param query the query to search
+     * @param onMatches called from the search threads with the matches found so far, in order, as soon as
+     *                  they are known, so the first matches can be shown before the search finishes
+     * @return a future with the ranges of all the matches, that don't overlap, in order.
+     * Cancelling it stops the search
+     */
+    CompletableFuture<List<Selection>> findAllInParallel(SearchQuery query, Consumer<List<Selection>> onMatches);
+
+    /**
+     * Replaces all the matches of the query as a single edit
+     * @param query the query to search
+     * @param replacement the replacement text, used as is also for regular expressions
+     * @return the number of replaced matches
+     */
+    int replaceAll(SearchQuery query, String replacement);
+
+    /**
+     * Walks through the runs of text with the same decoration within the range, merging adjacent
+     * text with equal decorations, so each run is a single fragment. Each image is a fragment
+     * @param onFragment callback with the text and the decoration of each fragment
+     * @param start index to start, inclusive
+     * @param end index to end, exclusive
+     */
     void walkFragments(BiConsumer<String, Decoration> onFragment, int start, int end);
 
     void addChangeListener(Consumer<TextBuffer.Event> listener);
@@ -48,6 +238,16 @@ public interface TextBuffer {
 
     interface Event {}
 
+    interface Checkpoint {}
+
+    interface Delta {
+
+        /**
+         * @return approximate amount of heap retained by this delta, in bytes
+         */
+        long getRetainedSize();
+    }
+
     class InsertEvent implements Event {
 
         private final String text;
@@ -86,6 +286,22 @@ public interface TextBuffer {
         }
     }
 
+    /**
+     * The whole content of the buffer was replaced at once
+     */
+    class ResetEvent implements Event {
+
+        private final int textLength;
+
+        ResetEvent(int textLength) {
+            this.textLength = textLength;
+        }
+
+        public int getTextLength() {
+            return textLength;
+        }
+    }
+
     class DecorateEvent implements Event {
 
         private final int start;
@@ -111,5 +327,34 @@ public interface TextBuffer {
         }
     }
 
-}
+    /**
+     * Several ranges of the text changed at once, like the edits at multiple carets, notified as a
+     * single change, so listeners can handle all the ranges in one pass. The changes of the ranges are
+     * given as insert, delete and decorate events, from the first range to the last one, each one at
+     * its position in the text with the changes before it done, as if they were done in that order
+     */
+    class RangesEvent implements Event {
+
+        private final List<Event> events;
+        private final List<CharSequence> texts;
+
+        RangesEvent(List<Event> events, List<CharSequence> texts) {
+            this.events = List.copyOf(events);
+            this.texts = List.copyOf(texts);
+        }
 
+        public List<Event> getEvents() {
+            return events;
+        }
+
+        /**
+         * The text right after the change of the given event, with the changes before it done, and the
+         * ones after it not done yet. It is an immutable snapshot, like {@link TextBuffer#getCharSequence()}
+         * @param index the index of the event
+         * @return the text after the change of that event
+         */
+        public CharSequence getText(int index) {
+            return texts.get(index);
+        }
+    }
+}
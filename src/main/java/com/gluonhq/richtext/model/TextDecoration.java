@@ -58,6 +58,15 @@ public class TextDecoration implements Decoration {
         return url;
     }
 
+    // strikethrough and underline as they were set, null if they weren't, see DocumentCodec
+    Boolean getStrikethrough() {
+        return strikethrough;
+    }
+
+    Boolean getUnderline() {
+        return underline;
+    }
+
     public static Builder builder() {
         return new Builder();
     }
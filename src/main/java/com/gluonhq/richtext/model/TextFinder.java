@@ -0,0 +1,121 @@
+package com.gluonhq.richtext.model;
+
+import com.gluonhq.richtext.Selection;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Literal search with the Boyer-Moore-Horspool algorithm, that only needs random access
+ * to the text, so it runs on a {@link PieceCharSequence} without copying the document.
+ * The bad character tables are indexed by the low byte of each char: chars that share
+ * that byte share the smallest shift, which keeps the tables small and the shifts safe.
+ */
+final class TextFinder implements Finder {
+
+    private static final int TABLE_SIZE = 256;
+
+    private final SearchQuery query;
+    private final char[] pattern;
+    private final int[] forwardShift = new int[TABLE_SIZE];
+    private final int[] backwardShift = new int[TABLE_SIZE];
+
+    TextFinder(SearchQuery query) {
+        this.query = Objects.requireNonNull(query);
+        String text = query.getText();
+        pattern = new char[text.length()];
+        for (int i = 0; i < pattern.length; i++) {
+            pattern[i] = fold(text.charAt(i));
+        }
+        int m = pattern.length;
+        for (int i = 0; i < TABLE_SIZE; i++) {
+            forwardShift[i] = m;
+            backwardShift[i] = m;
+        }
+        for (int k = 0; k < m - 1; k++) {
+            forwardShift[pattern[k] & 0xFF] = m - 1 - k;
+        }
+        for (int k = m - 1; k > 0; k--) {
+            backwardShift[pattern[k] & 0xFF] = k;
+        }
+    }
+
+    @Override
+    public Selection findNext(CharSequence text, int from, int to) {
+        int start = nextStart(text, from, to);
+        return start < 0 ? Selection.UNDEFINED : new Selection(start, start + pattern.length);
+    }
+
+    @Override
+    public Selection findPrevious(CharSequence text, int from, int to) {
+        int start = previousStart(text, from, to);
+        return start < 0 ? Selection.UNDEFINED : new Selection(start, start + pattern.length);
+    }
+
+    @Override
+    public List<Selection> findAll(CharSequence text, int from, int to) {
+        List<Selection> matches = new ArrayList<>();
+        int i = nextStart(text, from, to);
+        while (i >= 0) {
+            matches.add(new Selection(i, i + pattern.length));
+            i = nextStart(text, i + pattern.length, to);
+        }
+        return matches;
+    }
+
+    @Override
+    public int getMaxMatchLength() {
+        return pattern.length;
+    }
+
+    // start of the first match within the range, or -1
+    private int nextStart(CharSequence text, int from, int to) {
+        int m = pattern.length;
+        if (m == 0) {
+            return -1;
+        }
+        int last = Math.min(to, text.length()) - m;
+        int i = Math.max(from, 0);
+        while (i <= last) {
+            int j = m - 1;
+            while (j >= 0 && fold(text.charAt(i + j)) == pattern[j]) {
+                j--;
+            }
+            if (j < 0 && isWholeWord(text, i)) {
+                return i;
+            }
+            i += j < 0 ? 1 : forwardShift[fold(text.charAt(i + m - 1)) & 0xFF];
+        }
+        return -1;
+    }
+
+    // start of the last match within the range, or -1
+    private int previousStart(CharSequence text, int from, int to) {
+        int m = pattern.length;
+        if (m == 0) {
+            return -1;
+        }
+        int first = Math.max(from, 0);
+        int i = Math.min(to, text.length()) - m;
+        while (i >= first) {
+            int j = 0;
+            while (j < m && fold(text.charAt(i + j)) == pattern[j]) {
+                j++;
+            }
+            if (j == m && isWholeWord(text, i)) {
+                return i;
+            }
+            i -= j == m ? 1 : backwardShift[fold(text.charAt(i)) & 0xFF];
+        }
+        return -1;
+    }
+
+    private boolean isWholeWord(CharSequence text, int start) {
+        return !query.isWholeWord() || Finder.isWholeWord(text, start, start + pattern.length);
+    }
+
+    private char fold(char c) {
+        return query.isMatchCase() ? c : Character.toLowerCase(Character.toUpperCase(c));
+    }
+}
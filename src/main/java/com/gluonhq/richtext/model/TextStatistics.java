@@ -0,0 +1,233 @@
+package com.gluonhq.richtext.model;
+
+import javafx.beans.property.ReadOnlyIntegerProperty;
+import javafx.beans.property.ReadOnlyIntegerWrapper;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+/**
+ * Live statistics of the text of a {@link TextBuffer}. The text is only counted once, when the
+ * buffer is set. After that, each insert or delete event only counts the changed text, and the
+ * chars around it, comparing the text before the change with the text after it.
+ * <p>
+ * With a publisher, {@link TextBuffer#LARGE_EDIT_LENGTH large edits} are counted in the background,
+ * from snapshots of the text, and their counts are added later with the publisher. The counts of
+ * each edit are independent of the others, so they can be added in any order.
+ */
+public class TextStatistics {
+
+    private final Consumer<TextBuffer.Event> changeListener = this::textChanged;
+    private final Executor publisher;
+    private TextBuffer textBuffer;
+    private CharSequence text = "";
+    private int generation; // of the counted buffer, the counts of large edits of an older one are dropped
+
+    // characterCountProperty
+    private final ReadOnlyIntegerWrapper characterCountProperty = new ReadOnlyIntegerWrapper(this, "characterCount");
+    /**
+     * Number of chars, not counting line feeds nor images
+     */
+    public final ReadOnlyIntegerProperty characterCountProperty() {
+       return characterCountProperty.getReadOnlyProperty();
+    }
+    public final int getCharacterCount() {
+       return characterCountProperty.get();
+    }
+
+    // wordCountProperty
+    private final ReadOnlyIntegerWrapper wordCountProperty = new ReadOnlyIntegerWrapper(this, "wordCount");
+    /**
+     * Number of sequences of letters or digits
+     */
+    public final ReadOnlyIntegerProperty wordCountProperty() {
+       return wordCountProperty.getReadOnlyProperty();
+    }
+    public final int getWordCount() {
+       return wordCountProperty.get();
+    }
+
+    // paragraphCountProperty
+    private final ReadOnlyIntegerWrapper paragraphCountProperty = new ReadOnlyIntegerWrapper(this, "paragraphCount");
+    /**
+     * Number of paragraphs, including empty ones
+     */
+    public final ReadOnlyIntegerProperty paragraphCountProperty() {
+       return paragraphCountProperty.getReadOnlyProperty();
+    }
+    public final int getParagraphCount() {
+       return paragraphCountProperty.get();
+    }
+
+    // lineCountProperty
+    private final ReadOnlyIntegerWrapper lineCountProperty = new ReadOnlyIntegerWrapper(this, "lineCount");
+    /**
+     * Number of paragraphs that are not empty. Lines wrapped by the layout are not counted,
+     * as they depend on the width of the control
+     */
+    public final ReadOnlyIntegerProperty lineCountProperty() {
+       return lineCountProperty.getReadOnlyProperty();
+    }
+    public final int getLineCount() {
+       return lineCountProperty.get();
+    }
+
+    // imageCountProperty
+    private final ReadOnlyIntegerWrapper imageCountProperty = new ReadOnlyIntegerWrapper(this, "imageCount");
+    public final ReadOnlyIntegerProperty imageCountProperty() {
+       return imageCountProperty.getReadOnlyProperty();
+    }
+    public final int getImageCount() {
+       return imageCountProperty.get();
+    }
+
+    // styleRunCountProperty
+    private final ReadOnlyIntegerWrapper styleRunCountProperty = new ReadOnlyIntegerWrapper(this, "styleRunCount");
+    /**
+     * Number of runs of text with the same decoration
+     */
+    public final ReadOnlyIntegerProperty styleRunCountProperty() {
+       return styleRunCountProperty.getReadOnlyProperty();
+    }
+    public final int getStyleRunCount() {
+       return styleRunCountProperty.get();
+    }
+
+    /**
+     * Creates statistics that count all the edits on the thread that edits the buffer
+     */
+    public TextStatistics() {
+        this(null);
+    }
+
+    /**
+     * Creates statistics that count large edits in the background
+     * @param publisher the executor that adds the counts of large edits, like the thread that edits the buffer,
+     *                  or null to count them on that thread
+     */
+    public TextStatistics(Executor publisher) {
+        this.publisher = publisher;
+    }
+
+    /**
+     * Counts the text of the given buffer, and keeps counting its changes
+     * @param textBuffer the buffer to count, or null to stop counting
+     */
+    public void setTextBuffer(TextBuffer textBuffer) {
+        if (this.textBuffer != null) {
+            this.textBuffer.removeChangeListener(changeListener);
+        }
+        this.textBuffer = textBuffer;
+        if (textBuffer != null) {
+            textBuffer.addChangeListener(changeListener);
+        }
+        recount();
+    }
+
+    private void recount() {
+        generation++;
+        text = "";
+        characterCountProperty.set(0);
+        wordCountProperty.set(0);
+        lineCountProperty.set(0);
+        imageCountProperty.set(0);
+        paragraphCountProperty.set(1);
+        styleRunCountProperty.set(0);
+        if (textBuffer != null) {
+            CharSequence newText = textBuffer.getCharSequence();
+            add(count(newText, 0, newText.length(), 1));
+            text = newText;
+            styleRunCountProperty.set(textBuffer.getDecorationRunCount());
+        }
+    }
+
+    private void textChanged(TextBuffer.Event event) {
+        if (event instanceof TextBuffer.RangesEvent) {
+            // each range is counted on the text with the ranges before it changed
+            TextBuffer.RangesEvent rangesEvent = (TextBuffer.RangesEvent) event;
+            for (int i = 0; i < rangesEvent.getEvents().size(); i++) {
+                textChanged(rangesEvent.getEvents().get(i), rangesEvent.getText(i));
+            }
+        } else if (event instanceof TextBuffer.ResetEvent) {
+            recount();
+        } else if (event instanceof TextBuffer.InsertEvent || event instanceof TextBuffer.DeleteEvent) {
+            textChanged(event, textBuffer.getCharSequence());
+        }
+        if (textBuffer != null) {
+            styleRunCountProperty.set(textBuffer.getDecorationRunCount());
+        }
+    }
+
+    private void textChanged(TextBuffer.Event event, CharSequence newText) {
+        if (event instanceof TextBuffer.InsertEvent) {
+            TextBuffer.InsertEvent insertEvent = (TextBuffer.InsertEvent) event;
+            textChanged(insertEvent.getPosition(), 0, insertEvent.getText().length(), newText);
+        } else if (event instanceof TextBuffer.DeleteEvent) {
+            TextBuffer.DeleteEvent deleteEvent = (TextBuffer.DeleteEvent) event;
+            textChanged(deleteEvent.getPosition(), deleteEvent.getLength(), 0, newText);
+        }
+    }
+
+    private void textChanged(int position, int removed, int inserted, CharSequence newText) {
+        CharSequence oldText = text;
+        text = newText;
+        if (publisher != null && removed + inserted >= TextBuffer.LARGE_EDIT_LENGTH) {
+            int countGeneration = generation;
+            CompletableFuture.supplyAsync(() -> {
+                int[] counts = count(oldText, position, position + removed, -1);
+                int[] newCounts = count(newText, position, position + inserted, 1);
+                for (int i = 0; i < counts.length; i++) {
+                    counts[i] += newCounts[i];
+                }
+                return counts;
+            }).thenAccept(counts -> publisher.execute(() -> {
+                if (countGeneration == generation) {
+                    add(counts);
+                }
+            }));
+            return;
+        }
+        add(count(oldText, position, position + removed, -1));
+        add(count(newText, position, position + inserted, 1));
+    }
+
+    private void add(int[] counts) {
+        characterCountProperty.set(getCharacterCount() + counts[0]);
+        wordCountProperty.set(getWordCount() + counts[1]);
+        lineCountProperty.set(getLineCount() + counts[2]);
+        imageCountProperty.set(getImageCount() + counts[3]);
+        paragraphCountProperty.set(getParagraphCount() + counts[4]);
+    }
+
+    /**
+     * Counts the chars within the range, multiplied by sign, as characters, words, lines, images and
+     * line feeds. The char right after the range may only start a word or a line depending on the
+     * last char of the range, so it is checked for that too. Only reads the given text, so it can run
+     * on any thread with a snapshot of the text
+     */
+    private static int[] count(CharSequence text, int start, int end, int sign) {
+        int characters = 0, words = 0, lines = 0, images = 0, lineFeeds = 0;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (c == '\n') {
+                lineFeeds++;
+            } else if (c == TextBuffer.ZERO_WIDTH_TEXT.charAt(0)) {
+                images++;
+            } else {
+                characters++;
+            }
+        }
+        for (int i = start; i <= end && i < text.length(); i++) {
+            char c = text.charAt(i);
+            char previous = i > 0 ? text.charAt(i - 1) : '\n';
+            if (c != '\n' && previous == '\n') {
+                lines++;
+            }
+            if (Character.isLetterOrDigit(c) && !Character.isLetterOrDigit(previous)) {
+                words++;
+            }
+        }
+        return new int[] {sign * characters, sign * words, sign * lines, sign * images, sign * lineFeeds};
+    }
+}
@@ -0,0 +1,359 @@
+package com.gluonhq.richtext.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+/**
+ * Words of the text of a {@link TextBuffer}, with the number of times each one is used, that can be
+ * completed from a prefix. A word is a sequence of letters, digits or underscores that doesn't start
+ * with a digit, like an identifier, of at least {@link #MIN_WORD_LENGTH} chars.
+ * <p>
+ * The words are kept in a trie, where each node also knows the highest frequency below it, so that
+ * the most used completions are found visiting only the nodes that lead to them. The text is only
+ * scanned once, when the buffer is set. After that, each insert or delete event only counts the words
+ * around the changed text, comparing the text before the change with the text after it.
+ * <p>
+ * With a publisher, the words of {@link TextBuffer#LARGE_EDIT_LENGTH large edits} are found in the
+ * background, from snapshots of the text, and added later with the publisher. The edits done meanwhile
+ * wait for them, so the words are always counted in the order of the edits.
+ */
+public class WordCompletion {
+
+    public static final int MIN_WORD_LENGTH = 2;
+
+    private static final Comparator<Node> BY_FREQUENCY = Comparator.comparingInt((Node node) -> node.max).reversed();
+
+    private final Consumer<TextBuffer.Event> changeListener = this::textChanged;
+    private final Executor publisher;
+    private TextBuffer textBuffer;
+    private CharSequence text = "";
+    private Node root = new Node(null, '\0');
+    private int wordCount;
+    // edits done while the words of a large one are found, dropped when the buffer is indexed again
+    private List<Runnable> pendingEdits;
+
+    /**
+     * Creates an index that counts all the edits on the thread that edits the buffer
+     */
+    public WordCompletion() {
+        this(null);
+    }
+
+    /**
+     * Creates an index that finds the words of large edits in the background
+     * @param publisher the executor that adds the words of large edits, like the thread that edits the buffer,
+     *                  or null to find them on that thread
+     */
+    public WordCompletion(Executor publisher) {
+        this.publisher = publisher;
+    }
+
+    /**
+     * Indexes the words of the given buffer, and keeps indexing its changes
+     * @param textBuffer the buffer to index, or null to stop indexing
+     */
+    public void setTextBuffer(TextBuffer textBuffer) {
+        if (this.textBuffer != null) {
+            this.textBuffer.removeChangeListener(changeListener);
+        }
+        this.textBuffer = textBuffer;
+        if (textBuffer != null) {
+            textBuffer.addChangeListener(changeListener);
+        }
+        reindex();
+    }
+
+    /**
+     * @return the number of different words
+     */
+    public int getWordCount() {
+        return wordCount;
+    }
+
+    /**
+     * @param word a word
+     * @return the number of times the word is used in the text
+     */
+    public int getFrequency(String word) {
+        Node node = find(word);
+        return node == null ? 0 : node.count;
+    }
+
+    /**
+     * Finds the most used words that start with the given prefix, other than the prefix itself
+     * @param prefix the start of the words
+     * @param limit the maximum number of words
+     * @return the words, the most used first, and in alphabetical order for the same frequency
+     */
+    public List<String> complete(String prefix, int limit) {
+        List<String> words = new ArrayList<>();
+        Node start = find(prefix);
+        if (start == null || limit <= 0) {
+            return words;
+        }
+        // best first: a node is visited before any other node with a lower max frequency, so the
+        // words come out sorted, and the search stops after the limit
+        PriorityQueue<Node> queue = new PriorityQueue<>(BY_FREQUENCY.thenComparing(Node::word));
+        for (int i = 0; i < start.size; i++) {
+            queue.add(start.children[i]);
+        }
+        while (!queue.isEmpty() && words.size() < limit) {
+            Node node = queue.poll();
+            if (node.children == null || node.size == 0) {
+                words.add(node.word());
+                continue;
+            }
+            for (int i = 0; i < node.size; i++) {
+                queue.add(node.children[i]);
+            }
+            if (node.count > 0) {
+                // queued again as a leaf, with its own frequency, to come out in order with its children
+                queue.add(new Node(node, node.count));
+            }
+        }
+        return words;
+    }
+
+    private void reindex() {
+        pendingEdits = null;
+        text = "";
+        root = new Node(null, '\0');
+        wordCount = 0;
+        if (textBuffer != null) {
+            CharSequence newText = textBuffer.getCharSequence();
+            count(newText, 0, newText.length(), 1);
+            text = newText;
+        }
+    }
+
+    private void textChanged(TextBuffer.Event event) {
+        if (event instanceof TextBuffer.RangesEvent) {
+            // each range is indexed on the text with the ranges before it changed
+            TextBuffer.RangesEvent rangesEvent = (TextBuffer.RangesEvent) event;
+            for (int i = 0; i < rangesEvent.getEvents().size(); i++) {
+                textChanged(rangesEvent.getEvents().get(i), rangesEvent.getText(i));
+            }
+        } else if (event instanceof TextBuffer.InsertEvent || event instanceof TextBuffer.DeleteEvent) {
+            textChanged(event, textBuffer.getCharSequence());
+        } else if (event instanceof TextBuffer.ResetEvent) {
+            reindex();
+        }
+    }
+
+    private void textChanged(TextBuffer.Event event, CharSequence newText) {
+        if (event instanceof TextBuffer.InsertEvent) {
+            TextBuffer.InsertEvent insertEvent = (TextBuffer.InsertEvent) event;
+            textChanged(insertEvent.getPosition(), 0, insertEvent.getText().length(), newText);
+        } else if (event instanceof TextBuffer.DeleteEvent) {
+            TextBuffer.DeleteEvent deleteEvent = (TextBuffer.DeleteEvent) event;
+            textChanged(deleteEvent.getPosition(), deleteEvent.getLength(), 0, newText);
+        }
+    }
+
+    private void textChanged(int position, int removed, int inserted, CharSequence newText) {
+        CharSequence oldText = text;
+        text = newText;
+        if (pendingEdits != null) {
+            pendingEdits.add(() -> {
+                count(oldText, position, position + removed, -1);
+                count(newText, position, position + inserted, 1);
+            });
+        } else if (publisher != null && removed + inserted >= TextBuffer.LARGE_EDIT_LENGTH) {
+            List<Runnable> edits = new ArrayList<>();
+            pendingEdits = edits;
+            CompletableFuture.supplyAsync(() -> {
+                Map<String, Integer> words = new HashMap<>();
+                forEachWord(oldText, position, position + removed, word -> words.merge(word.toString(), -1, Integer::sum));
+                forEachWord(newText, position, position + inserted, word -> words.merge(word.toString(), 1, Integer::sum));
+                return words;
+            }).whenComplete((words, throwable) -> publisher.execute(() -> {
+                if (pendingEdits != edits) {
+                    return;
+                }
+                pendingEdits = null;
+                if (throwable != null) {
+                    reindex();
+                    return;
+                }
+                words.forEach((word, delta) -> {
+                    if (delta != 0) {
+                        update(word, delta);
+                    }
+                });
+                edits.forEach(Runnable::run);
+            }));
+        } else {
+            count(oldText, position, position + removed, -1);
+            count(newText, position, position + inserted, 1);
+        }
+    }
+
+    // adds the words that touch the range to the index, or removes them when sign is negative
+    private void count(CharSequence text, int start, int end, int sign) {
+        forEachWord(text, start, end, word -> update(word, sign));
+    }
+
+    /**
+     * Finds the words that touch the range. The text outside the range is the same before and after
+     * a change, so the words that were extended or split by it are removed with their old text, and
+     * added with the new one. Only reads the given text, so it can run on any thread with a snapshot
+     */
+    private static void forEachWord(CharSequence text, int start, int end, Consumer<CharSequence> onWord) {
+        while (start > 0 && isWordChar(text.charAt(start - 1))) {
+            start--;
+        }
+        while (end < text.length() && isWordChar(text.charAt(end))) {
+            end++;
+        }
+        int wordStart = -1;
+        for (int i = start; i <= end; i++) {
+            boolean wordChar = i < end && isWordChar(text.charAt(i));
+            if (wordChar && wordStart < 0) {
+                wordStart = i;
+            } else if (!wordChar && wordStart >= 0) {
+                if (i - wordStart >= MIN_WORD_LENGTH && !Character.isDigit(text.charAt(wordStart))) {
+                    onWord.accept(text.subSequence(wordStart, i));
+                }
+                wordStart = -1;
+            }
+        }
+    }
+
+    /**
+     * Finds the start of the word that ends at the given position, with the same rules as the words of the
+     * index, like the prefix to complete before the caret. It only looks back to the first char that is not
+     * part of a word, so in {@code foo.ba} the word before the end is {@code ba}
+     * @param text the text
+     * @param position the end of the word
+     * @return the start of the word, or the given position if there is no word right before it, or it
+     * starts with a digit
+     */
+    public static int getWordStart(CharSequence text, int position) {
+        int start = position;
+        while (start > 0 && isWordChar(text.charAt(start - 1))) {
+            start--;
+        }
+        return start < position && !Character.isDigit(text.charAt(start)) ? start : position;
+    }
+
+    private void update(CharSequence word, int delta) {
+        Node node = root;
+        for (int i = 0; i < word.length(); i++) {
+            Node child = node.child(word.charAt(i));
+            if (child == null) {
+                if (delta < 0) {
+                    return;
+                }
+                child = node.addChild(word.charAt(i));
+            }
+            node = child;
+        }
+        int count = Math.max(0, node.count + delta);
+        if (node.count == 0 && count > 0) {
+            wordCount++;
+        } else if (node.count > 0 && count == 0) {
+            wordCount--;
+        }
+        node.count = count;
+        // update the max frequency up to the root, and prune the nodes that have no words left
+        for (; node.parent != null; node = node.parent) {
+            node.updateMax();
+            if (node.max == 0) {
+                node.parent.removeChild(node);
+            }
+        }
+        root.updateMax();
+    }
+
+    private Node find(String prefix) {
+        Node node = root;
+        for (int i = 0; i < prefix.length() && node != null; i++) {
+            node = node.child(prefix.charAt(i));
+        }
+        return node;
+    }
+
+    private static boolean isWordChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_';
+    }
+
+    private static class Node {
+
+        private final Node parent;
+        private final char c;
+        // children sorted by char
+        private char[] chars;
+        private Node[] children;
+        private int size;
+        private int count; // times the word that ends here is used
+        private int max;   // highest count of this node and its descendants
+
+        Node(Node parent, char c) {
+            this.parent = parent;
+            this.c = c;
+        }
+
+        // leaf with the word of the given node, only used while completing
+        Node(Node node, int count) {
+            this(node.parent, node.c);
+            this.count = count;
+            this.max = count;
+        }
+
+        Node child(char c) {
+            int index = chars == null ? -1 : Arrays.binarySearch(chars, 0, size, c);
+            return index >= 0 ? children[index] : null;
+        }
+
+        Node addChild(char c) {
+            if (chars == null) {
+                chars = new char[2];
+                children = new Node[2];
+            } else if (size == chars.length) {
+                chars = Arrays.copyOf(chars, 2 * size);
+                children = Arrays.copyOf(children, 2 * size);
+            }
+            int index = -Arrays.binarySearch(chars, 0, size, c) - 1;
+            System.arraycopy(chars, index, chars, index + 1, size - index);
+            System.arraycopy(children, index, children, index + 1, size - index);
+            Node child = new Node(this, c);
+            chars[index] = c;
+            children[index] = child;
+            size++;
+            return child;
+        }
+
+        void removeChild(Node child) {
+            int index = Arrays.binarySearch(chars, 0, size, child.c);
+            if (index >= 0 && children[index] == child) {
+                System.arraycopy(chars, index + 1, chars, index, size - index - 1);
+                System.arraycopy(children, index + 1, children, index, size - index - 1);
+                children[--size] = null;
+            }
+        }
+
+        void updateMax() {
+            int max = count;
+            for (int i = 0; i < size; i++) {
+                max = Math.max(max, children[i].max);
+            }
+            this.max = max;
+        }
+
+        String word() {
+            StringBuilder word = new StringBuilder();
+            for (Node node = this; node.parent != null; node = node.parent) {
+                word.append(node.c);
+            }
+            return word.reverse().toString();
+        }
+    }
+}
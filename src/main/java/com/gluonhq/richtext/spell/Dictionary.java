@@ -0,0 +1,130 @@
+package com.gluonhq.richtext.spell;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Set of words stored as a trie in a few flat arrays, where each node has a char, its first child and
+ * its next sibling, so words that share a prefix share its nodes and no object is created per node.
+ * The dictionary is immutable once loaded, and can be read from any thread.
+ */
+public final class Dictionary {
+
+    private char[] chars = new char[64];
+    private int[] firstChild = new int[64];
+    private int[] nextSibling = new int[64];
+    private boolean[] terminal = new boolean[64];
+    private int nodeCount = 1; // node 0 is the root
+    private int wordCount;
+
+    private Dictionary() {}
+
+    /**
+     * Loads a word list file, with one word per line. Empty lines are ignored.
+     * @param path the path of the word list file, in UTF-8
+     * @return the dictionary
+     * @throws IOException if the file can't be read
+     */
+    public static Dictionary load(Path path) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            return load(reader);
+        }
+    }
+
+    /**
+     * Loads a word list, with one word per line. Empty lines are ignored.
+     * @param reader the reader of the word list
+     * @return the dictionary
+     * @throws IOException if the word list can't be read
+     */
+    public static Dictionary load(Reader reader) throws IOException {
+        Dictionary dictionary = new Dictionary();
+        BufferedReader lines = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+        String line;
+        while ((line = lines.readLine()) != null) {
+            dictionary.add(line.strip());
+        }
+        dictionary.trim();
+        return dictionary;
+    }
+
+    public static Dictionary of(Collection<String> words) {
+        Dictionary dictionary = new Dictionary();
+        words.forEach(word -> dictionary.add(word.strip()));
+        dictionary.trim();
+        return dictionary;
+    }
+
+    /**
+     * @return the number of different words
+     */
+    public int size() {
+        return wordCount;
+    }
+
+    public boolean contains(CharSequence word) {
+        if (word.length() == 0) {
+            return false;
+        }
+        int node = 0;
+        for (int i = 0; i < word.length() && node >= 0; i++) {
+            node = child(node, word.charAt(i));
+        }
+        return node >= 0 && terminal[node];
+    }
+
+    private void add(String word) {
+        if (word.isEmpty()) {
+            return;
+        }
+        int node = 0;
+        for (int i = 0; i < word.length(); i++) {
+            char c = word.charAt(i);
+            int child = child(node, c);
+            if (child < 0) {
+                child = newNode(c);
+                nextSibling[child] = firstChild[node];
+                firstChild[node] = child;
+            }
+            node = child;
+        }
+        if (!terminal[node]) {
+            terminal[node] = true;
+            wordCount++;
+        }
+    }
+
+    private int child(int node, char c) {
+        for (int child = firstChild[node]; child > 0; child = nextSibling[child]) {
+            if (chars[child] == c) {
+                return child;
+            }
+        }
+        return -1;
+    }
+
+    private int newNode(char c) {
+        if (nodeCount == chars.length) {
+            int capacity = 2 * nodeCount;
+            chars = Arrays.copyOf(chars, capacity);
+            firstChild = Arrays.copyOf(firstChild, capacity);
+            nextSibling = Arrays.copyOf(nextSibling, capacity);
+            terminal = Arrays.copyOf(terminal, capacity);
+        }
+        chars[nodeCount] = c;
+        return nodeCount++;
+    }
+
+    private void trim() {
+        chars = Arrays.copyOf(chars, nodeCount);
+        firstChild = Arrays.copyOf(firstChild, nodeCount);
+        nextSibling = Arrays.copyOf(nextSibling, nodeCount);
+        terminal = Arrays.copyOf(terminal, nodeCount);
+    }
+}
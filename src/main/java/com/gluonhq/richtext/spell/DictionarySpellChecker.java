@@ -0,0 +1,58 @@
+package com.gluonhq.richtext.spell;
+
+import com.gluonhq.richtext.Selection;
+
+import java.text.BreakIterator;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * Spell checker that looks up each word of a paragraph in a {@link Dictionary}.
+ * A word is accepted as written, or in lower case wherever it is, so capitalized and all
+ * capitals words are accepted when the dictionary has them in lower case, but a word the
+ * dictionary only has capitalized is not accepted in lower case. Words with digits are not checked.
+ */
+public class DictionarySpellChecker implements SpellChecker {
+
+    private final Dictionary dictionary;
+    private final Locale locale;
+
+    public DictionarySpellChecker(Dictionary dictionary) {
+        this(dictionary, Locale.getDefault());
+    }
+
+    public DictionarySpellChecker(Dictionary dictionary, Locale locale) {
+        this.dictionary = Objects.requireNonNull(dictionary);
+        this.locale = Objects.requireNonNull(locale);
+    }
+
+    @Override
+    public List<Selection> check(String paragraph) {
+        List<Selection> misspellings = new ArrayList<>();
+        // a word iterator per call, as calls may come from several threads
+        BreakIterator words = BreakIterator.getWordInstance(locale);
+        words.setText(paragraph);
+        int start = words.first();
+        for (int end = words.next(); end != BreakIterator.DONE; start = end, end = words.next()) {
+            String word = paragraph.substring(start, end);
+            if (isWord(word) && !dictionary.contains(word) && !dictionary.contains(word.toLowerCase(locale))) {
+                misspellings.add(new Selection(start, end));
+            }
+        }
+        return misspellings;
+    }
+
+    private static boolean isWord(String text) {
+        boolean letters = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isDigit(c)) {
+                return false;
+            }
+            letters |= Character.isLetter(c);
+        }
+        return letters;
+    }
+}
@@ -0,0 +1,321 @@
+package com.gluonhq.richtext.spell;
+
+import com.gluonhq.richtext.Selection;
+import com.gluonhq.richtext.model.TextBuffer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Checks the paragraphs of a {@link TextBuffer} with a {@link SpellChecker} on a worker thread.
+ * <p>
+ * The results are cached by the text of the paragraph, so a paragraph is only checked again when its
+ * text changes, wherever it is moved. When the buffer changes, only the paragraphs touched by the change
+ * are queued, ahead of the rest of the document, and the queued check of their previous text, if not
+ * started yet, is cancelled, unless other paragraphs are still waiting for the same text. The paragraphs of {@link TextBuffer#LARGE_EDIT_LENGTH large edits}
+ * are found on the worker thread, like the ones of the whole document.
+ * <p>
+ * The service must be used from the thread that edits the buffer, and {@link #dispose() disposed} when
+ * no longer needed.
+ */
+public final class SpellCheckService {
+
+    private static final Logger LOG = Logger.getLogger(SpellCheckService.class.getName());
+
+    private static final int MAX_CACHED_PARAGRAPHS = 1 << 18;
+    private static final int PUBLISH_BATCH_SIZE = 256;
+
+    private final TextBuffer textBuffer;
+    private final SpellChecker checker;
+    private final Executor publisher;
+    private final Runnable onResults;
+    private final Consumer<TextBuffer.Event> changeListener = this::textChanged;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "spell-check");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // paragraph text -> misspelled ranges, as start and end pairs relative to the paragraph
+    private final Map<String, int[]> results = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, int[]> eldest) {
+            return size() > MAX_CACHED_PARAGRAPHS;
+        }
+    });
+    private final BlockingDeque<Request> queue = new LinkedBlockingDeque<>();
+    // paragraph text -> its pending request, a request that is no longer mapped is cancelled
+    private final Map<String, Request> queued = new ConcurrentHashMap<>();
+    private final AtomicBoolean draining = new AtomicBoolean();
+    private CharSequence text;
+    private volatile boolean disposed;
+
+    /**
+     * Creates the service, and queues the whole text of the buffer to be checked
+     * @param textBuffer the buffer to check
+     * @param checker the spell checker, called from the worker thread
+     * @param publisher the executor that runs onResults, like the thread that edits the buffer
+     * @param onResults called when new results are available, or when the buffer changes
+     */
+    public SpellCheckService(TextBuffer textBuffer, SpellChecker checker, Executor publisher, Runnable onResults) {
+        this.textBuffer = Objects.requireNonNull(textBuffer);
+        this.checker = Objects.requireNonNull(checker);
+        this.publisher = Objects.requireNonNull(publisher);
+        this.onResults = Objects.requireNonNull(onResults);
+        textBuffer.addChangeListener(changeListener);
+        checkAll();
+    }
+
+    /**
+     * Finds the misspelled words of the paragraphs within the given range. The paragraphs that
+     * are not checked yet are queued ahead of the rest, and found once {@code onResults} is called
+     * @param range the range of the text, like the visible range
+     * @return the ranges of the misspelled words, in order
+     */
+    public List<Selection> getMisspellings(Selection range) {
+        List<Selection> misspellings = new ArrayList<>();
+        if (disposed || !range.isDefined()) {
+            return misspellings;
+        }
+        CharSequence text = textBuffer.getCharSequence();
+        int start = paragraphStart(text, Math.min(range.getStart(), text.length()));
+        int end = Math.min(range.getEnd(), text.length());
+        while (start <= end && start <= text.length()) {
+            int paragraphEnd = paragraphEnd(text, start);
+            String paragraph = text.subSequence(start, paragraphEnd).toString();
+            int[] ranges = results.get(paragraph);
+            if (ranges == null) {
+                if (!queued.containsKey(paragraph)) {
+                    // not waiting for an edit, like a paragraph evicted from the cache
+                    request(paragraph, true);
+                }
+            } else {
+                for (int i = 0; i < ranges.length; i += 2) {
+                    misspellings.add(new Selection(start + ranges[i], start + ranges[i + 1]));
+                }
+            }
+            start = paragraphEnd + 1;
+        }
+        return misspellings;
+    }
+
+    /**
+     * Stops checking the buffer, and releases the worker thread
+     */
+    public void dispose() {
+        disposed = true;
+        textBuffer.removeChangeListener(changeListener);
+        executor.shutdownNow();
+        queue.clear();
+        queued.clear();
+        results.clear();
+        text = null;
+    }
+
+    // splits the text in paragraphs on the worker thread, so large documents don't block the caller
+    private void checkAll() {
+        text = textBuffer.getCharSequence();
+        CharSequence snapshot = text;
+        executor.execute(() -> {
+            // the worker reads its own view of the snapshot
+            CharSequence view = snapshot.subSequence(0, snapshot.length());
+            for (int start = 0; start <= view.length() && !disposed; ) {
+                int end = paragraphEnd(view, start);
+                request(view.subSequence(start, end).toString(), false);
+                start = end + 1;
+            }
+        });
+    }
+
+    private void textChanged(TextBuffer.Event event) {
+        if (event instanceof TextBuffer.RangesEvent) {
+            // the paragraphs of each range are found on the text with the ranges before it changed
+            TextBuffer.RangesEvent rangesEvent = (TextBuffer.RangesEvent) event;
+            boolean changed = false;
+            for (int i = 0; i < rangesEvent.getEvents().size(); i++) {
+                changed |= textChanged(rangesEvent.getEvents().get(i), rangesEvent.getText(i));
+            }
+            if (!changed) {
+                return;
+            }
+        } else if (event instanceof TextBuffer.InsertEvent || event instanceof TextBuffer.DeleteEvent) {
+            textChanged(event, textBuffer.getCharSequence());
+        } else if (event instanceof TextBuffer.ResetEvent) {
+            queue.clear();
+            queued.clear();
+            checkAll();
+        } else {
+            return;
+        }
+        publisher.execute(this::publish);
+    }
+
+    // returns true if the text changed
+    private boolean textChanged(TextBuffer.Event event, CharSequence newText) {
+        if (event instanceof TextBuffer.InsertEvent) {
+            TextBuffer.InsertEvent insertEvent = (TextBuffer.InsertEvent) event;
+            textChanged(insertEvent.getPosition(), 0, insertEvent.getText().length(), newText);
+            return true;
+        } else if (event instanceof TextBuffer.DeleteEvent) {
+            TextBuffer.DeleteEvent deleteEvent = (TextBuffer.DeleteEvent) event;
+            textChanged(deleteEvent.getPosition(), deleteEvent.getLength(), 0, newText);
+            return true;
+        }
+        return false;
+    }
+
+    private void textChanged(int position, int removed, int inserted, CharSequence newText) {
+        CharSequence oldText = text;
+        text = newText;
+        if (removed + inserted >= TextBuffer.LARGE_EDIT_LENGTH) {
+            // the worker reads its own views of the snapshots
+            executor.execute(() -> requestChanged(oldText.subSequence(0, oldText.length()),
+                    newText.subSequence(0, newText.length()), position, removed, inserted));
+        } else {
+            requestChanged(oldText, newText, position, removed, inserted);
+        }
+    }
+
+    private void requestChanged(CharSequence oldText, CharSequence newText, int position, int removed, int inserted) {
+        // the previous text of the changed paragraphs doesn't need to be checked anymore
+        for (int start = paragraphStart(oldText, position); start <= position + removed && start <= oldText.length() && !disposed; ) {
+            int end = paragraphEnd(oldText, start);
+            cancel(oldText.subSequence(start, end).toString());
+            start = end + 1;
+        }
+        for (int start = paragraphStart(newText, position); start <= position + inserted && start <= newText.length() && !disposed; ) {
+            int end = paragraphEnd(newText, start);
+            request(newText.subSequence(start, end).toString(), true);
+            start = end + 1;
+        }
+    }
+
+    // queues the check of a paragraph of the text, once for all the paragraphs with the same text
+    private void request(String paragraph, boolean first) {
+        if (disposed || results.containsKey(paragraph)) {
+            return;
+        }
+        Request[] added = new Request[1];
+        queued.compute(paragraph, (p, request) -> {
+            if (request == null) {
+                request = added[0] = new Request(p);
+            }
+            request.holders++;
+            return request;
+        });
+        if (added[0] == null) {
+            return;
+        }
+        if (first) {
+            queue.addFirst(added[0]);
+        } else {
+            queue.addLast(added[0]);
+        }
+        if (draining.compareAndSet(false, true)) {
+            try {
+                executor.execute(this::drain);
+            } catch (RuntimeException e) {
+                // the executor is shut down
+                draining.set(false);
+            }
+        }
+    }
+
+    // a paragraph with this text is gone, its request is cancelled if it was the last one waiting for it
+    private void cancel(String paragraph) {
+        // it stays in the queue, but it is skipped
+        queued.computeIfPresent(paragraph, (p, request) -> --request.holders > 0 ? request : null);
+    }
+
+    private void drain() {
+        int checked = 0;
+        while (!disposed) {
+            Request request = queue.pollFirst();
+            if (request == null) {
+                draining.set(false);
+                // a paragraph queued after the poll, but before the flag was reset, is drained here
+                if (queue.isEmpty() || !draining.compareAndSet(false, true)) {
+                    break;
+                }
+                continue;
+            }
+            if (queued.get(request.paragraph) != request) {
+                // cancelled
+                continue;
+            }
+            results.put(request.paragraph, check(request.paragraph));
+            // only dequeued once cached, so it is not requested again meanwhile
+            queued.remove(request.paragraph, request);
+            if (++checked % PUBLISH_BATCH_SIZE == 0) {
+                publisher.execute(this::publish);
+            }
+        }
+        if (checked % PUBLISH_BATCH_SIZE != 0) {
+            publisher.execute(this::publish);
+        }
+    }
+
+    private int[] check(String paragraph) {
+        try {
+            List<Selection> misspellings = checker.check(paragraph);
+            int[] ranges = new int[2 * misspellings.size()];
+            for (int i = 0; i < misspellings.size(); i++) {
+                ranges[2 * i] = misspellings.get(i).getStart();
+                ranges[2 * i + 1] = misspellings.get(i).getEnd();
+            }
+            return ranges;
+        } catch (RuntimeException e) {
+            LOG.log(Level.WARNING, "Error checking paragraph", e);
+            return new int[0];
+        }
+    }
+
+    private void publish() {
+        if (!disposed) {
+            onResults.run();
+        }
+    }
+
+    // the check of a paragraph text, shared by the paragraphs with that text
+    private static final class Request {
+
+        private final String paragraph;
+        // paragraphs waiting for the check, only changed within the queued map
+        private int holders;
+
+        private Request(String paragraph) {
+            this.paragraph = paragraph;
+        }
+    }
+
+    private static int paragraphStart(CharSequence text, int position) {
+        int start = Math.min(position, text.length());
+        while (start > 0 && text.charAt(start - 1) != '\n') {
+            start--;
+        }
+        return start;
+    }
+
+    // position of the line feed that ends the paragraph, or the text length
+    private static int paragraphEnd(CharSequence text, int start) {
+        int end = start;
+        while (end < text.length() && text.charAt(end) != '\n') {
+            end++;
+        }
+        return end;
+    }
+}
@@ -0,0 +1,19 @@
+package com.gluonhq.richtext.spell;
+
+import com.gluonhq.richtext.Selection;
+
+import java.util.List;
+
+/**
+ * Finds the misspelled words of a paragraph. Implementations are called from a worker thread,
+ * one paragraph at a time, so they must not access the control.
+ */
+@FunctionalInterface
+public interface SpellChecker {
+
+    /**
+     * @param paragraph the text of a paragraph, without the line feed that ends it
+     * @return the ranges of the misspelled words, relative to the start of the paragraph
+     */
+    List<Selection> check(String paragraph);
+}
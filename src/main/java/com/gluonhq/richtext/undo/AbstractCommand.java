@@ -2,6 +2,9 @@ package com.gluonhq.richtext.undo;
 
 public abstract class AbstractCommand<T> {
 
+    // rough shallow size of a command instance: header plus a few fields
+    protected static final long SHALLOW_SIZE = 32;
+
     protected abstract void doUndo(T context);
     protected abstract void doRedo(T context);
 
@@ -23,4 +26,40 @@ public abstract class AbstractCommand<T> {
         doRedo(context);
     }
 
+    /**
+     * Returns true if the given command, executed right after this one, belongs to the same
+     * logical edit (like consecutive key strokes) and should be undone together with it.
+     * @param next command executed after this one
+     * @return true if both commands can be coalesced
+     */
+    protected boolean isCoalescableWith(AbstractCommand<T> next) {
+        return false;
+    }
+
+    /**
+     * Tries to absorb the given command, that has already been executed right after this one,
+     * so that from now on this command alone undoes and redoes the effect of both.
+     * If this method returns false, the caller still can group both commands in a {@link CompoundCommand}.
+     * @param next command executed after this one
+     * @param context the command context
+     * @return true if the command was absorbed
+     */
+    protected boolean mergeWith(AbstractCommand<T> next, T context) {
+        return false;
+    }
+
+    /**
+     * Approximate amount of heap retained by this command, in bytes.
+     * Used by {@link CommandManager} to enforce its memory limit, so it doesn't
+     * need to be exact, but it should grow with the data the command keeps around.
+     * @return approximate retained size in bytes
+     */
+    public long getRetainedSize() {
+        return SHALLOW_SIZE;
+    }
+
+    protected static long sizeOf(String text) {
+        return text == null ? 0 : 40 + 2L * text.length();
+    }
+
 }
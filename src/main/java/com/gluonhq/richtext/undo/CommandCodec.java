@@ -0,0 +1,17 @@
+package com.gluonhq.richtext.undo;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Converts executed commands to and from a binary form, so that
+ * {@link CommandManager} can move old undo history out of the heap.
+ * A command read back must be able to undo exactly what the written one would have undone.
+ */
+public interface CommandCodec<T> {
+
+    void write(AbstractCommand<T> cmd, DataOutput out) throws IOException;
+
+    AbstractCommand<T> read(DataInput in) throws IOException;
+}
@@ -1,5 +1,8 @@
 package com.gluonhq.richtext.undo;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayDeque;
 import java.util.Deque;
 import java.util.Objects;
@@ -15,6 +18,16 @@ public class CommandManager<T> {
     final T context;
     private final Runnable runnable;
 
+    private int maxCommands = Integer.MAX_VALUE;
+    private long maxRetainedBytes = Long.MAX_VALUE;
+    private long retainedBytes;
+    private long evictedCount;
+    private long redoClearedCount;
+    private long coalescingWindow;
+    private long lastExecutionTime;
+    private int maxInMemoryCommands = Integer.MAX_VALUE;
+    private UndoSpillFile<T> spillFile;
+
     public CommandManager(T context) {
         this(context, null);
     }
@@ -26,34 +39,155 @@ public class CommandManager<T> {
 
     public void execute(AbstractCommand<T> cmd) {
         Objects.requireNonNull(cmd).execute(context);
-        undoStack.push(cmd);
-        redoStack.clear();
+        long now = System.currentTimeMillis();
+        AbstractCommand<T> top = undoStack.peek();
+        if (top != null && coalescingWindow > 0 && now - lastExecutionTime <= coalescingWindow && top.isCoalescableWith(cmd)) {
+            merge(pop(undoStack), cmd);
+        } else {
+            push(undoStack, cmd);
+        }
+        lastExecutionTime = now;
+        if (!redoStack.isEmpty()) {
+            redoClearedCount++;
+            clear(redoStack);
+        }
+        spill();
+        evict();
         end();
         LOGGER.log(Level.FINE, "Execute: " + this);
     }
 
     public void undo() {
+        breakCoalescing();
+        reload(1);
         if (!undoStack.isEmpty()) {
-            var cmd = undoStack.pop();
+            var cmd = pop(undoStack);
             cmd.undo(context);
-            redoStack.push(cmd);
+            push(redoStack, cmd);
             end();
             LOGGER.log(Level.FINE, "Undo: " + this);
         }
     }
 
     public void redo() {
+        breakCoalescing();
         if (!redoStack.isEmpty()) {
-            var cmd = redoStack.pop();
+            var cmd = pop(redoStack);
             cmd.redo(context);
-            undoStack.push(cmd);
+            push(undoStack, cmd);
+            spill();
+            evict();
             end();
             LOGGER.log(Level.FINE, "Redo: " + this);
         }
     }
 
+    /**
+     * Enables coalescing of consecutive commands: a command executed within the given time
+     * since the previous one is merged into it, if the previous command accepts it
+     * (see {@link AbstractCommand#isCoalescableWith(AbstractCommand)}).
+     * Undo and redo always end the current run of coalesced commands.
+     * @param millis maximum time between two commands to coalesce them, 0 disables coalescing
+     */
+    public void setCoalescingWindow(long millis) {
+        if (millis < 0) {
+            throw new IllegalArgumentException("Coalescing window can't be negative: " + millis);
+        }
+        this.coalescingWindow = millis;
+    }
+
+    public long getCoalescingWindow() {
+        return coalescingWindow;
+    }
+
+    /**
+     * Ends the current run of coalesced commands, so the next executed command starts a new undo step
+     */
+    public void breakCoalescing() {
+        lastExecutionTime = Long.MIN_VALUE / 2;
+    }
+
+    /**
+     * Merges the latest command into the previous one, regardless of the coalescing window,
+     * so both are undone in a single step. This allows an outer command manager to keep
+     * this one in sync when it coalesces its own commands.
+     * @return true if there were two commands to merge
+     */
+    public boolean coalesceLast() {
+        reload(2);
+        if (undoStack.size() < 2) {
+            return false;
+        }
+        AbstractCommand<T> cmd = pop(undoStack);
+        merge(pop(undoStack), cmd);
+        end();
+        return true;
+    }
+
+    /**
+     * Keeps only the given number of most recent commands of the undo stack in memory.
+     * Older commands are serialized with the given codec into a spill file, and read back
+     * lazily, one at a time, when undo reaches them.
+     * If writing or reading the file fails, spilling is disabled and the history
+     * that couldn't be recovered is dropped.
+     * Calling it again with no path and the same codec only changes the number of commands
+     * kept in memory, and the spilled history is preserved.
+     * @param maxInMemoryCommands number of most recent commands kept in memory, must be positive
+     * @param path the spill file, it is truncated first and deleted by {@link #disableSpilling()}.
+     *             If null, a temporary file is created
+     * @param codec converts commands to and from the spill file
+     */
+    public void enableSpilling(int maxInMemoryCommands, Path path, CommandCodec<T> codec) {
+        if (maxInMemoryCommands <= 0) {
+            throw new IllegalArgumentException("Number of commands in memory must be positive: " + maxInMemoryCommands);
+        }
+        if (spillFile != null && path == null && spillFile.getCodec() == codec) {
+            this.maxInMemoryCommands = maxInMemoryCommands;
+            spill();
+            return;
+        }
+        disableSpilling();
+        try {
+            if (path == null) {
+                path = Files.createTempFile("undo", ".spill");
+                path.toFile().deleteOnExit();
+            }
+            spillFile = new UndoSpillFile<>(path, codec);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Undo spill file couldn't be created", e);
+            return;
+        }
+        this.maxInMemoryCommands = maxInMemoryCommands;
+        spill();
+    }
+
+    /**
+     * Stops spilling commands to disk. Spilled commands are dropped and the spill file is deleted.
+     */
+    public void disableSpilling() {
+        maxInMemoryCommands = Integer.MAX_VALUE;
+        if (spillFile != null) {
+            UndoSpillFile<T> file = spillFile;
+            spillFile = null;
+            evictedCount += file.size();
+            try {
+                file.close();
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Undo spill file couldn't be deleted", e);
+            }
+        }
+    }
+
+    /**
+     * @return the command that the next undo would revert, or null if there is none
+     */
+    public AbstractCommand<T> peekUndo() {
+        reload(1);
+        return undoStack.peek();
+    }
+
     public int getUndoStackSize() {
-        return undoStack.size();
+        return undoStack.size() + getSpilledCount();
     }
 
     public int getRedoStackSize() {
@@ -63,6 +197,156 @@ public class CommandManager<T> {
     public void clearStacks() {
         undoStack.clear();
         redoStack.clear();
+        retainedBytes = 0;
+        if (spillFile != null) {
+            try {
+                spillFile.clear();
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Undo spill file couldn't be cleared", e);
+                disableSpilling();
+            }
+        }
+    }
+
+    /**
+     * Limits the undo history. Once any of the limits is exceeded, the oldest commands are
+     * dropped from the undo stack until the history fits again. The most recent command
+     * is always kept, even if on its own it is larger than the memory limit.
+     * @param maxCommands maximum number of commands in the undo stack, must be positive
+     * @param maxRetainedBytes maximum approximate size of the undo and redo stacks, in bytes,
+     *                         must be positive
+     * @see AbstractCommand#getRetainedSize()
+     */
+    public void setLimits(int maxCommands, long maxRetainedBytes) {
+        if (maxCommands <= 0 || maxRetainedBytes <= 0) {
+            throw new IllegalArgumentException("Undo limits must be positive: " + maxCommands + ", " + maxRetainedBytes);
+        }
+        this.maxCommands = maxCommands;
+        this.maxRetainedBytes = maxRetainedBytes;
+        if (evict()) {
+            end();
+        }
+    }
+
+    public int getMaxCommands() {
+        return maxCommands;
+    }
+
+    public long getMaxRetainedBytes() {
+        return maxRetainedBytes;
+    }
+
+    /**
+     * Total number of commands that were dropped from the undo stack so far.
+     * Together with {@link #getUndoStackSize()} it gives an absolute position in the history,
+     * which unlike the stack size doesn't shift when old commands are evicted.
+     * @return number of evicted commands
+     */
+    public long getEvictedCount() {
+        return evictedCount;
+    }
+
+    /**
+     * Number of times a new command cleared the commands that were undone, so they can't be redone.
+     * The history positions beyond the current one are then different states than before.
+     * @return number of times the redo stack was cleared by a command
+     */
+    public long getRedoClearedCount() {
+        return redoClearedCount;
+    }
+
+    public UndoStats getStats() {
+        return new UndoStats(getUndoStackSize(), redoStack.size(), retainedBytes, evictedCount, getSpilledCount());
+    }
+
+    private int getSpilledCount() {
+        return spillFile == null ? 0 : spillFile.size();
+    }
+
+    // moves the oldest commands beyond the in-memory limit to the spill file
+    private void spill() {
+        while (spillFile != null && undoStack.size() > maxInMemoryCommands) {
+            AbstractCommand<T> cmd = undoStack.removeLast();
+            try {
+                spillFile.push(cmd);
+                retainedBytes -= cmd.getRetainedSize();
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Undo history couldn't be spilled, keeping it in memory", e);
+                undoStack.addLast(cmd);
+                disableSpilling();
+            }
+        }
+    }
+
+    // makes sure the given number of newest undo commands are in memory, if they exist
+    private void reload(int count) {
+        while (spillFile != null && undoStack.size() < count && !spillFile.isEmpty()) {
+            try {
+                undoStack.addLast(spillFile.pop());
+                retainedBytes += undoStack.peekLast().getRetainedSize();
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Undo history couldn't be read back, older edits are lost", e);
+                disableSpilling();
+            }
+        }
+    }
+
+    private void merge(AbstractCommand<T> top, AbstractCommand<T> cmd) {
+        if (top.mergeWith(cmd, context)) {
+            push(undoStack, top);
+        } else {
+            push(undoStack, new CompoundCommand<>(top, cmd));
+        }
+    }
+
+    private void push(Deque<AbstractCommand<T>> stack, AbstractCommand<T> cmd) {
+        stack.push(cmd);
+        retainedBytes += cmd.getRetainedSize();
+    }
+
+    private AbstractCommand<T> pop(Deque<AbstractCommand<T>> stack) {
+        AbstractCommand<T> cmd = stack.pop();
+        retainedBytes -= cmd.getRetainedSize();
+        return cmd;
+    }
+
+    private void clear(Deque<AbstractCommand<T>> stack) {
+        while (!stack.isEmpty()) {
+            pop(stack);
+        }
+    }
+
+    // drops oldest commands first, returns true if any was dropped.
+    // Spilled commands don't retain heap, so only in-memory ones count for the memory limit,
+    // but they are older than the in-memory ones, so they are all dropped before any of those
+    private boolean evict() {
+        boolean evicted = false;
+        while (getUndoStackSize() > maxCommands ||
+                (retainedBytes > maxRetainedBytes && undoStack.size() > 1)) {
+            if (getSpilledCount() > 0) {
+                int dropped = getUndoStackSize() > maxCommands ? 1 : getSpilledCount();
+                try {
+                    if (dropped == 1) {
+                        spillFile.dropOldest();
+                    } else {
+                        spillFile.clear();
+                    }
+                    evictedCount += dropped;
+                } catch (IOException e) {
+                    LOGGER.log(Level.WARNING, "Undo spill file couldn't be trimmed", e);
+                    disableSpilling();
+                }
+            } else {
+                AbstractCommand<T> cmd = undoStack.removeLast();
+                retainedBytes -= cmd.getRetainedSize();
+                evictedCount++;
+            }
+            evicted = true;
+        }
+        if (evicted) {
+            LOGGER.log(Level.FINE, "Evicted: " + this);
+        }
+        return evicted;
     }
 
     private void end() {
@@ -0,0 +1,64 @@
+package com.gluonhq.richtext.undo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Groups already executed commands, so they can be undone and redone as a single step.
+ * Commands are redone in the order they were added, and undone in reverse order.
+ */
+public class CompoundCommand<T> extends AbstractCommand<T> {
+
+    private final List<AbstractCommand<T>> commands = new ArrayList<>();
+
+    @SafeVarargs
+    public CompoundCommand(AbstractCommand<T>... commands) {
+        for (AbstractCommand<T> cmd : commands) {
+            add(cmd);
+        }
+    }
+
+    public void add(AbstractCommand<T> cmd) {
+        commands.add(Objects.requireNonNull(cmd));
+    }
+
+    public List<AbstractCommand<T>> getCommands() {
+        return List.copyOf(commands);
+    }
+
+    @Override
+    protected void doUndo(T context) {
+        for (int i = commands.size() - 1; i >= 0; i--) {
+            commands.get(i).undo(context);
+        }
+    }
+
+    @Override
+    protected void doRedo(T context) {
+        commands.forEach(cmd -> cmd.redo(context));
+    }
+
+    @Override
+    protected boolean isCoalescableWith(AbstractCommand<T> next) {
+        return !commands.isEmpty() && commands.get(commands.size() - 1).isCoalescableWith(next);
+    }
+
+    @Override
+    protected boolean mergeWith(AbstractCommand<T> next, T context) {
+        if (commands.isEmpty() || !commands.get(commands.size() - 1).mergeWith(next, context)) {
+            add(next);
+        }
+        return true;
+    }
+
+    @Override
+    public long getRetainedSize() {
+        return SHALLOW_SIZE + commands.stream().mapToLong(AbstractCommand::getRetainedSize).sum();
+    }
+
+    @Override
+    public String toString() {
+        return "CompoundCommand" + commands;
+    }
+}
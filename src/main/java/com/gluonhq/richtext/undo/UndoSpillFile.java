@@ -0,0 +1,121 @@
+package com.gluonhq.richtext.undo;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Objects;
+
+/**
+ * Stack of serialized commands backed by a local file.
+ * New commands are appended at the end of the file, and popping the newest one truncates
+ * the file, so it never grows beyond the spilled history. Dropping the oldest commands
+ * only forgets their records, until their space is more than half of the file and above
+ * a threshold: then the records that are left are moved to the start of the file.
+ */
+class UndoSpillFile<T> {
+
+    static final long DEFAULT_COMPACTION_THRESHOLD = 1 << 20;
+
+    private final Path path;
+    private final CommandCodec<T> codec;
+    private final RandomAccessFile file;
+    private final Deque<Long> offsets = new ArrayDeque<>(); // last is newest
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    private final long compactionThreshold;
+
+    UndoSpillFile(Path path, CommandCodec<T> codec) throws IOException {
+        this(path, codec, DEFAULT_COMPACTION_THRESHOLD);
+    }
+
+    UndoSpillFile(Path path, CommandCodec<T> codec, long compactionThreshold) throws IOException {
+        this.path = Objects.requireNonNull(path);
+        this.codec = Objects.requireNonNull(codec);
+        this.compactionThreshold = compactionThreshold;
+        this.file = new RandomAccessFile(path.toFile(), "rw");
+        this.file.setLength(0);
+    }
+
+    CommandCodec<T> getCodec() {
+        return codec;
+    }
+
+    int size() {
+        return offsets.size();
+    }
+
+    boolean isEmpty() {
+        return offsets.isEmpty();
+    }
+
+    long getFileLength() throws IOException {
+        return file.length();
+    }
+
+    // cmd becomes the newest spilled command
+    void push(AbstractCommand<T> cmd) throws IOException {
+        buffer.reset();
+        codec.write(cmd, new DataOutputStream(buffer));
+        long offset = file.length();
+        file.seek(offset);
+        file.write(buffer.toByteArray());
+        offsets.addLast(offset);
+    }
+
+    AbstractCommand<T> pop() throws IOException {
+        long offset = offsets.removeLast();
+        byte[] bytes = new byte[(int) (file.length() - offset)];
+        file.seek(offset);
+        file.readFully(bytes);
+        file.setLength(offsets.isEmpty() ? 0 : offset);
+        return codec.read(new DataInputStream(new ByteArrayInputStream(bytes)));
+    }
+
+    void dropOldest() throws IOException {
+        offsets.removeFirst();
+        if (offsets.isEmpty()) {
+            file.setLength(0);
+            return;
+        }
+        long dropped = offsets.getFirst();
+        if (dropped > compactionThreshold && dropped > file.length() / 2) {
+            compact(dropped);
+        }
+    }
+
+    // moves the records after the dropped bytes to the start of the file.
+    // More than half of the file is dropped each time, so the copying is amortized over the pushes
+    private void compact(long dropped) throws IOException {
+        long length = file.length() - dropped;
+        byte[] chunk = new byte[(int) Math.min(length, 1 << 16)];
+        for (long moved = 0; moved < length; ) {
+            int n = (int) Math.min(chunk.length, length - moved);
+            file.seek(dropped + moved);
+            file.readFully(chunk, 0, n);
+            file.seek(moved);
+            file.write(chunk, 0, n);
+            moved += n;
+        }
+        file.setLength(length);
+        for (int i = offsets.size(); i > 0; i--) {
+            offsets.addLast(offsets.removeFirst() - dropped);
+        }
+    }
+
+    void clear() throws IOException {
+        offsets.clear();
+        file.setLength(0);
+    }
+
+    void close() throws IOException {
+        offsets.clear();
+        file.close();
+        Files.deleteIfExists(path);
+    }
+}
@@ -0,0 +1,69 @@
+package com.gluonhq.richtext.undo;
+
+/**
+ * Snapshot of the undo history held by one or more {@link CommandManager}s.
+ * Retained bytes are an approximation based on {@link AbstractCommand#getRetainedSize()}.
+ */
+public final class UndoStats {
+
+    public static final UndoStats EMPTY = new UndoStats(0, 0, 0, 0, 0);
+
+    private final int undoCount;
+    private final int redoCount;
+    private final long retainedBytes;
+    private final long evictedCount;
+    private final int spilledCount;
+
+    public UndoStats(int undoCount, int redoCount, long retainedBytes, long evictedCount, int spilledCount) {
+        this.undoCount = undoCount;
+        this.redoCount = redoCount;
+        this.retainedBytes = retainedBytes;
+        this.evictedCount = evictedCount;
+        this.spilledCount = spilledCount;
+    }
+
+    public int getUndoCount() {
+        return undoCount;
+    }
+
+    public int getRedoCount() {
+        return redoCount;
+    }
+
+    /**
+     * @return approximate amount of heap retained by the undo and redo stacks, in bytes
+     */
+    public long getRetainedBytes() {
+        return retainedBytes;
+    }
+
+    /**
+     * @return total number of commands dropped from the undo stack due to the configured limits
+     */
+    public long getEvictedCount() {
+        return evictedCount;
+    }
+
+    /**
+     * @return number of undo commands, out of {@link #getUndoCount()}, that are kept in a spill file
+     * instead of in memory
+     */
+    public int getSpilledCount() {
+        return spilledCount;
+    }
+
+    public UndoStats add(UndoStats other) {
+        return new UndoStats(undoCount + other.undoCount, redoCount + other.redoCount,
+                retainedBytes + other.retainedBytes, evictedCount + other.evictedCount,
+                spilledCount + other.spilledCount);
+    }
+
+    @Override
+    public String toString() {
+        return "UndoStats{undo=" + undoCount +
+                ", redo=" + redoCount +
+                ", bytes=" + retainedBytes +
+                ", evicted=" + evictedCount +
+                ", spilled=" + spilledCount + "}";
+    }
+}
@@ -1,30 +1,142 @@
 package com.gluonhq.richtext.viewmodel;
 
+import com.gluonhq.richtext.Caret;
 import com.gluonhq.richtext.Selection;
+import com.gluonhq.richtext.model.TextBuffer;
+import com.gluonhq.richtext.undo.AbstractCommand;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.List;
 import java.util.Objects;
 
 
 /**
  * Abstract command add context store/restore operations
- * to already existing undo/redo framework
+ * to already existing undo/redo framework.
+ * The edits a command makes to the text buffer are recorded as a single delta the first time
+ * the command runs, so undo and redo just revert and reapply that delta, and the text buffer
+ * doesn't need an undo history of its own.
  */
-abstract class AbstractEditCmd extends com.gluonhq.richtext.undo.AbstractCommand<RichTextAreaViewModel> {
+abstract class AbstractEditCmd extends AbstractCommand<RichTextAreaViewModel> {
 
     private int caretPosition;
     Selection selection;
+    private List<Caret> additionalCarets = List.of();
+
+    // outcome of the last execution, restored by redo and used to coalesce consecutive edits
+    private int textLength;
+    private int caretPositionAfter = -1;
+    private Selection selectionAfter = Selection.UNDEFINED;
+    private List<Caret> additionalCaretsAfter = List.of();
+    private boolean textChanged;
+    private TextBuffer.Delta delta;
 
 
     protected void storeContext( RichTextAreaViewModel viewModel ) {
         Objects.requireNonNull(viewModel);
         this.caretPosition = viewModel.getCaretPosition();
         this.selection = viewModel.getSelection();
+        this.additionalCarets = List.copyOf(viewModel.getAdditionalCarets());
+        this.textLength = viewModel.getTextLength();
     }
 
     protected void restoreContext( RichTextAreaViewModel viewModel ) {
         Objects.requireNonNull(viewModel);
         viewModel.setCaretPosition(caretPosition);
         viewModel.setSelection(selection);
+        viewModel.getAdditionalCarets().setAll(additionalCarets);
+    }
+
+    /**
+     * Applies the edit to the view model, the first time the command is executed
+     * @param viewModel the view model
+     */
+    abstract void edit(RichTextAreaViewModel viewModel);
+
+    @Override
+    protected void doRedo(RichTextAreaViewModel viewModel) {
+        Objects.requireNonNull(viewModel);
+        if (delta == null) {
+            delta = viewModel.getTextBuffer().recordChange(() -> edit(viewModel));
+            this.caretPositionAfter = viewModel.getCaretPosition();
+            this.selectionAfter = viewModel.getSelection();
+            this.additionalCaretsAfter = List.copyOf(viewModel.getAdditionalCarets());
+            this.textChanged = viewModel.getTextLength() != textLength;
+        } else {
+            viewModel.redo(delta);
+            viewModel.setCaretPosition(caretPositionAfter);
+            viewModel.setSelection(selectionAfter);
+            viewModel.getAdditionalCarets().setAll(additionalCaretsAfter);
+        }
+    }
+
+    @Override
+    protected void doUndo(RichTextAreaViewModel viewModel) {
+        Objects.requireNonNull(viewModel).undo(delta);
+    }
+
+    boolean isExecuted() {
+        return delta != null;
+    }
+
+    /**
+     * An edit is caret local if it changed the text right at the caret, without a selection.
+     * Consecutive caret local edits can be undone together.
+     * @return true if this edit is caret local
+     */
+    boolean isCaretLocal() {
+        return textChanged && selection != null && !selection.isDefined();
+    }
+
+    @Override
+    protected boolean isCoalescableWith(AbstractCommand<RichTextAreaViewModel> next) {
+        if (!(next instanceof AbstractEditCmd)) {
+            return false;
+        }
+        AbstractEditCmd cmd = (AbstractEditCmd) next;
+        return isCaretLocal() && cmd.isCaretLocal() && cmd.caretPosition == caretPositionAfter &&
+                cmd.additionalCarets.equals(additionalCaretsAfter);
+    }
+
+    // called by subclasses to absorb the next edit, executed right after this one
+    void absorb(AbstractEditCmd cmd, RichTextAreaViewModel viewModel) {
+        viewModel.getTextBuffer().coalesce(delta, cmd.delta);
+        this.caretPositionAfter = cmd.caretPositionAfter;
+        this.selectionAfter = cmd.selectionAfter;
+        this.additionalCaretsAfter = cmd.additionalCaretsAfter;
+    }
+
+    @Override
+    public long getRetainedSize() {
+        // caret positions and selections
+        return SHALLOW_SIZE + 40 + 24L * (additionalCarets.size() + additionalCaretsAfter.size()) + (delta == null ? 0 : delta.getRetainedSize());
+    }
+
+    // writes the context and delta of an executed command, see EditCmdCodec
+    void writeContext(EditCmdCodec codec, DataOutput out) throws IOException {
+        out.writeInt(caretPosition);
+        codec.writeSelection(selection, out);
+        codec.writeCarets(additionalCarets, out);
+        out.writeInt(textLength);
+        out.writeInt(caretPositionAfter);
+        codec.writeSelection(selectionAfter, out);
+        codec.writeCarets(additionalCaretsAfter, out);
+        out.writeBoolean(textChanged);
+        codec.writeDelta(delta, out);
+    }
+
+    void readContext(EditCmdCodec codec, DataInput in) throws IOException {
+        caretPosition = in.readInt();
+        selection = codec.readSelection(in);
+        additionalCarets = codec.readCarets(in);
+        textLength = in.readInt();
+        caretPositionAfter = in.readInt();
+        selectionAfter = codec.readSelection(in);
+        additionalCaretsAfter = codec.readCarets(in);
+        textChanged = in.readBoolean();
+        delta = codec.readDelta(in);
     }
 
     @Override
@@ -26,6 +26,7 @@ public class ActionCmdCaretMove implements ActionCmd {
     }
 
     public void apply(RichTextAreaViewModel viewModel) {
+        viewModel.getAdditionalCarets().clear();
         viewModel.moveCaret(direction, changeSelection, wordSelection, lineSelection, false);
     }
 
@@ -0,0 +1,17 @@
+package com.gluonhq.richtext.viewmodel;
+
+import java.util.Objects;
+
+class ActionCmdCheckpoint implements ActionCmd {
+
+    private final String name;
+
+    public ActionCmdCheckpoint(String name) {
+        this.name = Objects.requireNonNull(name);
+    }
+
+    @Override
+    public void apply(RichTextAreaViewModel viewModel) {
+        viewModel.createCheckpoint(name);
+    }
+}
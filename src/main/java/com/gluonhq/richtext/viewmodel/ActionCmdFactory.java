@@ -3,6 +3,7 @@ package com.gluonhq.richtext.viewmodel;
 import com.gluonhq.richtext.model.Document;
 import com.gluonhq.richtext.model.ImageDecoration;
 import com.gluonhq.richtext.model.ParagraphDecoration;
+import com.gluonhq.richtext.model.SearchQuery;
 import com.gluonhq.richtext.model.TextDecoration;
 import javafx.scene.input.KeyEvent;
 
@@ -17,6 +18,7 @@ public final class ActionCmdFactory {
 
     private final ActionCmd newDocument = new ActionCmdNew();
     private final ActionCmd save = new ActionCmdSave();
+    private final ActionCmd revertToSaved = new ActionCmdRevert(null);
 
     private final ActionCmd selectAll = new ActionCmdSelectAll();
 
@@ -52,6 +54,26 @@ public final class ActionCmdFactory {
         return save;
     }
 
+    public ActionCmd revertToSaved() {
+        return revertToSaved;
+    }
+
+    public ActionCmd createCheckpoint(String name) {
+        return new ActionCmdCheckpoint(name);
+    }
+
+    public ActionCmd revertToCheckpoint(String name) {
+        return new ActionCmdRevert(name);
+    }
+
+    public ActionCmd find(SearchQuery query, boolean forward) {
+        return new ActionCmdFind(query, forward);
+    }
+
+    public ActionCmd replaceAll(SearchQuery query, String replacement) {
+        return new ActionCmdReplaceAll(query, replacement);
+    }
+
     public ActionCmd selectAll() {
         return selectAll;
     }
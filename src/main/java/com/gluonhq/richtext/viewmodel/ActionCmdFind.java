@@ -0,0 +1,21 @@
+package com.gluonhq.richtext.viewmodel;
+
+import com.gluonhq.richtext.model.SearchQuery;
+
+import java.util.Objects;
+
+class ActionCmdFind implements ActionCmd {
+
+    private final SearchQuery query;
+    private final boolean forward;
+
+    public ActionCmdFind(SearchQuery query, boolean forward) {
+        this.query = Objects.requireNonNull(query);
+        this.forward = forward;
+    }
+
+    @Override
+    public void apply(RichTextAreaViewModel viewModel) {
+        viewModel.find(query, forward);
+    }
+}
@@ -0,0 +1,29 @@
+package com.gluonhq.richtext.viewmodel;
+
+import com.gluonhq.richtext.model.SearchQuery;
+import javafx.beans.binding.BooleanBinding;
+
+import java.util.Objects;
+
+class ActionCmdReplaceAll implements ActionCmd {
+
+    private final SearchQuery query;
+    private final String replacement;
+
+    public ActionCmdReplaceAll(SearchQuery query, String replacement) {
+        this.query = Objects.requireNonNull(query);
+        this.replacement = Objects.requireNonNull(replacement);
+    }
+
+    @Override
+    public void apply(RichTextAreaViewModel viewModel) {
+        if (viewModel.isEditable()) {
+            viewModel.replaceAll(query, replacement);
+        }
+    }
+
+    @Override
+    public BooleanBinding getDisabledBinding(RichTextAreaViewModel viewModel) {
+        return viewModel.editableProperty().not();
+    }
+}
@@ -0,0 +1,37 @@
+package com.gluonhq.richtext.viewmodel;
+
+import javafx.beans.binding.Bindings;
+import javafx.beans.binding.BooleanBinding;
+
+class ActionCmdRevert implements ActionCmd {
+
+    private final String checkpointName;
+
+    /**
+     * Reverts to the named checkpoint, or to the last saved content if the name is null
+     * @param checkpointName name of the checkpoint, or null
+     */
+    public ActionCmdRevert(String checkpointName) {
+        this.checkpointName = checkpointName;
+    }
+
+    @Override
+    public void apply(RichTextAreaViewModel viewModel) {
+        if (viewModel.isEditable()) {
+            if (checkpointName == null) {
+                viewModel.revertToSaved();
+            } else {
+                viewModel.revertToCheckpoint(checkpointName);
+            }
+        }
+    }
+
+    @Override
+    public BooleanBinding getDisabledBinding(RichTextAreaViewModel viewModel) {
+        if (checkpointName != null) {
+            return viewModel.editableProperty().not();
+        }
+        return Bindings.createBooleanBinding(() -> viewModel.isSaved() || !viewModel.isEditable(),
+                viewModel.savedProperty(), viewModel.editableProperty());
+    }
+}
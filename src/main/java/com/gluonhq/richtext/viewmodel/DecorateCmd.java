@@ -5,6 +5,9 @@ import com.gluonhq.richtext.model.ImageDecoration;
 import com.gluonhq.richtext.model.ParagraphDecoration;
 import com.gluonhq.richtext.model.TextDecoration;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.Objects;
 
 class DecorateCmd extends AbstractEditCmd {
@@ -17,8 +20,9 @@ class DecorateCmd extends AbstractEditCmd {
     }
 
     @Override
-    public void doRedo(RichTextAreaViewModel viewModel) {
-        if (selection.isDefined() || decoration instanceof ImageDecoration || decoration instanceof ParagraphDecoration) {
+    void edit(RichTextAreaViewModel viewModel) {
+        if (selection.isDefined() || Objects.requireNonNull(viewModel).hasAdditionalSelection() ||
+                decoration instanceof ImageDecoration || decoration instanceof ParagraphDecoration) {
             Objects.requireNonNull(viewModel).decorate(decoration);
         } else {
             prevDecoration = Objects.requireNonNull(viewModel).getDecorationAtCaret();
@@ -26,12 +30,34 @@ class DecorateCmd extends AbstractEditCmd {
         }
     }
 
+    @Override
+    public void doRedo(RichTextAreaViewModel viewModel) {
+        boolean executed = isExecuted();
+        super.doRedo(viewModel);
+        if (executed && prevDecoration != null) {
+            Objects.requireNonNull(viewModel).setDecorationAtCaret(decoration);
+        }
+    }
+
     @Override
     public void doUndo(RichTextAreaViewModel viewModel) {
         if (prevDecoration != null && prevDecoration instanceof TextDecoration) {
             Objects.requireNonNull(viewModel).setDecorationAtCaret(prevDecoration);
         }
-        Objects.requireNonNull(viewModel).undoDecoration();
+        Objects.requireNonNull(viewModel).undoDecoration(() -> super.doUndo(viewModel));
+    }
+
+    void write(EditCmdCodec codec, DataOutput out) throws IOException {
+        codec.writeDecoration(decoration, out);
+        codec.writeDecoration(prevDecoration, out);
+        writeContext(codec, out);
+    }
+
+    static DecorateCmd read(EditCmdCodec codec, DataInput in) throws IOException {
+        DecorateCmd cmd = new DecorateCmd(codec.readDecoration(in));
+        cmd.prevDecoration = codec.readDecoration(in);
+        cmd.readContext(codec, in);
+        return cmd;
     }
 
     @Override
@@ -0,0 +1,159 @@
+package com.gluonhq.richtext.viewmodel;
+
+import com.gluonhq.richtext.Caret;
+import com.gluonhq.richtext.Selection;
+import com.gluonhq.richtext.model.Decoration;
+import com.gluonhq.richtext.model.DocumentCodec;
+import com.gluonhq.richtext.model.TextBuffer;
+import com.gluonhq.richtext.undo.AbstractCommand;
+import com.gluonhq.richtext.undo.CommandCodec;
+import com.gluonhq.richtext.undo.CompoundCommand;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Serializes edit commands for the undo spill file.
+ * Deltas and checkpoints are serialized by the text buffer that recorded them, and decorations
+ * by value, so the spilled commands don't keep any of them in memory.
+ */
+class EditCmdCodec implements CommandCodec<RichTextAreaViewModel> {
+
+    private static final byte INSERT = 1;
+    private static final byte REMOVE = 2;
+    private static final byte DECORATE = 3;
+    private static final byte REVERT = 4;
+    private static final byte REPLACE_ALL = 5;
+    private static final byte COMPOUND = 6;
+    private static final byte INSERT_DOCUMENT = 7;
+
+    private final TextBuffer textBuffer;
+
+    EditCmdCodec(TextBuffer textBuffer) {
+        this.textBuffer = Objects.requireNonNull(textBuffer);
+    }
+
+    @Override
+    public void write(AbstractCommand<RichTextAreaViewModel> cmd, DataOutput out) throws IOException {
+        if (cmd instanceof CompoundCommand) {
+            List<AbstractCommand<RichTextAreaViewModel>> commands = ((CompoundCommand<RichTextAreaViewModel>) cmd).getCommands();
+            out.writeByte(COMPOUND);
+            out.writeInt(commands.size());
+            for (AbstractCommand<RichTextAreaViewModel> command : commands) {
+                write(command, out);
+            }
+        } else if (cmd instanceof InsertTextCmd) {
+            out.writeByte(INSERT);
+            ((InsertTextCmd) cmd).write(this, out);
+        } else if (cmd instanceof RemoveTextCmd) {
+            out.writeByte(REMOVE);
+            ((RemoveTextCmd) cmd).write(this, out);
+        } else if (cmd instanceof DecorateCmd) {
+            out.writeByte(DECORATE);
+            ((DecorateCmd) cmd).write(this, out);
+        } else if (cmd instanceof RevertCmd) {
+            out.writeByte(REVERT);
+            ((RevertCmd) cmd).write(this, out);
+        } else if (cmd instanceof ReplaceAllCmd) {
+            out.writeByte(REPLACE_ALL);
+            ((ReplaceAllCmd) cmd).write(this, out);
+        } else if (cmd instanceof InsertDocumentCmd) {
+            out.writeByte(INSERT_DOCUMENT);
+            ((InsertDocumentCmd) cmd).write(this, out);
+        } else {
+            throw new IOException("Command type not supported: " + cmd);
+        }
+    }
+
+    @Override
+    public AbstractCommand<RichTextAreaViewModel> read(DataInput in) throws IOException {
+        byte type = in.readByte();
+        switch (type) {
+            case INSERT: return InsertTextCmd.read(this, in);
+            case REMOVE: return RemoveTextCmd.read(this, in);
+            case DECORATE: return DecorateCmd.read(this, in);
+            case REVERT: return RevertCmd.read(this, in);
+            case REPLACE_ALL: return ReplaceAllCmd.read(this, in);
+            case INSERT_DOCUMENT: return InsertDocumentCmd.read(this, in);
+            case COMPOUND:
+                int size = in.readInt();
+                CompoundCommand<RichTextAreaViewModel> compound = new CompoundCommand<>();
+                for (int i = 0; i < size; i++) {
+                    compound.add(read(in));
+                }
+                return compound;
+            default:
+                throw new IOException("Unknown command type: " + type);
+        }
+    }
+
+    void writeText(String text, DataOutput out) throws IOException {
+        out.writeInt(text.length());
+        out.writeChars(text);
+    }
+
+    String readText(DataInput in) throws IOException {
+        char[] chars = new char[in.readInt()];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = in.readChar();
+        }
+        return new String(chars);
+    }
+
+    void writeSelection(Selection selection, DataOutput out) throws IOException {
+        out.writeInt(selection.getStart());
+        out.writeInt(selection.getEnd());
+    }
+
+    Selection readSelection(DataInput in) throws IOException {
+        return new Selection(in.readInt(), in.readInt());
+    }
+
+    void writeCarets(List<Caret> carets, DataOutput out) throws IOException {
+        out.writeInt(carets.size());
+        for (Caret caret : carets) {
+            out.writeInt(caret.getPosition());
+            out.writeInt(caret.getAnchor());
+        }
+    }
+
+    List<Caret> readCarets(DataInput in) throws IOException {
+        int size = in.readInt();
+        List<Caret> carets = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            carets.add(new Caret(in.readInt(), in.readInt()));
+        }
+        return carets;
+    }
+
+    void writeDelta(TextBuffer.Delta delta, DataOutput out) throws IOException {
+        out.writeBoolean(delta != null);
+        if (delta != null) {
+            textBuffer.writeDelta(delta, out);
+        }
+    }
+
+    TextBuffer.Delta readDelta(DataInput in) throws IOException {
+        return in.readBoolean() ? textBuffer.readDelta(in) : null;
+    }
+
+    void writeDecoration(Decoration decoration, DataOutput out) throws IOException {
+        DocumentCodec.writeDecoration(decoration, out);
+    }
+
+    Decoration readDecoration(DataInput in) throws IOException {
+        return DocumentCodec.readDecoration(in);
+    }
+
+    void writeCheckpoint(TextBuffer.Checkpoint checkpoint, DataOutput out) throws IOException {
+        textBuffer.writeCheckpoint(checkpoint, out);
+    }
+
+    TextBuffer.Checkpoint readCheckpoint(DataInput in) throws IOException {
+        return textBuffer.readCheckpoint(in);
+    }
+}
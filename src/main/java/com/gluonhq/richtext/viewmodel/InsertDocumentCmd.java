@@ -0,0 +1,61 @@
+package com.gluonhq.richtext.viewmodel;
+
+import com.gluonhq.richtext.model.DecorationModel;
+import com.gluonhq.richtext.model.Document;
+import com.gluonhq.richtext.model.ParagraphDecoration;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+class InsertDocumentCmd extends AbstractEditCmd {
+
+    private final Document document;
+
+    public InsertDocumentCmd(Document document) {
+        this.document = Objects.requireNonNull(document);
+    }
+
+    @Override
+    void edit(RichTextAreaViewModel viewModel) {
+        Objects.requireNonNull(viewModel).insert(document);
+    }
+
+    @Override
+    public long getRetainedSize() {
+        return super.getRetainedSize() + sizeOf(document.getText());
+    }
+
+    void write(EditCmdCodec codec, DataOutput out) throws IOException {
+        codec.writeText(document.getText(), out);
+        out.writeInt(document.getDecorations().size());
+        for (DecorationModel decorationModel : document.getDecorations()) {
+            out.writeInt(decorationModel.getStart());
+            out.writeInt(decorationModel.getLength());
+            codec.writeDecoration(decorationModel.getDecoration(), out);
+            codec.writeDecoration(decorationModel.getParagraphDecoration(), out);
+        }
+        writeContext(codec, out);
+    }
+
+    static InsertDocumentCmd read(EditCmdCodec codec, DataInput in) throws IOException {
+        String text = codec.readText(in);
+        int size = in.readInt();
+        List<DecorationModel> decorations = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            decorations.add(new DecorationModel(in.readInt(), in.readInt(),
+                    codec.readDecoration(in), (ParagraphDecoration) codec.readDecoration(in)));
+        }
+        InsertDocumentCmd cmd = new InsertDocumentCmd(new Document(text, decorations, 0));
+        cmd.readContext(codec, in);
+        return cmd;
+    }
+
+    @Override
+    public String toString() {
+        return "InsertDocumentCmd[" + super.toString() + ", " + document.getText() + "]";
+    }
+}
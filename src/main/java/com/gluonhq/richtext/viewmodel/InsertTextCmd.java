@@ -1,23 +1,56 @@
 package com.gluonhq.richtext.viewmodel;
 
+import com.gluonhq.richtext.undo.AbstractCommand;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.Objects;
 
 class InsertTextCmd extends AbstractEditCmd {
 
-    private final String content;
+    private String content;
 
     public InsertTextCmd(String content) {
         this.content = content;
     }
 
     @Override
-    public void doRedo( RichTextAreaViewModel viewModel ) {
+    void edit(RichTextAreaViewModel viewModel) {
         Objects.requireNonNull(viewModel).insert(content);
     }
 
+    // a new line ends the current run of typed text
+    @Override
+    boolean isCaretLocal() {
+        return super.isCaretLocal() && content.indexOf('\n') < 0;
+    }
+
+    // consecutive typed text becomes a single insertion
     @Override
-    public void doUndo( RichTextAreaViewModel viewModel ) {
-        Objects.requireNonNull(viewModel).undo();
+    protected boolean mergeWith(AbstractCommand<RichTextAreaViewModel> next, RichTextAreaViewModel viewModel) {
+        if (next instanceof InsertTextCmd) {
+            content += ((InsertTextCmd) next).content;
+            absorb((InsertTextCmd) next, viewModel);
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public long getRetainedSize() {
+        return super.getRetainedSize() + sizeOf(content);
+    }
+
+    void write(EditCmdCodec codec, DataOutput out) throws IOException {
+        codec.writeText(content, out);
+        writeContext(codec, out);
+    }
+
+    static InsertTextCmd read(EditCmdCodec codec, DataInput in) throws IOException {
+        InsertTextCmd cmd = new InsertTextCmd(codec.readText(in));
+        cmd.readContext(codec, in);
+        return cmd;
     }
 
     @Override
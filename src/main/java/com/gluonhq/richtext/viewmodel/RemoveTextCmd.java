@@ -1,29 +1,52 @@
 package com.gluonhq.richtext.viewmodel;
 
+import com.gluonhq.richtext.undo.AbstractCommand;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.Objects;
 
 class RemoveTextCmd extends AbstractEditCmd {
 
     private final int caretOffset;
+    private int length = 1;
 
     public RemoveTextCmd(int caretOffset) {
         this.caretOffset = caretOffset;
     }
 
     @Override
-    public void doRedo( RichTextAreaViewModel viewModel ) {
-        Objects.requireNonNull(viewModel);
-        viewModel.remove(caretOffset);
+    void edit(RichTextAreaViewModel viewModel) {
+        Objects.requireNonNull(viewModel).remove(caretOffset, length);
     }
 
+    // consecutive backspace or delete key strokes become a single removal
     @Override
-    public void doUndo( RichTextAreaViewModel viewModel ) {
-        Objects.requireNonNull(viewModel);
-        viewModel.undo();
+    protected boolean mergeWith(AbstractCommand<RichTextAreaViewModel> next, RichTextAreaViewModel viewModel) {
+        if (next instanceof RemoveTextCmd && ((RemoveTextCmd) next).caretOffset == caretOffset) {
+            length += ((RemoveTextCmd) next).length;
+            absorb((RemoveTextCmd) next, viewModel);
+            return true;
+        }
+        return false;
+    }
+
+    void write(EditCmdCodec codec, DataOutput out) throws IOException {
+        out.writeInt(caretOffset);
+        out.writeInt(length);
+        writeContext(codec, out);
+    }
+
+    static RemoveTextCmd read(EditCmdCodec codec, DataInput in) throws IOException {
+        RemoveTextCmd cmd = new RemoveTextCmd(in.readInt());
+        cmd.length = in.readInt();
+        cmd.readContext(codec, in);
+        return cmd;
     }
 
     @Override
     public String toString() {
-        return "RemoveTextCmd[" + super.toString() + ", " + caretOffset + "]";
+        return "RemoveTextCmd[" + super.toString() + ", " + caretOffset + " x " + length + "]";
     }
 }
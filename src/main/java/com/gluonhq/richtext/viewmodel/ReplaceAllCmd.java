@@ -0,0 +1,64 @@
+package com.gluonhq.richtext.viewmodel;
+
+import com.gluonhq.richtext.model.SearchQuery;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Objects;
+
+class ReplaceAllCmd extends AbstractEditCmd {
+
+    private final SearchQuery query;
+    private final String replacement;
+    private int count;
+
+    public ReplaceAllCmd(SearchQuery query, String replacement) {
+        this.query = Objects.requireNonNull(query);
+        this.replacement = Objects.requireNonNull(replacement);
+    }
+
+    int getCount() {
+        return count;
+    }
+
+    @Override
+    void edit(RichTextAreaViewModel viewModel) {
+        count = Objects.requireNonNull(viewModel).replaceMatches(query, replacement);
+    }
+
+    @Override
+    public long getRetainedSize() {
+        return super.getRetainedSize() + sizeOf(query.getText()) + sizeOf(replacement);
+    }
+
+    void write(EditCmdCodec codec, DataOutput out) throws IOException {
+        codec.writeText(query.getText(), out);
+        out.writeBoolean(query.isMatchCase());
+        out.writeBoolean(query.isWholeWord());
+        out.writeBoolean(query.isRegex());
+        out.writeInt(query.getContextLength());
+        codec.writeText(replacement, out);
+        out.writeInt(count);
+        writeContext(codec, out);
+    }
+
+    static ReplaceAllCmd read(EditCmdCodec codec, DataInput in) throws IOException {
+        SearchQuery query = SearchQuery.builder()
+                .text(codec.readText(in))
+                .matchCase(in.readBoolean())
+                .wholeWord(in.readBoolean())
+                .regex(in.readBoolean())
+                .contextLength(in.readInt())
+                .build();
+        ReplaceAllCmd cmd = new ReplaceAllCmd(query, codec.readText(in));
+        cmd.count = in.readInt();
+        cmd.readContext(codec, in);
+        return cmd;
+    }
+
+    @Override
+    public String toString() {
+        return "ReplaceAllCmd[" + super.toString() + ", " + query + " -> " + replacement + " x " + count + "]";
+    }
+}
@@ -0,0 +1,42 @@
+package com.gluonhq.richtext.viewmodel;
+
+import com.gluonhq.richtext.model.TextBuffer;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Objects;
+
+class RevertCmd extends AbstractEditCmd {
+
+    private final TextBuffer.Checkpoint checkpoint;
+
+    public RevertCmd(TextBuffer.Checkpoint checkpoint) {
+        this.checkpoint = Objects.requireNonNull(checkpoint);
+    }
+
+    TextBuffer.Checkpoint getCheckpoint() {
+        return checkpoint;
+    }
+
+    @Override
+    void edit(RichTextAreaViewModel viewModel) {
+        Objects.requireNonNull(viewModel).revert(checkpoint);
+    }
+
+    void write(EditCmdCodec codec, DataOutput out) throws IOException {
+        codec.writeCheckpoint(checkpoint, out);
+        writeContext(codec, out);
+    }
+
+    static RevertCmd read(EditCmdCodec codec, DataInput in) throws IOException {
+        RevertCmd cmd = new RevertCmd(codec.readCheckpoint(in));
+        cmd.readContext(codec, in);
+        return cmd;
+    }
+
+    @Override
+    public String toString() {
+        return "RevertCmd[" + super.toString() + ", " + checkpoint + "]";
+    }
+}
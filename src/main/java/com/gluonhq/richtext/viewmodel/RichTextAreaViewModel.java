@@ -1,21 +1,32 @@
 package com.gluonhq.richtext.viewmodel;
 
+import com.gluonhq.richtext.Caret;
 import com.gluonhq.richtext.Selection;
 import com.gluonhq.richtext.Tools;
 import com.gluonhq.richtext.model.Decoration;
 import com.gluonhq.richtext.model.Document;
+import com.gluonhq.richtext.model.DocumentCodec;
 import com.gluonhq.richtext.model.ImageDecoration;
 import com.gluonhq.richtext.model.Paragraph;
 import com.gluonhq.richtext.model.ParagraphDecoration;
+import com.gluonhq.richtext.model.ParagraphIndex;
+import com.gluonhq.richtext.model.SearchIndex;
+import com.gluonhq.richtext.model.SearchQuery;
 import com.gluonhq.richtext.model.TextBuffer;
+import com.gluonhq.richtext.model.TextStatistics;
 import com.gluonhq.richtext.model.TextDecoration;
+import com.gluonhq.richtext.model.WordCompletion;
+import com.gluonhq.richtext.undo.AbstractCommand;
 import com.gluonhq.richtext.undo.CommandManager;
+import com.gluonhq.richtext.undo.UndoStats;
 import javafx.application.Platform;
 import javafx.beans.property.BooleanProperty;
 import javafx.beans.property.IntegerProperty;
 import javafx.beans.property.ObjectProperty;
 import javafx.beans.property.ReadOnlyBooleanProperty;
 import javafx.beans.property.ReadOnlyBooleanWrapper;
+import javafx.beans.property.ReadOnlyDoubleProperty;
+import javafx.beans.property.ReadOnlyDoubleWrapper;
 import javafx.beans.property.ReadOnlyIntegerProperty;
 import javafx.beans.property.ReadOnlyIntegerWrapper;
 import javafx.beans.property.SimpleBooleanProperty;
@@ -26,20 +37,28 @@ import javafx.collections.ObservableList;
 import javafx.scene.image.Image;
 import javafx.scene.input.Clipboard;
 import javafx.scene.input.ClipboardContent;
+import javafx.scene.input.DataFormat;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.text.BreakIterator;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.BiConsumer;
 import java.util.function.BiFunction;
 import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.stream.Collectors;
 
 public class RichTextAreaViewModel {
 
@@ -47,11 +66,48 @@ public class RichTextAreaViewModel {
 
     public enum Direction { FORWARD, BACK, UP, DOWN }
 
+    /**
+     * Default maximum time, in milliseconds, between two consecutive edits at the caret
+     * to undo them together
+     */
+    public static final long DEFAULT_UNDO_COALESCING_WINDOW = 1000;
+
+    /**
+     * Clipboard format of the text copied from a rich text area with its decorations,
+     * encoded with {@link DocumentCodec}, so it can be pasted as a single edit
+     */
+    public static final DataFormat RICH_TEXT_FORMAT = dataFormat("application/x-gluon-rich-text");
+
+    /**
+     * Pasted text of this length or longer is prepared in the background before it is inserted,
+     * see {@link #pasteProgressProperty()}
+     */
+    public static final int LARGE_PASTE_LENGTH = TextBuffer.LARGE_EDIT_LENGTH;
+    private static final int PASTE_CHUNK_LENGTH = 1 << 16;
+
     private final CommandManager<RichTextAreaViewModel> commandManager = new CommandManager<>(this, this::updateProperties);
-    private BreakIterator wordIterator;
-    private int undoStackSizeWhenSaved = 0;
+    private WordBoundaries wordBoundaries;
+    // large edits, like pasting a large text, are counted in the background
+    private final TextStatistics statistics = new TextStatistics(Platform::runLater);
+    private final WordCompletion wordCompletion = new WordCompletion(Platform::runLater);
+    // -1 once the saved state can't be reached with undo or redo
+    private long historyPositionWhenSaved = 0;
+    private long historyPosition = 0;
+    private long redoClearedCount = 0;
+    private int maxInMemoryUndoCommands;
+    private EditCmdCodec spillCodec;
+    private boolean searchIndexEnabled;
+    private SearchIndex searchIndex;
+    private final Map<String, TextBuffer.Checkpoint> checkpoints = new HashMap<>();
+    private TextBuffer.Checkpoint savedCheckpoint;
+    private CompletableFuture<int[]> largePaste;
+    // the line feeds of the large pasted text being inserted, found while it was prepared
+    private String preparedText;
+    private int[] preparedLineFeeds;
 
+    private final ParagraphIndex paragraphIndex = new ParagraphIndex();
     private final ObservableList<Paragraph> paragraphList = FXCollections.observableArrayList();
+    private final ObservableList<Caret> additionalCarets = FXCollections.observableArrayList();
     Paragraph lastParagraph;
     /// PROPERTIES ///////////////////////////////////////////////////////////////
 
@@ -61,9 +117,26 @@ public class RichTextAreaViewModel {
         protected void invalidated() {
             // invalidate undo/redo stack
             commandManager.clearStacks();
-            undoStackSizeWhenSaved = 0;
+            cancelLargePaste();
+            additionalCarets.clear();
+            historyPosition = getHistoryPosition();
+            historyPositionWhenSaved = historyPosition;
             undoStackSizeProperty.set(0);
             redoStackSizeProperty.set(0);
+            savedProperty.set(true);
+            checkpoints.clear();
+            savedCheckpoint = get() != null ? get().createCheckpoint() : null;
+            // spilled deltas can only be read back by the buffer that wrote them
+            spillCodec = null;
+            applyUndoSpilling();
+            applySearchIndex();
+            if (wordBoundaries != null) {
+                wordBoundaries.dispose();
+            }
+            wordBoundaries = get() != null ? new WordBoundaries(get()) : null;
+            statistics.setTextBuffer(get());
+            // words are only completed while typing
+            wordCompletion.setTextBuffer(get() != null && !get().isReadOnly() ? get() : null);
         }
     };
     public final ObjectProperty<TextBuffer> textBufferProperty() {
@@ -134,6 +207,21 @@ public class RichTextAreaViewModel {
         selectionProperty.set(value);
     }
 
+    // visibleRangeProperty
+    /**
+     * The range of text of the paragraphs currently shown, that the skin updates on every layout
+     */
+    private final ObjectProperty<Selection> visibleRangeProperty = new SimpleObjectProperty<>(this, "visibleRange", Selection.UNDEFINED);
+    public final ObjectProperty<Selection> visibleRangeProperty() {
+        return visibleRangeProperty;
+    }
+    public final Selection getVisibleRange() {
+        return visibleRangeProperty.get();
+    }
+    public final void setVisibleRange(Selection value) {
+        visibleRangeProperty.set(value);
+    }
+
     // textLengthProperty
     public final ReadOnlyIntegerProperty textLengthProperty() {
         return getTextBuffer().textLengthProperty();
@@ -143,16 +231,7 @@ public class RichTextAreaViewModel {
     }
 
     // undoStackSizeProperty
-    private final ReadOnlyIntegerWrapper undoStackSizeProperty = new ReadOnlyIntegerWrapper(this, "undoStackSize") {
-        @Override
-        protected void invalidated() {
-            if (isAutoSave()) {
-                save();
-            } else {
-                savedProperty.set(get() == undoStackSizeWhenSaved);
-            }
-        }
-    };
+    private final ReadOnlyIntegerWrapper undoStackSizeProperty = new ReadOnlyIntegerWrapper(this, "undoStackSize");
     public final ReadOnlyIntegerProperty undoStackSizeProperty() {
        return undoStackSizeProperty.getReadOnlyProperty();
     }
@@ -220,6 +299,7 @@ public class RichTextAreaViewModel {
     private final ObjectProperty<Document> documentProperty = new SimpleObjectProperty<>(this, "document") {
         @Override
         protected void invalidated() {
+            paragraphIndex.replace(0, paragraphIndex.size(), new int[0], List.of());
             paragraphList.clear();
             Document document = get();
             if (document != null) {
@@ -258,14 +338,53 @@ public class RichTextAreaViewModel {
        return savedProperty.get();
     }
 
+    // pasteProgressProperty
+    /**
+     * Progress, from 0 to 1, of the preparation of a large paste, that is inserted as a single
+     * edit once it is ready, or -1 when no paste is being prepared
+     */
+    private final ReadOnlyDoubleWrapper pasteProgressProperty = new ReadOnlyDoubleWrapper(this, "pasteProgress", -1);
+    public final ReadOnlyDoubleProperty pasteProgressProperty() {
+       return pasteProgressProperty.getReadOnlyProperty();
+    }
+    public final double getPasteProgress() {
+       return pasteProgressProperty.get();
+    }
+
     public RichTextAreaViewModel(BiFunction<Double, Boolean, Integer> getNextRowPosition) {
         this.getNextRowPosition = Objects.requireNonNull(getNextRowPosition);
+        commandManager.setCoalescingWindow(DEFAULT_UNDO_COALESCING_WINDOW);
     }
 
     public ObservableList<Paragraph> getParagraphList() {
         return paragraphList;
     }
 
+    /**
+     * Carets that edit the text along with the main caret and selection. Typing, deleting and
+     * decorating text apply to all of them at once, in a single pass over the text and as a single
+     * edit. Other edits, and moving the main caret with the keyboard, clear them
+     * @return the carets other than the main one
+     */
+    public ObservableList<Caret> getAdditionalCarets() {
+        return additionalCarets;
+    }
+
+    /**
+     * Adds a caret, without selection, at the given position
+     * @param position the position of the caret
+     */
+    public void addCaret(int position) {
+        Caret caret = new Caret(position);
+        if (position >= 0 && position <= getTextLength() && position != getCaretPosition() && !additionalCarets.contains(caret)) {
+            additionalCarets.add(caret);
+        }
+    }
+
+    boolean hasAdditionalSelection() {
+        return additionalCarets.stream().anyMatch(caret -> caret.getSelection().isDefined());
+    }
+
     public final void addChangeListener(Consumer<TextBuffer.Event> listener) {
         this.getTextBuffer().addChangeListener(listener);
     }
@@ -278,6 +397,244 @@ public class RichTextAreaViewModel {
         return commandManager;
     }
 
+    /**
+     * Limits the undo history. When any limit is exceeded, the oldest edits are discarded first.
+     * @param maxCommands maximum number of undoable edits
+     * @param maxRetainedBytes maximum approximate memory retained by the undo history, in bytes
+     */
+    public void setUndoLimits(int maxCommands, long maxRetainedBytes) {
+        commandManager.setLimits(maxCommands, maxRetainedBytes);
+    }
+
+    /**
+     * Keeps only the given number of most recent edits of the undo history in memory.
+     * Older edits are moved to a temporary file and read back when undo reaches them.
+     * @param maxInMemoryCommands number of most recent edits kept in memory, 0 disables spilling
+     */
+    public void setUndoSpilling(int maxInMemoryCommands) {
+        this.maxInMemoryUndoCommands = Math.max(maxInMemoryCommands, 0);
+        applyUndoSpilling();
+    }
+
+    private void applyUndoSpilling() {
+        TextBuffer textBuffer = textBufferProperty.get();
+        if (textBuffer != null && maxInMemoryUndoCommands > 0) {
+            if (spillCodec == null) {
+                spillCodec = new EditCmdCodec(textBuffer);
+            }
+            commandManager.enableSpilling(maxInMemoryUndoCommands, null, spillCodec);
+        } else {
+            commandManager.disableSpilling();
+        }
+    }
+
+    /**
+     * Keeps a trigram index of the text, updated on every edit and rebuilt in the background,
+     * so that searches of three or more chars on large documents don't scan the whole text
+     * @param enabled true to index the text, false to discard the index
+     */
+    public void setSearchIndexEnabled(boolean enabled) {
+        if (searchIndexEnabled != enabled) {
+            searchIndexEnabled = enabled;
+            applySearchIndex();
+        }
+    }
+
+    private void applySearchIndex() {
+        if (searchIndex != null) {
+            searchIndex.dispose();
+            searchIndex = null;
+        }
+        TextBuffer textBuffer = textBufferProperty.get();
+        if (textBuffer != null && searchIndexEnabled) {
+            searchIndex = new SearchIndex(textBuffer);
+        }
+    }
+
+    /**
+     * Captures the current content under the given name, replacing any checkpoint with the same name
+     * @param name name of the checkpoint
+     */
+    public void createCheckpoint(String name) {
+        checkpoints.put(Objects.requireNonNull(name), getTextBuffer().createCheckpoint());
+        commandManager.breakCoalescing();
+    }
+
+    public void removeCheckpoint(String name) {
+        checkpoints.remove(name);
+    }
+
+    public List<String> getCheckpointNames() {
+        return List.copyOf(checkpoints.keySet());
+    }
+
+    /**
+     * Restores the content captured by the named checkpoint in a single step,
+     * which can be undone like any other edit
+     * @param name name of the checkpoint
+     * @throws IllegalArgumentException if there is no checkpoint with that name
+     */
+    public void revertToCheckpoint(String name) {
+        TextBuffer.Checkpoint checkpoint = checkpoints.get(name);
+        if (checkpoint == null) {
+            throw new IllegalArgumentException("No checkpoint named " + name);
+        }
+        commandManager.execute(new RevertCmd(checkpoint));
+    }
+
+    /**
+     * Restores the content as it was when it was last saved, in a single step
+     * which can be undone like any other edit
+     */
+    public void revertToSaved() {
+        if (savedCheckpoint != null && !isSaved()) {
+            commandManager.execute(new RevertCmd(savedCheckpoint));
+        }
+    }
+
+    /**
+     * Finds the next or previous match of the query, from the selection or the caret,
+     * and selects it. The search wraps around the end or the start of the text
+     * @param query the query to search
+     * @param forward true to search after the selection or caret, false to search before
+     * @return true if a match was found
+     */
+    public boolean find(SearchQuery query, boolean forward) {
+        Selection selection = getSelection();
+        int position = selection.isDefined() ?
+                (forward ? selection.getEnd() : selection.getStart()) : Math.max(getCaretPosition(), 0);
+        Selection match = findMatch(query, position, forward);
+        if (!match.isDefined()) {
+            match = findMatch(query, forward ? 0 : getTextLength(), forward);
+        }
+        if (!match.isDefined()) {
+            return false;
+        }
+        setCaretPosition(forward ? match.getEnd() : match.getStart());
+        setSelection(match);
+        return true;
+    }
+
+    /**
+     * Finds all the matches of the query within a region, without moving the caret or the selection.
+     * Use {@link #getVisibleRange()} to search only the paragraphs shown, for instance to highlight
+     * them, or {@link #getSelection()} to search within the selection
+     * @param query the query to search
+     * @param region the range to search, or {@link Selection#UNDEFINED} for the whole text
+     * @return the ranges of all the matches within the region, in order
+     */
+    public List<Selection> findAll(SearchQuery query, Selection region) {
+        if (searchIndex != null && !region.isDefined()) {
+            return searchIndex.findAll(query);
+        }
+        return getTextBuffer().findAll(query, region);
+    }
+
+    /**
+     * Finds all the matches of the query in parallel, in the background, so the text can still be edited.
+     * The search runs on the text as it was when it started
+     * @param query the query to search
+     * @param onMatches called on the JavaFX application thread with each batch of matches, in order
+     * @return a future with all the matches, that can be cancelled to stop the search
+     */
+    public CompletableFuture<List<Selection>> findAllInParallel(SearchQuery query, Consumer<List<Selection>> onMatches) {
+        Objects.requireNonNull(onMatches);
+        return getTextBuffer().findAllInParallel(query, matches -> Platform.runLater(() -> onMatches.accept(matches)));
+    }
+
+    /**
+     * Replaces all the matches of the query, as a single edit that can be undone in one step
+     * @param query the query to search
+     * @param replacement the replacement text
+     * @return the number of replaced matches
+     */
+    public int replaceAll(SearchQuery query, String replacement) {
+        if (!getTextBuffer().find(query, 0, true).isDefined()) {
+            return 0;
+        }
+        ReplaceAllCmd cmd = new ReplaceAllCmd(query, replacement);
+        commandManager.execute(cmd);
+        return cmd.getCount();
+    }
+
+    private Selection findMatch(SearchQuery query, int position, boolean forward) {
+        if (searchIndex == null) {
+            return getTextBuffer().find(query, position, forward);
+        }
+        List<Selection> matches = searchIndex.findAll(query);
+        if (forward) {
+            return matches.stream()
+                    .filter(match -> match.getStart() >= position)
+                    .findFirst()
+                    .orElse(Selection.UNDEFINED);
+        }
+        for (int i = matches.size() - 1; i >= 0; i--) {
+            if (matches.get(i).getEnd() <= position) {
+                return matches.get(i);
+            }
+        }
+        return Selection.UNDEFINED;
+    }
+
+    /**
+     * Consecutive edits at the caret, like typing or deleting text, are undone in a single step
+     * as long as they happen within the given time of each other.
+     * A new line, a caret move or a selection always start a new undo step.
+     * @param millis maximum time between edits to undo them together, 0 disables coalescing
+     */
+    public void setUndoCoalescingWindow(long millis) {
+        commandManager.setCoalescingWindow(millis);
+    }
+
+    /**
+     * Returns the statistics of the text, that are kept up to date on every edit
+     * @return the text statistics
+     */
+    public TextStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Returns the words of the text that complete the word at the caret, from the index of the
+     * document words that is kept up to date on every edit
+     * @param limit the maximum number of words
+     * @return the completions, the most used first, or an empty list if there is no word before the caret
+     */
+    public List<String> getCompletions(int limit) {
+        String prefix = getCompletionPrefix();
+        return prefix.isEmpty() ? List.of() : wordCompletion.complete(prefix, limit);
+    }
+
+    /**
+     * Returns the part of the word at the caret that is before it, the one that a completion replaces
+     * @return the start of the word at the caret, or an empty string if the caret is not right after a word
+     */
+    public String getCompletionPrefix() {
+        if (getTextBuffer() == null || getCaretPosition() <= 0) {
+            return "";
+        }
+        // the chars of the words of the index, so a member access like foo.ba completes ba
+        CharSequence text = getTextBuffer().getCharSequence();
+        int caretPosition = Math.min(getCaretPosition(), text.length());
+        return text.subSequence(WordCompletion.getWordStart(text, caretPosition), caretPosition).toString();
+    }
+
+    /**
+     * Returns the index of the words of the text, used for completions
+     * @return the word completion index
+     */
+    public WordCompletion getWordCompletion() {
+        return wordCompletion;
+    }
+
+    /**
+     * Returns the current size of the undo history
+     * @return undo statistics
+     */
+    public UndoStats getUndoStats() {
+        return commandManager.getStats();
+    }
+
     void moveCaretPosition(final int charCount) {
         int pos = getCaretPosition() + charCount;
         if (pos >= 0 && pos <= getTextLength()) {
@@ -299,6 +656,12 @@ public class RichTextAreaViewModel {
      * @param text text to insert
      */
     void insert(String text) {
+        if (!additionalCarets.isEmpty()) {
+            replaceAtCarets(caret -> caret.getSelection().isDefined() ?
+                    new int[] {caret.getSelection().getStart(), caret.getSelection().getEnd()} :
+                    new int[] {caret.getPosition(), caret.getPosition()}, text);
+            return;
+        }
         removeSelection();
         int caretPosition = getCaretPosition();
         if (caretPosition >= getTextLength()) {
@@ -311,17 +674,77 @@ public class RichTextAreaViewModel {
         moveCaretPosition(text.length());
     }
 
-    void remove(int caretOffset) {
+    void insert(Document document) {
+        additionalCarets.clear();
+        removeSelection();
+        getTextBuffer().insert(document, getCaretPosition());
+        moveCaretPosition(document.getText().length());
+    }
+
+    /**
+     * Removes the selection if exists, or else a number of characters next to the caret
+     * @param caretOffset -1 to remove before the caret (backspace), 0 to remove after the caret
+     * @param length number of characters to remove
+     */
+    void remove(int caretOffset, int length) {
+        if (!additionalCarets.isEmpty()) {
+            replaceAtCarets(caret -> {
+                if (caret.getSelection().isDefined()) {
+                    return new int[] {caret.getSelection().getStart(), caret.getSelection().getEnd()};
+                }
+                int start = caret.getPosition() + caretOffset * length;
+                if (start < 0) {
+                    // nothing before a caret at the start of the text
+                    return new int[] {caret.getPosition(), caret.getPosition()};
+                }
+                start = Math.min(start, getTextLength());
+                return new int[] {start, Math.min(start + length, getTextLength())};
+            }, "");
+            return;
+        }
         if (!removeSelection()) {
-            int position = getCaretPosition() + caretOffset;
+            int position = getCaretPosition() + caretOffset * length;
             if (position >= 0 && position <= getTextLength()) {
-                getTextBuffer().delete(position, 1);
+                getTextBuffer().delete(position, length);
                 setCaretPosition(position);
             }
         }
     }
 
+    void revert(TextBuffer.Checkpoint checkpoint) {
+        additionalCarets.clear();
+        clearSelection();
+        int caretPosition = getCaretPosition();
+        getTextBuffer().revert(checkpoint);
+        setCaretPosition(Tools.clamp(0, caretPosition, getTextLength()));
+    }
+
+    int replaceMatches(SearchQuery query, String replacement) {
+        additionalCarets.clear();
+        clearSelection();
+        int caretPosition = getCaretPosition();
+        int count = getTextBuffer().replaceAll(query, replacement);
+        setCaretPosition(Tools.clamp(0, caretPosition, getTextLength()));
+        return count;
+    }
+
     void decorate(Decoration decoration) {
+        if (decoration instanceof TextDecoration && !additionalCarets.isEmpty()) {
+            List<Selection> ranges = getCaretSelections();
+            if (!ranges.isEmpty()) {
+                Selection selection = getSelection();
+                clearSelection();
+                int caretPosition = getCaretPosition();
+                setCaretPosition(-1);
+                getTextBuffer().decorate(ranges, (TextDecoration) decoration);
+                setCaretPosition(caretPosition);
+                setSelection(selection);
+            }
+            return;
+        }
+        if (!(decoration instanceof TextDecoration)) {
+            additionalCarets.clear();
+        }
         if (decoration instanceof TextDecoration) {
             if (getSelection().isDefined()) {
                 Selection selection = getSelection();
@@ -363,6 +786,97 @@ public class RichTextAreaViewModel {
         }
     }
 
+    // the main caret, first, and the additional ones
+    private List<Caret> getCarets() {
+        List<Caret> carets = new ArrayList<>(additionalCarets.size() + 1);
+        int caretPosition = getCaretPosition();
+        Selection selection = getSelection();
+        carets.add(selection.isDefined() ?
+                new Caret(caretPosition, caretPosition == selection.getStart() ? selection.getEnd() : selection.getStart()) :
+                new Caret(caretPosition));
+        carets.addAll(additionalCarets);
+        return carets;
+    }
+
+    // the selections of all the carets, sorted, and merged where they overlap
+    private List<Selection> getCaretSelections() {
+        List<Selection> selections = new ArrayList<>();
+        getCarets().stream()
+                .map(Caret::getSelection)
+                .filter(Selection::isDefined)
+                .sorted(Comparator.comparingInt(Selection::getStart))
+                .forEach(selection -> {
+                    Selection last = selections.isEmpty() ? null : selections.get(selections.size() - 1);
+                    if (last != null && selection.getStart() < last.getEnd()) {
+                        selections.set(selections.size() - 1, new Selection(last.getStart(), Math.max(last.getEnd(), selection.getEnd())));
+                    } else {
+                        selections.add(selection);
+                    }
+                });
+        return selections;
+    }
+
+    /**
+     * Replaces the range of each caret with the text, as a single change of the text buffer, and moves
+     * each caret to the end of its replacement. Ranges that overlap, or start at the same position, are
+     * merged, and so are their carets
+     * @param rangeOfCaret gives the start and end of the range of a caret
+     * @param text the text that replaces each range
+     */
+    private void replaceAtCarets(Function<Caret, int[]> rangeOfCaret, String text) {
+        List<Caret> carets = getCarets();
+        int[][] ranges = new int[carets.size()][];
+        Integer[] order = new Integer[carets.size()];
+        for (int i = 0; i < ranges.length; i++) {
+            ranges[i] = rangeOfCaret.apply(carets.get(i));
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.<Integer>comparingInt(i -> ranges[i][0]).thenComparingInt(i -> ranges[i][1]));
+
+        // the merged range of each caret
+        int[] starts = new int[ranges.length];
+        int[] ends = new int[ranges.length];
+        int[] rangeIndex = new int[ranges.length];
+        int count = 0;
+        boolean changed = !text.isEmpty();
+        for (int i : order) {
+            int[] range = ranges[i];
+            if (count > 0 && (range[0] < ends[count - 1] || range[0] == starts[count - 1])) {
+                ends[count - 1] = Math.max(ends[count - 1], range[1]);
+            } else {
+                starts[count] = range[0];
+                ends[count] = range[1];
+                count++;
+            }
+            rangeIndex[i] = count - 1;
+            changed |= range[0] < range[1];
+        }
+        if (!changed) {
+            return;
+        }
+        starts = Arrays.copyOf(starts, count);
+        ends = Arrays.copyOf(ends, count);
+        getTextBuffer().replace(starts, ends, text);
+
+        // the offsets of all the carets are adjusted in the same sweep
+        int[] positions = new int[count];
+        int shift = 0;
+        for (int i = 0; i < count; i++) {
+            positions[i] = starts[i] + shift + text.length();
+            shift += text.length() - (ends[i] - starts[i]);
+        }
+        int caretPosition = positions[rangeIndex[0]];
+        List<Caret> newCarets = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            if (positions[i] != caretPosition) {
+                newCarets.add(new Caret(positions[i]));
+            }
+        }
+        clearSelection();
+        setCaretPosition(caretPosition);
+        additionalCarets.setAll(newCarets);
+    }
+
     /**
      * Deletes selection if exists and sets caret to the start position of the deleted selection
      */
@@ -380,9 +894,10 @@ public class RichTextAreaViewModel {
     void clipboardCopy(final boolean cutText) {
         Selection selection = getSelection();
         if (selection.isDefined()) {
-            String selectedText = getTextBuffer().getText(selection.getStart(), selection.getEnd());
+            Document document = getTextBuffer().getDocument(selection.getStart(), selection.getEnd());
             final ClipboardContent content = new ClipboardContent();
-            content.putString(selectedText);
+            content.putString(document.getText());
+            content.put(RICH_TEXT_FORMAT, ByteBuffer.wrap(DocumentCodec.encode(document)));
             if (cutText) {
                 commandManager.execute(new RemoveTextCmd(0));
             }
@@ -399,7 +914,10 @@ public class RichTextAreaViewModel {
     }
 
     void clipboardPaste() {
-        if (clipboardHasImage()) {
+        Document document = getClipboardDocument();
+        if (document != null) {
+            commandManager.execute(new InsertDocumentCmd(document));
+        } else if (clipboardHasImage()) {
             final Image image = Clipboard.getSystemClipboard().getImage();
             if (image != null) {
                 String url = image.getUrl() != null ? image.getUrl() : Clipboard.getSystemClipboard().getUrl();
@@ -409,12 +927,101 @@ public class RichTextAreaViewModel {
             }
         } else if (clipboardHasString()) {
             final String text = Clipboard.getSystemClipboard().getString();
-            if (text != null) {
+            if (text != null && text.length() >= LARGE_PASTE_LENGTH) {
+                pasteLargeText(text);
+            } else if (text != null) {
                 commandManager.execute(new InsertTextCmd(text));
             }
         }
     }
 
+    /**
+     * Finds the line feeds of the text in the background, a chunk at a time, and then inserts it
+     * with a single command on the application thread, where the paragraphs of the text are created
+     * from those line feeds instead of scanning the text again. The statistics, word completion,
+     * search index and spell check update their state for such a large edit in the background too
+     */
+    private void pasteLargeText(String text) {
+        cancelLargePaste();
+        CompletableFuture<int[]> future = new CompletableFuture<>();
+        largePaste = future;
+        pasteProgressProperty.set(0);
+        ForkJoinPool.commonPool().execute(() -> {
+            int[] lineFeeds = new int[16];
+            int count = 0;
+            for (int chunk = 0; chunk < text.length(); chunk += PASTE_CHUNK_LENGTH) {
+                if (future.isDone()) {
+                    return;
+                }
+                int end = Math.min(text.length(), chunk + PASTE_CHUNK_LENGTH);
+                for (int i = chunk; i < end; i++) {
+                    if (text.charAt(i) == 0x0a) {
+                        if (count == lineFeeds.length) {
+                            lineFeeds = Arrays.copyOf(lineFeeds, 2 * count);
+                        }
+                        lineFeeds[count++] = i;
+                    }
+                }
+                double progress = (double) end / text.length();
+                Platform.runLater(() -> {
+                    if (largePaste == future) {
+                        pasteProgressProperty.set(progress);
+                    }
+                });
+            }
+            future.complete(Arrays.copyOf(lineFeeds, count));
+        });
+        future.thenAccept(lineFeeds -> Platform.runLater(() -> {
+            if (largePaste != future) {
+                return;
+            }
+            largePaste = null;
+            pasteProgressProperty.set(-1);
+            preparedText = text;
+            preparedLineFeeds = lineFeeds;
+            try {
+                commandManager.execute(new InsertTextCmd(text));
+            } finally {
+                preparedText = null;
+                preparedLineFeeds = null;
+            }
+        }));
+    }
+
+    private void cancelLargePaste() {
+        if (largePaste != null) {
+            largePaste.cancel(false);
+            largePaste = null;
+            pasteProgressProperty.set(-1);
+        }
+    }
+
+    // the text and decorations copied from a rich text area, if any
+    private Document getClipboardDocument() {
+        Object content = Clipboard.getSystemClipboard().getContent(RICH_TEXT_FORMAT);
+        byte[] bytes = null;
+        if (content instanceof ByteBuffer) {
+            ByteBuffer buffer = ((ByteBuffer) content).duplicate();
+            bytes = new byte[buffer.remaining()];
+            buffer.get(bytes);
+        } else if (content instanceof byte[]) {
+            bytes = (byte[]) content;
+        }
+        if (bytes != null) {
+            try {
+                return DocumentCodec.decode(bytes);
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Error reading rich text from the clipboard", e);
+            }
+        }
+        return null;
+    }
+
+    private static DataFormat dataFormat(String mimeType) {
+        DataFormat dataFormat = DataFormat.lookupMimeType(mimeType);
+        return dataFormat != null ? dataFormat : new DataFormat(mimeType);
+    }
+
     void moveCaret(Direction direction, boolean changeSelection, boolean wordSelection, boolean lineSelection, boolean paragraphSelection) {
         Selection prevSelection = getSelection();
         int prevCaretPosition = getCaretPosition();
@@ -477,56 +1084,200 @@ public class RichTextAreaViewModel {
         LOGGER.log(Level.FINE, getTextBuffer().toString());
     }
 
+    /**
+     * Updates the paragraph list after the given change of the text buffer. For inserts and deletes, only
+     * the paragraphs touched by the change are created again, while the ones before and after them are
+     * kept, as their positions are relative, so the list only notifies the changed range
+     * @param event the change of the text buffer
+     */
+    public void updateParagraphList(TextBuffer.Event event) {
+        if (event instanceof TextBuffer.RangesEvent) {
+            // each range on the text with the ranges before it changed, so only the paragraphs of the ranges are scanned
+            TextBuffer.RangesEvent rangesEvent = (TextBuffer.RangesEvent) event;
+            for (int i = 0; i < rangesEvent.getEvents().size(); i++) {
+                if (!updateParagraphList(rangesEvent.getEvents().get(i), rangesEvent.getText(i))) {
+                    // all the paragraphs were found again, after all the ranges changed
+                    return;
+                }
+            }
+            return;
+        }
+        updateParagraphList(event, null);
+    }
+
+    // updates the paragraphs touched by an insert or a delete, within the given text, or the text of the buffer,
+    // and returns false if the whole paragraph list was updated instead
+    private boolean updateParagraphList(TextBuffer.Event event, CharSequence changedText) {
+        int from, oldTo, newTo;
+        int[] lineFeeds = null;
+        if (event instanceof TextBuffer.InsertEvent) {
+            TextBuffer.InsertEvent insertEvent = (TextBuffer.InsertEvent) event;
+            from = oldTo = insertEvent.getPosition();
+            newTo = from + insertEvent.getText().length();
+            if (insertEvent.getText() == preparedText) {
+                lineFeeds = preparedLineFeeds;
+            }
+        } else if (event instanceof TextBuffer.DeleteEvent) {
+            TextBuffer.DeleteEvent deleteEvent = (TextBuffer.DeleteEvent) event;
+            from = newTo = deleteEvent.getPosition();
+            oldTo = from + deleteEvent.getLength();
+        } else if (event instanceof TextBuffer.DecorateEvent &&
+                ((TextBuffer.DecorateEvent) event).getDecoration() instanceof TextDecoration) {
+            // text decorations don't change the paragraphs
+            return true;
+        } else {
+            // paragraph decorations don't move paragraphs, but all the paragraphs are compared,
+            // and only the changed ones replaced
+            updateParagraphList();
+            return false;
+        }
+        if (paragraphIndex.size() == 0 || oldTo > paragraphIndex.getTextLength()) {
+            updateParagraphList();
+            return false;
+        }
+        // the index still has the lengths before the change
+        int first = paragraphIndex.indexAt(from);
+        int last = paragraphIndex.indexAt(oldTo);
+
+        // the new paragraphs from the start of the first touched one, up to the one with newTo,
+        // that ends where the last touched one ended before the change. Only their text is scanned
+        CharSequence text = changedText != null ? changedText : getTextBuffer().getCharSequence();
+        int start = paragraphIndex.get(first).getStart();
+        List<Integer> ends = new ArrayList<>();
+        for (int i = start; ; i++) {
+            if (i == from && lineFeeds != null) {
+                // the line feeds of a large paste are already known, the text after it is scanned
+                for (int lineFeed : lineFeeds) {
+                    ends.add(from + lineFeed + 1);
+                }
+                lineFeeds = null;
+                i = newTo - 1;
+                continue;
+            }
+            if (i == text.length()) {
+                ends.add(i);
+                break;
+            }
+            if (text.charAt(i) == 0x0a) {
+                ends.add(i + 1);
+                if (newTo <= i) {
+                    break;
+                }
+            }
+        }
+        replaceParagraphs(first, last + 1, start, ends);
+        return true;
+    }
+
     public void walkFragments(BiConsumer<String, Decoration> onFragment, int start, int end) {
         getTextBuffer().walkFragments(onFragment, start, end);
     }
 
     private void updateParagraphList() {
-        List<Integer> lineFeeds = getTextBuffer().getLineFeeds();
-        AtomicInteger pos = new AtomicInteger();
-        List<Paragraph> newParagraphList = new ArrayList<>();
-        lineFeeds.forEach(lfPos ->
-                newParagraphList.add(getParagraphAt(pos.getAndSet(lfPos), pos.incrementAndGet())));
-        if (pos.get() <= getTextLength()) {
-            lastParagraph = getParagraphAt(pos.get(), getTextLength());
-            newParagraphList.add(lastParagraph);
+        List<Integer> ends = new ArrayList<>();
+        getTextBuffer().getLineFeeds().forEach(lineFeed -> ends.add(lineFeed + 1));
+        ends.add(getTextLength());
+        replaceParagraphs(0, paragraphIndex.size(), 0, ends);
+    }
+
+    // replaces the paragraphs from index from to index to with the ones that start at the given
+    // position and end at the given ends, skipping the ones with the same length and decoration
+    // at both ends, so that the list only notifies the ones that changed
+    private void replaceParagraphs(int from, int to, int start, List<Integer> ends) {
+        int count = ends.size();
+        int[] lengths = new int[count];
+        List<ParagraphDecoration> decorations = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int paragraphStart = i == 0 ? start : ends.get(i - 1);
+            lengths[i] = ends.get(i) - paragraphStart;
+            ParagraphDecoration pd = getTextBuffer().getParagraphDecorationAtCaret(paragraphStart);
+            decorations.add(pd != null ? pd : ParagraphDecoration.builder().presets().build());
+        }
+        int head = 0;
+        while (head < count && from + head < to && isSameParagraph(from + head, lengths[head], decorations.get(head))) {
+            head++;
+        }
+        int tail = 0;
+        while (tail < count - head && from + head < to - tail &&
+                isSameParagraph(to - 1 - tail, lengths[count - 1 - tail], decorations.get(count - 1 - tail))) {
+            tail++;
         }
-        paragraphList.setAll(newParagraphList);
+        if (head + tail == count && from + head == to - tail) {
+            return;
+        }
+        List<Paragraph> replacement = paragraphIndex.replace(from + head, to - tail,
+                Arrays.copyOfRange(lengths, head, count - tail), decorations.subList(head, count - tail));
+        from += head;
+        to -= tail;
+        if (from == to) {
+            paragraphList.addAll(from, replacement);
+        } else if (replacement.size() == to - from && replacement.size() == 1) {
+            paragraphList.set(from, replacement.get(0));
+        } else {
+            paragraphList.remove(from, to);
+            paragraphList.addAll(from, replacement);
+        }
+        lastParagraph = paragraphList.isEmpty() ? null : paragraphList.get(paragraphList.size() - 1);
     }
 
-    private Paragraph getParagraphAt(int start, int end) {
-        ParagraphDecoration pd = getTextBuffer().getParagraphDecorationAtCaret(start);
-        return new Paragraph(start, end, pd != null ? pd : ParagraphDecoration.builder().presets().build());
+    private boolean isSameParagraph(int index, int length, ParagraphDecoration decoration) {
+        Paragraph paragraph = paragraphIndex.get(index);
+        return paragraph.getEnd() - paragraph.getStart() == length && paragraph.getDecoration().equals(decoration);
     }
 
     public Optional<Paragraph> getParagraphWithCaret() {
-        int position = getCaretPosition();
-        return paragraphList.stream()
-                .filter(p -> p.getStart() <= position &&
-                        position < (p.equals(lastParagraph) ? p.getEnd() + 1 : p.getEnd()))
-                .findFirst();
+        int index = getParagraphIndexAt(getCaretPosition());
+        return index < 0 ? Optional.empty() : Optional.of(paragraphList.get(index));
     }
 
-    private List<Paragraph> getParagraphsWithSelection() {
-        Selection selection = getSelection();
-        if (!selection.isDefined()) {
+    /**
+     * Finds the paragraph that contains the given position, in O(log n).
+     * The end of the text belongs to the last paragraph
+     * @param position a position of the text
+     * @return the index of the paragraph in the paragraph list, or -1 if the position is outside the text
+     */
+    public int getParagraphIndexAt(int position) {
+        if (position < 0 || position > paragraphIndex.getTextLength()) {
+            return -1;
+        }
+        return paragraphIndex.indexAt(position);
+    }
+
+    /**
+     * Finds the paragraphs that overlap the given range, in O(log n + k)
+     * @param range a range of the text
+     * @return the paragraphs, in order
+     */
+    public List<Paragraph> getParagraphsInRange(Selection range) {
+        if (!range.isDefined() || paragraphIndex.size() == 0) {
             return List.of();
         }
-        return paragraphList.stream()
-                .filter(p -> !(p.getStart() > selection.getEnd() || p.getEnd() <= selection.getStart()))
-                .collect(Collectors.toList());
+        int first = paragraphIndex.indexAt(Math.max(0, range.getStart()));
+        if (paragraphIndex.get(first).getEnd() <= range.getStart()) {
+            first++;
+        }
+        int last = paragraphIndex.indexAt(range.getEnd());
+        return first > last ? List.of() : List.copyOf(paragraphList.subList(first, last + 1));
+    }
+
+    private List<Paragraph> getParagraphsWithSelection() {
+        return getParagraphsInRange(getSelection());
+    }
+
+    void undo(TextBuffer.Delta delta) {
+        this.getTextBuffer().undo(delta);
     }
 
-    void undo() {
-        this.getTextBuffer().undo();
+    void redo(TextBuffer.Delta delta) {
+        this.getTextBuffer().redo(delta);
     }
 
-    void undoDecoration() {
+    void undoDecoration(Runnable undo) {
         Selection selection = getSelection();
         clearSelection();
         int caretPosition = getCaretPosition();
         setCaretPosition(-1);
-        undo();
+        undo.run();
         setCaretPosition(caretPosition);
         setSelection(selection);
     }
@@ -554,40 +1305,32 @@ public class RichTextAreaViewModel {
         if (textLength <= 0) {
             return;
         }
-        if (wordIterator == null) {
-            wordIterator = BreakIterator.getWordInstance();
-        }
-        wordIterator.setText(getTextBuffer().getCharacterIterator());
-
+        CharSequence text = getTextBuffer().getCharSequence();
         int prevCaretPosition = getCaretPosition();
-        int position = wordIterator.preceding(Tools.clamp(0, prevCaretPosition, textLength));
+        int position = wordBoundaries.preceding(Tools.clamp(0, prevCaretPosition, textLength));
         while (position != BreakIterator.DONE &&
-                !Character.isLetterOrDigit(getTextBuffer().charAt(Tools.clamp(0, position, textLength - 1)))) {
-            position = wordIterator.preceding(Tools.clamp(0, position, textLength));
+                !Character.isLetterOrDigit(text.charAt(Tools.clamp(0, position, textLength - 1)))) {
+            position = wordBoundaries.preceding(Tools.clamp(0, position, textLength));
         }
         setCaretPosition(Tools.clamp(0, position, textLength));
     }
 
     private void nextWord(Predicate<Character> filter) {
         int textLength = getTextLength();
-        if (wordIterator == null) {
-            wordIterator = BreakIterator.getWordInstance();
+        if (textLength <= 0) {
+            setCaretPosition(textLength);
+            return;
         }
-        wordIterator.setText(getTextBuffer().getCharacterIterator());
-
+        CharSequence text = getTextBuffer().getCharSequence();
         int prevCaretPosition = getCaretPosition();
-        int last = wordIterator.following(Tools.clamp(0, prevCaretPosition, textLength - 1));
-        int current = wordIterator.next();
-        while (current != BreakIterator.DONE) {
-            for (int i = last; i <= current; i++) {
-                char c = getTextBuffer().charAt(Tools.clamp(0, i, textLength - 1));
-                if (filter.test(c)) {
-                    setCaretPosition(Tools.clamp(0, i, textLength));
-                    return;
-                }
+        int position = wordBoundaries.following(Tools.clamp(0, prevCaretPosition, textLength - 1));
+        // the first char from the next boundary on that passes the filter
+        while (position != BreakIterator.DONE && position < textLength) {
+            if (filter.test(text.charAt(position))) {
+                setCaretPosition(position);
+                return;
             }
-            last = current;
-            current = wordIterator.next();
+            position++;
         }
         setCaretPosition(textLength);
     }
@@ -605,8 +1348,14 @@ public class RichTextAreaViewModel {
     private void paragraphStart() {
         int pos = getCaretPosition();
         if (pos > 0) {
-            while (pos > 0 && getTextBuffer().charAt(pos - 1) != 0x0a) {
-                pos--;
+            if (isParagraphIndexUpdated()) {
+                // the line feeds of the paragraph index, in O(log n)
+                pos = paragraphIndex.get(paragraphIndex.indexAt(pos)).getStart();
+            } else {
+                CharSequence text = getTextBuffer().getCharSequence();
+                while (pos > 0 && text.charAt(pos - 1) != 0x0a) {
+                    pos--;
+                }
             }
             setCaretPosition(pos);
         }
@@ -616,16 +1365,54 @@ public class RichTextAreaViewModel {
         int pos = getCaretPosition();
         int len = getTextLength();
         if (pos < len) {
-            while (pos < len && getTextBuffer().charAt(pos) != 0x0a) {
-                pos++;
+            if (isParagraphIndexUpdated()) {
+                int index = paragraphIndex.indexAt(pos);
+                pos = index == paragraphIndex.size() - 1 ? len : paragraphIndex.get(index).getEnd() - 1;
+            } else {
+                CharSequence text = getTextBuffer().getCharSequence();
+                while (pos < len && text.charAt(pos) != 0x0a) {
+                    pos++;
+                }
             }
             setCaretPosition(pos);
         }
     }
 
+    // the paragraph index is updated after the listeners of the text buffer are notified
+    private boolean isParagraphIndexUpdated() {
+        return paragraphIndex.size() > 0 && paragraphIndex.getTextLength() == getTextLength();
+    }
+
     private void updateProperties() {
+        long position = getHistoryPosition();
+        if (redoClearedCount != commandManager.getRedoClearedCount()) {
+            redoClearedCount = commandManager.getRedoClearedCount();
+            if (historyPositionWhenSaved > historyPosition) {
+                // the saved state was undone, and a new edit cleared it from the redo stack
+                historyPositionWhenSaved = -1;
+            }
+        }
         undoStackSizeProperty.set(commandManager.getUndoStackSize());
         redoStackSizeProperty.set(commandManager.getRedoStackSize());
+        // the stack size alone can't tell if the document changed once old commands get evicted
+        if (position != historyPosition) {
+            historyPosition = position;
+            if (isAutoSave()) {
+                save();
+            } else {
+                savedProperty.set(position == historyPositionWhenSaved || isRevertedToSaved());
+            }
+        }
+    }
+
+    // the content is back to the saved one if the last edit was a revert to it
+    private boolean isRevertedToSaved() {
+        AbstractCommand<RichTextAreaViewModel> cmd = commandManager.peekUndo();
+        return cmd instanceof RevertCmd && ((RevertCmd) cmd).getCheckpoint().equals(savedCheckpoint);
+    }
+
+    private long getHistoryPosition() {
+        return commandManager.getEvictedCount() + commandManager.getUndoStackSize();
     }
 
     private Document getCurrentDocument() {
@@ -650,7 +1437,10 @@ public class RichTextAreaViewModel {
 
     void save() {
         Document currentDocument = getCurrentDocument();
-        undoStackSizeWhenSaved = getUndoStackSize();
+        historyPositionWhenSaved = getHistoryPosition();
+        savedCheckpoint = getTextBuffer().createCheckpoint();
+        // further typing must not be merged into the saved state
+        commandManager.breakCoalescing();
         savedProperty.set(true);
         setDocument(currentDocument);
     }
@@ -0,0 +1,135 @@
+package com.gluonhq.richtext.viewmodel;
+
+import com.gluonhq.richtext.model.TextBuffer;
+
+import java.text.BreakIterator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+/**
+ * Word boundaries of the text of a {@link TextBuffer}, computed lazily per paragraph.
+ * Line feeds are always word boundaries, so a paragraph can be broken in words on its own,
+ * in O(paragraph) instead of O(document). The boundaries of the most recently used paragraphs
+ * are cached, until a change of the text affects them.
+ */
+class WordBoundaries {
+
+    private static final int MAX_CACHED_PARAGRAPHS = 64;
+
+    private final TextBuffer textBuffer;
+    private final BreakIterator wordIterator = BreakIterator.getWordInstance();
+    // paragraph start -> boundaries relative to it, from 0 to the paragraph length
+    private final TreeMap<Integer, int[]> paragraphs = new TreeMap<>();
+    private final Consumer<TextBuffer.Event> changeListener = this::textChanged;
+
+    WordBoundaries(TextBuffer textBuffer) {
+        this.textBuffer = Objects.requireNonNull(textBuffer);
+        textBuffer.addChangeListener(changeListener);
+    }
+
+    void dispose() {
+        textBuffer.removeChangeListener(changeListener);
+        paragraphs.clear();
+    }
+
+    /**
+     * @param position a text position
+     * @return the first word boundary after the position, or {@link BreakIterator#DONE} if there is none
+     */
+    int following(int position) {
+        if (position < 0 || position >= textBuffer.getTextLength()) {
+            return BreakIterator.DONE;
+        }
+        Map.Entry<Integer, int[]> paragraph = paragraphAt(position);
+        int start = paragraph.getKey();
+        int[] boundaries = paragraph.getValue();
+        int index = Arrays.binarySearch(boundaries, position - start);
+        // the paragraph end is a boundary after the position
+        return start + boundaries[index >= 0 ? index + 1 : -index - 1];
+    }
+
+    /**
+     * @param position a text position
+     * @return the last word boundary before the position, or {@link BreakIterator#DONE} if there is none
+     */
+    int preceding(int position) {
+        if (position <= 0 || position > textBuffer.getTextLength()) {
+            return BreakIterator.DONE;
+        }
+        Map.Entry<Integer, int[]> paragraph = paragraphAt(position - 1);
+        int start = paragraph.getKey();
+        int[] boundaries = paragraph.getValue();
+        int index = Arrays.binarySearch(boundaries, position - start);
+        // the paragraph start is a boundary before the position
+        return start + boundaries[(index >= 0 ? index : -index - 1) - 1];
+    }
+
+    // paragraph that contains the char at the given position, that must be within the text
+    private Map.Entry<Integer, int[]> paragraphAt(int position) {
+        Map.Entry<Integer, int[]> entry = paragraphs.floorEntry(position);
+        if (entry != null && position < entry.getKey() + entry.getValue()[entry.getValue().length - 1]) {
+            return entry;
+        }
+        CharSequence text = textBuffer.getCharSequence();
+        int start = position;
+        while (start > 0 && text.charAt(start - 1) != '\n') {
+            start--;
+        }
+        int end = position;
+        while (end < text.length() && text.charAt(end) != '\n') {
+            end++;
+        }
+        if (end < text.length()) {
+            end++; // the line feed belongs to the paragraph
+        }
+        wordIterator.setText(text.subSequence(start, end).toString());
+        List<Integer> boundaries = new ArrayList<>();
+        for (int b = wordIterator.first(); b != BreakIterator.DONE; b = wordIterator.next()) {
+            boundaries.add(b);
+        }
+        if (paragraphs.size() >= MAX_CACHED_PARAGRAPHS) {
+            // drop the cached paragraph farthest from this one
+            int first = paragraphs.firstKey();
+            paragraphs.remove(Math.abs(first - start) > Math.abs(paragraphs.lastKey() - start) ? first : paragraphs.lastKey());
+        }
+        paragraphs.put(start, boundaries.stream().mapToInt(Integer::intValue).toArray());
+        return paragraphs.floorEntry(position);
+    }
+
+    private void textChanged(TextBuffer.Event event) {
+        if (event instanceof TextBuffer.RangesEvent) {
+            // in order, each range at its position after the ranges before it changed
+            ((TextBuffer.RangesEvent) event).getEvents().forEach(this::textChanged);
+        } else if (event instanceof TextBuffer.InsertEvent) {
+            TextBuffer.InsertEvent insertEvent = (TextBuffer.InsertEvent) event;
+            textChanged(insertEvent.getPosition(), insertEvent.getPosition(), insertEvent.getText().length());
+        } else if (event instanceof TextBuffer.DeleteEvent) {
+            TextBuffer.DeleteEvent deleteEvent = (TextBuffer.DeleteEvent) event;
+            textChanged(deleteEvent.getPosition(), deleteEvent.getPosition() + deleteEvent.getLength(), -deleteEvent.getLength());
+        } else if (event instanceof TextBuffer.ResetEvent) {
+            paragraphs.clear();
+        }
+    }
+
+    // drops the paragraphs that touch the changed range, and moves the ones after it
+    private void textChanged(int start, int end, int delta) {
+        TreeMap<Integer, int[]> moved = new TreeMap<>();
+        paragraphs.entrySet().removeIf(entry -> {
+            int paragraphStart = entry.getKey();
+            int paragraphEnd = paragraphStart + entry.getValue()[entry.getValue().length - 1];
+            if (paragraphEnd < start) {
+                return false;
+            }
+            if (paragraphStart > end) {
+                moved.put(paragraphStart + delta, entry.getValue());
+            }
+            return true;
+        });
+        paragraphs.putAll(moved);
+    }
+}
@@ -0,0 +1,68 @@
+package com.gluonhq.richtext;
+
+import javafx.scene.Node;
+import javafx.scene.image.ImageView;
+import javafx.scene.text.Text;
+import javafx.scene.text.TextFlow;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+public class FragmentNodesTests {
+
+    @Test
+    @DisplayName("Nodes of the same type at the same position are updated in place")
+    public void nodesUpdatedInPlace() {
+        TextFlow textFlow = new TextFlow();
+        FragmentNodes fragmentNodes = new FragmentNodes(textFlow.getChildren());
+        Text first = fragmentNodes.obtainText(0);
+        ImageView image = fragmentNodes.obtainImage(1);
+        Text last = fragmentNodes.obtainText(2);
+        fragmentNodes.setFragments(List.of(first, image, last));
+        Assertions.assertEquals(List.of(first, image, last), textFlow.getChildren());
+
+        Assertions.assertSame(first, fragmentNodes.obtainText(0));
+        Assertions.assertSame(image, fragmentNodes.obtainImage(1));
+        Assertions.assertSame(last, fragmentNodes.obtainText(2));
+        fragmentNodes.setFragments(List.of(first, image, last));
+        Assertions.assertEquals(List.of(first, image, last), textFlow.getChildren());
+        Assertions.assertEquals(0, fragmentNodes.getPoolSize());
+    }
+
+    @Test
+    @DisplayName("Replaced and removed nodes are pooled, and used again")
+    public void nodesPooled() {
+        TextFlow textFlow = new TextFlow();
+        FragmentNodes fragmentNodes = new FragmentNodes(textFlow.getChildren());
+        Text first = fragmentNodes.obtainText(0);
+        ImageView image = fragmentNodes.obtainImage(1);
+        Text last = fragmentNodes.obtainText(2);
+        fragmentNodes.setFragments(List.of(first, image, last));
+
+        // the image is replaced by a text, and the last text is removed
+        Text replacement = fragmentNodes.obtainText(1);
+        Assertions.assertNotSame(first, replacement);
+        Assertions.assertNotSame(last, replacement);
+        fragmentNodes.setFragments(List.of(first, replacement));
+        Assertions.assertEquals(List.of(first, replacement), textFlow.getChildren());
+        Assertions.assertEquals(2, fragmentNodes.getPoolSize());
+
+        // the pooled nodes are shown again, instead of new ones
+        Text pooledText = fragmentNodes.obtainText(2);
+        ImageView pooledImage = fragmentNodes.obtainImage(3);
+        Assertions.assertSame(last, pooledText);
+        Assertions.assertSame(image, pooledImage);
+        List<Node> fragments = List.of(first, replacement, pooledText, pooledImage);
+        fragmentNodes.setFragments(fragments);
+        Assertions.assertEquals(fragments, textFlow.getChildren());
+        Assertions.assertEquals(0, fragmentNodes.getPoolSize());
+
+        fragmentNodes.setFragments(List.of());
+        Assertions.assertTrue(textFlow.getChildren().isEmpty());
+        Assertions.assertEquals(4, fragmentNodes.getPoolSize());
+        fragmentNodes.clearPools();
+        Assertions.assertEquals(0, fragmentNodes.getPoolSize());
+    }
+}
@@ -0,0 +1,70 @@
+package com.gluonhq.richtext;
+
+import javafx.scene.paint.Color;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class HighlightTests {
+
+    @Test
+    @DisplayName("Overlapping and adjacent ranges are merged, undefined ones are ignored")
+    public void mergeRanges() {
+        Highlight highlight = new Highlight(Color.YELLOW, List.of(
+                new Selection(20, 25), new Selection(2, 5), new Selection(4, 8),
+                new Selection(8, 10), Selection.UNDEFINED, new Selection(30, 31)));
+        Assertions.assertEquals(3, highlight.size());
+        Assertions.assertEquals(Color.YELLOW, highlight.getPaint());
+        Assertions.assertEquals(List.of(new Selection(2, 10), new Selection(20, 25), new Selection(30, 31)),
+                highlight.getRanges(0, 100));
+    }
+
+    @Test
+    @DisplayName("Ranges within a paragraph are clipped to it")
+    public void rangesWithin() {
+        Highlight highlight = new Highlight(Color.YELLOW, List.of(
+                new Selection(2, 10), new Selection(20, 25), new Selection(30, 31)));
+        Assertions.assertEquals(List.of(new Selection(5, 10), new Selection(20, 22)), highlight.getRanges(5, 22));
+        Assertions.assertEquals(List.of(), highlight.getRanges(10, 20));
+        Assertions.assertEquals(List.of(new Selection(30, 31)), highlight.getRanges(25, 40));
+        Assertions.assertEquals(List.of(), highlight.getRanges(31, 40));
+        Assertions.assertEquals(List.of(), highlight.getRanges(4, 4));
+        Assertions.assertEquals(List.of(), new Highlight(Color.YELLOW, List.of()).getRanges(0, 10));
+    }
+
+    @Test
+    @DisplayName("Binary search finds the same ranges as a linear scan")
+    public void rangesLikeLinearScan() {
+        Random random = new Random(7);
+        List<Selection> ranges = new ArrayList<>();
+        boolean[] highlighted = new boolean[1000];
+        for (int i = 0; i < 200; i++) {
+            int start = random.nextInt(990);
+            int end = start + 1 + random.nextInt(10);
+            ranges.add(new Selection(start, end));
+            for (int j = start; j < end; j++) {
+                highlighted[j] = true;
+            }
+        }
+        Highlight highlight = new Highlight(Color.YELLOW, ranges);
+        for (int i = 0; i < 200; i++) {
+            int start = random.nextInt(1000);
+            int end = start + random.nextInt(1000 - start + 1);
+            List<Selection> expected = new ArrayList<>();
+            for (int j = start; j < end; j++) {
+                if (highlighted[j] && (j == start || !highlighted[j - 1])) {
+                    int k = j;
+                    while (k < end && highlighted[k]) {
+                        k++;
+                    }
+                    expected.add(new Selection(j, k));
+                }
+            }
+            Assertions.assertEquals(expected, highlight.getRanges(start, end), "[" + start + ", " + end + ")");
+        }
+    }
+}
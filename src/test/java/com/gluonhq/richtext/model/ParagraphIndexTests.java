@@ -0,0 +1,47 @@
+package com.gluonhq.richtext.model;
+
+import com.gluonhq.richtext.Selection;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+public class ParagraphIndexTests {
+
+    @Test
+    @DisplayName("Paragraph index keeps relative positions")
+    public void paragraphIndex() {
+        ParagraphDecoration decoration = ParagraphDecoration.builder().presets().build();
+        ParagraphIndex index = new ParagraphIndex();
+        // "ab\ncd\n\nef"
+        List<Paragraph> paragraphs = index.replace(0, 0, new int[]{3, 3, 1, 2}, List.of(decoration, decoration, decoration, decoration));
+        Assertions.assertEquals(4, index.size());
+        Assertions.assertEquals(9, index.getTextLength());
+        Assertions.assertEquals(6, paragraphs.get(2).getStart());
+        Assertions.assertEquals(9, paragraphs.get(3).getEnd());
+        Assertions.assertEquals(0, index.indexAt(0));
+        Assertions.assertEquals(1, index.indexAt(3));
+        Assertions.assertEquals(1, index.indexAt(5));
+        Assertions.assertEquals(2, index.indexAt(6));
+        Assertions.assertEquals(3, index.indexAt(9));
+
+        // typing in the first paragraph only replaces it, the next ones move along
+        Paragraph first = index.replace(0, 1, new int[]{5}, List.of(decoration)).get(0);
+        Assertions.assertEquals(new Selection(0, 5), new Selection(first.getStart(), first.getEnd()));
+        Assertions.assertSame(paragraphs.get(3), index.get(3));
+        Assertions.assertEquals(9, paragraphs.get(3).getStart());
+        // the replaced paragraph keeps its last position
+        Assertions.assertEquals(3, paragraphs.get(0).getEnd());
+
+        // splitting the second paragraph adds one
+        index.replace(1, 2, new int[]{1, 2}, List.of(decoration, decoration));
+        Assertions.assertEquals(5, index.size());
+        Assertions.assertSame(paragraphs.get(3), index.get(4));
+        Assertions.assertEquals(9, paragraphs.get(3).getStart());
+        Assertions.assertEquals(4, index.indexAt(10));
+        index.replace(0, 5, new int[]{0}, List.of(decoration));
+        Assertions.assertEquals(1, index.size());
+        Assertions.assertEquals(0, index.indexAt(0));
+    }
+}
@@ -0,0 +1,59 @@
+package com.gluonhq.richtext.model;
+
+import com.gluonhq.richtext.Selection;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+public class ParallelFinderTests {
+
+    @Test
+    @DisplayName("Parallel search merges the matches of overlapping chunks in order")
+    public void parallelFind() throws Exception {
+        PieceTable pt = new PieceTable(new Document("Original Text"));
+        for (int i = 0; i < 20; i++) {
+            pt.append(" aaa text" + i);
+        }
+        List<SearchQuery> queries = List.of(
+                SearchQuery.builder().text("aa").build(),
+                SearchQuery.builder().text("TEXT1").build(),
+                SearchQuery.builder().text("text\\d+").regex(true).contextLength(8).build());
+        for (SearchQuery query : queries) {
+            List<Selection> batches = new CopyOnWriteArrayList<>();
+            List<Selection> matches = new ParallelFinder(query, new PieceCharSequence(pt), 7, batches::addAll)
+                    .start(ForkJoinPool.commonPool())
+                    .get(10, TimeUnit.SECONDS);
+            Assertions.assertEquals(pt.findAll(query), matches);
+            Assertions.assertEquals(matches, batches);
+        }
+
+        CharSequence before = pt.getCharSequence();
+        CompletableFuture<List<Selection>> future = pt.findAllInParallel(queries.get(0), m -> {});
+        pt.append(" aa");
+        Assertions.assertEquals(20, future.get(10, TimeUnit.SECONDS).size());
+        Assertions.assertEquals(20, new TextFinder(queries.get(0)).findAll(before, 0, before.length()).size());
+    }
+
+    @Test
+    @DisplayName("Matches across many small chunks are published in order, once")
+    public void parallelFindSmallChunks() throws Exception {
+        PieceTable pt = new PieceTable(new Document("a".repeat(5000) + " ab".repeat(2000)));
+        for (SearchQuery query : List.of(SearchQuery.builder().text("aaaa").build(), SearchQuery.builder().text("a a").build())) {
+            List<Selection> expected = pt.findAll(query);
+            for (int i = 0; i < 20; i++) {
+                List<Selection> batches = new CopyOnWriteArrayList<>();
+                List<Selection> matches = new ParallelFinder(query, new PieceCharSequence(pt), 3, batches::addAll)
+                        .start(ForkJoinPool.commonPool())
+                        .get(10, TimeUnit.SECONDS);
+                Assertions.assertEquals(expected, matches);
+                Assertions.assertEquals(expected, batches);
+            }
+        }
+    }
+}
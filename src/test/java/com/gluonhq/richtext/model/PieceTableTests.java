@@ -1,12 +1,20 @@
 package com.gluonhq.richtext.model;
 
+import com.gluonhq.richtext.Selection;
 import javafx.scene.paint.Color;
 import javafx.scene.text.FontPosture;
 import javafx.scene.text.FontWeight;
+import javafx.scene.text.TextAlignment;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.function.Consumer;
 
 public class PieceTableTests {
@@ -492,4 +500,482 @@ public class PieceTableTests {
                 .anyMatch(piece -> ((TextDecoration) piece.getDecoration()).getFontSize() == defaultFontSize));
     }
 
+    @Test
+    @DisplayName("Coalesced inserts extend a single piece and undo in one step")
+    public void coalescedInsertsUndoInOneStep() {
+        PieceTable pt = new PieceTable(FACE_MODEL);
+        pt.insert("B", 9);
+        pt.insert("i", 10);
+        Assertions.assertTrue(pt.coalesceUndo());
+        pt.insert("g", 11);
+        Assertions.assertTrue(pt.coalesceUndo());
+        Assertions.assertEquals("Original BigText", pt.getText());
+        Assertions.assertEquals(3, pt.pieces.size());
+        Assertions.assertEquals(1, pt.getUndoStats().getUndoCount());
+
+        pt.undo();
+        Assertions.assertEquals(FACE_MODEL.getText(), pt.getText());
+    }
+
+    @Test
+    @DisplayName("Coalesced inserts at the end of the text extend a single piece and undo in one step")
+    public void coalescedInsertsAtEndUndoInOneStep() {
+        PieceTable pt = new PieceTable(FACE_MODEL);
+        pt.insert("u", 13);
+        pt.insert("m", 14);
+        Assertions.assertTrue(pt.coalesceUndo());
+        pt.insert("s", 15);
+        Assertions.assertTrue(pt.coalesceUndo());
+        Assertions.assertEquals("Original Textums", pt.getText());
+        Assertions.assertEquals(2, pt.pieces.size());
+        Assertions.assertEquals(1, pt.getUndoStats().getUndoCount());
+
+        pt.undo();
+        Assertions.assertEquals(FACE_MODEL.getText(), pt.getText());
+        Assertions.assertEquals(1, pt.pieces.size());
+        pt.redo();
+        Assertions.assertEquals("Original Textums", pt.getText());
+    }
+
+    @Test
+    @DisplayName("Addition buffer spans several chunks, and char sequences keep the text they were created with")
+    public void additionBufferSnapshots() {
+        PieceTable pt = new PieceTable(FACE_MODEL);
+        String large = "0123456789".repeat(1000);
+        pt.append(large);
+        pt.insert("abc", 5);
+        CharSequence before = pt.getCharSequence();
+        String text = "Origiabcnal Text" + large;
+        Assertions.assertEquals(text, before.toString());
+
+        pt.append(large);
+        pt.insert("xyz", 9000);
+        Assertions.assertEquals(text, before.toString());
+        Assertions.assertEquals(text.charAt(8500), before.charAt(8500));
+        Assertions.assertEquals(large.substring(4000, 6000), before.subSequence(4016, 6016).toString());
+        String after = text + large;
+        after = after.substring(0, 9000) + "xyz" + after.substring(9000);
+        Assertions.assertEquals(after, pt.getText());
+        Assertions.assertEquals(after, pt.getCharSequence().toString());
+        Assertions.assertEquals(after.substring(8990, 9010), pt.getText(8990, 9010));
+    }
+
+    @Test
+    @DisplayName("Coalesced appends extend a single piece and undo in one step")
+    public void coalescedAppendsUndoInOneStep() {
+        PieceTable pt = new PieceTable(FACE_MODEL);
+        pt.append("u");
+        pt.append("m");
+        Assertions.assertTrue(pt.coalesceUndo());
+        Assertions.assertEquals("Original Textum", pt.getText());
+        Assertions.assertEquals(2, pt.pieces.size());
+
+        pt.undo();
+        Assertions.assertEquals(FACE_MODEL.getText(), pt.getText());
+    }
+
+    @Test
+    @DisplayName("Coalesced deletes undo in one step")
+    public void coalescedDeletesUndoInOneStep() {
+        PieceTable pt = new PieceTable(FACE_MODEL);
+        pt.delete(12, 1);
+        pt.delete(11, 1);
+        Assertions.assertTrue(pt.coalesceUndo());
+        Assertions.assertEquals("Original Te", pt.getText());
+
+        pt.undo();
+        Assertions.assertEquals(FACE_MODEL.getText(), pt.getText());
+    }
+
+    @Test
+    @DisplayName("Spilled edits are undone and redone from the spill file")
+    public void spilledEditsUndoAndRedo() {
+        PieceTable pt = new PieceTable(FACE_MODEL);
+        pt.setUndoSpilling(2);
+        pt.insert("Big", 9);
+        pt.append("!");
+        pt.decorate(0, 8, TextDecoration.builder().presets().fontWeight(FontWeight.BOLD).build());
+        pt.delete(0, 9);
+        pt.insert("\n", 3);
+        Assertions.assertEquals("Big\nText!", pt.getText());
+        Assertions.assertEquals(5, pt.getUndoStats().getUndoCount());
+        Assertions.assertEquals(3, pt.getUndoStats().getSpilledCount());
+
+        for (int i = 0; i < 5; i++) {
+            pt.undo();
+        }
+        Assertions.assertEquals(FACE_MODEL.getText(), pt.getText());
+        Assertions.assertEquals(1, pt.pieces.size());
+        Assertions.assertEquals(0, pt.getUndoStats().getSpilledCount());
+
+        for (int i = 0; i < 5; i++) {
+            pt.redo();
+        }
+        Assertions.assertEquals("Big\nText!", pt.getText());
+        pt.setUndoSpilling(0);
+        Assertions.assertEquals(2, pt.getUndoStats().getUndoCount());
+    }
+
+    @Test
+    @DisplayName("Reverting to a checkpoint restores it in one undoable step")
+    public void revertToCheckpoint() {
+        PieceTable pt = new PieceTable(FACE_MODEL);
+        pt.insert("Big", 9);
+        TextBuffer.Checkpoint checkpoint = pt.createCheckpoint();
+        for (int i = 0; i < 1000; i++) {
+            pt.append(" " + i);
+            pt.delete(0, 1);
+        }
+
+        final int[] eventCount = {0};
+        pt.addChangeListener(e -> {
+            Assertions.assertTrue(e instanceof TextBuffer.ResetEvent);
+            eventCount[0]++;
+        });
+        String text = pt.getText();
+        pt.revert(checkpoint);
+        Assertions.assertEquals("Original BigText", pt.getText());
+        Assertions.assertEquals(16, pt.getTextLength());
+        Assertions.assertEquals(1, eventCount[0]);
+
+        pt.undo();
+        Assertions.assertEquals(text, pt.getText());
+        Assertions.assertEquals(2, eventCount[0]);
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> new PieceTable(FACE_MODEL).revert(checkpoint));
+    }
+
+    @Test
+    @DisplayName("Checkpoints and decorations are written by value, and read back equal")
+    public void writeCheckpoint() throws Exception {
+        TextDecoration underline = TextDecoration.builder().underline(true).build();
+        PieceTable pt = new PieceTable(FACE_MODEL);
+        pt.decorate(0, 8, underline);
+        Decoration decorated = pt.getDecorationAtCaret(3);
+        TextBuffer.Checkpoint checkpoint = pt.createCheckpoint();
+        pt.append(" more");
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        pt.writeCheckpoint(checkpoint, out);
+        DocumentCodec.writeDecoration(underline, out);
+        DocumentCodec.writeDecoration(null, out);
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        TextBuffer.Checkpoint read = pt.readCheckpoint(in);
+        Assertions.assertNotSame(checkpoint, read);
+        Assertions.assertEquals(checkpoint, read);
+        Assertions.assertNotEquals(pt.createCheckpoint(), read);
+        // flags that aren't set stay unset
+        Assertions.assertEquals(underline, DocumentCodec.readDecoration(in));
+        Assertions.assertNull(DocumentCodec.readDecoration(in));
+
+        pt.revert(read);
+        Assertions.assertEquals("Original Text", pt.getText());
+        Assertions.assertEquals(decorated, pt.getDecorationAtCaret(3));
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> new PieceTable(FACE_MODEL).writeCheckpoint(checkpoint, out));
+    }
+
+    @Test
+    @DisplayName("Recorded edits are undone and redone as a single delta")
+    public void recordedDeltaUndoRedo() {
+        PieceTable pt = new PieceTable(FACE_MODEL);
+        TextBuffer.Delta delta = pt.recordChange(() -> {
+            pt.delete(0, 9);
+            pt.insert("Big", 0);
+            pt.insert("!", pt.getTextLength());
+        });
+        Assertions.assertEquals("BigText!", pt.getText());
+        Assertions.assertEquals(0, pt.getUndoStats().getUndoCount());
+
+        pt.undo(delta);
+        Assertions.assertEquals(FACE_MODEL.getText(), pt.getText());
+        pt.redo(delta);
+        Assertions.assertEquals("BigText!", pt.getText());
+
+        TextBuffer.Delta next = pt.recordChange(() -> pt.insert("?", 8));
+        pt.coalesce(delta, next);
+        pt.undo(delta);
+        Assertions.assertEquals(FACE_MODEL.getText(), pt.getText());
+    }
+
+    @Test
+    @DisplayName("Insert at the end of the text is a single undoable edit")
+    public void insertAtEndIsSingleEdit() {
+        PieceTable pt = new PieceTable(FACE_MODEL);
+        pt.insert("!", pt.getTextLength());
+        Assertions.assertEquals("Original Text!", pt.getText());
+        Assertions.assertEquals(1, pt.getUndoStats().getUndoCount());
+
+        pt.undo();
+        Assertions.assertEquals(FACE_MODEL.getText(), pt.getText());
+        Assertions.assertEquals(1, pt.pieces.size());
+    }
+
+    @Test
+    @DisplayName("Find matches across piece boundaries")
+    public void findAcrossPieces() {
+        PieceTable pt = new PieceTable(FACE_MODEL);
+        pt.insert("Big ", 9);
+        pt.append(" text");
+        // "Original Big Text text", "Big Text" spans an addition and the original piece
+        Assertions.assertEquals(4, pt.pieces.size());
+        SearchQuery query = SearchQuery.builder().text("big text").build();
+        Assertions.assertEquals(new Selection(9, 17), pt.find(query, 0, true));
+        Assertions.assertEquals(Selection.UNDEFINED, pt.find(query, 10, true));
+        Assertions.assertEquals(Selection.UNDEFINED,
+                pt.find(SearchQuery.builder().text("big text").matchCase(true).build(), 0, true));
+
+        SearchQuery text = SearchQuery.builder().text("Text").build();
+        Assertions.assertEquals(2, pt.findAll(text).size());
+        Assertions.assertEquals(new Selection(18, 22), pt.find(text, pt.getTextLength(), false));
+        Assertions.assertEquals(new Selection(13, 17), pt.find(text, 21, false));
+        Assertions.assertEquals(1, pt.findAll(SearchQuery.builder().text("Text").matchCase(true).build()).size());
+        Assertions.assertEquals(0, pt.findAll(SearchQuery.builder().text("tex").wholeWord(true).build()).size());
+        Assertions.assertEquals(2, pt.findAll(SearchQuery.builder().text("text").wholeWord(true).build()).size());
+    }
+
+    @Test
+    @DisplayName("Replace all is a single undoable edit")
+    public void replaceAll() {
+        PieceTable pt = new PieceTable(FACE_MODEL);
+        pt.append(" and more text");
+        SearchQuery query = SearchQuery.builder().text("text").build();
+        Assertions.assertEquals(2, pt.replaceAll(query, "words"));
+        Assertions.assertEquals("Original words and more words", pt.getText());
+        Assertions.assertEquals(29, pt.getTextLength());
+        Assertions.assertEquals(2, pt.getUndoStats().getUndoCount());
+
+        Assertions.assertEquals(2, pt.replaceAll(SearchQuery.builder().text("words").build(), ""));
+        Assertions.assertEquals("Original  and more ", pt.getText());
+        pt.undo();
+        pt.undo();
+        Assertions.assertEquals("Original Text and more text", pt.getText());
+        Assertions.assertEquals(0, pt.replaceAll(SearchQuery.builder().text("none").build(), "x"));
+    }
+
+    @Test
+    @DisplayName("Regex search within a region reads the context around it")
+    public void regexFindInRegion() {
+        PieceTable pt = new PieceTable(FACE_MODEL);
+        pt.insert("Big ", 9);
+        pt.append(" text 42");
+        // "Original Big Text text 42"
+        SearchQuery words = SearchQuery.builder().text("[a-z]+").regex(true).build();
+        Assertions.assertEquals(4, pt.findAll(words).size());
+        Assertions.assertEquals(new Selection(9, 17),
+                pt.find(SearchQuery.builder().text("big\\s+text").regex(true).build(), 0, true));
+        Assertions.assertEquals(new Selection(18, 22),
+                pt.find(SearchQuery.builder().text("te.t").regex(true).matchCase(true).build(), pt.getTextLength(), false));
+
+        // the lookbehind sees "Big " before the region, but the match can't start there
+        SearchQuery afterBig = SearchQuery.builder().text("(?<=Big )\\w+").regex(true).build();
+        Assertions.assertEquals(List.of(new Selection(13, 17)), pt.findAll(afterBig, new Selection(13, 25)));
+        Assertions.assertEquals(List.of(),
+                pt.findAll(SearchQuery.builder().text("(?<=Big )\\w+").regex(true).contextLength(0).build(), new Selection(13, 25)));
+        // whole words are checked against the text outside of the region too
+        SearchQuery word = SearchQuery.builder().text("ex").regex(true).wholeWord(true).build();
+        Assertions.assertEquals(List.of(), pt.findAll(word, new Selection(14, 16)));
+        Assertions.assertEquals(List.of(new Selection(23, 25)),
+                pt.findAll(SearchQuery.builder().text("\\d+").regex(true).build(), new Selection(20, 25)));
+
+        CharSequence text = pt.getCharSequence();
+        pt.append("!");
+        Assertions.assertEquals("Original Big Text text 42", text.toString());
+        Assertions.assertEquals("Big Text", text.subSequence(9, 17).toString());
+        Assertions.assertEquals('T', text.subSequence(9, 17).charAt(4));
+    }
+
+    @Test
+    @DisplayName("Copied text keeps its decorations when it is inserted")
+    public void insertDocument() throws Exception {
+        TextDecoration bold = TextDecoration.builder().presets().fontWeight(FontWeight.BOLD).build();
+        ParagraphDecoration centered = ParagraphDecoration.builder().presets().alignment(TextAlignment.CENTER).build();
+        PieceTable source = new PieceTable(new Document("abc\ndef\nghi"));
+        source.decorate(1, 6, bold);
+        source.decorate(4, 8, centered);
+        Document copy = DocumentCodec.decode(DocumentCodec.encode(source.getDocument(1, 9)));
+        Assertions.assertEquals("bc\ndef\ng", copy.getText());
+        Assertions.assertEquals(source.getDocument(1, 9), copy);
+        Assertions.assertEquals(bold, copy.getDecorations().get(0).getDecoration());
+        // one run per change of text or paragraph decoration: "bc\n", "de", "f\n", "g"
+        Assertions.assertEquals(4, copy.getDecorations().size());
+        Assertions.assertEquals(3, copy.getDecorations().get(0).getLength());
+
+        PieceTable pt = new PieceTable(new Document("xyz"));
+        List<TextBuffer.Event> events = new ArrayList<>();
+        pt.addChangeListener(events::add);
+        pt.insert(copy, 2);
+        Assertions.assertEquals("xybc\ndef\ngz", pt.getText());
+        Assertions.assertEquals(1, events.size());
+        Assertions.assertEquals(bold, pt.getDecorationAtCaret(4));
+        Assertions.assertNotEquals(bold, pt.getDecorationAtCaret(10));
+        // the whole paragraph keeps its decoration, the first and last lines take the one of the target
+        Assertions.assertEquals(centered, pt.getParagraphDecorationAtCaret(5));
+        Assertions.assertNotEquals(centered, pt.getParagraphDecorationAtCaret(2));
+        Assertions.assertNotEquals(centered, pt.getParagraphDecorationAtCaret(9));
+        pt.undo();
+        Assertions.assertEquals("xyz", pt.getText());
+        pt.redo();
+        Assertions.assertEquals("xybc\ndef\ngz", pt.getText());
+    }
+
+    @Test
+    @DisplayName("Text at several carets is replaced and decorated in a single edit")
+    public void replaceAtSeveralRanges() {
+        TextDecoration bold = TextDecoration.builder().presets().fontWeight(FontWeight.BOLD).build();
+        PieceTable pt = new PieceTable(new Document("one two three"));
+        List<TextBuffer.Event> events = new ArrayList<>();
+        pt.addChangeListener(events::add);
+        // two carets and one selection
+        pt.replace(new int[] {0, 4, 8}, new int[] {0, 4, 13}, "x");
+        Assertions.assertEquals("xone xtwo x", pt.getText());
+        Assertions.assertEquals(11, pt.getTextLength());
+        Assertions.assertEquals(1, pt.getUndoStats().getUndoCount());
+        // a single event, with the changes from the first range to the last one
+        Assertions.assertEquals(1, events.size());
+        TextBuffer.RangesEvent rangesEvent = (TextBuffer.RangesEvent) events.get(0);
+        List<TextBuffer.Event> rangeEvents = rangesEvent.getEvents();
+        Assertions.assertEquals(4, rangeEvents.size());
+        Assertions.assertEquals(0, ((TextBuffer.InsertEvent) rangeEvents.get(0)).getPosition());
+        Assertions.assertEquals("xone two three", rangesEvent.getText(0).toString());
+        Assertions.assertEquals(5, ((TextBuffer.InsertEvent) rangeEvents.get(1)).getPosition());
+        Assertions.assertEquals("xone xtwo three", rangesEvent.getText(1).toString());
+        Assertions.assertEquals(10, ((TextBuffer.DeleteEvent) rangeEvents.get(2)).getPosition());
+        Assertions.assertEquals(5, ((TextBuffer.DeleteEvent) rangeEvents.get(2)).getLength());
+        Assertions.assertEquals("xone xtwo ", rangesEvent.getText(2).toString());
+        Assertions.assertEquals(10, ((TextBuffer.InsertEvent) rangeEvents.get(3)).getPosition());
+        Assertions.assertEquals("xone xtwo x", rangesEvent.getText(3).toString());
+        Assertions.assertEquals('r', rangesEvent.getText(1).charAt(12));
+        Assertions.assertEquals("two", rangesEvent.getText(1).subSequence(6, 9).toString());
+
+        events.clear();
+        pt.decorate(List.of(new Selection(0, 1), new Selection(5, 6)), bold);
+        Assertions.assertEquals(bold, pt.getDecorationAtCaret(1));
+        Assertions.assertNotEquals(bold, pt.getDecorationAtCaret(3));
+        Assertions.assertEquals(bold, pt.getDecorationAtCaret(6));
+        Assertions.assertEquals(1, events.size());
+        rangeEvents = ((TextBuffer.RangesEvent) events.get(0)).getEvents();
+        Assertions.assertEquals(2, rangeEvents.size());
+        Assertions.assertTrue(rangeEvents.stream().allMatch(e -> e instanceof TextBuffer.DecorateEvent));
+        Assertions.assertEquals(5, ((TextBuffer.DecorateEvent) rangeEvents.get(1)).getStart());
+
+        pt.undo();
+        Assertions.assertNotEquals(bold, pt.getDecorationAtCaret(1));
+        pt.undo();
+        Assertions.assertEquals("one two three", pt.getText());
+        pt.redo();
+        Assertions.assertEquals("xone xtwo x", pt.getText());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> pt.replace(new int[] {4, 2}, new int[] {4, 2}, "y"));
+    }
+
+    @Test
+    @DisplayName("Edits at several carets keep only the replaced pieces, and undo the same after being spilled")
+    public void replaceAtSeveralRangesUndo() {
+        PieceTable pt = new PieceTable(new Document("one two three"));
+        pt.setUndoSpilling(1);
+        pt.replace(new int[] {1, 5, 13}, new int[] {3, 5, 13}, "ab");
+        Assertions.assertEquals("oab tabwo threeab", pt.getText());
+        pt.replace(new int[] {0, 1, 17}, new int[] {0, 4, 17}, "");
+        Assertions.assertEquals("otabwo threeab", pt.getText());
+        pt.decorate(List.of(new Selection(0, 2), new Selection(3, 9)),
+                TextDecoration.builder().presets().fontWeight(FontWeight.BOLD).build());
+        Assertions.assertEquals(2, pt.getUndoStats().getSpilledCount());
+
+        List<TextBuffer.Event> events = new ArrayList<>();
+        pt.addChangeListener(events::add);
+        pt.undo();
+        pt.undo();
+        Assertions.assertEquals("oab tabwo threeab", pt.getText());
+        Assertions.assertEquals(17, pt.getTextLength());
+        Assertions.assertTrue(events.stream().noneMatch(e -> e instanceof TextBuffer.ResetEvent));
+        pt.undo();
+        Assertions.assertEquals("one two three", pt.getText());
+        Assertions.assertEquals(1, pt.pieces.size());
+        pt.redo();
+        pt.redo();
+        Assertions.assertEquals("otabwo threeab", pt.getText());
+        Assertions.assertEquals(14, pt.getTextLength());
+    }
+
+    @Test
+    @DisplayName("Undoing a decoration notifies the range of the text it restored")
+    public void undoDecorateEvents() {
+        TextDecoration bold = TextDecoration.builder().presets().fontWeight(FontWeight.BOLD).build();
+        PieceTable pt = new PieceTable(new Document("one two three"));
+        pt.append(" four");
+        pt.decorate(8, 16, bold);
+        List<TextBuffer.DecorateEvent> events = new ArrayList<>();
+        pt.addChangeListener(e -> events.add((TextBuffer.DecorateEvent) e));
+        pt.undo();
+        Assertions.assertFalse(events.isEmpty());
+        // positions within the text, not within the buffers of the pieces
+        Assertions.assertEquals(0, events.get(0).getStart());
+        Assertions.assertEquals(pt.getTextLength(), events.get(events.size() - 1).getEnd());
+        for (int i = 1; i < events.size(); i++) {
+            Assertions.assertEquals(events.get(i - 1).getEnd(), events.get(i).getStart());
+        }
+    }
+
+    @Test
+    @DisplayName("The runs of decorations are counted as the pieces change")
+    public void decorationRunCount() {
+        TextDecoration bold = TextDecoration.builder().presets().fontWeight(FontWeight.BOLD).build();
+        ParagraphDecoration centered = ParagraphDecoration.builder().presets().alignment(TextAlignment.CENTER).build();
+        PieceTable pt = new PieceTable(new Document("one two\nthree four"));
+        List<Runnable> edits = List.of(
+                () -> pt.insert("x", 3),
+                () -> pt.decorate(4, 9, bold),
+                () -> pt.append(" five"),
+                () -> pt.decorate(2, 6, TextDecoration.builder().presets().build()),
+                () -> pt.delete(1, 5),
+                () -> pt.decorate(0, 0, new ImageDecoration("image.png")),
+                () -> pt.decorate(0, 5, centered),
+                () -> pt.replace(new int[] {0, 4, 9}, new int[] {1, 6, 9}, "ab"),
+                () -> pt.decorate(List.of(new Selection(1, 3), new Selection(8, 12)), bold));
+        for (Runnable edit : edits) {
+            edit.run();
+            Assertions.assertEquals(pt.getDecorationModelList().size(), pt.getDecorationRunCount());
+        }
+        for (int i = 0; i < edits.size(); i++) {
+            pt.undo();
+            Assertions.assertEquals(pt.getDecorationModelList().size(), pt.getDecorationRunCount());
+        }
+        Assertions.assertEquals(1, pt.getDecorationRunCount());
+        for (int i = 0; i < edits.size(); i++) {
+            pt.redo();
+            Assertions.assertEquals(pt.getDecorationModelList().size(), pt.getDecorationRunCount());
+        }
+    }
+
+    @Test
+    @DisplayName("Adjacent pieces with equal decorations are walked as a single fragment")
+    public void mergedFragments() {
+        TextDecoration bold = TextDecoration.builder().presets().fontWeight(FontWeight.BOLD).build();
+        ImageDecoration image = new ImageDecoration("image.png", 10, 10, null);
+        PieceTable pt = new PieceTable(new Document("one two three"));
+        pt.insert("x", 3);
+        pt.insert("y", 8);
+        pt.decorate(4, 6, bold);
+        pt.undo();
+        pt.decorate(10, 13, bold);
+        pt.decorate(0, 0, image);
+        pt.decorate(0, 0, image);
+        Assertions.assertEquals(TextBuffer.ZERO_WIDTH_TEXT + TextBuffer.ZERO_WIDTH_TEXT + "onex twoy three", pt.getText());
+
+        List<String> fragments = new ArrayList<>();
+        List<Decoration> decorations = new ArrayList<>();
+        pt.walkFragments((text, decoration) -> {
+            fragments.add(text);
+            decorations.add(decoration);
+        }, 0, pt.getTextLength());
+        // each image is a fragment, the text is split only where the decoration changes
+        Assertions.assertEquals(List.of(TextBuffer.ZERO_WIDTH_TEXT, TextBuffer.ZERO_WIDTH_TEXT, "onex twoy ", "thr", "ee"), fragments);
+        Assertions.assertEquals(image, decorations.get(0));
+        Assertions.assertEquals(bold, decorations.get(3));
+
+        fragments.clear();
+        pt.walkFragments((text, decoration) -> fragments.add(text), 5, 13);
+        Assertions.assertEquals(List.of("x twoy ", "t"), fragments);
+    }
 }
@@ -0,0 +1,44 @@
+package com.gluonhq.richtext.model;
+
+import com.gluonhq.richtext.Selection;
+import javafx.scene.text.FontWeight;
+import javafx.scene.text.TextAlignment;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class ReadOnlyTextBufferTests {
+
+    @Test
+    @DisplayName("Read only buffer has the same text and fragments as a piece table")
+    public void readOnlyBuffer() {
+        TextDecoration bold = TextDecoration.builder().presets().fontWeight(FontWeight.BOLD).build();
+        ParagraphDecoration centered = ParagraphDecoration.builder().presets().alignment(TextAlignment.CENTER).build();
+        PieceTable pt = new PieceTable(new Document("one two\nthree four"));
+        pt.decorate(4, 7, bold);
+        pt.decorate(8, 18, centered);
+        pt.decorate(0, 3, TextDecoration.builder().presets().build());
+        ReadOnlyTextBuffer buffer = new ReadOnlyTextBuffer(new Document(pt.getText(), pt.getDecorationModelList(), 0));
+        Assertions.assertTrue(buffer.isReadOnly());
+        Assertions.assertEquals(pt.getText(), buffer.getText());
+        Assertions.assertEquals(pt.getTextLength(), buffer.getTextLength());
+        Assertions.assertEquals(pt.getLineFeeds(), buffer.getLineFeeds());
+        Assertions.assertEquals(pt.getDocument(2, 12), buffer.getDocument(2, 12));
+        for (int i = 0; i <= pt.getTextLength(); i++) {
+            Assertions.assertEquals(pt.getDecorationAtCaret(i), buffer.getDecorationAtCaret(i));
+            Assertions.assertEquals(pt.getParagraphDecorationAtCaret(i), buffer.getParagraphDecorationAtCaret(i));
+        }
+
+        List<String> fragments = new ArrayList<>();
+        buffer.walkFragments((text, decoration) -> fragments.add(text), 2, 12);
+        // one fragment per run of equal decorations, even if the piece table has more pieces
+        Assertions.assertEquals(List.of("e ", "two", "\n", "thre"), fragments);
+        Assertions.assertEquals(List.of(new Selection(14, 18)), buffer.findAll(SearchQuery.builder().text("four").build()));
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> buffer.insert("x", 0));
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> buffer.decorate(0, 1, bold));
+        Assertions.assertThrows(UnsupportedOperationException.class, buffer::undo);
+    }
+}
@@ -0,0 +1,39 @@
+package com.gluonhq.richtext.model;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public class SearchIndexTests {
+
+    @Test
+    @DisplayName("Trigram index finds the same matches as a scan, while the text is edited")
+    public void searchIndex() throws Exception {
+        PieceTable pt = new PieceTable(new Document("Original Text"));
+        for (int i = 0; i < 10; i++) {
+            pt.append(" some indexed text " + i);
+        }
+        SearchIndex index = new SearchIndex(pt, 16);
+        index.getBuild().get(10, TimeUnit.SECONDS);
+        Assertions.assertTrue(index.isReady());
+
+        pt.insert("Indexed", 40);
+        pt.delete(60, 30);
+        pt.append("text index");
+        pt.insert("ind", 3);
+        List<SearchQuery> queries = List.of(
+                SearchQuery.builder().text("indexed text").build(),
+                SearchQuery.builder().text("Indexed").matchCase(true).build(),
+                SearchQuery.builder().text("text").wholeWord(true).build(),
+                SearchQuery.builder().text("index").build(),
+                SearchQuery.builder().text("missing").build(),
+                SearchQuery.builder().text("x").build());
+        for (SearchQuery query : queries) {
+            Assertions.assertEquals(pt.findAll(query), index.findAll(query), query.toString());
+        }
+        index.dispose();
+    }
+}
@@ -0,0 +1,115 @@
+package com.gluonhq.richtext.model;
+
+import javafx.scene.text.FontWeight;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class TextStatisticsTests {
+
+    @Test
+    @DisplayName("Statistics are updated with the changed text only")
+    public void textStatistics() {
+        PieceTable pt = new PieceTable(new Document("Original Text"));
+        TextStatistics statistics = new TextStatistics();
+        statistics.setTextBuffer(pt);
+        Assertions.assertEquals(13, statistics.getCharacterCount());
+        Assertions.assertEquals(2, statistics.getWordCount());
+        Assertions.assertEquals(1, statistics.getParagraphCount());
+        Assertions.assertEquals(1, statistics.getLineCount());
+
+        pt.append("s and\n\nmore");
+        // "Original Texts and\n\nmore"
+        Assertions.assertEquals(22, statistics.getCharacterCount());
+        Assertions.assertEquals(4, statistics.getWordCount());
+        Assertions.assertEquals(3, statistics.getParagraphCount());
+        Assertions.assertEquals(2, statistics.getLineCount());
+
+        pt.delete(8, 1);
+        // "OriginalTexts and\n\nmore" joins two words
+        Assertions.assertEquals(3, statistics.getWordCount());
+        pt.insert("-", 8);
+        Assertions.assertEquals(4, statistics.getWordCount());
+        pt.decorate(0, 8, TextDecoration.builder().presets().fontWeight(FontWeight.BOLD).build());
+        Assertions.assertTrue(statistics.getStyleRunCount() > 1);
+        pt.delete(18, 1);
+        Assertions.assertEquals(2, statistics.getParagraphCount());
+        Assertions.assertEquals(2, statistics.getLineCount());
+        pt.decorate(0, 0, new ImageDecoration("image.png"));
+        Assertions.assertEquals(1, statistics.getImageCount());
+        Assertions.assertEquals(22, statistics.getCharacterCount());
+
+        pt.undo();
+        pt.undo();
+        pt.undo();
+        pt.undo();
+        pt.undo();
+        Assertions.assertEquals(4, statistics.getWordCount());
+        Assertions.assertEquals(3, statistics.getParagraphCount());
+        Assertions.assertEquals(0, statistics.getImageCount());
+        statistics.setTextBuffer(null);
+    }
+
+    @Test
+    @DisplayName("Edits at several ranges are counted in a single change, as a new count of the text")
+    public void severalRanges() {
+        PieceTable pt = new PieceTable(new Document("one two\nthree four"));
+        TextStatistics statistics = new TextStatistics();
+        statistics.setTextBuffer(pt);
+        pt.replace(new int[] {0, 3, 8, 14}, new int[] {0, 7, 8, 18}, "ab\n");
+        // "ab\noneab\n\nab\nthree ab\n"
+        assertSameCounts(pt, statistics);
+        pt.replace(new int[] {2, 8, 17}, new int[] {4, 11, 18}, "");
+        assertSameCounts(pt, statistics);
+        pt.undo();
+        assertSameCounts(pt, statistics);
+        pt.undo();
+        Assertions.assertEquals("one two\nthree four", pt.getText());
+        assertSameCounts(pt, statistics);
+        statistics.setTextBuffer(null);
+    }
+
+    private static void assertSameCounts(PieceTable pt, TextStatistics statistics) {
+        TextStatistics counted = new TextStatistics();
+        counted.setTextBuffer(new PieceTable(new Document(pt.getText())));
+        Assertions.assertEquals(counted.getCharacterCount(), statistics.getCharacterCount());
+        Assertions.assertEquals(counted.getWordCount(), statistics.getWordCount());
+        Assertions.assertEquals(counted.getParagraphCount(), statistics.getParagraphCount());
+        Assertions.assertEquals(counted.getLineCount(), statistics.getLineCount());
+    }
+
+    @Test
+    @DisplayName("Large edits are counted in the background, and added with the publisher")
+    public void largeEditCountedInBackground() throws Exception {
+        PieceTable pt = new PieceTable(new Document("one two"));
+        List<Runnable> published = new CopyOnWriteArrayList<>();
+        CountDownLatch latch = new CountDownLatch(1);
+        TextStatistics statistics = new TextStatistics(task -> {
+            published.add(task);
+            latch.countDown();
+        });
+        statistics.setTextBuffer(pt);
+
+        pt.append("\nsome words".repeat(TextBuffer.LARGE_EDIT_LENGTH / 11 + 1));
+        // small edits are still counted right away, before the large one
+        pt.insert("three ", 0);
+        Assertions.assertEquals(3, statistics.getWordCount());
+        Assertions.assertEquals(1, statistics.getParagraphCount());
+
+        Assertions.assertTrue(latch.await(10, TimeUnit.SECONDS));
+        Assertions.assertEquals(1, published.size());
+        published.get(0).run();
+        TextStatistics expected = new TextStatistics();
+        expected.setTextBuffer(pt);
+        Assertions.assertEquals(expected.getCharacterCount(), statistics.getCharacterCount());
+        Assertions.assertEquals(expected.getWordCount(), statistics.getWordCount());
+        Assertions.assertEquals(expected.getParagraphCount(), statistics.getParagraphCount());
+        Assertions.assertEquals(expected.getLineCount(), statistics.getLineCount());
+        statistics.setTextBuffer(null);
+    }
+}
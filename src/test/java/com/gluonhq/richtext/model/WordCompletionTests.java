@@ -0,0 +1,69 @@
+package com.gluonhq.richtext.model;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class WordCompletionTests {
+
+    @Test
+    @DisplayName("Word completion index follows the edits")
+    public void wordCompletion() {
+        PieceTable pt = new PieceTable(new Document("textBuffer = textLength + text_buffer; textBuffer"));
+        WordCompletion completion = new WordCompletion();
+        completion.setTextBuffer(pt);
+        Assertions.assertEquals(3, completion.getWordCount());
+        Assertions.assertEquals(2, completion.getFrequency("textBuffer"));
+        Assertions.assertEquals(List.of("textBuffer", "textLength", "text_buffer"), completion.complete("text", 5));
+        Assertions.assertEquals(List.of("textBuffer"), completion.complete("text", 1));
+        Assertions.assertEquals(List.of(), completion.complete("textBuffer", 5));
+
+        pt.insert(" textLengths textLength", 12);
+        Assertions.assertEquals(List.of("textBuffer", "textLength", "textLengths", "text_buffer"), completion.complete("text", 5));
+        Assertions.assertEquals(2, completion.getFrequency("textLength"));
+        pt.delete(0, 6);
+        // "ffer = ..." replaces one use of "textBuffer"
+        Assertions.assertEquals(1, completion.getFrequency("textBuffer"));
+        Assertions.assertEquals(1, completion.getFrequency("ffer"));
+        pt.undo();
+        pt.undo();
+        Assertions.assertEquals(List.of("textBuffer", "textLength", "text_buffer"), completion.complete("text", 5));
+        Assertions.assertEquals(0, completion.getFrequency("ffer"));
+        Assertions.assertEquals(List.of(), completion.complete("f", 5));
+        completion.setTextBuffer(null);
+        Assertions.assertEquals(0, completion.getWordCount());
+    }
+
+    @Test
+    @DisplayName("Words of large edits are found in the background, and the edits done meanwhile wait for them")
+    public void largeEditIndexedInBackground() throws Exception {
+        PieceTable pt = new PieceTable(new Document("alpha"));
+        List<Runnable> published = new CopyOnWriteArrayList<>();
+        CountDownLatch latch = new CountDownLatch(1);
+        WordCompletion completion = new WordCompletion(task -> {
+            published.add(task);
+            latch.countDown();
+        });
+        completion.setTextBuffer(pt);
+
+        int copies = TextBuffer.LARGE_EDIT_LENGTH / 11 + 1;
+        pt.append(" alpha beta".repeat(copies));
+        // removes a word of the large edit before it is indexed
+        pt.delete(5, 6);
+        Assertions.assertEquals(1, completion.getFrequency("alpha"));
+        Assertions.assertEquals(0, completion.getFrequency("beta"));
+
+        Assertions.assertTrue(latch.await(10, TimeUnit.SECONDS));
+        Assertions.assertEquals(1, published.size());
+        published.get(0).run();
+        Assertions.assertEquals(copies, completion.getFrequency("alpha"));
+        Assertions.assertEquals(copies, completion.getFrequency("beta"));
+        Assertions.assertEquals(List.of("alpha"), completion.complete("al", 5));
+        completion.setTextBuffer(null);
+    }
+}
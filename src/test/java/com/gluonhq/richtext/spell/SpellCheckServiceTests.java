@@ -0,0 +1,97 @@
+package com.gluonhq.richtext.spell;
+
+import com.gluonhq.richtext.Selection;
+import com.gluonhq.richtext.model.Document;
+import com.gluonhq.richtext.model.PieceTable;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringReader;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+public class SpellCheckServiceTests {
+
+    @Test
+    @DisplayName("Spell check of the changed paragraphs")
+    public void spellCheck() throws Exception {
+        PieceTable pt = new PieceTable(new Document("Original Text"));
+        pt.append("\nsome mor text");
+        Dictionary dictionary = Dictionary.load(new StringReader("original\ntext\nsome\nmore\n"));
+        Assertions.assertEquals(4, dictionary.size());
+        Assertions.assertTrue(dictionary.contains("more"));
+        Assertions.assertFalse(dictionary.contains("mor"));
+
+        List<String> checked = new CopyOnWriteArrayList<>();
+        DictionarySpellChecker dictionaryChecker = new DictionarySpellChecker(dictionary, Locale.ENGLISH);
+        SpellChecker checker = paragraph -> {
+            checked.add(paragraph);
+            return dictionaryChecker.check(paragraph);
+        };
+        BlockingQueue<Boolean> published = new LinkedBlockingQueue<>();
+        SpellCheckService service = new SpellCheckService(pt, checker, Runnable::run, () -> published.add(true));
+        Selection all = new Selection(0, pt.getTextLength());
+        awaitMisspellings(service, published, all, List.of(new Selection(19, 22)));
+        Assertions.assertEquals(2, checked.size());
+
+        pt.insert("x", 22);
+        awaitMisspellings(service, published, new Selection(0, pt.getTextLength()), List.of(new Selection(19, 23)));
+        // only the changed paragraph is checked again
+        Assertions.assertEquals(3, checked.size());
+        Assertions.assertEquals("some morx text", checked.get(2));
+        pt.undo();
+        // and its previous text was cached
+        Assertions.assertEquals(List.of(new Selection(19, 22)), service.getMisspellings(all));
+        Assertions.assertEquals(3, checked.size());
+        service.dispose();
+    }
+
+    @Test
+    @DisplayName("Editing a paragraph keeps the queued check of other paragraphs with the same text")
+    public void spellCheckOfSameParagraphs() throws Exception {
+        PieceTable pt = new PieceTable(new Document("a\nmor\nmor"));
+        DictionarySpellChecker dictionaryChecker = new DictionarySpellChecker(
+                Dictionary.load(new StringReader("a\nmore\n")), Locale.ENGLISH);
+        List<String> checked = new CopyOnWriteArrayList<>();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch edited = new CountDownLatch(1);
+        SpellChecker checker = paragraph -> {
+            checked.add(paragraph);
+            started.countDown();
+            try {
+                // the first paragraph is checked once the others are queued and edited
+                Assertions.assertTrue(edited.await(10, TimeUnit.SECONDS));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return dictionaryChecker.check(paragraph);
+        };
+        BlockingQueue<Boolean> published = new LinkedBlockingQueue<>();
+        SpellCheckService service = new SpellCheckService(pt, checker, Runnable::run, () -> published.add(true));
+        Assertions.assertTrue(started.await(10, TimeUnit.SECONDS));
+        pt.insert("e", 5);
+        edited.countDown();
+
+        // without asking for the misspellings, that would queue it again
+        while (!checked.contains("mor")) {
+            Assertions.assertNotNull(published.poll(10, TimeUnit.SECONDS), "No results published");
+        }
+        Assertions.assertEquals(List.of("a", "more", "mor"), checked);
+        Assertions.assertEquals(List.of(new Selection(7, 10)), service.getMisspellings(new Selection(0, pt.getTextLength())));
+        service.dispose();
+    }
+
+    // waits for the results to be published until the misspellings of the range are the expected ones
+    private static void awaitMisspellings(SpellCheckService service, BlockingQueue<Boolean> published,
+                                          Selection range, List<Selection> expected) throws InterruptedException {
+        while (!expected.equals(service.getMisspellings(range))) {
+            Assertions.assertNotNull(published.poll(10, TimeUnit.SECONDS), "No results published");
+        }
+    }
+}
@@ -4,6 +4,11 @@ import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -158,12 +163,212 @@ public class CmdManagerTests {
         commander.redo();
         Assertions.assertEquals(3, aInteger.get());
     }
+
+    @Test
+    @DisplayName("oldest commands are evicted when the command limit is exceeded")
+    public void oldestCommandsEvictedOnCommandLimit() {
+        StringBuilder text = new StringBuilder("Text");
+        CommandManager<StringBuilder> commander = new CommandManager<>(text);
+        commander.setLimits(2, Long.MAX_VALUE);
+        commander.execute(new TestCommand());
+        commander.execute(new TestCommand());
+        commander.execute(new TestCommand());
+        Assertions.assertEquals(2, commander.getUndoStackSize());
+        Assertions.assertEquals(1, commander.getEvictedCount());
+        commander.undo();
+        commander.undo();
+        commander.undo();
+        Assertions.assertEquals("Text-redo", text.toString());
+    }
+
+    @Test
+    @DisplayName("oldest commands are evicted when the memory limit is exceeded")
+    public void oldestCommandsEvictedOnMemoryLimit() {
+        StringBuilder text = new StringBuilder("Text");
+        CommandManager<StringBuilder> commander = new CommandManager<>(text);
+        commander.execute(new TestCommand());
+        commander.execute(new TestCommand());
+        commander.execute(new TestCommand());
+        Assertions.assertEquals(3 * AbstractCommand.SHALLOW_SIZE, commander.getStats().getRetainedBytes());
+
+        commander.setLimits(Integer.MAX_VALUE, 2 * AbstractCommand.SHALLOW_SIZE);
+        UndoStats stats = commander.getStats();
+        Assertions.assertEquals(2, stats.getUndoCount());
+        Assertions.assertEquals(2 * AbstractCommand.SHALLOW_SIZE, stats.getRetainedBytes());
+        Assertions.assertEquals(1, stats.getEvictedCount());
+    }
+
+    @Test
+    @DisplayName("stats account for both undo and redo stacks")
+    public void statsAccountForUndoAndRedo() {
+        StringBuilder text = new StringBuilder("Text");
+        CommandManager<StringBuilder> commander = new CommandManager<>(text);
+        commander.execute(new TestCommand());
+        commander.execute(new TestCommand());
+        commander.undo();
+        UndoStats stats = commander.getStats();
+        Assertions.assertEquals(1, stats.getUndoCount());
+        Assertions.assertEquals(1, stats.getRedoCount());
+        Assertions.assertEquals(2 * AbstractCommand.SHALLOW_SIZE, stats.getRetainedBytes());
+        commander.execute(new TestCommand());
+        Assertions.assertEquals(2 * AbstractCommand.SHALLOW_SIZE, commander.getStats().getRetainedBytes());
+    }
+
+    @Test
+    @DisplayName("coalescable commands within the window are undone in one step")
+    public void coalescableCommandsUndoneTogether() {
+        StringBuilder text = new StringBuilder("Text");
+        CommandManager<StringBuilder> commander = new CommandManager<>(text);
+        commander.setCoalescingWindow(60_000);
+        commander.execute(new TestCommand(true));
+        commander.execute(new TestCommand(true));
+        commander.execute(new TestCommand(true));
+        Assertions.assertEquals(1, commander.getUndoStackSize());
+        Assertions.assertEquals("Text-redo-redo-redo", text.toString());
+
+        commander.undo();
+        Assertions.assertEquals("Text", text.toString());
+        commander.redo();
+        Assertions.assertEquals("Text-redo-redo-redo", text.toString());
+    }
+
+    @Test
+    @DisplayName("coalescing is disabled by default and broken by undo")
+    public void coalescingDisabledByDefaultAndBrokenByUndo() {
+        StringBuilder text = new StringBuilder("Text");
+        CommandManager<StringBuilder> commander = new CommandManager<>(text);
+        commander.execute(new TestCommand(true));
+        commander.execute(new TestCommand(true));
+        Assertions.assertEquals(2, commander.getUndoStackSize());
+
+        commander.setCoalescingWindow(60_000);
+        commander.undo();
+        commander.execute(new TestCommand(true));
+        Assertions.assertEquals(2, commander.getUndoStackSize());
+    }
+
+    @Test
+    @DisplayName("last command can be coalesced on demand")
+    public void lastCommandCoalescedOnDemand() {
+        StringBuilder text = new StringBuilder("Text");
+        CommandManager<StringBuilder> commander = new CommandManager<>(text);
+        Assertions.assertFalse(commander.coalesceLast());
+        commander.execute(new TestCommand());
+        commander.execute(new TestCommand());
+        Assertions.assertTrue(commander.coalesceLast());
+        Assertions.assertEquals(1, commander.getUndoStackSize());
+        commander.undo();
+        Assertions.assertEquals("Text", text.toString());
+    }
+
+    @Test
+    @DisplayName("Spills oldest commands and reloads them lazily on undo")
+    public void spillAndReload() {
+        StringBuilder text = new StringBuilder("Text");
+        CommandManager<StringBuilder> commander = new CommandManager<>(text);
+        commander.enableSpilling(2, null, new TestCommandCodec());
+        for (int i = 0; i < 5; i++) {
+            commander.execute(new TestCommand());
+        }
+
+        Assertions.assertEquals(2, commander.undoStack.size());
+        Assertions.assertEquals(5, commander.getUndoStackSize());
+        Assertions.assertEquals(3, commander.getStats().getSpilledCount());
+
+        for (int i = 0; i < 5; i++) {
+            commander.undo();
+        }
+        Assertions.assertEquals("Text", text.toString());
+        Assertions.assertEquals(0, commander.getUndoStackSize());
+        Assertions.assertEquals(5, commander.getRedoStackSize());
+
+        commander.setLimits(3, Long.MAX_VALUE);
+        for (int i = 0; i < 5; i++) {
+            commander.redo();
+        }
+        Assertions.assertEquals(3, commander.getUndoStackSize());
+        Assertions.assertEquals(1, commander.getStats().getSpilledCount());
+        Assertions.assertEquals(2, commander.getEvictedCount());
+
+        commander.disableSpilling();
+        Assertions.assertEquals(2, commander.getUndoStackSize());
+        Assertions.assertEquals(3, commander.getEvictedCount());
+    }
+
+    @Test
+    @DisplayName("Spilled commands are evicted before in-memory ones when the memory limit is exceeded")
+    public void spilledCommandsEvictedFirstOnMemoryLimit() {
+        StringBuilder text = new StringBuilder("Text");
+        CommandManager<StringBuilder> commander = new CommandManager<>(text);
+        commander.enableSpilling(2, null, new TestCommandCodec());
+        for (int i = 0; i < 5; i++) {
+            commander.execute(new TestCommand());
+        }
+        Assertions.assertEquals(3, commander.getStats().getSpilledCount());
+
+        commander.setLimits(Integer.MAX_VALUE, AbstractCommand.SHALLOW_SIZE);
+        Assertions.assertEquals(1, commander.getUndoStackSize());
+        Assertions.assertEquals(0, commander.getStats().getSpilledCount());
+        Assertions.assertEquals(4, commander.getEvictedCount());
+
+        // only the newest command can be undone, the older ones are not applied to a text without it
+        while (commander.getUndoStackSize() > 0) {
+            commander.undo();
+        }
+        Assertions.assertEquals("Text-redo-redo-redo-redo", text.toString());
+    }
+
+    @Test
+    @DisplayName("Spill file is compacted once most of it holds dropped commands")
+    public void spillFileCompaction() throws IOException {
+        Path path = Files.createTempFile("undo", ".spill");
+        UndoSpillFile<StringBuilder> spillFile = new UndoSpillFile<>(path, new TestCommandCodec(), 16);
+        try {
+            for (int i = 0; i < 10; i++) {
+                TestCommand cmd = new TestCommand();
+                cmd.pos = i * 10;
+                spillFile.push(cmd);
+            }
+            Assertions.assertEquals(80, spillFile.getFileLength());
+
+            for (int i = 0; i < 5; i++) {
+                spillFile.dropOldest();
+            }
+            Assertions.assertEquals(80, spillFile.getFileLength());
+            spillFile.dropOldest();
+            Assertions.assertEquals(4, spillFile.size());
+            Assertions.assertEquals(32, spillFile.getFileLength());
+
+            for (int i = 9; i >= 6; i--) {
+                Assertions.assertEquals(i * 10, ((TestCommand) spillFile.pop()).pos);
+            }
+            Assertions.assertTrue(spillFile.isEmpty());
+            Assertions.assertEquals(0, spillFile.getFileLength());
+        } finally {
+            spillFile.close();
+        }
+        Assertions.assertFalse(Files.exists(path));
+    }
 }
 
 class TestCommand extends AbstractCommand<StringBuilder> {
 
     int pos = 0;
     int length = 0;
+    final boolean coalescable;
+
+    TestCommand() {
+        this(false);
+    }
+
+    TestCommand(boolean coalescable) {
+        this.coalescable = coalescable;
+    }
+
+    @Override
+    protected boolean isCoalescableWith(AbstractCommand<StringBuilder> next) {
+        return coalescable && next instanceof TestCommand && ((TestCommand) next).coalescable;
+    }
 
     @Override
     protected void doUndo(StringBuilder context) {
@@ -178,3 +383,20 @@ class TestCommand extends AbstractCommand<StringBuilder> {
         context.append("-redo");
     }
 }
+
+class TestCommandCodec implements CommandCodec<StringBuilder> {
+
+    @Override
+    public void write(AbstractCommand<StringBuilder> cmd, DataOutput out) throws IOException {
+        out.writeInt(((TestCommand) cmd).pos);
+        out.writeInt(((TestCommand) cmd).length);
+    }
+
+    @Override
+    public AbstractCommand<StringBuilder> read(DataInput in) throws IOException {
+        TestCommand cmd = new TestCommand();
+        cmd.pos = in.readInt();
+        cmd.length = in.readInt();
+        return cmd;
+    }
+}
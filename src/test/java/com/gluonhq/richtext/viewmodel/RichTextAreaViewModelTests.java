@@ -0,0 +1,81 @@
+package com.gluonhq.richtext.viewmodel;
+
+import com.gluonhq.richtext.model.Document;
+import com.gluonhq.richtext.model.PieceTable;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class RichTextAreaViewModelTests {
+
+    private static RichTextAreaViewModel viewModel(String text) {
+        RichTextAreaViewModel viewModel = new RichTextAreaViewModel((offset, up) -> 0);
+        viewModel.setTextBuffer(new PieceTable(new Document(text)));
+        return viewModel;
+    }
+
+    @Test
+    @DisplayName("Backspace with multiple carets doesn't remove text after a caret at the start")
+    public void backspaceAtStartWithMultipleCarets() {
+        RichTextAreaViewModel viewModel = viewModel("one two");
+        viewModel.setCaretPosition(0);
+        viewModel.addCaret(4);
+        viewModel.remove(-1, 1);
+        Assertions.assertEquals("onetwo", viewModel.getTextBuffer().getText());
+    }
+
+    @Test
+    @DisplayName("Delete with multiple carets doesn't remove text before a caret at the end")
+    public void deleteAtEndWithMultipleCarets() {
+        RichTextAreaViewModel viewModel = viewModel("one two");
+        viewModel.setCaretPosition(7);
+        viewModel.addCaret(3);
+        viewModel.remove(0, 1);
+        Assertions.assertEquals("onetwo", viewModel.getTextBuffer().getText());
+    }
+
+    @Test
+    @DisplayName("A new edit after undoing the saved state doesn't reach the saved state again")
+    public void editAfterUndoingSavedState() {
+        RichTextAreaViewModel viewModel = viewModel("one");
+        viewModel.setCaretPosition(3);
+        viewModel.getCommandManager().execute(new InsertTextCmd("a"));
+        viewModel.save();
+        Assertions.assertTrue(viewModel.isSaved());
+
+        viewModel.getCommandManager().undo();
+        Assertions.assertFalse(viewModel.isSaved());
+        viewModel.getCommandManager().redo();
+        Assertions.assertTrue(viewModel.isSaved());
+        viewModel.getCommandManager().undo();
+        viewModel.getCommandManager().execute(new InsertTextCmd("b"));
+        // as many commands as when saved, but not the saved text
+        Assertions.assertEquals("oneb", viewModel.getTextBuffer().getText());
+        Assertions.assertFalse(viewModel.isSaved());
+        viewModel.getCommandManager().undo();
+        Assertions.assertFalse(viewModel.isSaved());
+
+        viewModel.save();
+        Assertions.assertTrue(viewModel.isSaved());
+    }
+
+    @Test
+    @DisplayName("The completion prefix is the word chars right before the caret")
+    public void completionPrefix() {
+        RichTextAreaViewModel viewModel = viewModel("foo.ba bar_x 42ab");
+        viewModel.setCaretPosition(6);
+        // after a member access
+        Assertions.assertEquals("ba", viewModel.getCompletionPrefix());
+        viewModel.setCaretPosition(4);
+        Assertions.assertEquals("", viewModel.getCompletionPrefix());
+        viewModel.setCaretPosition(12);
+        Assertions.assertEquals("bar_x", viewModel.getCompletionPrefix());
+        viewModel.setCaretPosition(10);
+        Assertions.assertEquals("bar", viewModel.getCompletionPrefix());
+        // numbers are not words
+        viewModel.setCaretPosition(17);
+        Assertions.assertEquals("", viewModel.getCompletionPrefix());
+        viewModel.setCaretPosition(0);
+        Assertions.assertEquals("", viewModel.getCompletionPrefix());
+    }
+}
@@ -0,0 +1,79 @@
+package com.gluonhq.richtext.viewmodel;
+
+import com.gluonhq.richtext.model.Document;
+import com.gluonhq.richtext.model.PieceTable;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.text.BreakIterator;
+import java.util.Random;
+
+public class WordBoundariesTests {
+
+    private static final String[] WORDS = {"one", "two", "three", " ", " ", ", ", ".", "\n", "\n\n", "don't", "42"};
+
+    @Test
+    @DisplayName("Boundaries of the paragraphs are the ones of the whole text")
+    public void boundaries() {
+        PieceTable pt = new PieceTable(new Document("one two, three.\n\nfour\nfive six"));
+        WordBoundaries wordBoundaries = new WordBoundaries(pt);
+        assertBoundaries(pt, wordBoundaries);
+        Assertions.assertEquals(BreakIterator.DONE, wordBoundaries.following(pt.getTextLength()));
+        Assertions.assertEquals(BreakIterator.DONE, wordBoundaries.preceding(0));
+        wordBoundaries.dispose();
+    }
+
+    @Test
+    @DisplayName("Cached boundaries are dropped or moved when the text is edited")
+    public void boundariesAfterEdits() {
+        Random random = new Random(11);
+        PieceTable pt = new PieceTable(new Document(randomText(random, 400)));
+        WordBoundaries wordBoundaries = new WordBoundaries(pt);
+        for (int i = 0; i < 200; i++) {
+            int position = random.nextInt(pt.getTextLength() + 1);
+            switch (random.nextInt(3)) {
+                case 0:
+                    pt.insert(randomText(random, 1 + random.nextInt(5)), position);
+                    break;
+                case 1:
+                    pt.delete(position, random.nextInt(Math.min(20, pt.getTextLength() - position) + 1));
+                    break;
+                default:
+                    // does nothing if there is nothing to undo
+                    pt.undo();
+            }
+            // only a few positions, so most of the paragraphs stay cached until the next edits
+            for (int j = 0; j < 5 && pt.getTextLength() > 0; j++) {
+                assertBoundaryAt(pt, wordBoundaries, random.nextInt(pt.getTextLength() + 1));
+            }
+        }
+        assertBoundaries(pt, wordBoundaries);
+        wordBoundaries.dispose();
+    }
+
+    private static void assertBoundaries(PieceTable pt, WordBoundaries wordBoundaries) {
+        for (int position = 0; position <= pt.getTextLength(); position++) {
+            assertBoundaryAt(pt, wordBoundaries, position);
+        }
+    }
+
+    private static void assertBoundaryAt(PieceTable pt, WordBoundaries wordBoundaries, int position) {
+        BreakIterator expected = BreakIterator.getWordInstance();
+        expected.setText(pt.getText());
+        if (position < pt.getTextLength()) {
+            Assertions.assertEquals(expected.following(position), wordBoundaries.following(position), "following " + position);
+        }
+        if (position > 0) {
+            Assertions.assertEquals(expected.preceding(position), wordBoundaries.preceding(position), "preceding " + position);
+        }
+    }
+
+    private static String randomText(Random random, int words) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            sb.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return sb.toString();
+    }
+}